@@ -1,6 +1,7 @@
 package com.nathaniel.bookbackend.analytics.events;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 public class UserActivityEvent {
@@ -8,6 +9,8 @@ public class UserActivityEvent {
     private String activityType;
     private String bookId;
     private Map<String, String> metadata;
+    // Set instead of bookId when one event carries every activity of a bulk library request
+    private List<UserActivityEvent> activities;
     private Instant timestamp;
 
     public UserActivityEvent() {}
@@ -32,6 +35,9 @@ public class UserActivityEvent {
     public Map<String, String> getMetadata() { return metadata; }
     public void setMetadata(Map<String, String> metadata) { this.metadata = metadata; }
 
+    public List<UserActivityEvent> getActivities() { return activities; }
+    public void setActivities(List<UserActivityEvent> activities) { this.activities = activities; }
+
     public Instant getTimestamp() { return timestamp; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
 }
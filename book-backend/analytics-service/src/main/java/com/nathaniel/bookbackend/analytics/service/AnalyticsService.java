@@ -4,6 +4,7 @@ import com.nathaniel.bookbackend.analytics.model.ReadingActivity;
 import com.nathaniel.bookbackend.analytics.model.ReadingStats;
 import com.nathaniel.bookbackend.analytics.repository.ReadingActivityRepository;
 import com.nathaniel.bookbackend.analytics.repository.ReadingStatsRepository;
+import com.nathaniel.bookbackend.common.datasource.ReadYourWrites;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -33,21 +34,30 @@ public class AnalyticsService {
 
     @KafkaListener(topics = "user-activity", groupId = "analytics-service")
     public void handleUserActivity(UserActivityEvent event) {
+        // A bulk library request arrives as one event; its activities are saved together and the stats recomputed once
+        if (event.getActivities() != null) {
+            activityRepository.saveAll(event.getActivities().stream().map(this::toReadingActivity).toList());
+        } else {
+            activityRepository.save(toReadingActivity(event));
+        }
+        // The stats are recomputed from the activities just saved, which a replica may not have yet
+        ReadYourWrites.onPrimary(() -> updateUserStats(event.getUserId()));
+    }
+
+    private ReadingActivity toReadingActivity(UserActivityEvent event) {
         ReadingActivity activity = new ReadingActivity();
         activity.setUserId(event.getUserId());
         activity.setBookId(event.getBookId());
         activity.setActivityType(event.getActivityType());
         
-        if (event.getActivityType().equals("PROGRESS_UPDATED")) {
+        if ("PROGRESS_UPDATED".equals(event.getActivityType())) {
             // Assuming the event contains pages read in metadata
             Map<String, String> metadata = event.getMetadata();
             if (metadata != null && metadata.containsKey("pagesRead")) {
                 activity.setPagesRead(Integer.parseInt(metadata.get("pagesRead")));
             }
         }
-        
-        activityRepository.save(activity);
-        updateUserStats(event.getUserId());
+        return activity;
     }
 
     @Transactional
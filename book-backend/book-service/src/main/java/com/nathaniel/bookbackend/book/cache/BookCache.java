@@ -0,0 +1,221 @@
+package com.nathaniel.bookbackend.book.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.nathaniel.bookbackend.book.datasource.PrimaryReads;
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Read-through cache for book lookups by id (single or batched) and by ISBN.
+ * Entries are bounded by an estimate of their heap size, expire after a TTL (a much shorter one
+ * for ids that were not found), and are evicted individually when the book changes. ISBNs the catalog
+ * does not have are not remembered here; the ISBN index answers those once it is built.
+ * <p>
+ * Every pod evicts a changed book as soon as the change is announced, which can be before a replica
+ * has it, so books changed that recently are reloaded from the primary.
+ */
+@Component
+public class BookCache {
+
+    // Rough per-entry overhead of the entity, its collections and the cache node
+    private static final int ENTRY_OVERHEAD_BYTES = 512;
+    // Room for the JSON and protobuf forms that get attached after the entry is weighed
+    private static final int SERIALIZED_FORMS_FACTOR = 3;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PrimaryReads primaryReads;
+
+    @Value("${book.cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${book.cache.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${book.cache.negative-ttl:30s}")
+    private Duration negativeTtl;
+
+    @Value("${book.cache.max-isbn-entries:100000}")
+    private long maxIsbnEntries;
+
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Cache<String, CachedBook> booksById;
+    private Cache<String, String> idsByIsbn;
+    // Books evicted for a change that a replica may not have yet
+    private Cache<String, Boolean> recentlyChanged;
+    private Counter invalidations;
+
+    @PostConstruct
+    void init() {
+        booksById = Caffeine.newBuilder()
+            .maximumWeight(maxWeightBytes)
+            .weigher((String id, CachedBook cached) -> weigh(cached))
+            .expireAfter(new TtlExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+            .ticker(ticker)
+            .recordStats()
+            .build();
+        idsByIsbn = Caffeine.newBuilder()
+            .maximumSize(maxIsbnEntries)
+            .expireAfterWrite(ttl)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+        recentlyChanged = Caffeine.newBuilder()
+            .expireAfterWrite(primaryReads.staleness())
+            .ticker(ticker)
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, booksById, "books.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByIsbn, "books.by-isbn");
+        invalidations = Counter.builder("book.cache.invalidations")
+            .description("Book cache entries evicted because the book changed")
+            .register(meterRegistry);
+    }
+
+    public CachedBook getById(String id) {
+        return booksById.get(id, key -> {
+            Optional<Book> book = changedRecently(key)
+                ? primaryReads.read(() -> bookRepository.findWithCollectionsById(key))
+                : bookRepository.findWithCollectionsById(key);
+            return book.map(CachedBook::new).orElse(CachedBook.MISSING);
+        });
+    }
+
+    /**
+     * Looks up many books at once; all misses are loaded with a single query.
+     * Ids that do not exist map to a missing entry.
+     */
+    public Map<String, CachedBook> getAllById(Collection<String> ids) {
+        return booksById.getAll(ids, this::loadAll);
+    }
+
+    /**
+     * A miss is not cached: until the ISBN index is built every unknown ISBN costs one indexed query,
+     * and afterwards the index answers it without reaching this cache.
+     */
+    public CachedBook getByIsbn(String isbn) {
+        String id = idsByIsbn.getIfPresent(isbn);
+        if (id != null) {
+            CachedBook cached = getById(id);
+            // The mapping is only a hint; the book may have been deleted or given another ISBN since
+            if (cached.isPresent() && isbn.equals(cached.getBook().getIsbn())) {
+                return cached;
+            }
+            idsByIsbn.invalidate(isbn);
+        }
+
+        Optional<Book> book = bookRepository.findWithCollectionsByIsbn(isbn);
+        if (book.isPresent() && changedRecently(book.get().getId())) {
+            book = primaryReads.read(() -> bookRepository.findWithCollectionsByIsbn(isbn));
+        }
+        if (book.isEmpty()) {
+            return CachedBook.MISSING;
+        }
+        CachedBook cached = new CachedBook(book.get());
+        booksById.put(book.get().getId(), cached);
+        idsByIsbn.put(isbn, book.get().getId());
+        return cached;
+    }
+
+    public void evict(String id) {
+        // Marked first, so a load that starts once the entry is gone already goes to the primary
+        if (!primaryReads.staleness().isZero()) {
+            recentlyChanged.put(id, Boolean.TRUE);
+        }
+        booksById.invalidate(id);
+        invalidations.increment();
+    }
+
+    private Map<String, CachedBook> loadAll(Set<? extends String> ids) {
+        List<String> changed = new ArrayList<>();
+        List<String> unchanged = new ArrayList<>();
+        ids.forEach(id -> (changedRecently(id) ? changed : unchanged).add(id));
+        List<Book> books = new ArrayList<>(ids.size());
+        if (!unchanged.isEmpty()) {
+            books.addAll(bookRepository.findAllWithCollectionsByIdIn(unchanged));
+        }
+        if (!changed.isEmpty()) {
+            books.addAll(primaryReads.read(() -> bookRepository.findAllWithCollectionsByIdIn(changed)));
+        }
+
+        Map<String, CachedBook> loaded = new HashMap<>();
+        for (Book book : books) {
+            loaded.put(book.getId(), new CachedBook(book));
+        }
+        for (String id : ids) {
+            loaded.putIfAbsent(id, CachedBook.MISSING);
+        }
+        return loaded;
+    }
+
+    private boolean changedRecently(String id) {
+        return recentlyChanged.getIfPresent(id) != null;
+    }
+
+    private static int weigh(CachedBook cached) {
+        Book book = cached.getBook();
+        if (book == null) {
+            return ENTRY_OVERHEAD_BYTES / 4;
+        }
+        long chars = length(book.getId()) + length(book.getTitle()) + length(book.getAuthor())
+            + length(book.getIsbn()) + length(book.getDescription()) + length(book.getCoverUrl())
+            + length(book.getPublisher()) + length(book.getPublishedYear()) + length(book.getLanguage())
+            + length(book.getDuplicateOf());
+        if (book.getGenres() != null) {
+            chars += book.getGenres().stream().mapToLong(BookCache::length).sum();
+        }
+        if (book.getTags() != null) {
+            chars += book.getTags().stream().mapToLong(BookCache::length).sum();
+        }
+        // Strings are mostly Latin-1, one byte per character; the MinHash signature is never serialized
+        long minhashBytes = book.getMinhash() != null ? book.getMinhash().length : 0;
+        return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD_BYTES + chars * SERIALIZED_FORMS_FACTOR + minhashBytes);
+    }
+
+    private static long length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private record TtlExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<String, CachedBook> {
+
+        @Override
+        public long expireAfterCreate(String id, CachedBook cached, long currentTime) {
+            return cached.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, CachedBook cached, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, cached, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String id, CachedBook cached, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.nathaniel.bookbackend.book.cache;
+
+import com.nathaniel.bookbackend.book.model.Book;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A cached catalog lookup: the book (or its absence) plus any serialized forms built from it,
+ * so hot books are converted to JSON once per cache lifetime instead of once per request.
+ * Protobuf responses are kept by BookResponseCache, which the search RPCs share.
+ */
+public class CachedBook {
+
+    static final CachedBook MISSING = new CachedBook(null);
+
+    private final Book book;
+    private final Map<Class<?>, Object> serializedForms = new ConcurrentHashMap<>(4);
+
+    CachedBook(Book book) {
+        this.book = book;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public boolean isPresent() {
+        return book != null;
+    }
+
+    public <T> T serialized(Class<T> form, Function<Book, T> serializer) {
+        return form.cast(serializedForms.computeIfAbsent(form, key -> serializer.apply(book)));
+    }
+}
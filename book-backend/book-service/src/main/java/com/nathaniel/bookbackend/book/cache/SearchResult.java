@@ -0,0 +1,25 @@
+package com.nathaniel.bookbackend.book.cache;
+
+import java.util.List;
+
+/**
+ * One page of search results as book ids in result order, with the total match count.
+ */
+public class SearchResult {
+
+    private final List<String> bookIds;
+    private final long total;
+
+    public SearchResult(List<String> bookIds, long total) {
+        this.bookIds = List.copyOf(bookIds);
+        this.total = total;
+    }
+
+    public List<String> getBookIds() {
+        return bookIds;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
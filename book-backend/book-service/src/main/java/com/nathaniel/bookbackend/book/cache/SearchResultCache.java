@@ -0,0 +1,314 @@
+package com.nathaniel.bookbackend.book.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.nathaniel.bookbackend.book.datasource.PrimaryReads;
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import com.nathaniel.bookbackend.book.search.BookSearchIndex;
+import com.nathaniel.bookbackend.book.search.SearchMode;
+import com.nathaniel.bookbackend.book.search.TextAnalyzer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Search result pages as id lists, keyed by normalized query, mode, page and sort. Caffeine's
+ * TinyLFU admission keeps one-off queries from displacing popular ones.
+ * <p>
+ * Fed like a {@link BookIndex}, so every write seen by the indexes also reaches the cache. A book
+ * whose searchable text is new or changed evicts the pages that contain it and the pages whose query
+ * words share a leading three-letter prefix with one of its words; a deleted book evicts the pages
+ * that contain it. Pages hold only ids and are ranked by text, so a book updated with its text
+ * unchanged, such as by a rating update, only evicts those of these pages that are explicitly sorted.
+ * Matches that check cannot see, such as a LIKE hit in the middle of a word or a typo in a fuzzy
+ * query's first letters, are bounded by book.search.cache.ttl.
+ * <p>
+ * Whether the text changed is read from {@link BookSearchIndex}, which keeps a hash of every book's
+ * text already, so this cache is fed ahead of the indexes while the index still holds the old text.
+ * <p>
+ * A database search may run on a replica that does not have a change yet, even after the change
+ * evicted the page, so it is cached only if no change within the replicas' lag would have evicted it.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SearchResultCache implements BookIndex {
+
+    private static final int PREFIX_LENGTH = 3;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final String UNSORTED = Sort.unsorted().toString();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PrimaryReads primaryReads;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Value("${book.search.cache.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${book.search.cache.ttl:10m}")
+    private Duration ttl;
+
+    private record Key(String query, SearchMode mode, boolean indexed, long offset, int size, String sort) {
+
+        boolean sorted() {
+            return !UNSORTED.equals(sort);
+        }
+    }
+
+    private record Entry(SearchResult result, long searchNanos, Set<String> prefixes) {
+    }
+
+    private record Change(boolean textChanged, Set<String> prefixes) {
+    }
+
+    private Cache<Key, Entry> results;
+    private final Map<String, Set<Key>> keysByBook = new ConcurrentHashMap<>();
+    private final Map<String, Set<Key>> keysByPrefix = new ConcurrentHashMap<>();
+    // Searches in progress; a change that would have evicted one's page keeps its result out of the cache
+    private final Set<Computation> computing = ConcurrentHashMap.newKeySet();
+    // Changes a replica may not have yet, by book id; empty without replicas
+    private Cache<String, Change> recentChanges;
+    private volatile long invalidatedAllAt;
+    private Counter savedNanos;
+    private Counter invalidations;
+
+    @PostConstruct
+    void init() {
+        results = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(ttl)
+            .executor(Runnable::run)
+            .removalListener((Key key, Entry entry, RemovalCause cause) -> {
+                if (key != null && entry != null) {
+                    // A replacing entry has registered the same key already for what it shares with this one
+                    unregister(key, entry, cause == RemovalCause.REPLACED ? results.asMap().get(key) : null);
+                }
+            })
+            .recordStats()
+            .build();
+
+        recentChanges = Caffeine.newBuilder()
+            .expireAfterWrite(primaryReads.staleness())
+            .build();
+        invalidatedAllAt = System.nanoTime() - primaryReads.staleness().toNanos();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "books.search");
+        savedNanos = Counter.builder("book.search.cache.time.saved")
+            .description("Search time cache hits did not spend, as measured when each result was computed")
+            .baseUnit("nanoseconds")
+            .register(meterRegistry);
+        invalidations = Counter.builder("book.search.cache.invalidations")
+            .description("Search result pages evicted because a book in or near them changed")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Lower-cased with runs of whitespace collapsed; searches should run on this form so cached and
+     * fresh results agree.
+     */
+    public static String normalizeQuery(String query) {
+        return WHITESPACE.matcher(query.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The cached page for the query, or the result of {@code search}, which is cached unless a book
+     * changed while it ran.
+     *
+     * @param query a query in {@link #normalizeQuery} form
+     * @param indexed whether the search is answered by an in-memory index rather than the database
+     */
+    public SearchResult get(String query, SearchMode mode, boolean indexed, Pageable pageable,
+            Supplier<SearchResult> search) {
+        Key key = new Key(query, mode, indexed, pageable.getOffset(), pageable.getPageSize(),
+            pageable.getSort().toString());
+        Entry cached = results.getIfPresent(key);
+        if (cached != null) {
+            savedNanos.increment(cached.searchNanos());
+            return cached.result();
+        }
+
+        Computation computation = new Computation(key, queryPrefixes(query));
+        computing.add(computation);
+        if (!indexed) {
+            recentChanges.asMap().forEach((bookId, change) ->
+                computation.changed(bookId, change.textChanged(), change.prefixes()));
+            if (System.nanoTime() - invalidatedAllAt < primaryReads.staleness().toNanos()) {
+                computation.invalidate();
+            }
+        }
+        SearchResult result;
+        try {
+            long started = System.nanoTime();
+            result = search.get();
+            Entry entry = new Entry(result, System.nanoTime() - started, computation.prefixes);
+            register(key, entry);
+            results.put(key, entry);
+        } finally {
+            computing.remove(computation);
+        }
+        // Changes from here on find the entry registered and evict it themselves
+        if (computation.isStale(result)) {
+            results.invalidate(key);
+        }
+        return result;
+    }
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        boolean textChanged = !bookSearchIndex.hasText(book);
+        boolean lagging = !primaryReads.staleness().isZero();
+        if (!lagging && computing.isEmpty() && results.estimatedSize() == 0) {
+            return;
+        }
+        Set<String> prefixes = bookPrefixes(book);
+        if (lagging) {
+            recentChanges.put(book.getId(), new Change(textChanged, prefixes));
+        }
+        computing.forEach(computation -> computation.changed(book.getId(), textChanged, prefixes));
+
+        Set<Key> stale = new HashSet<>(keysByBook.getOrDefault(book.getId(), Set.of()));
+        for (String prefix : prefixes) {
+            stale.addAll(keysByPrefix.getOrDefault(prefix, Set.of()));
+        }
+        if (!textChanged) {
+            stale.removeIf(key -> !key.sorted());
+        }
+        evict(stale);
+    }
+
+    @Override
+    public void remove(String bookId) {
+        if (!primaryReads.staleness().isZero()) {
+            recentChanges.put(bookId, new Change(true, Set.of()));
+        }
+        computing.forEach(computation -> computation.changed(bookId, true, Set.of()));
+        evict(new HashSet<>(keysByBook.getOrDefault(bookId, Set.of())));
+    }
+
+    @Override
+    public void markReady() {
+    }
+
+    public void invalidateAll() {
+        invalidatedAllAt = System.nanoTime();
+        computing.forEach(Computation::invalidate);
+        results.invalidateAll();
+    }
+
+    private void evict(Set<Key> keys) {
+        if (!keys.isEmpty()) {
+            results.invalidateAll(keys);
+            invalidations.increment(keys.size());
+        }
+    }
+
+    private void register(Key key, Entry entry) {
+        for (String bookId : entry.result().getBookIds()) {
+            keysByBook.computeIfAbsent(bookId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        for (String prefix : entry.prefixes()) {
+            keysByPrefix.computeIfAbsent(prefix, p -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void unregister(Key key, Entry entry, Entry replacement) {
+        for (String bookId : entry.result().getBookIds()) {
+            if (replacement == null || !replacement.result().getBookIds().contains(bookId)) {
+                keysByBook.computeIfPresent(bookId, (id, keys) -> keys.remove(key) && keys.isEmpty() ? null : keys);
+            }
+        }
+        for (String prefix : entry.prefixes()) {
+            if (replacement == null || !replacement.prefixes().contains(prefix)) {
+                keysByPrefix.computeIfPresent(prefix, (p, keys) -> keys.remove(key) && keys.isEmpty() ? null : keys);
+            }
+        }
+    }
+
+    private static Set<String> queryPrefixes(String query) {
+        Set<String> prefixes = new HashSet<>();
+        for (String token : TextAnalyzer.tokenize(query)) {
+            prefixes.add(token.substring(0, Math.min(PREFIX_LENGTH, token.length())));
+        }
+        return prefixes;
+    }
+
+    // Every prefix up to three letters, so a short query word like "it" still meets "item"
+    private static Set<String> bookPrefixes(Book book) {
+        Set<String> prefixes = new HashSet<>();
+        addPrefixes(prefixes, book.getTitle());
+        addPrefixes(prefixes, book.getAuthor());
+        addPrefixes(prefixes, book.getDescription());
+        if (book.getGenres() != null) {
+            book.getGenres().forEach(genre -> addPrefixes(prefixes, genre));
+        }
+        if (book.getTags() != null) {
+            book.getTags().forEach(tag -> addPrefixes(prefixes, tag));
+        }
+        return prefixes;
+    }
+
+    private static void addPrefixes(Set<String> prefixes, String text) {
+        for (String token : TextAnalyzer.tokenize(text)) {
+            for (int length = 1; length <= Math.min(PREFIX_LENGTH, token.length()); length++) {
+                prefixes.add(token.substring(0, length));
+            }
+        }
+    }
+
+    private static final class Computation {
+        private final Key key;
+        private final Set<String> prefixes;
+        private final Set<String> changedBooks = ConcurrentHashMap.newKeySet();
+        private volatile boolean invalidated;
+
+        private Computation(Key key, Set<String> prefixes) {
+            this.key = key;
+            this.prefixes = prefixes;
+        }
+
+        // Same rule as eviction: a book changed under the page, or one that may have joined it
+        void changed(String bookId, boolean textChanged, Set<String> bookPrefixes) {
+            if (!textChanged && !key.sorted()) {
+                return;
+            }
+            changedBooks.add(bookId);
+            if (prefixes.stream().anyMatch(bookPrefixes::contains)) {
+                invalidated = true;
+            }
+        }
+
+        void invalidate() {
+            invalidated = true;
+        }
+
+        boolean isStale(SearchResult result) {
+            return invalidated || result.getBookIds().stream().anyMatch(changedBooks::contains);
+        }
+    }
+}
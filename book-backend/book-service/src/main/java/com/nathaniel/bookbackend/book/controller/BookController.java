@@ -1,34 +1,87 @@
 package com.nathaniel.bookbackend.book.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nathaniel.bookbackend.book.cache.CachedBook;
 import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.book.paging.CursorPage;
+import com.nathaniel.bookbackend.book.search.BookSuggestion;
+import com.nathaniel.bookbackend.book.search.GenreCount;
+import com.nathaniel.bookbackend.book.search.GenreMatch;
+import com.nathaniel.bookbackend.book.search.SearchMode;
+import com.nathaniel.bookbackend.book.search.TopRanking;
 import com.nathaniel.bookbackend.book.service.BookService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${book.top.k:100}")
+    private int maxTopBooks;
+
     @GetMapping("/search")
-    public ResponseEntity<Page<Book>> searchBooks(
+    public ResponseEntity<Page<BookSummary>> searchBooks(
             @RequestParam String query,
+            @RequestParam(required = false) String mode,
             Pageable pageable) {
-        return ResponseEntity.ok(bookService.searchBooks(query, pageable));
+        SearchMode searchMode;
+        try {
+            searchMode = SearchMode.from(mode);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(bookService.searchBooks(query, searchMode, pageable));
+    }
+
+    @GetMapping("/search/cursor")
+    public ResponseEntity<CursorPage<BookSummary>> searchBooksByCursor(
+            @RequestParam(defaultValue = "") String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            return ResponseEntity.ok(bookService.searchBooksAfter(query, cursor, pageSize(size), includeTotal));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<BookSuggestion>> suggestBooks(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.suggestBooks(prefix, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable String id) {
-        return bookService.getBookById(id)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<byte[]> getBookById(@PathVariable String id) {
+        CachedBook cached = bookService.getCachedBook(id);
+        if (!cached.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        // Hot books are serialized once and served from the cache until they change
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(cached.serialized(byte[].class, this::toJson));
     }
 
     @GetMapping("/isbn/{isbn}")
@@ -40,7 +93,11 @@ public class BookController {
 
     @PostMapping
     public ResponseEntity<Book> createBook(@RequestBody Book book) {
-        return ResponseEntity.ok(bookService.createBook(book));
+        try {
+            return ResponseEntity.ok(bookService.createBook(book));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PutMapping("/{id}")
@@ -58,15 +115,77 @@ public class BookController {
         return ResponseEntity.ok().build();
     }
 
+    // Several genres may be given comma-separated, e.g. /genres/Fantasy,Adventure?match=any
     @GetMapping("/genres/{genre}")
-    public ResponseEntity<Page<Book>> getBooksByGenre(
+    public ResponseEntity<Page<BookSummary>> getBooksByGenre(
             @PathVariable String genre,
+            @RequestParam(required = false) String match,
             Pageable pageable) {
-        return ResponseEntity.ok(bookService.getBooksByGenre(genre, pageable));
+        GenreMatch genreMatch;
+        try {
+            genreMatch = GenreMatch.from(match);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<String> genres = Arrays.stream(genre.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .distinct()
+                .toList();
+        if (genres.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(bookService.getBooksByGenres(genres, genreMatch, pageable));
+    }
+
+    @GetMapping("/genres/{genre}/cursor")
+    public ResponseEntity<CursorPage<BookSummary>> getBooksByGenreCursor(
+            @PathVariable String genre,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            return ResponseEntity.ok(bookService.getBooksByGenreAfter(genre, cursor, pageSize(size), includeTotal));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/genres")
-    public ResponseEntity<List<String>> getAllGenres() {
+    public ResponseEntity<List<GenreCount>> getAllGenres() {
         return ResponseEntity.ok(bookService.getAllGenres());
     }
+
+    // e.g. /top/best-rated?genre=Fantasy&language=en; also most-rated and recently-added
+    @GetMapping("/top/{ranking}")
+    public ResponseEntity<List<BookSummary>> getTopBooks(
+            @PathVariable String ranking,
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) String language,
+            @RequestParam(defaultValue = "10") int limit) {
+        TopRanking topRanking;
+        try {
+            topRanking = TopRanking.from(ranking);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        int size = Math.max(1, Math.min(limit, maxTopBooks));
+        return ResponseEntity.ok(bookService.getTopBooks(topRanking, blankToNull(genre), blankToNull(language), size));
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static int pageSize(int requested) {
+        return Math.max(1, Math.min(requested, MAX_CURSOR_PAGE_SIZE));
+    }
+
+    private byte[] toJson(Book book) {
+        try {
+            return objectMapper.writeValueAsBytes(book);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize book " + book.getId(), e);
+        }
+    }
 }
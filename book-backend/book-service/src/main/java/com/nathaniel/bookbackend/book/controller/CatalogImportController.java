@@ -0,0 +1,69 @@
+package com.nathaniel.bookbackend.book.controller;
+
+import com.nathaniel.bookbackend.book.ingest.CatalogFormat;
+import com.nathaniel.bookbackend.book.ingest.CatalogImportService;
+import com.nathaniel.bookbackend.book.ingest.ImportJob;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/books/import")
+public class CatalogImportController {
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    // Streams the request body straight into the import, e.g. curl -T catalog.jsonl ...?format=jsonl
+    @PostMapping
+    public ResponseEntity<ImportJob> importCatalog(
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) throws IOException {
+        CatalogFormat catalogFormat;
+        try {
+            catalogFormat = CatalogFormat.from(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(catalogImportService.importStream(request.getInputStream(), catalogFormat));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+    }
+
+    // Imports a dump already on this node's disk, relative to book.import.directory
+    @PostMapping("/file")
+    public ResponseEntity<ImportJob> importCatalogFile(
+            @RequestParam String path,
+            @RequestParam(required = false) String format) throws IOException {
+        try {
+            CatalogFormat catalogFormat = format != null ? CatalogFormat.from(format) : null;
+            return ResponseEntity.accepted().body(catalogImportService.startFileImport(path, catalogFormat));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ImportJob>> getImports() {
+        return ResponseEntity.ok(catalogImportService.getJobs());
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJob> getImport(@PathVariable String jobId) {
+        ImportJob job = catalogImportService.getJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.nathaniel.bookbackend.book.controller;
+
+import com.nathaniel.bookbackend.book.dedup.DuplicateCandidate;
+import com.nathaniel.bookbackend.book.dedup.DuplicateCluster;
+import com.nathaniel.bookbackend.book.service.BookService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/books/admin/duplicates")
+public class DuplicateController {
+
+    private static final int MAX_CLUSTERS = 500;
+    private static final int MAX_CANDIDATES = 100;
+
+    @Autowired
+    private BookService bookService;
+
+    @GetMapping
+    public ResponseEntity<List<DuplicateCluster>> getDuplicateClusters(
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(bookService.getDuplicateClusters(Math.max(1, Math.min(limit, MAX_CLUSTERS))));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<List<DuplicateCandidate>> getDuplicatesOf(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(bookService.getDuplicatesOf(id, Math.max(1, Math.min(limit, MAX_CANDIDATES))));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.nathaniel.bookbackend.book.datasource;
+
+import com.nathaniel.bookbackend.common.datasource.ReadYourWrites;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * For caches that refill after a change: a replica may still serve the old row for up to
+ * {@link #staleness()} after the change commits, and a cache would keep that row for its whole TTL.
+ * Such refills go through {@link #read}.
+ */
+@Component
+public class PrimaryReads {
+
+    @Value("${common.datasource.replica-urls:}")
+    private String replicaUrls;
+
+    @Value("${common.datasource.replica-max-lag:5s}")
+    private Duration maxLag;
+
+    @Value("${common.datasource.replica-check-interval:2s}")
+    private Duration checkInterval;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Duration staleness;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        // A replica is dropped once it is behind by the max lag, but only noticed at the next check
+        staleness = replicaUrls.isBlank() ? Duration.ZERO : maxLag.plus(checkInterval);
+    }
+
+    /**
+     * How long after a change commits a read-only transaction may still miss it; zero without replicas.
+     */
+    public Duration staleness() {
+        return staleness;
+    }
+
+    /**
+     * Runs {@code work} in its own read-only transaction on the primary, since a caller's transaction
+     * may already hold a replica connection.
+     */
+    public <T> T read(Supplier<T> work) {
+        if (staleness.isZero()) {
+            return work.get();
+        }
+        return ReadYourWrites.onPrimary(() -> transactionTemplate.execute(status -> work.get()));
+    }
+}
@@ -0,0 +1,20 @@
+package com.nathaniel.bookbackend.book.dedup;
+
+public class DuplicateCandidate {
+
+    private final String bookId;
+    private final double similarity;
+
+    public DuplicateCandidate(String bookId, double similarity) {
+        this.bookId = bookId;
+        this.similarity = similarity;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+}
@@ -0,0 +1,23 @@
+package com.nathaniel.bookbackend.book.dedup;
+
+import java.util.List;
+
+/**
+ * Books connected by near-duplicate pairs, oldest first. The first book is the natural one to keep.
+ */
+public class DuplicateCluster {
+
+    private final List<String> bookIds;
+
+    public DuplicateCluster(List<String> bookIds) {
+        this.bookIds = bookIds;
+    }
+
+    public List<String> getBookIds() {
+        return bookIds;
+    }
+
+    public int getSize() {
+        return bookIds.size();
+    }
+}
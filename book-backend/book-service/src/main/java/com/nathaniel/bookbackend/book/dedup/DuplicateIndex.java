@@ -0,0 +1,209 @@
+package com.nathaniel.bookbackend.book.dedup;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Near-duplicate editions across the catalog, found through {@link LshBuckets} over each book's
+ * MinHash signature. Candidates from the buckets are confirmed by comparing whole signatures
+ * against book.dedup.similarity-threshold.
+ */
+@Component
+public class DuplicateIndex implements BookIndex {
+
+    private static final Comparator<DuplicateCandidate> MOST_SIMILAR_FIRST = Comparator
+        .comparingDouble(DuplicateCandidate::getSimilarity).reversed()
+        .thenComparing(DuplicateCandidate::getBookId);
+
+    @Value("${book.dedup.bands:16}")
+    private int bands;
+
+    @Value("${book.dedup.similarity-threshold:0.8}")
+    private double similarityThreshold;
+
+    @Value("${book.dedup.max-bucket-candidates:100}")
+    private int maxBucketCandidates;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private LshBuckets buckets;
+    private volatile boolean ready;
+
+    private record Entry(int[] signature, long createdAt, long version) {
+    }
+
+    @PostConstruct
+    void init() {
+        buckets = newBuckets();
+    }
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        int[] signature = MinHasher.signatureOf(book);
+        long version = book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : 0L;
+        long createdAt = book.getCreatedAt() != null ? book.getCreatedAt().toEpochMilli() : version;
+
+        lock.writeLock().lock();
+        try {
+            Entry existing = entries.get(book.getId());
+            if (existing != null) {
+                if (existing.version() > version) {
+                    return;
+                }
+                buckets.remove(book.getId(), existing.signature());
+                entries.remove(book.getId());
+            }
+            if (signature != null) {
+                buckets.add(book.getId(), signature);
+                entries.put(book.getId(), new Entry(signature, createdAt, version));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            Entry existing = entries.remove(bookId);
+            if (existing != null) {
+                buckets.remove(bookId, existing.signature());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    /**
+     * A bucket structure configured like this index's, for matching books against each other
+     * before they are in the catalog.
+     */
+    public LshBuckets newBuckets() {
+        return new LshBuckets(bands, maxBucketCandidates);
+    }
+
+    /**
+     * Books at least book.dedup.similarity-threshold similar to the signature, most similar first.
+     *
+     * @param excludeId a book to leave out, usually the one the signature belongs to; may be null
+     */
+    public List<DuplicateCandidate> findSimilar(int[] signature, String excludeId, int limit) {
+        List<DuplicateCandidate> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String candidate : buckets.candidates(signature)) {
+                if (candidate.equals(excludeId)) {
+                    continue;
+                }
+                double similarity = MinHasher.similarity(signature, entries.get(candidate).signature());
+                if (similarity >= similarityThreshold) {
+                    matches.add(new DuplicateCandidate(candidate, similarity));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(MOST_SIMILAR_FIRST);
+        return matches.size() > limit ? List.copyOf(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * @return the book's near-duplicates, or an empty list if the book is not indexed
+     */
+    public List<DuplicateCandidate> findSimilar(String bookId, int limit) {
+        Entry entry;
+        lock.readLock().lock();
+        try {
+            entry = entries.get(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return entry != null ? findSimilar(entry.signature(), bookId, limit) : List.of();
+    }
+
+    /**
+     * Groups of near-duplicate books, largest first. Pairs are only confirmed within a bucket, and
+     * each member of a crowded bucket is only compared with the next max-bucket-candidates members,
+     * so the cost grows with the catalog rather than with its square.
+     */
+    public List<DuplicateCluster> clusters(int limit) {
+        Map<String, String> parents = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (List<String> members : buckets.buckets()) {
+                for (int i = 0; i < members.size(); i++) {
+                    String book = members.get(i);
+                    int end = Math.min(members.size(), i + 1 + buckets.maxCandidatesPerBucket());
+                    for (int j = i + 1; j < end; j++) {
+                        String other = members.get(j);
+                        String root = find(parents, book);
+                        String otherRoot = find(parents, other);
+                        if (!root.equals(otherRoot) && MinHasher.similarity(
+                                entries.get(book).signature(), entries.get(other).signature()) >= similarityThreshold) {
+                            parents.put(otherRoot, root);
+                        }
+                    }
+                }
+            }
+
+            Map<String, List<String>> groups = new HashMap<>();
+            for (String book : parents.keySet()) {
+                groups.computeIfAbsent(find(parents, book), key -> new ArrayList<>()).add(book);
+            }
+            List<DuplicateCluster> clusters = new ArrayList<>();
+            for (List<String> group : groups.values()) {
+                if (group.size() > 1) {
+                    group.sort(Comparator.comparingLong((String id) -> entries.get(id).createdAt())
+                        .thenComparing(Comparator.naturalOrder()));
+                    clusters.add(new DuplicateCluster(group));
+                }
+            }
+            clusters.sort(Comparator.comparingInt(DuplicateCluster::getSize).reversed()
+                .thenComparing(cluster -> cluster.getBookIds().get(0)));
+            return clusters.size() > limit ? List.copyOf(clusters.subList(0, limit)) : clusters;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Union-find with path halving; books never seen are their own root
+    private static String find(Map<String, String> parents, String book) {
+        String current = book;
+        String parent = parents.putIfAbsent(current, current);
+        while (parent != null && !parent.equals(current)) {
+            String grandparent = parents.get(parent);
+            parents.put(current, grandparent);
+            current = grandparent;
+            parent = parents.get(current);
+        }
+        return current;
+    }
+}
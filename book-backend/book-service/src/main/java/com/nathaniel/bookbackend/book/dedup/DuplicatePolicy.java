@@ -0,0 +1,20 @@
+package com.nathaniel.bookbackend.book.dedup;
+
+import java.util.Locale;
+
+/**
+ * What a catalog import does with a row that is a near-duplicate of a book it already has.
+ */
+public enum DuplicatePolicy {
+    // Insert it with duplicateOf pointing at the closest match
+    FLAG,
+    // Leave it out and count it as a duplicate, like a repeated ISBN
+    SKIP;
+
+    public static DuplicatePolicy from(String value) {
+        if (value == null || value.isBlank()) {
+            return FLAG;
+        }
+        return DuplicatePolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
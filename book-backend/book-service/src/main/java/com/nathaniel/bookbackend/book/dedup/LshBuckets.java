@@ -0,0 +1,87 @@
+package com.nathaniel.bookbackend.book.dedup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality-sensitive hashing over MinHash signatures. Each signature is cut into bands of rows and
+ * filed under one bucket per band; signatures sharing any bucket are candidates. With b bands of r
+ * rows a pair of similarity s shares a bucket with probability 1 - (1 - s^r)^b, so lookups only
+ * compare against near matches instead of the whole catalog. Not thread-safe.
+ */
+public class LshBuckets {
+
+    private final int bands;
+    private final int rows;
+    private final int maxCandidatesPerBucket;
+    private final Map<Long, List<String>> buckets = new HashMap<>();
+
+    /**
+     * @param maxCandidatesPerBucket how many members of one bucket a lookup looks at; boilerplate
+     *     text can pile thousands of books into one bucket
+     */
+    public LshBuckets(int bands, int maxCandidatesPerBucket) {
+        if (bands <= 0 || MinHasher.SIGNATURE_LENGTH % bands != 0) {
+            throw new IllegalArgumentException(
+                "Bands must divide the signature length " + MinHasher.SIGNATURE_LENGTH + ": " + bands);
+        }
+        this.bands = bands;
+        this.rows = MinHasher.SIGNATURE_LENGTH / bands;
+        this.maxCandidatesPerBucket = maxCandidatesPerBucket;
+    }
+
+    public void add(String bookId, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(bucketKey(band, signature), key -> new ArrayList<>(1)).add(bookId);
+        }
+    }
+
+    public void remove(String bookId, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            long key = bucketKey(band, signature);
+            List<String> members = buckets.get(key);
+            if (members != null) {
+                members.remove(bookId);
+                if (members.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Books sharing at least one bucket with the signature, in no particular order.
+     */
+    public Set<String> candidates(int[] signature) {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (int band = 0; band < bands; band++) {
+            List<String> members = buckets.get(bucketKey(band, signature));
+            if (members != null) {
+                candidates.addAll(members.size() <= maxCandidatesPerBucket
+                    ? members : members.subList(0, maxCandidatesPerBucket));
+            }
+        }
+        return candidates;
+    }
+
+    int maxCandidatesPerBucket() {
+        return maxCandidatesPerBucket;
+    }
+
+    Collection<List<String>> buckets() {
+        return buckets.values();
+    }
+
+    private long bucketKey(int band, int[] signature) {
+        long hash = band;
+        for (int row = band * rows, end = row + rows; row < end; row++) {
+            hash = hash * 0x9E3779B97F4A7C15L + signature[row];
+        }
+        return MinHasher.mix(hash);
+    }
+}
@@ -0,0 +1,135 @@
+package com.nathaniel.bookbackend.book.dedup;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.search.TextAnalyzer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHash signatures of a book's normalized title, author and description. The share of positions
+ * two signatures agree on estimates the Jaccard similarity of their shingle sets. Title and
+ * description contribute word pairs and author single words, so "Tolkien, J.R.R." and
+ * "J.R.R. Tolkien" match. Signatures are stored with the book and must stay comparable across
+ * restarts, so the hash functions come from a fixed seed.
+ */
+public final class MinHasher {
+
+    public static final int SIGNATURE_LENGTH = 128;
+
+    private static final long TITLE = 0x5449544c45L;
+    private static final long AUTHOR = 0x415554484f52L;
+    private static final long DESCRIPTION = 0x4445534352L;
+
+    private static final long[] MULTIPLIERS = new long[SIGNATURE_LENGTH];
+    private static final long[] ADDENDS = new long[SIGNATURE_LENGTH];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            MULTIPLIERS[i] = mix(seed) | 1;
+            seed += 0x9E3779B97F4A7C15L;
+            ADDENDS[i] = mix(seed);
+        }
+    }
+
+    private MinHasher() {
+    }
+
+    /**
+     * The signature stored with the book, or a freshly computed one if it has none yet.
+     *
+     * @return the signature, or null if the book has no text to sign
+     */
+    public static int[] signatureOf(Book book) {
+        int[] stored = fromBytes(book.getMinhash());
+        return stored != null ? stored : signature(book.getTitle(), book.getAuthor(), book.getDescription());
+    }
+
+    /**
+     * @return the signature, or null if none of the fields has a word in it
+     */
+    public static int[] signature(String title, String author, String description) {
+        List<String> titleTokens = TextAnalyzer.tokenize(title);
+        List<String> authorTokens = TextAnalyzer.tokenize(author);
+        List<String> descriptionTokens = TextAnalyzer.tokenize(description);
+        // Repeated shingles cannot change a minimum, so they are not deduplicated
+        long[] shingles = new long[titleTokens.size() + authorTokens.size() + descriptionTokens.size()];
+        int count = addPairs(shingles, 0, TITLE, titleTokens);
+        for (String token : authorTokens) {
+            shingles[count++] = mix(AUTHOR ^ token.hashCode());
+        }
+        count = addPairs(shingles, count, DESCRIPTION, descriptionTokens);
+        if (count == 0) {
+            return null;
+        }
+
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int s = 0; s < count; s++) {
+            long shingle = shingles[s];
+            for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+                int value = (int) ((MULTIPLIERS[i] * shingle + ADDENDS[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Estimated Jaccard similarity of the shingle sets behind two signatures.
+     */
+    public static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_LENGTH;
+    }
+
+    public static byte[] toBytes(int[] signature) {
+        if (signature == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SIGNATURE_LENGTH * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    /**
+     * @return the signature, or null if the bytes are missing or from a different signature length
+     */
+    public static int[] fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != SIGNATURE_LENGTH * Integer.BYTES) {
+            return null;
+        }
+        int[] signature = new int[SIGNATURE_LENGTH];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    // Word pairs, or the single word of a one-word field
+    private static int addPairs(long[] shingles, int count, long field, List<String> tokens) {
+        if (tokens.size() == 1) {
+            shingles[count++] = mix(field ^ tokens.get(0).hashCode());
+        }
+        for (int i = 1; i < tokens.size(); i++) {
+            long pair = ((long) tokens.get(i - 1).hashCode() << 32) | (tokens.get(i).hashCode() & 0xffffffffL);
+            shingles[count++] = mix(field * 31 + pair);
+        }
+        return count;
+    }
+
+    // SplitMix64 finalizer
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
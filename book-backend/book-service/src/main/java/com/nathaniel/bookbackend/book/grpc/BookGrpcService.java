@@ -1,47 +1,154 @@
 package com.nathaniel.bookbackend.book.grpc;
 
-import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.cache.CachedBook;
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.book.paging.CursorPage;
+import com.nathaniel.bookbackend.book.search.SearchMode;
 import com.nathaniel.bookbackend.book.service.BookService;
 import com.nathaniel.bookbackend.grpc.*;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 @GrpcService
 public class BookGrpcService extends BookServiceGrpc.BookServiceImplBase {
 
+    private static final Logger logger = LoggerFactory.getLogger(BookGrpcService.class);
+
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_STREAM_BOOK_IDS = 10_000;
+    private static final int STREAM_CHUNK_SIZE = 100;
+    private static final int DEFAULT_KEYSET_PAGE_SIZE = 20;
+    private static final int MAX_KEYSET_PAGE_SIZE = 100;
+
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private BookResponseCache bookResponseCache;
+
+    @Value("${book.grpc.stream-search-workers:8}")
+    private int streamSearchWorkers;
+
+    @Value("${book.grpc.stream-ready-timeout:30s}")
+    private Duration streamReadyTimeout;
+
+    private ExecutorService streamSearchExecutor;
+
+    @PostConstruct
+    void init() {
+        // Each stream holds a worker, and a search stream a database cursor, so their number is capped rather than queued
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                streamSearchWorkers, streamSearchWorkers, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> new Thread(runnable, "stream-search-" + threadCount.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        streamSearchExecutor = executor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streamSearchExecutor.shutdownNow();
+    }
+
     @Override
     public void getBook(BookRequest request, StreamObserver<BookResponse> responseObserver) {
-        bookService.getBookById(request.getBookId())
-                .ifPresentOrElse(
-                        book -> {
-                            BookResponse response = BookResponse.newBuilder()
-                                    .setId(book.getId())
-                                    .setTitle(book.getTitle())
-                                    .setAuthor(book.getAuthor())
-                                    .setIsbn(book.getIsbn() != null ? book.getIsbn() : "")
-                                    .setDescription(book.getDescription() != null ? book.getDescription() : "")
-                                    .setCoverUrl(book.getCoverUrl() != null ? book.getCoverUrl() : "")
-                                    .build();
-                            responseObserver.onNext(response);
-                            responseObserver.onCompleted();
-                        },
-                        () -> {
-                            responseObserver.onError(
-                                    new RuntimeException("Book not found with id: " + request.getBookId()));
-                        }
-                );
+        CachedBook cached = bookService.getCachedBook(request.getBookId());
+        if (cached.isPresent()) {
+            responseObserver.onNext(bookResponseCache.get(cached.getBook()));
+            responseObserver.onCompleted();
+        } else {
+            responseObserver.onError(
+                    new RuntimeException("Book not found with id: " + request.getBookId()));
+        }
+    }
+
+    @Override
+    public void getBooks(BooksRequest request, StreamObserver<BooksResponse> responseObserver) {
+        if (request.getBookIdsCount() > MAX_BATCH_SIZE) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("At most " + MAX_BATCH_SIZE + " book ids per request, use StreamBooks for more")
+                    .asRuntimeException());
+            return;
+        }
+
+        Map<String, CachedBook> books = bookService.getCachedBooks(new LinkedHashSet<>(request.getBookIdsList()));
+        BooksResponse.Builder responseBuilder = BooksResponse.newBuilder();
+        for (String bookId : request.getBookIdsList()) {
+            responseBuilder.addResults(toBookResult(bookId, books.get(bookId)));
+        }
+
+        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void streamBooks(BooksRequest request, StreamObserver<BookResult> responseObserver) {
+        if (request.getBookIdsCount() > MAX_STREAM_BOOK_IDS) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("At most " + MAX_STREAM_BOOK_IDS + " book ids per stream")
+                    .asRuntimeException());
+            return;
+        }
+
+        ServerCallStreamObserver<BookResult> call = (ServerCallStreamObserver<BookResult>) responseObserver;
+        FlowControl flowControl = new FlowControl(call, streamReadyTimeout);
+        call.setOnReadyHandler(flowControl::onReady);
+        call.setOnCancelHandler(flowControl::onCancel);
+
+        // Sent from a worker, like StreamSearch, so waiting for a slow client never blocks this call thread
+        try {
+            streamSearchExecutor.execute(() -> runStreamBooks(request.getBookIdsList(), call, flowControl));
+        } catch (RejectedExecutionException e) {
+            call.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many concurrent book streams")
+                    .asRuntimeException());
+        }
     }
 
     @Override
     public void searchBooks(SearchRequest request, StreamObserver<SearchResponse> responseObserver) {
-        Page<Book> bookPage = bookService.searchBooks(
+        if (request.getKeyset() || !request.getCursor().isEmpty()) {
+            searchBooksByKeyset(request, responseObserver);
+            return;
+        }
+
+        SearchMode mode;
+        try {
+            mode = SearchMode.from(request.getMode());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Unknown search mode: " + request.getMode())
+                    .asRuntimeException());
+            return;
+        }
+
+        Page<BookSummary> bookPage = bookService.searchBooks(
                 request.getQuery(),
+                mode,
                 PageRequest.of(request.getPage(), request.getSize())
         );
 
@@ -49,21 +156,30 @@ public class BookGrpcService extends BookServiceGrpc.BookServiceImplBase {
                 .setTotalPages(bookPage.getTotalPages())
                 .setTotalElements(bookPage.getTotalElements());
 
-        bookPage.getContent().forEach(book ->
-                responseBuilder.addBooks(BookResponse.newBuilder()
-                        .setId(book.getId())
-                        .setTitle(book.getTitle())
-                        .setAuthor(book.getAuthor())
-                        .setIsbn(book.getIsbn() != null ? book.getIsbn() : "")
-                        .setDescription(book.getDescription() != null ? book.getDescription() : "")
-                        .setCoverUrl(book.getCoverUrl() != null ? book.getCoverUrl() : "")
-                        .build())
-        );
+        bookPage.getContent().forEach(book -> responseBuilder.addBooks(bookResponseCache.get(book)));
 
         responseObserver.onNext(responseBuilder.build());
         responseObserver.onCompleted();
     }
 
+    @Override
+    public void streamSearch(SearchRequest request, StreamObserver<SearchStreamResponse> responseObserver) {
+        ServerCallStreamObserver<SearchStreamResponse> call =
+                (ServerCallStreamObserver<SearchStreamResponse>) responseObserver;
+        FlowControl flowControl = new FlowControl(call, streamReadyTimeout);
+        call.setOnReadyHandler(flowControl::onReady);
+        call.setOnCancelHandler(flowControl::onCancel);
+
+        // The cursor is read on a worker so this call thread returns and onReady callbacks can run
+        try {
+            streamSearchExecutor.execute(() -> runStreamSearch(request, call, flowControl));
+        } catch (RejectedExecutionException e) {
+            call.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many concurrent search streams")
+                    .asRuntimeException());
+        }
+    }
+
     @Override
     public void updateBookStatus(UpdateBookStatusRequest request, StreamObserver<UpdateBookStatusResponse> responseObserver) {
         // This would typically be handled by the library service
@@ -78,4 +194,165 @@ public class BookGrpcService extends BookServiceGrpc.BookServiceImplBase {
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    private void searchBooksByKeyset(SearchRequest request, StreamObserver<SearchResponse> responseObserver) {
+        int size = request.getSize() > 0 ? Math.min(request.getSize(), MAX_KEYSET_PAGE_SIZE) : DEFAULT_KEYSET_PAGE_SIZE;
+        CursorPage<BookSummary> page;
+        try {
+            page = bookService.searchBooksAfter(request.getQuery(), request.getCursor(), size, request.getIncludeTotal());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Invalid cursor")
+                    .asRuntimeException());
+            return;
+        }
+
+        SearchResponse.Builder responseBuilder = SearchResponse.newBuilder();
+        page.getContent().forEach(book -> responseBuilder.addBooks(bookResponseCache.get(book)));
+        if (page.getNextCursor() != null) {
+            responseBuilder.setNextCursor(page.getNextCursor());
+        }
+        if (page.getApproximateTotal() != null) {
+            responseBuilder.setTotalElements(page.getApproximateTotal());
+        }
+
+        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onCompleted();
+    }
+
+    private void runStreamBooks(List<String> bookIds, ServerCallStreamObserver<BookResult> call,
+                                FlowControl flowControl) {
+        try {
+            // Looked up a chunk at a time so the first results go out before the whole list is loaded
+            for (int from = 0; from < bookIds.size(); from += STREAM_CHUNK_SIZE) {
+                List<String> chunk = bookIds.subList(from, Math.min(from + STREAM_CHUNK_SIZE, bookIds.size()));
+                Map<String, CachedBook> books = bookService.getCachedBooks(new LinkedHashSet<>(chunk));
+                for (String bookId : chunk) {
+                    if (!flowControl.awaitReady()) {
+                        flowControl.complete();
+                        return;
+                    }
+                    call.onNext(toBookResult(bookId, books.get(bookId)));
+                }
+            }
+            flowControl.complete();
+        } catch (Exception e) {
+            logger.error("Book stream of {} ids failed", bookIds.size(), e);
+            if (!call.isCancelled()) {
+                call.onError(Status.INTERNAL.withDescription("Book stream failed").asRuntimeException());
+            }
+        }
+    }
+
+    private void runStreamSearch(SearchRequest request, ServerCallStreamObserver<SearchStreamResponse> call,
+                                 FlowControl flowControl) {
+        try {
+            boolean sending = true;
+            if (request.getIncludeTotal()) {
+                long total = bookService.countSearchResults(request.getQuery());
+                sending = flowControl.awaitReady();
+                if (sending) {
+                    call.onNext(SearchStreamResponse.newBuilder().setTotalElements(total).build());
+                }
+            }
+            if (sending) {
+                bookService.streamSearch(request.getQuery(), book -> {
+                    if (!flowControl.awaitReady()) {
+                        return false;
+                    }
+                    call.onNext(SearchStreamResponse.newBuilder().setBook(bookResponseCache.get(book)).build());
+                    return true;
+                });
+            }
+            flowControl.complete();
+        } catch (Exception e) {
+            logger.error("Search stream for '{}' failed", request.getQuery(), e);
+            if (!call.isCancelled()) {
+                call.onError(Status.INTERNAL.withDescription("Search stream failed").asRuntimeException());
+            }
+        }
+    }
+
+    private BookResult toBookResult(String bookId, CachedBook cached) {
+        BookResult.Builder result = BookResult.newBuilder().setBookId(bookId);
+        if (cached != null && cached.isPresent()) {
+            result.setFound(true).setBook(bookResponseCache.get(cached.getBook()));
+        }
+        return result.build();
+    }
+
+    /**
+     * Parks the streaming worker until the transport can take more messages, so a slow client
+     * holds back the database cursor instead of having responses pile up in memory. gRPC runs the
+     * onReady handler after any isReady() that returned false, so the worker sleeps until woken.
+     * A client that takes nothing for the ready timeout is failed with DEADLINE_EXCEEDED, so a stalled
+     * reader cannot hold a worker and its cursor forever.
+     */
+    private static final class FlowControl {
+        private final ServerCallStreamObserver<?> call;
+        private final Duration readyTimeout;
+        private final Lock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private boolean cancelled;
+        private boolean stalled;
+
+        FlowControl(ServerCallStreamObserver<?> call, Duration readyTimeout) {
+            this.call = call;
+            this.readyTimeout = readyTimeout;
+        }
+
+        void onReady() {
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onCancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return false once the call is cancelled or the client stalled; the caller stops and closes its cursor
+         */
+        boolean awaitReady() {
+            lock.lock();
+            try {
+                long remaining = readyTimeout.toNanos();
+                // Either handler takes the lock to signal, so neither can slip in between the check and await
+                while (!cancelled && !call.isReady()) {
+                    if (remaining <= 0) {
+                        stalled = true;
+                        return false;
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+                return !cancelled;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Ends the call once the worker is done with it, unless the client already went away. */
+        void complete() {
+            if (stalled) {
+                call.onError(Status.DEADLINE_EXCEEDED
+                        .withDescription("Client read nothing for " + readyTimeout)
+                        .asRuntimeException());
+            } else if (!call.isCancelled()) {
+                call.onCompleted();
+            }
+        }
+    }
 }
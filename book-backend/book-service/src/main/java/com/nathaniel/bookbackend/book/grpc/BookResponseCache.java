@@ -0,0 +1,139 @@
+package com.nathaniel.bookbackend.book.grpc;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import com.nathaniel.bookbackend.grpc.BookResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Prebuilt {@link BookResponse} messages for every RPC that returns books, keyed by book id and tagged with
+ * the book's updatedAt, so a hot book is converted once per version rather than once per call or result page.
+ * Lookups by id and search pages share the entry, whichever of the two forms the book arrives in.
+ * Cached messages hold their strings already UTF-8 encoded and remember their encoded size, so a
+ * response that embeds them copies bytes instead of re-encoding every field.
+ * <p>
+ * A response is only reused for a book with the same updatedAt, which keeps it correct without any
+ * invalidation; being fed like a {@link BookIndex} just drops superseded versions early.
+ */
+@Component
+public class BookResponseCache implements BookIndex {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${book.grpc.response-cache.max-entries:50000}")
+    private long maxEntries;
+
+    private record Entry(Instant version, BookResponse response) {
+    }
+
+    private Cache<String, Entry> responses;
+
+    @PostConstruct
+    void init() {
+        responses = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "books.grpc-responses");
+    }
+
+    public BookResponse get(BookSummary book) {
+        BookResponse cached = getIfCurrent(book.getId(), book.getUpdatedAt());
+        if (cached != null) {
+            return cached;
+        }
+        return put(book.getId(), book.getUpdatedAt(), toBookResponse(book));
+    }
+
+    public BookResponse get(Book book) {
+        BookResponse cached = getIfCurrent(book.getId(), book.getUpdatedAt());
+        if (cached != null) {
+            return cached;
+        }
+        return put(book.getId(), book.getUpdatedAt(), toBookResponse(book));
+    }
+
+    @Override
+    public void index(Book book) {
+        Entry entry = responses.getIfPresent(book.getId());
+        if (entry != null && !Objects.equals(entry.version(), book.getUpdatedAt())) {
+            responses.invalidate(book.getId());
+        }
+    }
+
+    @Override
+    public void remove(String bookId) {
+        responses.invalidate(bookId);
+    }
+
+    @Override
+    public void markReady() {
+        // Filled on demand; usable from the start
+    }
+
+    private BookResponse put(String id, Instant version, BookResponse response) {
+        if (version == null) {
+            return response;
+        }
+        BookResponse encoded = preEncoded(response);
+        responses.put(id, new Entry(version, encoded));
+        return encoded;
+    }
+
+    private BookResponse getIfCurrent(String id, Instant version) {
+        Entry entry = responses.getIfPresent(id);
+        return entry != null && version != null && version.equals(entry.version()) ? entry.response() : null;
+    }
+
+    // Parsed back from its own encoding, the message keeps its string fields as bytes and writes them as they are
+    private static BookResponse preEncoded(BookResponse response) {
+        try {
+            return BookResponse.parseFrom(response.toByteString());
+        } catch (InvalidProtocolBufferException e) {
+            return response;
+        }
+    }
+
+    static BookResponse toBookResponse(BookSummary book) {
+        return BookResponse.newBuilder()
+                .setId(book.getId())
+                .setTitle(book.getTitle())
+                .setAuthor(book.getAuthor() != null ? book.getAuthor() : "")
+                .setIsbn(book.getIsbn() != null ? book.getIsbn() : "")
+                .setDescription(book.getDescription() != null ? book.getDescription() : "")
+                .setCoverUrl(book.getCoverUrl() != null ? book.getCoverUrl() : "")
+                .addAllGenres(book.getGenres())
+                .addAllTags(book.getTags())
+                .build();
+    }
+
+    static BookResponse toBookResponse(Book book) {
+        BookResponse.Builder builder = BookResponse.newBuilder()
+                .setId(book.getId())
+                .setTitle(book.getTitle())
+                .setAuthor(book.getAuthor() != null ? book.getAuthor() : "")
+                .setIsbn(book.getIsbn() != null ? book.getIsbn() : "")
+                .setDescription(book.getDescription() != null ? book.getDescription() : "")
+                .setCoverUrl(book.getCoverUrl() != null ? book.getCoverUrl() : "");
+        if (book.getGenres() != null) {
+            builder.addAllGenres(book.getGenres());
+        }
+        if (book.getTags() != null) {
+            builder.addAllTags(book.getTags());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.nathaniel.bookbackend.book.ingest;
+
+import java.util.Locale;
+
+public enum CatalogFormat {
+    JSONL,
+    CSV;
+
+    public static CatalogFormat from(String value) {
+        if (value == null || value.isBlank()) {
+            return JSONL;
+        }
+        return CatalogFormat.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public static CatalogFormat fromFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return JSONL;
+        }
+        throw new IllegalArgumentException("Cannot tell the catalog format of " + fileName);
+    }
+}
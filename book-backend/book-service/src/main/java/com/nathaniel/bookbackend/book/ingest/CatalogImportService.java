@@ -0,0 +1,328 @@
+package com.nathaniel.bookbackend.book.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nathaniel.bookbackend.book.cache.BookCache;
+import com.nathaniel.bookbackend.book.dedup.DuplicateCandidate;
+import com.nathaniel.bookbackend.book.dedup.DuplicateIndex;
+import com.nathaniel.bookbackend.book.dedup.DuplicatePolicy;
+import com.nathaniel.bookbackend.book.dedup.LshBuckets;
+import com.nathaniel.bookbackend.book.dedup.MinHasher;
+import com.nathaniel.bookbackend.book.isbn.IsbnIndex;
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.outbox.BookEventOutbox;
+import com.nathaniel.bookbackend.book.repository.BookBulkWriter;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk catalog imports from JSONL or CSV dumps, streamed either from a file under
+ * book.import.directory or from a request body. Rows are validated as they are read, deduplicated
+ * by ISBN against the chunk and the catalog, matched against near-duplicate editions, written a chunk per transaction with batched inserts,
+ * and announced through the outbox with one book-updates event per chunk instead of one per book.
+ */
+@Service
+public class CatalogImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportService.class);
+
+    @Autowired
+    private BookBulkWriter bookBulkWriter;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private List<BookIndex> bookIndexes;
+
+    @Autowired
+    private IsbnIndex isbnIndex;
+
+    @Autowired
+    private DuplicateIndex duplicateIndex;
+
+    @Autowired
+    private BookEventOutbox bookEventOutbox;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${book.import.directory:./imports}")
+    private Path importDirectory;
+
+    @Value("${book.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${book.import.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Value("${book.import.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    @Value("${book.import.retained-jobs:50}")
+    private int retainedJobs;
+
+    @Value("${book.import.on-near-duplicate:flag}")
+    private String onNearDuplicate;
+
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+    private Semaphore runningJobs;
+    private DuplicatePolicy duplicatePolicy;
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService fileImportExecutor;
+
+    @PostConstruct
+    void init() {
+        // Imports compete with regular traffic for the connection pool, so their number is capped rather than queued
+        runningJobs = new Semaphore(maxConcurrentJobs);
+        duplicatePolicy = DuplicatePolicy.from(onNearDuplicate);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threadCount = new AtomicInteger();
+        fileImportExecutor = Executors.newCachedThreadPool(
+            runnable -> new Thread(runnable, "catalog-import-" + threadCount.incrementAndGet()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fileImportExecutor.shutdownNow();
+    }
+
+    /**
+     * Starts importing a dump from the import directory in the background.
+     *
+     * @param format the dump format, or null to infer it from the file extension
+     * @throws IllegalArgumentException if the path leaves the import directory or the format is unknown
+     * @throws NoSuchFileException if there is no such file
+     * @throws RejectedExecutionException if book.import.max-concurrent-jobs imports are already running
+     */
+    public ImportJob startFileImport(String relativePath, CatalogFormat format) throws IOException {
+        Path base = importDirectory.toRealPath();
+        Path file = base.resolve(relativePath).normalize();
+        if (!file.startsWith(base)) {
+            throw new IllegalArgumentException("Import files must be inside " + base);
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new NoSuchFileException(relativePath);
+        }
+        if (!file.toRealPath().startsWith(base)) {
+            throw new IllegalArgumentException("Import files must be inside " + base);
+        }
+        CatalogFormat fileFormat = format != null ? format : CatalogFormat.fromFileName(file.getFileName().toString());
+
+        ImportJob job = register(file.toString(), fileFormat);
+        try {
+            fileImportExecutor.execute(() -> {
+                try (InputStream input = Files.newInputStream(file)) {
+                    run(job, input);
+                } catch (IOException e) {
+                    job.fail("Cannot read " + file + ": " + e.getMessage());
+                } finally {
+                    runningJobs.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            runningJobs.release();
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Imports a dump streamed in by the caller, returning once it has been read to the end.
+     * Progress is visible through {@link #getJob} while it runs.
+     *
+     * @throws RejectedExecutionException if book.import.max-concurrent-jobs imports are already running
+     */
+    public ImportJob importStream(InputStream input, CatalogFormat format) {
+        ImportJob job = register("request body", format);
+        try {
+            run(job, input);
+        } finally {
+            runningJobs.release();
+        }
+        return job;
+    }
+
+    public ImportJob getJob(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    public List<ImportJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    private ImportJob register(String source, CatalogFormat format) {
+        if (!runningJobs.tryAcquire()) {
+            throw new RejectedExecutionException(maxConcurrentJobs + " catalog imports are already running");
+        }
+        ImportJob job = new ImportJob(source, format, maxReportedErrors);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            Iterator<ImportJob> oldest = jobs.values().iterator();
+            while (jobs.size() > retainedJobs && oldest.hasNext()) {
+                if (oldest.next().isFinished()) {
+                    oldest.remove();
+                }
+            }
+        }
+        return job;
+    }
+
+    private void run(ImportJob job, InputStream input) {
+        job.start();
+        logger.info("Catalog import {} started from {}", job.getId(), job.getSource());
+        try (CatalogReader reader = CatalogReader.open(input, job.getFormat(), objectMapper)) {
+            List<CatalogRow> chunk = new ArrayList<>(chunkSize);
+            CatalogRow row;
+            while ((row = reader.next()) != null) {
+                job.rowRead();
+                if (!row.isValid()) {
+                    job.rowFailed(row.getLine(), row.getError());
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(job, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(job, chunk);
+            }
+            job.complete();
+            logger.info("Catalog import {} read {} rows: {} inserted ({} near-duplicates), {} duplicates, {} rejected "
+                + "({} rows/s)", job.getId(), job.getRowsRead(), job.getInserted(), job.getNearDuplicates(),
+                job.getDuplicates(), job.getFailed(), Math.round(job.getRowsPerSecond()));
+        } catch (Exception e) {
+            job.fail(e.getMessage());
+            logger.error("Catalog import {} failed after {} rows, {} inserted",
+                job.getId(), job.getRowsRead(), job.getInserted(), e);
+        }
+    }
+
+    private void writeChunk(ImportJob job, List<CatalogRow> chunk) {
+        Map<String, Book> booksByIsbn = new LinkedHashMap<>();
+        for (CatalogRow row : chunk) {
+            booksByIsbn.putIfAbsent(row.getBook().getIsbn(), row.getBook());
+        }
+
+        List<Book> books;
+        try {
+            books = insertNewBooks(booksByIsbn, isbnIndex.isReady());
+        } catch (DuplicateKeyException e) {
+            // Another writer took one of the ISBNs since the check, or this replica's ISBN index has not
+            // heard of it yet; the chunk rolled back, so check again against the database
+            books = insertNewBooks(booksByIsbn, false);
+        }
+        int flagged = (int) books.stream().filter(book -> book.getDuplicateOf() != null).count();
+        job.chunkWritten(books.size(), chunk.size() - books.size(), flagged);
+
+        for (Book book : books) {
+            bookCache.evict(book.getId());
+            bookIndexes.forEach(bookIndex -> bookIndex.index(book));
+        }
+    }
+
+    // The chunk and its single book-updates event commit together
+    private List<Book> insertNewBooks(Map<String, Book> booksByIsbn, boolean useIsbnIndex) {
+        return transactionTemplate.execute(status -> {
+            List<Book> books = newBooks(booksByIsbn, useIsbnIndex);
+            if (!books.isEmpty()) {
+                bookBulkWriter.insertAll(books);
+                bookEventOutbox.publish(BookUpdateEvent.batch(books.stream().map(Book::getId).toList(), "CREATED"));
+            }
+            return books;
+        });
+    }
+
+    // Most ISBNs in a dump are new to the catalog, and the index's Bloom filter rules those out in memory
+    private List<Book> newBooks(Map<String, Book> booksByIsbn, boolean useIsbnIndex) {
+        Set<String> existing = useIsbnIndex
+            ? isbnIndex.findExisting(booksByIsbn.keySet())
+            : bookBulkWriter.findExistingIsbns(booksByIsbn.keySet());
+        return matchNearDuplicates(booksByIsbn.values().stream()
+            .filter(book -> !existing.contains(book.getIsbn()))
+            .toList());
+    }
+
+    // Rows are matched against the catalog and against earlier rows of the chunk, which are not indexed yet
+    private List<Book> matchNearDuplicates(List<Book> books) {
+        LshBuckets chunkBuckets = duplicateIndex.newBuckets();
+        Map<String, int[]> chunkSignatures = new HashMap<>();
+        List<Book> kept = new ArrayList<>(books.size());
+        for (Book book : books) {
+            int[] signature = MinHasher.signature(book.getTitle(), book.getAuthor(), book.getDescription());
+            book.setMinhash(MinHasher.toBytes(signature));
+            book.setDuplicateOf(null);
+            if (signature != null) {
+                String match = closestMatch(signature, chunkBuckets, chunkSignatures);
+                if (match != null && duplicatePolicy == DuplicatePolicy.SKIP) {
+                    continue;
+                }
+                book.setDuplicateOf(match);
+                // Assigned up front so later rows of the chunk can point at this one
+                if (book.getId() == null) {
+                    book.setId(UUID.randomUUID().toString());
+                }
+                chunkBuckets.add(book.getId(), signature);
+                chunkSignatures.put(book.getId(), signature);
+            }
+            kept.add(book);
+        }
+        return kept;
+    }
+
+    private String closestMatch(int[] signature, LshBuckets chunkBuckets, Map<String, int[]> chunkSignatures) {
+        String match = null;
+        double best = duplicateIndex.getSimilarityThreshold();
+        if (duplicateIndex.isReady()) {
+            for (DuplicateCandidate candidate : duplicateIndex.findSimilar(signature, null, 1)) {
+                match = candidate.getBookId();
+                best = candidate.getSimilarity();
+            }
+        }
+        for (String candidate : chunkBuckets.candidates(signature)) {
+            double similarity = MinHasher.similarity(signature, chunkSignatures.get(candidate));
+            if (similarity > best || (match == null && similarity >= best)) {
+                match = candidate;
+                best = similarity;
+            }
+        }
+        return match;
+    }
+}
@@ -0,0 +1,146 @@
+package com.nathaniel.bookbackend.book.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nathaniel.bookbackend.book.isbn.Isbns;
+import com.nathaniel.bookbackend.book.model.Book;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Streams a catalog dump one record at a time, so imports hold a single chunk in memory however
+ * large the file is. Field names are matched case-insensitively with underscores ignored, so
+ * {@code cover_url} and {@code coverUrl} are the same column.
+ */
+public abstract class CatalogReader implements Closeable {
+
+    // Multi-valued CSV cells (genres, tags) are pipe-separated
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("\\|");
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int MAX_DESCRIPTION_LENGTH = 2000;
+
+    protected final BufferedReader reader;
+
+    protected CatalogReader(InputStream input) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    public static CatalogReader open(InputStream input, CatalogFormat format, ObjectMapper objectMapper) {
+        return switch (format) {
+            case JSONL -> new JsonlCatalogReader(input, objectMapper);
+            case CSV -> new CsvCatalogReader(input);
+        };
+    }
+
+    /**
+     * The next record, or null once the input is exhausted.
+     *
+     * @throws IOException if the input itself cannot be read; malformed records come back as invalid rows
+     */
+    public abstract CatalogRow next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Builds a book from raw field values, which are strings or, for list fields, collections of strings.
+     */
+    static CatalogRow toRow(long line, Map<String, Object> fields) {
+        try {
+            Book book = new Book();
+            book.setIsbn(normalizeIsbn(text(fields, "isbn", MAX_TEXT_LENGTH)));
+            book.setTitle(text(fields, "title", MAX_TEXT_LENGTH));
+            if (book.getTitle() == null) {
+                throw new IllegalArgumentException("title is required");
+            }
+            book.setAuthor(text(fields, "author", MAX_TEXT_LENGTH));
+            book.setDescription(text(fields, "description", MAX_DESCRIPTION_LENGTH));
+            book.setCoverUrl(text(fields, "coverurl", MAX_TEXT_LENGTH));
+            book.setPublishedYear(text(fields, "publishedyear", MAX_TEXT_LENGTH));
+            book.setPublisher(text(fields, "publisher", MAX_TEXT_LENGTH));
+            book.setLanguage(text(fields, "language", MAX_TEXT_LENGTH));
+            book.setGenres(values(fields, "genres"));
+            book.setTags(values(fields, "tags"));
+            String averageRating = text(fields, "averagerating", MAX_TEXT_LENGTH);
+            book.setAverageRating(averageRating != null ? Double.valueOf(averageRating) : null);
+            String ratingsCount = text(fields, "ratingscount", MAX_TEXT_LENGTH);
+            book.setRatingsCount(ratingsCount != null ? Integer.valueOf(ratingsCount) : null);
+            String pageCount = text(fields, "pagecount", MAX_TEXT_LENGTH);
+            book.setPageCount(pageCount != null ? Integer.valueOf(pageCount) : null);
+            return CatalogRow.valid(line, book);
+        } catch (NumberFormatException e) {
+            return CatalogRow.invalid(line, "Not a number: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return CatalogRow.invalid(line, e.getMessage());
+        }
+    }
+
+    static String fieldKey(String name) {
+        return name.replace("_", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizeIsbn(String raw) {
+        if (raw == null) {
+            throw new IllegalArgumentException("isbn is required");
+        }
+        String isbn = Isbns.toIsbn13(raw);
+        if (isbn == null) {
+            throw new IllegalArgumentException("Invalid isbn: " + raw);
+        }
+        return isbn;
+    }
+
+    private static String text(Map<String, Object> fields, String key, int maxLength) {
+        Object value = fields.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(key + " must be a single value");
+        }
+        String text = ((String) value).strip();
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (text.length() > maxLength) {
+            throw new IllegalArgumentException(key + " is longer than " + maxLength + " characters");
+        }
+        return text;
+    }
+
+    private static Set<String> values(Map<String, Object> fields, String key) {
+        Object value = fields.get(key);
+        Collection<?> raw;
+        if (value == null) {
+            raw = List.of();
+        } else if (value instanceof Collection<?> collection) {
+            raw = collection;
+        } else {
+            raw = List.of(LIST_SEPARATOR.split((String) value));
+        }
+        Set<String> values = new LinkedHashSet<>();
+        for (Object item : raw) {
+            String text = item != null ? item.toString().strip() : "";
+            if (text.length() > MAX_TEXT_LENGTH) {
+                throw new IllegalArgumentException(key + " entry is longer than " + MAX_TEXT_LENGTH + " characters");
+            }
+            if (!text.isEmpty()) {
+                values.add(text);
+            }
+        }
+        return values;
+    }
+}
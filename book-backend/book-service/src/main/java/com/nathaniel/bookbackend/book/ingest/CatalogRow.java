@@ -0,0 +1,43 @@
+package com.nathaniel.bookbackend.book.ingest;
+
+import com.nathaniel.bookbackend.book.model.Book;
+
+/**
+ * One record of a catalog dump: either a validated book or the reason it was rejected.
+ */
+public class CatalogRow {
+
+    private final long line;
+    private final Book book;
+    private final String error;
+
+    private CatalogRow(long line, Book book, String error) {
+        this.line = line;
+        this.book = book;
+        this.error = error;
+    }
+
+    static CatalogRow valid(long line, Book book) {
+        return new CatalogRow(line, book, null);
+    }
+
+    static CatalogRow invalid(long line, String error) {
+        return new CatalogRow(line, null, error);
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isValid() {
+        return book != null;
+    }
+}
@@ -0,0 +1,164 @@
+package com.nathaniel.bookbackend.book.ingest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live progress of one catalog import. Counters are updated by the importing thread and read by
+ * the progress endpoint; only the first few rejected rows are kept.
+ */
+public class ImportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public record RowError(long line, String message) {
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String source;
+    private final CatalogFormat format;
+    private final int maxReportedErrors;
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong nearDuplicates = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final List<RowError> errors = new ArrayList<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String failure;
+
+    ImportJob(String source, CatalogFormat format, int maxReportedErrors) {
+        this.source = source;
+        this.format = format;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void complete() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void fail(String reason) {
+        failure = reason;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void chunkWritten(int insertedRows, int duplicateRows, int nearDuplicateRows) {
+        inserted.addAndGet(insertedRows);
+        duplicates.addAndGet(duplicateRows);
+        nearDuplicates.addAndGet(nearDuplicateRows);
+        chunks.incrementAndGet();
+    }
+
+    void rowFailed(long line, String message) {
+        failed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public CatalogFormat getFormat() {
+        return format;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getInserted() {
+        return inserted.get();
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * Inserted rows flagged as near-duplicates of another book; skipped ones count as duplicates.
+     */
+    public long getNearDuplicates() {
+        return nearDuplicates.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getChunks() {
+        return chunks.get();
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * Rows read per second since the import started, up to now or to when it finished.
+     */
+    public double getRowsPerSecond() {
+        Instant started = startedAt;
+        if (started == null) {
+            return 0;
+        }
+        Instant until = finishedAt != null ? finishedAt : Instant.now();
+        long millis = Math.max(1, Duration.between(started, until).toMillis());
+        return rowsRead.get() * 1000.0 / millis;
+    }
+
+    /**
+     * The first rejected rows with their line numbers, capped at book.import.max-reported-errors.
+     */
+    public List<RowError> getErrors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+}
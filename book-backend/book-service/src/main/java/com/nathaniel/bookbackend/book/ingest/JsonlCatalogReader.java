@@ -0,0 +1,67 @@
+package com.nathaniel.bookbackend.book.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One JSON object per line. Blank lines are skipped.
+ */
+class JsonlCatalogReader extends CatalogReader {
+
+    private final ObjectMapper objectMapper;
+    private long line;
+
+    JsonlCatalogReader(InputStream input, ObjectMapper objectMapper) {
+        super(input);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public CatalogRow next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) {
+                return null;
+            }
+            line++;
+        } while (text.isBlank());
+
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException e) {
+            return CatalogRow.invalid(line, "Malformed JSON: " + e.getOriginalMessage());
+        }
+        if (!node.isObject()) {
+            return CatalogRow.invalid(line, "Expected a JSON object");
+        }
+
+        Map<String, Object> fields = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> entries = node.fields();
+        while (entries.hasNext()) {
+            Map.Entry<String, JsonNode> entry = entries.next();
+            JsonNode value = entry.getValue();
+            if (value.isNull()) {
+                continue;
+            }
+            if (value.isArray()) {
+                List<String> items = new ArrayList<>(value.size());
+                value.forEach(item -> items.add(item.asText()));
+                fields.put(fieldKey(entry.getKey()), items);
+            } else {
+                fields.put(fieldKey(entry.getKey()), value.asText());
+            }
+        }
+        return toRow(line, fields);
+    }
+}
@@ -0,0 +1,232 @@
+package com.nathaniel.bookbackend.book.isbn;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Canonical ISBN-13 to book id, held as an open-addressing table of numeric ISBNs with a Bloom
+ * filter in front. Most lookups from imports and scanners are for books the catalog does not have,
+ * and the filter answers those without probing the table or asking the database.
+ * The filter cannot forget entries, so it is rebuilt from the table once the startup snapshot is
+ * loaded and again whenever inserts outgrow it or removals leave it mostly stale.
+ */
+@Component
+public class IsbnIndex implements BookIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(IsbnIndex.class);
+
+    @Value("${book.isbn.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${book.isbn.min-expected-books:100000}")
+    private long minExpectedBooks;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] keys = new long[1024];
+    private String[] ids = new String[1024];
+    private long[] versions = new long[1024];
+    private int size;
+    private BloomFilter filter;
+    private long filterCapacity;
+    private long filterInserts;
+    private long filterStale;
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        String isbn13 = Isbns.toIsbn13(book.getIsbn());
+        if (isbn13 == null) {
+            return;
+        }
+        long key = Isbns.toKey(isbn13);
+        long version = book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : 0L;
+
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(key);
+            if (slot >= 0) {
+                if (versions[slot] > version) {
+                    return;
+                }
+                ids[slot] = book.getId();
+                versions[slot] = version;
+                return;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            insert(key, book.getId(), version);
+            if (filter == null || filterInserts >= filterCapacity) {
+                rebuildFilter();
+            } else {
+                filter.put(key);
+                filterInserts++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes are rare next to lookups, so rather than keep an id to ISBN map this walks the table.
+     */
+    @Override
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0 && bookId.equals(ids[slot])) {
+                    delete(slot);
+                    if (++filterStale * 2 > filterCapacity) {
+                        rebuildFilter();
+                    }
+                    return;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        lock.writeLock().lock();
+        try {
+            rebuildFilter();
+            logger.info("ISBN index holds {} books, Bloom filter {} KB",
+                size, filter.sizeInBytes() / 1024);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @param isbn13 a canonical ISBN-13, see {@link Isbns#toIsbn13}
+     * @return the id of the book with that ISBN, or null if the catalog has none
+     */
+    public String findId(String isbn13) {
+        long key = Isbns.toKey(isbn13);
+        lock.readLock().lock();
+        try {
+            if (filter == null || !filter.mightContain(key)) {
+                return null;
+            }
+            int slot = slotOf(key);
+            return slot >= 0 ? ids[slot] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The subset of {@code isbns13} the catalog already has.
+     */
+    public Set<String> findExisting(Collection<String> isbns13) {
+        Set<String> existing = new HashSet<>();
+        for (String isbn13 : isbns13) {
+            if (findId(isbn13) != null) {
+                existing.add(isbn13);
+            }
+        }
+        return existing;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        for (int slot = home(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long key, String id, long version) {
+        int mask = keys.length - 1;
+        int slot = home(key, mask);
+        while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        ids[slot] = id;
+        versions[slot] = version;
+        size++;
+    }
+
+    // Linear probing without tombstones: shift back every later entry whose probe path crosses the hole
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = home(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                ids[hole] = ids[next];
+                versions[hole] = versions[next];
+                hole = next;
+            }
+        }
+        keys[hole] = 0L;
+        ids[hole] = null;
+        versions[hole] = 0L;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        String[] oldIds = ids;
+        long[] oldVersions = versions;
+        keys = new long[capacity];
+        ids = new String[capacity];
+        versions = new long[capacity];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                insert(oldKeys[slot], oldIds[slot], oldVersions[slot]);
+            }
+        }
+    }
+
+    private void rebuildFilter() {
+        filterCapacity = Math.max(minExpectedBooks, size * 2L);
+        filter = new BloomFilter(filterCapacity, falsePositiveRate);
+        for (long key : keys) {
+            if (key != 0) {
+                filter.put(key);
+            }
+        }
+        filterInserts = size;
+        filterStale = 0;
+    }
+
+    private static int home(long key, int mask) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
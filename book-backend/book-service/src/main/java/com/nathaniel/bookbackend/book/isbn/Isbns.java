@@ -0,0 +1,62 @@
+package com.nathaniel.bookbackend.book.isbn;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical ISBN-13 form for ISBNs as people and catalogs write them: ISBN-10 or ISBN-13, with or
+ * without hyphens, spaces or an "ISBN" prefix. Books are stored and looked up in this form.
+ */
+public final class Isbns {
+
+    private static final Pattern PREFIX = Pattern.compile("^\\s*ISBN(-1[03])?\\s*:?");
+    private static final Pattern SEPARATORS = Pattern.compile("[\\s-]");
+    private static final Pattern ISBN_10 = Pattern.compile("\\d{9}[\\dX]");
+    private static final Pattern ISBN_13 = Pattern.compile("97[89]\\d{10}");
+
+    private Isbns() {
+    }
+
+    /**
+     * The ISBN-13 for {@code raw}, or null if it is not a well-formed ISBN with a valid check digit.
+     */
+    public static String toIsbn13(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String isbn = PREFIX.matcher(raw.toUpperCase(Locale.ROOT)).replaceFirst("");
+        isbn = SEPARATORS.matcher(isbn).replaceAll("");
+        if (ISBN_13.matcher(isbn).matches()) {
+            return isbn13CheckDigit(isbn) == isbn.charAt(12) - '0' ? isbn : null;
+        }
+        if (ISBN_10.matcher(isbn).matches() && isbn10IsValid(isbn)) {
+            String body = "978" + isbn.substring(0, 9);
+            return body + isbn13CheckDigit(body);
+        }
+        return null;
+    }
+
+    /**
+     * A canonical ISBN-13 as a number, for primitive-keyed lookups. Never 0.
+     */
+    static long toKey(String isbn13) {
+        return Long.parseLong(isbn13);
+    }
+
+    private static int isbn13CheckDigit(String digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private static boolean isbn10IsValid(String isbn) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = isbn.charAt(i);
+            sum += (c == 'X' ? 10 : c - '0') * (10 - i);
+        }
+        return sum % 11 == 0;
+    }
+}
@@ -1,12 +1,16 @@
 package com.nathaniel.bookbackend.book.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+    // Serves keyset pagination on (title, id)
+    @Index(name = "idx_books_title_id", columnList = "title, id")
+})
 public class Book {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -43,10 +47,28 @@ public class Book {
     
     private Integer ratingsCount;
 
+    // Running total behind averageRating, maintained by RatingAggregator
+    @JsonIgnore
+    private Double ratingsSum;
+
+    // The part of ratingsSum and ratingsCount that came from users rather than the catalog import
+    @JsonIgnore
+    private Double userRatingsSum;
+
+    @JsonIgnore
+    private Integer userRatingsCount;
+
     private Integer pageCount;
 
     private String language;
 
+    // MinHash signature of title, author and description, see MinHasher
+    @JsonIgnore
+    private byte[] minhash;
+
+    // Closest near-duplicate already in the catalog when this book was added
+    private String duplicateOf;
+
     private Instant createdAt;
     private Instant updatedAt;
 
@@ -98,12 +120,27 @@ public class Book {
     public Integer getRatingsCount() { return ratingsCount; }
     public void setRatingsCount(Integer ratingsCount) { this.ratingsCount = ratingsCount; }
 
+    public Double getRatingsSum() { return ratingsSum; }
+    public void setRatingsSum(Double ratingsSum) { this.ratingsSum = ratingsSum; }
+
+    public Double getUserRatingsSum() { return userRatingsSum; }
+    public void setUserRatingsSum(Double userRatingsSum) { this.userRatingsSum = userRatingsSum; }
+
+    public Integer getUserRatingsCount() { return userRatingsCount; }
+    public void setUserRatingsCount(Integer userRatingsCount) { this.userRatingsCount = userRatingsCount; }
+
     public Integer getPageCount() { return pageCount; }
     public void setPageCount(Integer pageCount) { this.pageCount = pageCount; }
 
     public String getLanguage() { return language; }
     public void setLanguage(String language) { this.language = language; }
 
+    public byte[] getMinhash() { return minhash; }
+    public void setMinhash(byte[] minhash) { this.minhash = minhash; }
+
+    public String getDuplicateOf() { return duplicateOf; }
+    public void setDuplicateOf(String duplicateOf) { this.duplicateOf = duplicateOf; }
+
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
 
@@ -0,0 +1,84 @@
+package com.nathaniel.bookbackend.book.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Flat, detached view of a book for list endpoints. Genres and tags are loaded for a whole page
+ * at once by {@link com.nathaniel.bookbackend.book.service.BookSummaryLoader}, so serializing it
+ * never touches a lazy collection. Serializes to the same JSON shape as {@link Book}.
+ */
+public class BookSummary {
+
+    private final String id;
+    private final String title;
+    private final String author;
+    private final String isbn;
+    private final String description;
+    private final String coverUrl;
+    private final String publishedYear;
+    private final String publisher;
+    private final List<String> genres;
+    private final List<String> tags;
+    private final Double averageRating;
+    private final Integer ratingsCount;
+    private final Integer pageCount;
+    private final String language;
+    private final String duplicateOf;
+    private final Instant createdAt;
+    private final Instant updatedAt;
+
+    public BookSummary(Book book, List<String> genres, List<String> tags) {
+        this.id = book.getId();
+        this.title = book.getTitle();
+        this.author = book.getAuthor();
+        this.isbn = book.getIsbn();
+        this.description = book.getDescription();
+        this.coverUrl = book.getCoverUrl();
+        this.publishedYear = book.getPublishedYear();
+        this.publisher = book.getPublisher();
+        this.genres = genres;
+        this.tags = tags;
+        this.averageRating = book.getAverageRating();
+        this.ratingsCount = book.getRatingsCount();
+        this.pageCount = book.getPageCount();
+        this.language = book.getLanguage();
+        this.duplicateOf = book.getDuplicateOf();
+        this.createdAt = book.getCreatedAt();
+        this.updatedAt = book.getUpdatedAt();
+    }
+
+    public String getId() { return id; }
+
+    public String getTitle() { return title; }
+
+    public String getAuthor() { return author; }
+
+    public String getIsbn() { return isbn; }
+
+    public String getDescription() { return description; }
+
+    public String getCoverUrl() { return coverUrl; }
+
+    public String getPublishedYear() { return publishedYear; }
+
+    public String getPublisher() { return publisher; }
+
+    public List<String> getGenres() { return genres; }
+
+    public List<String> getTags() { return tags; }
+
+    public Double getAverageRating() { return averageRating; }
+
+    public Integer getRatingsCount() { return ratingsCount; }
+
+    public Integer getPageCount() { return pageCount; }
+
+    public String getLanguage() { return language; }
+
+    public String getDuplicateOf() { return duplicateOf; }
+
+    public Instant getCreatedAt() { return createdAt; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+}
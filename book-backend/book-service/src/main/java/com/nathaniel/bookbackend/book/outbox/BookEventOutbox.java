@@ -0,0 +1,48 @@
+package com.nathaniel.bookbackend.book.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import com.nathaniel.bookbackend.events.KafkaTopics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Records book-updates events in the outbox table as part of the caller's transaction, so an event
+ * exists exactly when its change committed. {@link OutboxRelay} publishes them afterwards.
+ */
+@Component
+public class BookEventOutbox {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(BookUpdateEvent event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize book update for " + event.getBookId(), e);
+        }
+        // Keyed by book so every change to one book lands on the same partition
+        outboxEventRepository.save(new OutboxEvent(KafkaTopics.BOOK_UPDATES, event.getBookId(), payload));
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.wakeUp();
+            }
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package com.nathaniel.bookbackend.book.outbox;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * An event waiting to be relayed to Kafka. Written in the same transaction as the change it
+ * describes and deleted once the broker has acknowledged it. While a relay is sending it, it is
+ * claimed until claimedUntil, and no other relay picks it up before then.
+ */
+@Entity
+@Table(name = "book_outbox")
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String topic;
+
+    @Column(name = "event_key")
+    private String eventKey;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    private Instant createdAt;
+
+    private Instant claimedUntil;
+
+    protected OutboxEvent() {
+    }
+
+    public OutboxEvent(String topic, String eventKey, String payload) {
+        this.topic = topic;
+        this.eventKey = eventKey;
+        this.payload = payload;
+        this.createdAt = Instant.now();
+    }
+
+    public Long getId() { return id; }
+
+    public String getTopic() { return topic; }
+
+    public String getEventKey() { return eventKey; }
+
+    public String getPayload() { return payload; }
+
+    public Instant getCreatedAt() { return createdAt; }
+
+    public Instant getClaimedUntil() { return claimedUntil; }
+}
@@ -0,0 +1,222 @@
+package com.nathaniel.bookbackend.book.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the outbox to Kafka on a background thread. Each round claims a batch of rows in a short
+ * transaction, sends them asynchronously with at most book.outbox.max-in-flight sends outstanding and
+ * no transaction open, then deletes the rows the broker acknowledged in a second one. Rows from the
+ * first failed send on are released for the next round, so delivery is at least once; a relay that dies
+ * mid-round leaves its claim to expire after book.outbox.claim-timeout. The thread wakes on every commit
+ * that wrote to the outbox and otherwise polls, so a burst of writes becomes a few large batches.
+ * <p>
+ * One relay sends a book's rows in id order, but with several replicas running, another relay may claim
+ * a book's later row while an earlier one is still in flight or waiting to be retried, so the two can
+ * reach Kafka out of order. That is safe for book-updates, whose events carry only ids and whose
+ * consumers reload the book as the database holds it now.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private KafkaTemplate<String, BookUpdateEvent> kafkaTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${book.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${book.outbox.max-in-flight:256}")
+    private int maxInFlight;
+
+    @Value("${book.outbox.poll-interval:1s}")
+    private Duration pollInterval;
+
+    @Value("${book.outbox.send-timeout:30s}")
+    private Duration sendTimeout;
+
+    // Longer than a round can take, so a claim only runs out when its relay is gone
+    @Value("${book.outbox.claim-timeout:2m}")
+    private Duration claimTimeout;
+
+    private final Object monitor = new Object();
+    private boolean signalled;
+    private volatile boolean running;
+    private TransactionTemplate transactionTemplate;
+    private Semaphore inFlight;
+    private Thread relayThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        inFlight = new Semaphore(maxInFlight);
+        running = true;
+        relayThread = new Thread(this::relayLoop, "outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        if (relayThread != null) {
+            relayThread.interrupt();
+            relayThread.join(sendTimeout.toMillis());
+        }
+    }
+
+    public void wakeUp() {
+        synchronized (monitor) {
+            signalled = true;
+            monitor.notifyAll();
+        }
+    }
+
+    private void relayLoop() {
+        while (running) {
+            int relayed = 0;
+            try {
+                relayed = relayBatch();
+            } catch (Exception e) {
+                if (running) {
+                    logger.warn("Outbox relay round failed, retrying in {}", pollInterval, e);
+                }
+            }
+            // A full batch means there is probably more waiting
+            if (relayed < batchSize && !awaitWork()) {
+                return;
+            }
+        }
+    }
+
+    private boolean awaitWork() {
+        synchronized (monitor) {
+            try {
+                if (!signalled) {
+                    monitor.wait(pollInterval.toMillis());
+                }
+                signalled = false;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    int relayBatch() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> claimNextBatch());
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<?>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            CompletableFuture<?> send = send(event);
+            if (send == null) {
+                break;
+            }
+            sends.add(send);
+        }
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<Long> sent = new ArrayList<>(sends.size());
+        for (int i = 0; i < sends.size(); i++) {
+            if (!awaitSend(sends.get(i), deadline, batch.get(i))) {
+                break;
+            }
+            sent.add(batch.get(i).getId());
+        }
+        List<Long> unsent = batch.subList(sent.size(), batch.size()).stream().map(OutboxEvent::getId).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!sent.isEmpty()) {
+                outboxEventRepository.deleteByIdIn(sent);
+            }
+            if (!unsent.isEmpty()) {
+                outboxEventRepository.releaseClaims(unsent);
+            }
+        });
+        return sent.size();
+    }
+
+    private List<OutboxEvent> claimNextBatch() {
+        Instant now = Instant.now();
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(now, batchSize);
+        if (!batch.isEmpty()) {
+            outboxEventRepository.claim(batch.stream().map(OutboxEvent::getId).toList(), now.plus(claimTimeout));
+        }
+        return batch;
+    }
+
+    // Null when the send could not be started; the event and everything after it wait for the next round
+    private CompletableFuture<?> send(OutboxEvent event) {
+        BookUpdateEvent payload;
+        try {
+            payload = objectMapper.readValue(event.getPayload(), BookUpdateEvent.class);
+        } catch (JsonProcessingException e) {
+            // Retrying cannot fix it, so drop it instead of blocking everything behind it
+            logger.error("Dropping unreadable outbox event {}", event.getId(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            return kafkaTemplate.send(event.getTopic(), event.getEventKey(), payload)
+                .whenComplete((result, failure) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            logger.warn("Could not send outbox event {}", event.getId(), e);
+            return null;
+        }
+    }
+
+    private boolean awaitSend(CompletableFuture<?> send, long deadline, OutboxEvent event) {
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Outbox event {} was not acknowledged, will retry", event.getId(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.nathaniel.bookbackend.book.paging;
+
+import com.nathaniel.bookbackend.book.model.Book;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a listing ordered by (title, id). Clients only ever see it as an opaque token,
+ * which leaves room to change the key without breaking them.
+ */
+public class BookCursor {
+
+    public static final BookCursor START = new BookCursor("", "");
+
+    private static final String VERSION = "t1";
+    private static final char SEPARATOR = '\u0000';
+
+    private final String title;
+    private final String id;
+
+    public BookCursor(String title, String id) {
+        this.title = title;
+        this.id = id;
+    }
+
+    public static BookCursor after(Book book) {
+        return new BookCursor(book.getTitle(), book.getId());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static BookCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = decoded.split(String.valueOf(SEPARATOR), -1);
+        if (parts.length != 3 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new BookCursor(parts[1], parts[2]);
+    }
+
+    public String encode() {
+        String raw = VERSION + SEPARATOR + title + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
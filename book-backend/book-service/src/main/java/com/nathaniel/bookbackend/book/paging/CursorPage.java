@@ -0,0 +1,56 @@
+package com.nathaniel.bookbackend.book.paging;
+
+import com.nathaniel.bookbackend.book.model.Book;
+
+import java.util.List;
+
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+    private final Long approximateTotal;
+
+    public CursorPage(List<T> content, String nextCursor, Long approximateTotal) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.approximateTotal = approximateTotal;
+    }
+
+    /**
+     * Builds a page from a query that fetched one row more than {@code size}; the extra row
+     * only signals that another page exists.
+     */
+    public static CursorPage<Book> of(List<Book> rows, int size, Long approximateTotal) {
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows, null, approximateTotal);
+        }
+        List<Book> content = rows.subList(0, size);
+        String nextCursor = BookCursor.after(content.get(size - 1)).encode();
+        return new CursorPage<>(content, nextCursor, approximateTotal);
+    }
+
+    /**
+     * The same page with its rows replaced, e.g. by views built from them; cursor and total are kept.
+     */
+    public <R> CursorPage<R> withContent(List<R> replacement) {
+        return new CursorPage<>(replacement, nextCursor, approximateTotal);
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * Token for the following page, or null on the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Planner estimate of the total number of matches, only present when requested.
+     */
+    public Long getApproximateTotal() {
+        return approximateTotal;
+    }
+}
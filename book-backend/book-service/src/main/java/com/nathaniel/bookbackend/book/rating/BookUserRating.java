@@ -0,0 +1,60 @@
+package com.nathaniel.bookbackend.book.rating;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A user's current rating of a book, as last reported by library-service; null once the user took it
+ * back. Written by {@link com.nathaniel.bookbackend.book.repository.BookRatingWriter} only, and the
+ * source {@link RatingReconcileJob} rebuilds the users' share of the book totals from.
+ */
+@Entity
+@Table(name = "book_user_ratings")
+@IdClass(BookUserRating.Key.class)
+public class BookUserRating {
+    @Id
+    private String bookId;
+
+    @Id
+    private String userId;
+
+    private Double rating;
+
+    private Instant updatedAt;
+
+    protected BookUserRating() {
+    }
+
+    public String getBookId() { return bookId; }
+
+    public String getUserId() { return userId; }
+
+    public Double getRating() { return rating; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+
+    public static class Key implements Serializable {
+        private String bookId;
+        private String userId;
+
+        public Key() {
+        }
+
+        public Key(String bookId, String userId) {
+            this.bookId = bookId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && Objects.equals(bookId, key.bookId) && Objects.equals(userId, key.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bookId, userId);
+        }
+    }
+}
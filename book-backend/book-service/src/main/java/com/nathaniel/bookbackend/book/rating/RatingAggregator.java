@@ -0,0 +1,118 @@
+package com.nathaniel.bookbackend.book.rating;
+
+import com.nathaniel.bookbackend.book.outbox.BookEventOutbox;
+import com.nathaniel.bookbackend.book.repository.BookRatingWriter;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import com.nathaniel.bookbackend.events.KafkaTopics;
+import com.nathaniel.bookbackend.events.UserActivityEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps each book's ratings sum, count and average current from the rating changes library-service
+ * publishes, without ever rescanning user_books. Every rating event carries the user's rating after the
+ * change, which is stored per user and book in book_user_ratings; the book's totals move by the difference
+ * from the stored rating. A redelivered event finds its rating already stored and moves nothing, so a
+ * batch applied again after a crash before its offsets were committed is not counted twice.
+ * Events arrive in batches of up to book.ratings.flush-interval-ms worth of traffic, only the latest
+ * rating per user and book is kept, and everything is written with batched statements before the offsets
+ * are committed. The replicas share one consumer group, so every change is applied once.
+ */
+@Component
+public class RatingAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(RatingAggregator.class);
+
+    @Autowired
+    private BookRatingWriter bookRatingWriter;
+
+    @Autowired
+    private BookEventOutbox bookEventOutbox;
+
+    @KafkaListener(
+        topics = KafkaTopics.USER_ACTIVITY,
+        groupId = "${book.ratings.group-id:book-service-ratings}",
+        batch = "true",
+        properties = {
+            // The broker holds each fetch until it has this much or the interval is up
+            "fetch.min.bytes=${book.ratings.fetch-min-bytes:65536}",
+            "fetch.max.wait.ms=${book.ratings.flush-interval-ms:500}",
+            "max.poll.records=${book.ratings.max-batch-size:5000}",
+            // library-service types its events with its own class name
+            "spring.json.use.type.headers=false",
+            "spring.json.value.default.type=com.nathaniel.bookbackend.events.UserActivityEvent"
+        }
+    )
+    @Transactional
+    public void handleActivity(List<UserActivityEvent> events) {
+        Map<RatingChange.Key, RatingChange> changes = coalesce(events);
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<RatingChange.Key, Double> stored = bookRatingWriter.lockUserRatings(changes.keySet());
+        Map<String, RatingDelta> deltas = deltas(changes.values(), stored);
+        bookRatingWriter.saveUserRatings(changes.values());
+        if (deltas.isEmpty()) {
+            return;
+        }
+        bookRatingWriter.applyAll(deltas);
+        // Lets every replica refresh its cache and indexes from the new values
+        bookEventOutbox.publish(BookUpdateEvent.batch(List.copyOf(deltas.keySet()), "RATING_UPDATED"));
+        logger.debug("Applied rating changes from {} events to {} books", events.size(), deltas.size());
+    }
+
+    /** The latest rating of each user and book the events change, in event order. */
+    static Map<RatingChange.Key, RatingChange> coalesce(List<UserActivityEvent> events) {
+        Map<RatingChange.Key, RatingChange> changes = new LinkedHashMap<>();
+        for (UserActivityEvent event : events) {
+            if (event != null && event.getActivities() != null) {
+                event.getActivities().forEach(activity -> add(changes, activity));
+            } else {
+                add(changes, event);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * How each book's totals move: from the stored rating where there is one, otherwise from the rating
+     * library-service saw before the change.
+     */
+    static Map<String, RatingDelta> deltas(Collection<RatingChange> changes, Map<RatingChange.Key, Double> stored) {
+        Map<String, RatingDelta> deltas = new LinkedHashMap<>();
+        for (RatingChange change : changes) {
+            Double before = stored.containsKey(change.key()) ? stored.get(change.key()) : change.previousRating();
+            deltas.merge(change.bookId(), RatingDelta.between(before, change.rating()), RatingDelta::plus);
+        }
+        deltas.values().removeIf(RatingDelta::isEmpty);
+        return deltas;
+    }
+
+    private static void add(Map<RatingChange.Key, RatingChange> changes, UserActivityEvent event) {
+        if (event == null || event.getBookId() == null || event.getUserId() == null) {
+            return;
+        }
+        RatingChange change;
+        if ("REVIEW_ADDED".equals(event.getActivityType())) {
+            change = new RatingChange(event.getBookId(), event.getUserId(), event.getPreviousRating(), event.getRating());
+        } else if ("BOOK_REMOVED".equals(event.getActivityType())) {
+            change = new RatingChange(event.getBookId(), event.getUserId(), event.getPreviousRating(), null);
+        } else {
+            return;
+        }
+        // A review without a rating, or removing an unrated book, says nothing about ratings
+        if (change.previousRating() == null && change.rating() == null) {
+            return;
+        }
+        changes.merge(change.key(), change, RatingChange::then);
+    }
+}
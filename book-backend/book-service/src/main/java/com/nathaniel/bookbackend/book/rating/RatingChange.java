@@ -0,0 +1,20 @@
+package com.nathaniel.bookbackend.book.rating;
+
+/**
+ * One user's rating of one book after a change, where null means unrated, and the rating library-service
+ * saw before it. The previous rating only counts for users book-service has no rating stored for.
+ */
+public record RatingChange(String bookId, String userId, Double previousRating, Double rating) {
+
+    public record Key(String bookId, String userId) {
+    }
+
+    public Key key() {
+        return new Key(bookId, userId);
+    }
+
+    /** This change followed by {@code later}, for the same user and book. */
+    public RatingChange then(RatingChange later) {
+        return new RatingChange(bookId, userId, previousRating, later.rating());
+    }
+}
@@ -0,0 +1,26 @@
+package com.nathaniel.bookbackend.book.rating;
+
+/**
+ * Net change to one book's ratings: how much to add to the sum and to the count.
+ * Deltas commute, so events can be coalesced and applied in any order.
+ */
+public record RatingDelta(double sum, int count) {
+
+    /**
+     * The change from one user's rating going from {@code previous} to {@code current},
+     * where null means unrated.
+     */
+    public static RatingDelta between(Double previous, Double current) {
+        double sum = (current != null ? current : 0) - (previous != null ? previous : 0);
+        int count = (current != null ? 1 : 0) - (previous != null ? 1 : 0);
+        return new RatingDelta(sum, count);
+    }
+
+    public RatingDelta plus(RatingDelta other) {
+        return new RatingDelta(sum + other.sum, count + other.count);
+    }
+
+    public boolean isEmpty() {
+        return sum == 0 && count == 0;
+    }
+}
@@ -0,0 +1,99 @@
+package com.nathaniel.bookbackend.book.rating;
+
+import com.nathaniel.bookbackend.book.outbox.BookEventOutbox;
+import com.nathaniel.bookbackend.book.repository.BookRatingWriter;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The only place book rating totals are counted rather than moved by deltas. With
+ * book.ratings.reconcile-interval set it rebuilds the users' share of every book's totals from
+ * book_user_ratings that often, undoing any drift, and announces the books it corrected on book-updates.
+ */
+@Component
+public class RatingReconcileJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(RatingReconcileJob.class);
+    private static final int EVENT_BATCH_SIZE = 1000;
+
+    @Autowired
+    private BookRatingWriter bookRatingWriter;
+
+    @Autowired
+    private BookEventOutbox bookEventOutbox;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${book.ratings.reconcile-interval:0s}")
+    private Duration reconcileInterval;
+
+    private TransactionTemplate transactionTemplate;
+    private Thread reconcileThread;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (reconcileInterval.isZero() || reconcileInterval.isNegative()) {
+            return;
+        }
+        reconcileThread = new Thread(this::run, "rating-reconcile");
+        reconcileThread.setDaemon(true);
+        reconcileThread.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (reconcileThread != null) {
+            reconcileThread.interrupt();
+        }
+    }
+
+    /**
+     * @return the number of books whose totals had drifted
+     */
+    public int reconcile() {
+        Integer corrected = transactionTemplate.execute(status -> {
+            List<String> bookIds = bookRatingWriter.reconcile();
+            for (int from = 0; from < bookIds.size(); from += EVENT_BATCH_SIZE) {
+                List<String> batch = bookIds.subList(from, Math.min(bookIds.size(), from + EVENT_BATCH_SIZE));
+                bookEventOutbox.publish(BookUpdateEvent.batch(List.copyOf(batch), "RATING_UPDATED"));
+            }
+            return bookIds.size();
+        });
+        return corrected != null ? corrected : 0;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(reconcileInterval.toMillis());
+                int corrected = reconcile();
+                if (corrected > 0) {
+                    logger.warn("Corrected drifted rating totals of {} books", corrected);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.warn("Rating reconcile failed, retrying in {}", reconcileInterval, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.nathaniel.bookbackend.book.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Approximate result counts read from the Postgres planner instead of a COUNT(*) over the matches.
+ * Accuracy depends on how fresh the table statistics are.
+ */
+@Repository
+public class BookCountEstimator {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public long estimateTitleOrAuthorMatches(String likePattern) {
+        return estimate("SELECT 1 FROM books WHERE LOWER(title) LIKE ? ESCAPE '\\' OR LOWER(author) LIKE ? ESCAPE '\\'",
+            likePattern, likePattern);
+    }
+
+    public long estimateGenreMatches(String genre) {
+        return estimate("SELECT 1 FROM book_genres WHERE genre = ?", genre);
+    }
+
+    private long estimate(String sql, Object... args) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, args);
+        try {
+            return objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable query plan", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.nathaniel.bookbackend.book.repository;
+
+import com.nathaniel.bookbackend.book.rating.RatingChange;
+import com.nathaniel.bookbackend.book.rating.RatingDelta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies coalesced rating deltas in place with one batched UPDATE, without reading the books first,
+ * and keeps the per-user ratings they are derived from. Books imported with an average and count but
+ * no sum are seeded from those. The users' share of each book's totals is kept apart from the
+ * imported one, so {@link #reconcile()} can rebuild it from book_user_ratings alone.
+ */
+@Repository
+public class BookRatingWriter {
+
+    private static final int LOCK_CHUNK_SIZE = 1000;
+
+    private static final String APPLY_DELTA = "UPDATE books SET "
+        + "ratings_sum = COALESCE(ratings_sum, average_rating * ratings_count, 0) + ?, "
+        + "ratings_count = COALESCE(ratings_count, 0) + ?, "
+        + "average_rating = CASE WHEN COALESCE(ratings_count, 0) + ? > 0 "
+        + "THEN (COALESCE(ratings_sum, average_rating * ratings_count, 0) + ?) / (COALESCE(ratings_count, 0) + ?) "
+        + "END, "
+        + "user_ratings_sum = COALESCE(user_ratings_sum, 0) + ?, "
+        + "user_ratings_count = COALESCE(user_ratings_count, 0) + ?, "
+        + "updated_at = CURRENT_TIMESTAMP "
+        + "WHERE id = ?";
+
+    private static final String LOCK_USER_RATINGS = "SELECT book_id, user_id, rating FROM book_user_ratings "
+        + "WHERE (book_id, user_id) IN (%s) FOR UPDATE";
+
+    private static final String SAVE_USER_RATING = "INSERT INTO book_user_ratings (book_id, user_id, rating, updated_at) "
+        + "VALUES (?, ?, ?, ?) "
+        + "ON CONFLICT (book_id, user_id) DO UPDATE SET rating = EXCLUDED.rating, updated_at = EXCLUDED.updated_at";
+
+    // Rating changes, and other replicas' reconciles, wait until it commits; reads and row locks go on
+    private static final String LOCK_FOR_RECONCILE = "LOCK TABLE book_user_ratings IN SHARE ROW EXCLUSIVE MODE";
+
+    // Moves the users' share of every drifted book to the sum of its stored ratings, leaving the imported share
+    private static final String RECONCILE = "WITH actual AS ("
+        + "SELECT book_id, SUM(rating) AS sum, COUNT(rating) AS count FROM book_user_ratings GROUP BY book_id), "
+        + "drifted AS ("
+        + "SELECT b.id, COALESCE(a.sum, 0) - COALESCE(b.user_ratings_sum, 0) AS sum, "
+        + "COALESCE(a.count, 0) - COALESCE(b.user_ratings_count, 0) AS count "
+        + "FROM books b LEFT JOIN actual a ON a.book_id = b.id "
+        + "WHERE ABS(COALESCE(a.sum, 0) - COALESCE(b.user_ratings_sum, 0)) > 1e-6 "
+        + "OR COALESCE(a.count, 0) <> COALESCE(b.user_ratings_count, 0)) "
+        + "UPDATE books b SET "
+        + "ratings_sum = COALESCE(b.ratings_sum, b.average_rating * b.ratings_count, 0) + d.sum, "
+        + "ratings_count = COALESCE(b.ratings_count, 0) + d.count, "
+        + "average_rating = CASE WHEN COALESCE(b.ratings_count, 0) + d.count > 0 "
+        + "THEN (COALESCE(b.ratings_sum, b.average_rating * b.ratings_count, 0) + d.sum) "
+        + "/ (COALESCE(b.ratings_count, 0) + d.count) END, "
+        + "user_ratings_sum = COALESCE(b.user_ratings_sum, 0) + d.sum, "
+        + "user_ratings_count = COALESCE(b.user_ratings_count, 0) + d.count, "
+        + "updated_at = CURRENT_TIMESTAMP "
+        + "FROM drifted d WHERE b.id = d.id "
+        + "RETURNING b.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void applyAll(Map<String, RatingDelta> deltas) {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((bookId, delta) -> rows.add(new Object[] {
+            delta.sum(), delta.count(), delta.count(), delta.sum(), delta.count(), delta.sum(), delta.count(), bookId
+        }));
+        jdbcTemplate.batchUpdate(APPLY_DELTA, rows);
+    }
+
+    /**
+     * Reads and locks the stored ratings for these users and books until the transaction ends. Pairs with
+     * a stored row are present in the result even when its rating is null; pairs without one are absent.
+     */
+    public Map<RatingChange.Key, Double> lockUserRatings(Collection<RatingChange.Key> keys) {
+        Map<RatingChange.Key, Double> stored = new HashMap<>();
+        List<RatingChange.Key> all = List.copyOf(keys);
+        for (int from = 0; from < all.size(); from += LOCK_CHUNK_SIZE) {
+            List<RatingChange.Key> chunk = all.subList(from, Math.min(all.size(), from + LOCK_CHUNK_SIZE));
+            List<Object> args = new ArrayList<>(chunk.size() * 2);
+            chunk.forEach(key -> {
+                args.add(key.bookId());
+                args.add(key.userId());
+            });
+            String pairs = String.join(", ", Collections.nCopies(chunk.size(), "(?, ?)"));
+            jdbcTemplate.query(String.format(LOCK_USER_RATINGS, pairs), rs -> {
+                double rating = rs.getDouble("rating");
+                stored.put(new RatingChange.Key(rs.getString("book_id"), rs.getString("user_id")),
+                    rs.wasNull() ? null : rating);
+            }, args.toArray());
+        }
+        return stored;
+    }
+
+    public void saveUserRatings(Collection<RatingChange> changes) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(changes.size());
+        changes.forEach(change -> rows.add(new Object[] {change.bookId(), change.userId(), change.rating(), now}));
+        jdbcTemplate.batchUpdate(SAVE_USER_RATING, rows);
+    }
+
+    /**
+     * Rebuilds the users' share of every book's totals from the stored ratings. Must run in a transaction.
+     *
+     * @return the ids of the books that had drifted
+     */
+    public List<String> reconcile() {
+        jdbcTemplate.execute(LOCK_FOR_RECONCILE);
+        return jdbcTemplate.queryForList(RECONCILE, String.class);
+    }
+}
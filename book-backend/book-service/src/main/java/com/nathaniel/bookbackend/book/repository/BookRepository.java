@@ -1,14 +1,21 @@
 package com.nathaniel.bookbackend.book.repository;
 
 import com.nathaniel.bookbackend.book.model.Book;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, String> {
@@ -17,11 +24,59 @@ public interface BookRepository extends JpaRepository<Book, String> {
     Page<Book> findByTitleContainingIgnoreCaseOrAuthorContainingIgnoreCase(
         String title, String author, Pageable pageable);
     
+    long countByTitleContainingIgnoreCaseOrAuthorContainingIgnoreCase(String title, String author);
+    
+    // Server-side cursor: Postgres only honors the fetch size inside a transaction
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "200"),
+        @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<Book> streamByTitleContainingIgnoreCaseOrAuthorContainingIgnoreCaseOrderById(String title, String author);
+    
     @Query("SELECT b FROM Book b WHERE :genre MEMBER OF b.genres")
     Page<Book> findByGenre(String genre, Pageable pageable);
     
+    // Keyset pages ordered by (title, id); the pageable only carries the limit
+    @Query("SELECT b FROM Book b WHERE (LOWER(b.title) LIKE :pattern ESCAPE '\\' OR LOWER(b.author) LIKE :pattern ESCAPE '\\') "
+        + "AND (b.title > :afterTitle OR (b.title = :afterTitle AND b.id > :afterId)) ORDER BY b.title, b.id")
+    List<Book> findByTitleOrAuthorLikeAfter(String pattern, String afterTitle, String afterId, Pageable pageable);
+    
+    @Query("SELECT b FROM Book b JOIN b.genres genre WHERE genre = :genre "
+        + "AND (b.title > :afterTitle OR (b.title = :afterTitle AND b.id > :afterId)) ORDER BY b.title, b.id")
+    List<Book> findByGenreAfter(String genre, String afterTitle, String afterId, Pageable pageable);
+    
     @Query("SELECT DISTINCT genre FROM Book b JOIN b.genres genre")
     List<String> findAllGenres();
     
-    List<Book> findByAverageRatingGreaterThanEqual(Double rating);
+    @Query("SELECT genre, COUNT(b) FROM Book b JOIN b.genres genre GROUP BY genre")
+    List<Object[]> countBooksByGenre();
+    
+    @Query("SELECT b FROM Book b WHERE "
+        + "(SELECT COUNT(genre) FROM Book b2 JOIN b2.genres genre WHERE b2 = b AND genre IN :genres) >= :minMatches")
+    Page<Book> findByGenresMatching(Collection<String> genres, long minMatches, Pageable pageable);
+    
+    List<Book> findByAverageRatingGreaterThanEqual(Double rating, Pageable pageable);
+    
+    // Database fallback for top-K listings; the pageable carries K and the ranking's sort
+    @Query("SELECT b FROM Book b WHERE (:genre IS NULL OR :genre MEMBER OF b.genres) "
+        + "AND (:language IS NULL OR b.language = :language) "
+        + "AND COALESCE(b.ratingsCount, 0) >= :minRatings AND (:rated = false OR b.averageRating IS NOT NULL)")
+    List<Book> findRanked(String genre, String language, int minRatings, boolean rated, Pageable pageable);
+    
+    @Query("SELECT b.id FROM Book b WHERE b.id > :afterId ORDER BY b.id")
+    List<String> findIdsAfter(String afterId, Pageable pageable);
+    
+    // Genres and tags for a whole page in one round trip, as (book_id, 'genre' | 'tag', value) rows
+    @Query(value = "SELECT book_id, 'genre', genre FROM book_genres WHERE book_id IN :ids "
+        + "UNION ALL SELECT book_id, 'tag', tag FROM book_tags WHERE book_id IN :ids", nativeQuery = true)
+    List<Object[]> findGenresAndTagsByBookIdIn(Collection<String> ids);
+    
+    @Query("SELECT DISTINCT b FROM Book b LEFT JOIN FETCH b.genres LEFT JOIN FETCH b.tags WHERE b.id IN :ids")
+    List<Book> findAllWithCollectionsByIdIn(Collection<String> ids);
+    
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.genres LEFT JOIN FETCH b.tags WHERE b.id = :id")
+    Optional<Book> findWithCollectionsById(String id);
+    
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.genres LEFT JOIN FETCH b.tags WHERE b.isbn = :isbn")
+    Optional<Book> findWithCollectionsByIsbn(String isbn);
 }
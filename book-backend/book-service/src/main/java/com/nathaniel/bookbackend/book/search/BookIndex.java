@@ -0,0 +1,16 @@
+package com.nathaniel.bookbackend.book.search;
+
+import com.nathaniel.bookbackend.book.model.Book;
+
+/**
+ * An in-memory structure derived from the catalog. Implementations are fed by
+ * {@link BookIndexLoader} at startup and kept current by book writes.
+ */
+public interface BookIndex {
+
+    void index(Book book);
+
+    void remove(String bookId);
+
+    void markReady();
+}
@@ -0,0 +1,94 @@
+package com.nathaniel.bookbackend.book.search;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import com.nathaniel.bookbackend.book.snapshot.CatalogSnapshotService;
+import com.nathaniel.bookbackend.common.datasource.ReadYourWrites;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Builds every {@link BookIndex} from the catalog once the application is up, or from the local
+ * catalog snapshot before the Kafka listeners start when there is a recent one.
+ * Until it finishes the indexes report not ready and searches fall back to the database.
+ */
+@Component
+public class BookIndexLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookIndexLoader.class);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private List<BookIndex> bookIndexes;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Value("${book.search.index-enabled:true}")
+    private boolean indexEnabled;
+
+    @Value("${book.search.load-batch-size:500}")
+    private int batchSize;
+
+    private boolean loadedFromSnapshot;
+
+    // Runs before the listener containers start, so the book-updates replay lands on top of the snapshot
+    @PostConstruct
+    void loadSnapshot() {
+        if (indexEnabled && catalogSnapshotService.loadInto(bookIndexes)) {
+            bookIndexes.forEach(BookIndex::markReady);
+            loadedFromSnapshot = true;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        if (!indexEnabled) {
+            logger.info("Book indexes disabled, searches will use the database");
+            return;
+        }
+        if (loadedFromSnapshot) {
+            catalogSnapshotService.startWriting();
+            return;
+        }
+
+        // book-updates is consumed from the latest offset, so the load must not miss anything committed before
+        ReadYourWrites.onPrimary(this::loadFromDatabase);
+    }
+
+    private void loadFromDatabase() {
+        long started = System.currentTimeMillis();
+        int loaded = 0;
+        String lastId = "";
+        try {
+            while (true) {
+                List<String> ids = bookRepository.findIdsAfter(lastId, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                for (Book book : bookRepository.findAllWithCollectionsByIdIn(ids)) {
+                    bookIndexes.forEach(bookIndex -> bookIndex.index(book));
+                }
+                loaded += ids.size();
+                lastId = ids.get(ids.size() - 1);
+            }
+            bookIndexes.forEach(BookIndex::markReady);
+            logger.info("Indexed {} books into {} indexes in {} ms",
+                loaded, bookIndexes.size(), System.currentTimeMillis() - started);
+            catalogSnapshotService.startWriting();
+        } catch (Exception e) {
+            logger.error("Failed to build book indexes after {} books, searches will use the database", loaded, e);
+        }
+    }
+}
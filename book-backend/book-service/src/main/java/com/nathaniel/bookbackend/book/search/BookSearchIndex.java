@@ -0,0 +1,407 @@
+package com.nathaniel.bookbackend.book.search;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over title, author, genres, tags and description with BM25 ranking.
+ * Fields are folded into a single weighted term frequency per book (a simplified BM25F).
+ * All query terms must match; the last term is treated as a prefix while the user is still typing.
+ */
+@Component
+public class BookSearchIndex implements BookIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float AUTHOR_WEIGHT = 2.0f;
+    private static final float KEYWORD_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final int MAX_QUERY_TERMS = 16;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final Comparator<ScoredDoc> WORST_FIRST = Comparator
+        .comparingDouble(ScoredDoc::score)
+        .thenComparing(Comparator.comparingInt(ScoredDoc::ordinal).reversed());
+
+    @Value("${book.search.max-prefix-expansions:64}")
+    private int maxPrefixExpansions;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final OrdinalMap ordinals = new OrdinalMap();
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private float[] docLengths = new float[1024];
+    private long[] docVersions = new long[1024];
+    private String[][] docTerms = new String[1024][];
+    // Where each of a book's terms sits in that term's postings, so removal does not scan them
+    private int[][] docSlots = new int[1024][];
+    private long[] docTextHashes = new long[1024];
+    private double totalLength;
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        Map<String, Float> frequencies = termFrequencies(book);
+        long textHash = textHash(book);
+        long version = book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : 0L;
+
+        lock.writeLock().lock();
+        try {
+            int existing = ordinals.get(book.getId());
+            if (existing >= 0) {
+                if (docVersions[existing] > version) {
+                    // A newer copy was indexed while this one was in flight
+                    return;
+                }
+                if (docTextHashes[existing] == textHash) {
+                    // Rating, stock and other changes leave the indexed text alone
+                    docVersions[existing] = version;
+                    return;
+                }
+                removeOrdinal(existing);
+                ordinals.release(book.getId());
+            }
+
+            int ordinal = ordinals.getOrAssign(book.getId());
+            ensureCapacity(ordinal + 1);
+
+            String[] terms = new String[frequencies.size()];
+            int[] slots = new int[terms.length];
+            float length = 0f;
+            int i = 0;
+            for (Map.Entry<String, Float> entry : frequencies.entrySet()) {
+                Postings termPostings = postings.computeIfAbsent(entry.getKey(), term -> new Postings());
+                slots[i] = termPostings.add(ordinal, i, entry.getValue());
+                terms[i++] = entry.getKey();
+                length += entry.getValue();
+            }
+            docTerms[ordinal] = terms;
+            docSlots[ordinal] = slots;
+            docLengths[ordinal] = length;
+            docVersions[ordinal] = version;
+            docTextHashes[ordinal] = textHash;
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.get(bookId);
+            if (ordinal >= 0) {
+                removeOrdinal(ordinal);
+                ordinals.release(bookId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public SearchHits search(String query, int offset, int limit) {
+        List<String> clauses = new ArrayList<>();
+        boolean lastIsPrefix = queryClauses(query, clauses);
+        if (clauses.isEmpty() || limit <= 0) {
+            return SearchHits.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            int docCount = ordinals.size();
+            if (docCount == 0) {
+                return SearchHits.empty();
+            }
+            float averageLength = (float) (totalLength / docCount);
+
+            Map<Integer, Accumulator> accumulators = new HashMap<>();
+            for (int c = 0; c < clauses.size(); c++) {
+                String clause = clauses.get(c);
+                boolean prefix = lastIsPrefix && c == clauses.size() - 1;
+                Map<String, Postings> matches = prefix ? prefixMatches(clause) : exactMatch(clause);
+                if (matches.isEmpty()) {
+                    return SearchHits.empty();
+                }
+                int bit = 1 << c;
+                for (Postings termPostings : matches.values()) {
+                    float idf = (float) Math.log(1.0 + (docCount - termPostings.size + 0.5) / (termPostings.size + 0.5));
+                    for (int i = 0; i < termPostings.size; i++) {
+                        int doc = termPostings.docs[i];
+                        float tf = termPostings.frequencies[i];
+                        float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+                        Accumulator accumulator = accumulators.computeIfAbsent(doc, d -> new Accumulator());
+                        accumulator.score += idf * tf * (K1 + 1) / (tf + norm);
+                        accumulator.mask |= bit;
+                    }
+                }
+            }
+
+            int required = (1 << clauses.size()) - 1;
+            int wanted = offset + limit;
+            PriorityQueue<ScoredDoc> top = new PriorityQueue<>(Math.min(wanted, 1024) + 1, WORST_FIRST);
+            long total = 0;
+            for (Map.Entry<Integer, Accumulator> entry : accumulators.entrySet()) {
+                Accumulator accumulator = entry.getValue();
+                if (accumulator.mask != required) {
+                    continue;
+                }
+                total++;
+                ScoredDoc candidate = new ScoredDoc(entry.getKey(), accumulator.score);
+                if (top.size() < wanted) {
+                    top.add(candidate);
+                } else if (WORST_FIRST.compare(candidate, top.peek()) > 0) {
+                    top.poll();
+                    top.add(candidate);
+                }
+            }
+
+            List<ScoredDoc> ranked = new ArrayList<>(top);
+            ranked.sort(WORST_FIRST.reversed());
+            List<String> bookIds = new ArrayList<>(Math.max(0, Math.min(limit, ranked.size() - offset)));
+            for (int i = offset; i < ranked.size(); i++) {
+                bookIds.add(ordinals.idOf(ranked.get(i).ordinal()));
+            }
+            return new SearchHits(bookIds, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the book is indexed with the same title, author, description, genres and tags.
+     */
+    public boolean hasText(Book book) {
+        long textHash = textHash(book);
+        lock.readLock().lock();
+        try {
+            int ordinal = ordinals.get(book.getId());
+            return ordinal >= 0 && docTextHashes[ordinal] == textHash;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean queryClauses(String query, List<String> clauses) {
+        List<String> tokens = TextAnalyzer.tokenize(query);
+        if (tokens.isEmpty()) {
+            return false;
+        }
+        boolean lastIsPrefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+        String prefix = lastIsPrefix ? tokens.remove(tokens.size() - 1) : null;
+
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : tokens) {
+            if (!TextAnalyzer.isStopWord(token)) {
+                terms.add(token);
+            }
+        }
+        if (terms.isEmpty() && prefix == null) {
+            // Queries made only of stop words ("It", "The The") still have to match something
+            terms.addAll(tokens);
+        }
+        if (prefix != null) {
+            terms.remove(prefix);
+        }
+
+        for (String term : terms) {
+            if (clauses.size() == MAX_QUERY_TERMS - 1) {
+                break;
+            }
+            clauses.add(term);
+        }
+        if (prefix != null) {
+            clauses.add(prefix);
+        }
+        return lastIsPrefix;
+    }
+
+    private Map<String, Postings> exactMatch(String term) {
+        Postings termPostings = postings.get(term);
+        return termPostings != null ? Map.of(term, termPostings) : Map.of();
+    }
+
+    private Map<String, Postings> prefixMatches(String prefix) {
+        Map<String, Postings> matches = new HashMap<>();
+        Postings exact = postings.get(prefix);
+        if (exact != null) {
+            matches.put(prefix, exact);
+        }
+        for (Map.Entry<String, Postings> entry : postings.subMap(prefix, false, prefix + Character.MAX_VALUE, false).entrySet()) {
+            if (matches.size() >= maxPrefixExpansions) {
+                break;
+            }
+            matches.put(entry.getKey(), entry.getValue());
+        }
+        return matches;
+    }
+
+    private void removeOrdinal(int ordinal) {
+        String[] terms = docTerms[ordinal];
+        int[] slots = docSlots[ordinal];
+        if (terms != null) {
+            for (int i = 0; i < terms.length; i++) {
+                Postings termPostings = postings.get(terms[i]);
+                if (termPostings != null) {
+                    termPostings.removeAt(slots[i], docSlots);
+                    if (termPostings.size == 0) {
+                        postings.remove(terms[i]);
+                    }
+                }
+            }
+        }
+        totalLength -= docLengths[ordinal];
+        docTerms[ordinal] = null;
+        docSlots[ordinal] = null;
+        docLengths[ordinal] = 0f;
+        docVersions[ordinal] = 0L;
+        docTextHashes[ordinal] = 0L;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docLengths.length) {
+            int newLength = Math.max(capacity, docLengths.length * 2);
+            docLengths = Arrays.copyOf(docLengths, newLength);
+            docVersions = Arrays.copyOf(docVersions, newLength);
+            docTerms = Arrays.copyOf(docTerms, newLength);
+            docSlots = Arrays.copyOf(docSlots, newLength);
+            docTextHashes = Arrays.copyOf(docTextHashes, newLength);
+        }
+    }
+
+    private static Map<String, Float> termFrequencies(Book book) {
+        Map<String, Float> frequencies = new HashMap<>();
+        addField(frequencies, book.getTitle(), TITLE_WEIGHT, false);
+        addField(frequencies, book.getAuthor(), AUTHOR_WEIGHT, false);
+        if (book.getGenres() != null) {
+            book.getGenres().forEach(genre -> addField(frequencies, genre, KEYWORD_WEIGHT, false));
+        }
+        if (book.getTags() != null) {
+            book.getTags().forEach(tag -> addField(frequencies, tag, KEYWORD_WEIGHT, false));
+        }
+        addField(frequencies, book.getDescription(), DESCRIPTION_WEIGHT, true);
+        return frequencies;
+    }
+
+    /**
+     * 64-bit FNV-1a over exactly the fields {@link #termFrequencies} reads. Genres and tags are summed,
+     * since their order does not change what is indexed.
+     */
+    private static long textHash(Book book) {
+        long hash = fieldHash(FNV_OFFSET, book.getTitle());
+        hash = fieldHash(hash, book.getAuthor());
+        hash = fieldHash(hash, book.getDescription());
+        hash = (hash ^ keywordsHash(book.getGenres())) * FNV_PRIME;
+        return (hash ^ keywordsHash(book.getTags())) * FNV_PRIME;
+    }
+
+    private static long keywordsHash(Collection<String> keywords) {
+        long sum = 0L;
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                sum += fieldHash(FNV_OFFSET, keyword);
+            }
+        }
+        return sum;
+    }
+
+    private static long fieldHash(long hash, String text) {
+        if (text != null) {
+            for (int i = 0; i < text.length(); i++) {
+                hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Field separator, so text cannot move from one field to the next unnoticed
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+
+    private static void addField(Map<String, Float> frequencies, String text, float weight, boolean skipStopWords) {
+        for (String token : TextAnalyzer.tokenize(text)) {
+            if (skipStopWords && TextAnalyzer.isStopWord(token)) {
+                continue;
+            }
+            frequencies.merge(token, weight, Float::sum);
+        }
+    }
+
+    private record ScoredDoc(int ordinal, float score) {}
+
+    private static final class Accumulator {
+        private float score;
+        private int mask;
+    }
+
+    private static final class Postings {
+        private int[] docs = new int[4];
+        // Index of this term in the doc's docTerms, to find the doc's slot for it when an entry moves
+        private int[] termIndexes = new int[4];
+        private float[] frequencies = new float[4];
+        private int size;
+
+        /**
+         * @return the slot the entry was stored in
+         */
+        int add(int doc, int termIndex, float frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                termIndexes = Arrays.copyOf(termIndexes, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            termIndexes[size] = termIndex;
+            frequencies[size] = frequency;
+            return size++;
+        }
+
+        /**
+         * Removes the entry in {@code slot} in constant time by moving the last entry into it,
+         * and points the moved doc's slot at its new place.
+         */
+        void removeAt(int slot, int[][] docSlots) {
+            size--;
+            if (slot < size) {
+                docs[slot] = docs[size];
+                termIndexes[slot] = termIndexes[size];
+                frequencies[slot] = frequencies[size];
+                docSlots[docs[slot]][termIndexes[slot]] = slot;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.nathaniel.bookbackend.book.search;
+
+public class BookSuggestion {
+
+    public enum Type {
+        TITLE,
+        AUTHOR
+    }
+
+    private final Type type;
+    private final String text;
+    private final String bookId;
+    private final int ratingsCount;
+    private final double averageRating;
+
+    public BookSuggestion(Type type, String text, String bookId, int ratingsCount, double averageRating) {
+        this.type = type;
+        this.text = text;
+        this.bookId = bookId;
+        this.ratingsCount = ratingsCount;
+        this.averageRating = averageRating;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * The best-ranked book carrying this title or author.
+     */
+    public String getBookId() {
+        return bookId;
+    }
+
+    public int getRatingsCount() {
+        return ratingsCount;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+}
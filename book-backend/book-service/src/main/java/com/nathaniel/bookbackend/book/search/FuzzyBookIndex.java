@@ -0,0 +1,369 @@
+package com.nathaniel.bookbackend.book.search;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typo-tolerant matching over title and author words.
+ * Query words are matched against the word vocabulary through a trigram posting index: candidates
+ * must share enough trigrams to be within the edit budget, and survivors are verified with a bounded
+ * Damerau-Levenshtein distance. Every query word has to match some word of the book.
+ */
+@Component
+public class FuzzyBookIndex implements BookIndex {
+
+    private static final int MAX_QUERY_TOKENS = 8;
+
+    private static final Comparator<ScoredDoc> WORST_FIRST = Comparator
+        .comparingDouble(ScoredDoc::score)
+        .thenComparing(Comparator.comparingInt(ScoredDoc::ordinal).reversed());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final OrdinalMap docOrdinals = new OrdinalMap();
+    private final OrdinalMap termOrdinals = new OrdinalMap();
+    private final Map<String, IntList> trigramTerms = new HashMap<>();
+    private IntList[] termDocs = new IntList[1024];
+    // Slots of a term in its trigrams' postings and of a doc in its terms' postings, in trigram and term order
+    private int[][] termSlots = new int[1024][];
+    private int[][] docTerms = new int[1024][];
+    private int[][] docSlots = new int[1024][];
+    private long[] docVersions = new long[1024];
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        Set<String> words = new LinkedHashSet<>(TextAnalyzer.tokenize(book.getTitle()));
+        words.addAll(TextAnalyzer.tokenize(book.getAuthor()));
+        long version = book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : 0L;
+
+        lock.writeLock().lock();
+        try {
+            int existing = docOrdinals.get(book.getId());
+            if (existing >= 0) {
+                if (docVersions[existing] > version) {
+                    return;
+                }
+                if (hasTerms(docTerms[existing], words)) {
+                    docVersions[existing] = version;
+                    return;
+                }
+                removeDoc(existing, book.getId());
+            }
+
+            int doc = docOrdinals.getOrAssign(book.getId());
+            ensureDocCapacity(doc + 1);
+            int[] terms = new int[words.size()];
+            int[] slots = new int[terms.length];
+            int i = 0;
+            for (String word : words) {
+                int term = termOrdinals.get(word);
+                if (term < 0) {
+                    term = addTerm(word);
+                }
+                slots[i] = termDocs[term].add(doc, i);
+                terms[i++] = term;
+            }
+            docTerms[doc] = terms;
+            docSlots[doc] = slots;
+            docVersions[doc] = version;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            int doc = docOrdinals.get(bookId);
+            if (doc >= 0) {
+                removeDoc(doc, bookId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public SearchHits search(String query, int offset, int limit) {
+        List<String> tokens = queryTokens(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return SearchHits.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Accumulator> accumulators = new HashMap<>();
+            for (int c = 0; c < tokens.size(); c++) {
+                String token = tokens.get(c);
+                Map<Integer, Integer> matches = matchingTerms(token);
+                if (matches.isEmpty()) {
+                    return SearchHits.empty();
+                }
+
+                // A book counts the closest of its words for each query word
+                Map<Integer, Float> bestPerDoc = new HashMap<>();
+                for (Map.Entry<Integer, Integer> match : matches.entrySet()) {
+                    float similarity = 1f - (float) match.getValue() / (token.length() + 1);
+                    IntList docs = termDocs[match.getKey()];
+                    for (int i = 0; i < docs.size(); i++) {
+                        bestPerDoc.merge(docs.get(i), similarity, Math::max);
+                    }
+                }
+
+                int bit = 1 << c;
+                for (Map.Entry<Integer, Float> entry : bestPerDoc.entrySet()) {
+                    Accumulator accumulator = accumulators.computeIfAbsent(entry.getKey(), doc -> new Accumulator());
+                    accumulator.score += entry.getValue();
+                    accumulator.mask |= bit;
+                }
+            }
+
+            int required = (1 << tokens.size()) - 1;
+            int wanted = offset + limit;
+            PriorityQueue<ScoredDoc> top = new PriorityQueue<>(Math.min(wanted, 1024) + 1, WORST_FIRST);
+            long total = 0;
+            for (Map.Entry<Integer, Accumulator> entry : accumulators.entrySet()) {
+                Accumulator accumulator = entry.getValue();
+                if (accumulator.mask != required) {
+                    continue;
+                }
+                total++;
+                ScoredDoc candidate = new ScoredDoc(entry.getKey(), accumulator.score);
+                if (top.size() < wanted) {
+                    top.add(candidate);
+                } else if (WORST_FIRST.compare(candidate, top.peek()) > 0) {
+                    top.poll();
+                    top.add(candidate);
+                }
+            }
+
+            List<ScoredDoc> ranked = new ArrayList<>(top);
+            ranked.sort(WORST_FIRST.reversed());
+            List<String> bookIds = new ArrayList<>();
+            for (int i = offset; i < ranked.size(); i++) {
+                bookIds.add(docOrdinals.idOf(ranked.get(i).ordinal()));
+            }
+            return new SearchHits(bookIds, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Integer, Integer> matchingTerms(String token) {
+        Map<Integer, Integer> matches = new HashMap<>();
+        int exact = termOrdinals.get(token);
+        if (exact >= 0) {
+            matches.put(exact, 0);
+        }
+        int maxEdits = maxEdits(token.length());
+        if (maxEdits == 0) {
+            return matches;
+        }
+
+        // An edit touches at most three trigrams (four for a transposition), which bounds how many a match must share
+        Set<String> queryTrigrams = trigrams(token);
+        int minShared = Math.max(1, queryTrigrams.size() - 4 * maxEdits);
+        Map<Integer, Integer> sharedCounts = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            IntList terms = trigramTerms.get(trigram);
+            if (terms == null) {
+                continue;
+            }
+            for (int i = 0; i < terms.size(); i++) {
+                sharedCounts.merge(terms.get(i), 1, Integer::sum);
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> candidate : sharedCounts.entrySet()) {
+            if (candidate.getValue() < minShared || candidate.getKey() == exact) {
+                continue;
+            }
+            String word = termOrdinals.idOf(candidate.getKey());
+            int distance = boundedDistance(token, word, maxEdits);
+            if (distance <= maxEdits) {
+                matches.put(candidate.getKey(), distance);
+            }
+        }
+        return matches;
+    }
+
+    private boolean hasTerms(int[] terms, Set<String> words) {
+        if (terms == null || terms.length != words.size()) {
+            return false;
+        }
+        int i = 0;
+        for (String word : words) {
+            if (termOrdinals.get(word) != terms[i++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int addTerm(String word) {
+        int term = termOrdinals.getOrAssign(word);
+        ensureTermCapacity(term + 1);
+        termDocs[term] = new IntList();
+        Set<String> wordTrigrams = trigrams(word);
+        int[] slots = new int[wordTrigrams.size()];
+        int i = 0;
+        for (String trigram : wordTrigrams) {
+            slots[i] = trigramTerms.computeIfAbsent(trigram, key -> new IntList()).add(term, i);
+            i++;
+        }
+        termSlots[term] = slots;
+        return term;
+    }
+
+    private void removeDoc(int doc, String bookId) {
+        int[] terms = docTerms[doc];
+        int[] slots = docSlots[doc];
+        if (terms != null) {
+            for (int i = 0; i < terms.length; i++) {
+                IntList docs = termDocs[terms[i]];
+                docs.removeAt(slots[i], docSlots);
+                if (docs.isEmpty()) {
+                    removeTerm(terms[i]);
+                }
+            }
+        }
+        docTerms[doc] = null;
+        docSlots[doc] = null;
+        docVersions[doc] = 0L;
+        docOrdinals.release(bookId);
+    }
+
+    private void removeTerm(int term) {
+        String word = termOrdinals.idOf(term);
+        int[] slots = termSlots[term];
+        int i = 0;
+        for (String trigram : trigrams(word)) {
+            IntList trigramPostings = trigramTerms.get(trigram);
+            trigramPostings.removeAt(slots[i++], termSlots);
+            if (trigramPostings.isEmpty()) {
+                trigramTerms.remove(trigram);
+            }
+        }
+        termDocs[term] = null;
+        termSlots[term] = null;
+        termOrdinals.release(word);
+    }
+
+    private void ensureDocCapacity(int capacity) {
+        if (capacity > docTerms.length) {
+            int newLength = Math.max(capacity, docTerms.length * 2);
+            docTerms = Arrays.copyOf(docTerms, newLength);
+            docSlots = Arrays.copyOf(docSlots, newLength);
+            docVersions = Arrays.copyOf(docVersions, newLength);
+        }
+    }
+
+    private void ensureTermCapacity(int capacity) {
+        if (capacity > termDocs.length) {
+            int newLength = Math.max(capacity, termDocs.length * 2);
+            termDocs = Arrays.copyOf(termDocs, newLength);
+            termSlots = Arrays.copyOf(termSlots, newLength);
+        }
+    }
+
+    private static List<String> queryTokens(String query) {
+        List<String> tokens = TextAnalyzer.tokenize(query);
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String token : tokens) {
+            if (!TextAnalyzer.isStopWord(token)) {
+                distinct.add(token);
+            }
+        }
+        if (distinct.isEmpty()) {
+            distinct.addAll(tokens);
+        }
+        List<String> limited = new ArrayList<>(distinct);
+        return limited.size() > MAX_QUERY_TOKENS ? limited.subList(0, MAX_QUERY_TOKENS) : limited;
+    }
+
+    static int maxEdits(int length) {
+        if (length <= 2) {
+            return 0;
+        }
+        return length <= 5 ? 1 : 2;
+    }
+
+    static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent transpositions),
+     * abandoned as soon as every cell of a row exceeds {@code max}.
+     */
+    static int boundedDistance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        int[] beforePrevious = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, beforePrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+
+    private record ScoredDoc(int ordinal, float score) {}
+
+    private static final class Accumulator {
+        private float score;
+        private int mask;
+    }
+}
@@ -0,0 +1,20 @@
+package com.nathaniel.bookbackend.book.search;
+
+public class GenreCount {
+
+    private final String genre;
+    private final long count;
+
+    public GenreCount(String genre, long count) {
+        this.genre = genre;
+        this.count = count;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
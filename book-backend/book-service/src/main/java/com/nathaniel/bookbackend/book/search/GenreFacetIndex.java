@@ -0,0 +1,182 @@
+package com.nathaniel.bookbackend.book.search;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Genre facets as compressed bitmaps of book ordinals. Counts are bitmap cardinalities and
+ * multi-genre filters are bitmap intersections or unions, so neither touches book_genres.
+ * Matches come back in ordinal order, which is stable between writes.
+ */
+@Component
+public class GenreFacetIndex implements BookIndex {
+
+    private static final Comparator<GenreCount> MOST_BOOKS_FIRST = Comparator
+        .comparingLong(GenreCount::getCount).reversed()
+        .thenComparing(GenreCount::getGenre);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final OrdinalMap ordinals = new OrdinalMap();
+    private final Map<String, RoaringBitmap> booksByGenre = new HashMap<>();
+    private String[][] docGenres = new String[1024][];
+    private long[] docVersions = new long[1024];
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        Set<String> genres = new LinkedHashSet<>();
+        if (book.getGenres() != null) {
+            for (String genre : book.getGenres()) {
+                if (genre != null && !genre.isBlank()) {
+                    genres.add(genre);
+                }
+            }
+        }
+        long version = book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : 0L;
+
+        lock.writeLock().lock();
+        try {
+            int existing = ordinals.get(book.getId());
+            if (existing >= 0) {
+                if (docVersions[existing] > version) {
+                    return;
+                }
+                removeOrdinal(existing);
+                ordinals.release(book.getId());
+            }
+
+            int ordinal = ordinals.getOrAssign(book.getId());
+            ensureCapacity(ordinal + 1);
+            for (String genre : genres) {
+                booksByGenre.computeIfAbsent(genre, key -> new RoaringBitmap()).add(ordinal);
+            }
+            docGenres[ordinal] = genres.toArray(new String[0]);
+            docVersions[ordinal] = version;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.get(bookId);
+            if (ordinal >= 0) {
+                removeOrdinal(ordinal);
+                ordinals.release(bookId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<GenreCount> genreCounts() {
+        List<GenreCount> counts = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            booksByGenre.forEach((genre, books) -> counts.add(new GenreCount(genre, books.getLongCardinality())));
+        } finally {
+            lock.readLock().unlock();
+        }
+        counts.sort(MOST_BOOKS_FIRST);
+        return counts;
+    }
+
+    public SearchHits find(Collection<String> genres, GenreMatch match, int offset, int limit) {
+        if (genres.isEmpty() || limit <= 0) {
+            return SearchHits.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = new ArrayList<>(genres.size());
+            for (String genre : genres) {
+                RoaringBitmap books = booksByGenre.get(genre);
+                if (books != null) {
+                    bitmaps.add(books);
+                } else if (match == GenreMatch.ALL) {
+                    return SearchHits.empty();
+                }
+            }
+            if (bitmaps.isEmpty()) {
+                return SearchHits.empty();
+            }
+
+            RoaringBitmap matches;
+            if (bitmaps.size() == 1) {
+                matches = bitmaps.get(0);
+            } else if (match == GenreMatch.ALL) {
+                matches = FastAggregation.and(bitmaps.iterator());
+            } else {
+                matches = FastAggregation.or(bitmaps.iterator());
+            }
+
+            long total = matches.getLongCardinality();
+            if (offset >= total) {
+                return new SearchHits(List.of(), total);
+            }
+            List<String> bookIds = new ArrayList<>((int) Math.min(limit, total - offset));
+            PeekableIntIterator iterator = matches.getIntIterator();
+            iterator.advanceIfNeeded(matches.select(offset));
+            while (iterator.hasNext() && bookIds.size() < limit) {
+                bookIds.add(ordinals.idOf(iterator.next()));
+            }
+            return new SearchHits(bookIds, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeOrdinal(int ordinal) {
+        String[] genres = docGenres[ordinal];
+        if (genres != null) {
+            for (String genre : genres) {
+                RoaringBitmap books = booksByGenre.get(genre);
+                if (books != null) {
+                    books.remove(ordinal);
+                    if (books.isEmpty()) {
+                        booksByGenre.remove(genre);
+                    }
+                }
+            }
+        }
+        docGenres[ordinal] = null;
+        docVersions[ordinal] = 0L;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docGenres.length) {
+            int newLength = Math.max(capacity, docGenres.length * 2);
+            docGenres = Arrays.copyOf(docGenres, newLength);
+            docVersions = Arrays.copyOf(docVersions, newLength);
+        }
+    }
+}
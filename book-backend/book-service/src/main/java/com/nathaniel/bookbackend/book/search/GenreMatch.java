@@ -0,0 +1,15 @@
+package com.nathaniel.bookbackend.book.search;
+
+import java.util.Locale;
+
+public enum GenreMatch {
+    ALL,
+    ANY;
+
+    public static GenreMatch from(String value) {
+        if (value == null || value.isBlank()) {
+            return ALL;
+        }
+        return GenreMatch.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
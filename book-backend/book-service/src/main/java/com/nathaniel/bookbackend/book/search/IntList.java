@@ -0,0 +1,49 @@
+package com.nathaniel.bookbackend.book.search;
+
+import java.util.Arrays;
+
+/**
+ * Unordered growable list of ints used for posting lists.
+ * Every value records where its owner keeps the value's slot ({@code slots[value][ref]}),
+ * so a value is removed in constant time and the value moved into its place stays findable.
+ */
+class IntList {
+
+    private int[] values = new int[4];
+    private int[] refs = new int[4];
+    private int size;
+
+    /**
+     * @return the slot the value was stored in
+     */
+    int add(int value, int ref) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            refs = Arrays.copyOf(refs, size * 2);
+        }
+        values[size] = value;
+        refs[size] = ref;
+        return size++;
+    }
+
+    void removeAt(int slot, int[][] slots) {
+        size--;
+        if (slot < size) {
+            values[slot] = values[size];
+            refs[slot] = refs[size];
+            slots[values[slot]][refs[slot]] = slot;
+        }
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.nathaniel.bookbackend.book.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense int ordinals to book ids so indexes can use primitive arrays.
+ * Released ordinals are reused. Not thread-safe; callers guard it with their own lock.
+ */
+class OrdinalMap {
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private int[] free = new int[16];
+    private int freeCount;
+
+    int get(String id) {
+        Integer ordinal = ordinals.get(id);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    int getOrAssign(String id) {
+        Integer existing = ordinals.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal;
+        if (freeCount > 0) {
+            ordinal = free[--freeCount];
+            ids.set(ordinal, id);
+        } else {
+            ordinal = ids.size();
+            ids.add(id);
+        }
+        ordinals.put(id, ordinal);
+        return ordinal;
+    }
+
+    int release(String id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return -1;
+        }
+        ids.set(ordinal, null);
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = ordinal;
+        return ordinal;
+    }
+
+    String idOf(int ordinal) {
+        return ordinal >= 0 && ordinal < ids.size() ? ids.get(ordinal) : null;
+    }
+
+    int size() {
+        return ordinals.size();
+    }
+
+    int capacity() {
+        return ids.size();
+    }
+
+    void clear() {
+        ordinals.clear();
+        ids.clear();
+        freeCount = 0;
+    }
+}
@@ -0,0 +1,28 @@
+package com.nathaniel.bookbackend.book.search;
+
+import java.util.List;
+
+public class SearchHits {
+
+    private static final SearchHits EMPTY = new SearchHits(List.of(), 0);
+
+    private final List<String> bookIds;
+    private final long totalHits;
+
+    public SearchHits(List<String> bookIds, long totalHits) {
+        this.bookIds = bookIds;
+        this.totalHits = totalHits;
+    }
+
+    public static SearchHits empty() {
+        return EMPTY;
+    }
+
+    public List<String> getBookIds() {
+        return bookIds;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+}
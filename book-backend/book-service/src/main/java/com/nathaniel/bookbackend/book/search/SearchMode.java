@@ -0,0 +1,15 @@
+package com.nathaniel.bookbackend.book.search;
+
+import java.util.Locale;
+
+public enum SearchMode {
+    STANDARD,
+    FUZZY;
+
+    public static SearchMode from(String value) {
+        if (value == null || value.isBlank()) {
+            return STANDARD;
+        }
+        return SearchMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
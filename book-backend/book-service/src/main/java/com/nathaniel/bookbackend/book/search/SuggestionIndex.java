@@ -0,0 +1,338 @@
+package com.nathaniel.bookbackend.book.search;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix trie over normalized titles and authors for type-ahead suggestions.
+ * Every node keeps the best suggestions of its subtree (by ratings count, then average rating),
+ * so a lookup is a walk down the prefix followed by a copy of that node's list. Writes recompute
+ * the lists along the changed path only.
+ */
+@Component
+public class SuggestionIndex implements BookIndex {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final BookSuggestion[] NO_SUGGESTIONS = new BookSuggestion[0];
+
+    static final Comparator<BookSuggestion> BEST_FIRST = Comparator
+        .comparingInt(BookSuggestion::getRatingsCount).reversed()
+        .thenComparing(Comparator.comparingDouble(BookSuggestion::getAverageRating).reversed())
+        .thenComparing(BookSuggestion::getText)
+        .thenComparing(BookSuggestion::getBookId);
+
+    @Value("${book.search.suggest-top-k:10}")
+    private int topK;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private final Map<String, Entry> entries = new HashMap<>();
+    private volatile boolean ready;
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        long version = book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : 0L;
+        int ratingsCount = book.getRatingsCount() != null ? book.getRatingsCount() : 0;
+        double averageRating = book.getAverageRating() != null ? book.getAverageRating() : 0.0;
+        Entry entry = new Entry(key(book.getTitle()), key(book.getAuthor()), version);
+
+        lock.writeLock().lock();
+        try {
+            Entry existing = entries.get(book.getId());
+            if (existing != null) {
+                if (existing.version() > version) {
+                    return;
+                }
+                removeEntry(book.getId(), existing);
+            }
+            if (!entry.titleKey().isEmpty()) {
+                insert(entry.titleKey(), new BookSuggestion(BookSuggestion.Type.TITLE,
+                    book.getTitle().strip(), book.getId(), ratingsCount, averageRating));
+            }
+            if (!entry.authorKey().isEmpty()) {
+                insert(entry.authorKey(), new BookSuggestion(BookSuggestion.Type.AUTHOR,
+                    book.getAuthor().strip(), book.getId(), ratingsCount, averageRating));
+            }
+            entries.put(book.getId(), entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            Entry existing = entries.remove(bookId);
+            if (existing != null) {
+                removeEntry(bookId, existing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        String key = key(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int position = 0;
+            while (position < key.length()) {
+                Node child = node.child(key.charAt(position));
+                if (child == null) {
+                    return List.of();
+                }
+                int common = commonPrefixLength(child.label, key, position);
+                if (position + common == key.length()) {
+                    // The prefix ends on or inside this edge, so the whole subtree matches
+                    node = child;
+                    break;
+                }
+                if (common < child.label.length()) {
+                    return List.of();
+                }
+                position += common;
+                node = child;
+            }
+            BookSuggestion[] top = node.top;
+            return List.of(Arrays.copyOf(top, Math.min(limit, top.length)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Same folding as the search indexes, with punctuation collapsed to single spaces
+     * so that "J.R.R. Tolk" and "j r r tolk" reach the same node.
+     */
+    static String key(String text) {
+        return String.join(" ", TextAnalyzer.tokenize(text));
+    }
+
+    private void insert(String key, BookSuggestion suggestion) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int position = 0;
+        while (position < key.length()) {
+            Node child = node.child(key.charAt(position));
+            if (child == null) {
+                child = new Node(key.substring(position));
+                node.addChild(child);
+                node = child;
+                path.add(node);
+                break;
+            }
+            int common = commonPrefixLength(child.label, key, position);
+            if (common < child.label.length()) {
+                // Split the edge so the new key can branch off (or end) in the middle of it
+                Node middle = new Node(child.label.substring(0, common));
+                node.replaceChild(middle);
+                child.label = child.label.substring(common);
+                middle.children = new Node[] {child};
+                middle.top = child.top;
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            position += common;
+        }
+        node.suggestions = append(node.suggestions, suggestion);
+        recompute(path);
+    }
+
+    private void removeEntry(String bookId, Entry entry) {
+        if (!entry.titleKey().isEmpty()) {
+            delete(entry.titleKey(), bookId, BookSuggestion.Type.TITLE);
+        }
+        if (!entry.authorKey().isEmpty()) {
+            delete(entry.authorKey(), bookId, BookSuggestion.Type.AUTHOR);
+        }
+    }
+
+    private void delete(String key, String bookId, BookSuggestion.Type type) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int position = 0;
+        while (position < key.length()) {
+            node = node.child(key.charAt(position));
+            if (node == null || !key.startsWith(node.label, position)) {
+                return;
+            }
+            path.add(node);
+            position += node.label.length();
+        }
+        node.suggestions = without(node.suggestions, bookId, type);
+
+        // Drop empty leaves and fold pass-through nodes back into their only child
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node current = path.get(i);
+            Node parent = path.get(i - 1);
+            if (current.suggestions != null) {
+                break;
+            }
+            if (current.children.length == 0) {
+                parent.removeChild(current);
+            } else if (current.children.length == 1) {
+                Node only = current.children[0];
+                only.label = current.label + only.label;
+                parent.replaceChild(only);
+            } else {
+                break;
+            }
+        }
+        recompute(path);
+    }
+
+    private void recompute(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            recomputeTop(path.get(i));
+        }
+    }
+
+    private void recomputeTop(Node node) {
+        List<BookSuggestion> candidates = new ArrayList<>();
+        if (node.suggestions != null) {
+            // Books sharing a title or author collapse into one suggestion per type
+            BookSuggestion bestTitle = null;
+            BookSuggestion bestAuthor = null;
+            for (BookSuggestion suggestion : node.suggestions) {
+                if (suggestion.getType() == BookSuggestion.Type.TITLE) {
+                    bestTitle = better(bestTitle, suggestion);
+                } else {
+                    bestAuthor = better(bestAuthor, suggestion);
+                }
+            }
+            if (bestTitle != null) {
+                candidates.add(bestTitle);
+            }
+            if (bestAuthor != null) {
+                candidates.add(bestAuthor);
+            }
+        }
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        candidates.sort(BEST_FIRST);
+        node.top = candidates.isEmpty()
+            ? NO_SUGGESTIONS
+            : candidates.subList(0, Math.min(topK, candidates.size())).toArray(NO_SUGGESTIONS);
+    }
+
+    private static BookSuggestion better(BookSuggestion current, BookSuggestion candidate) {
+        return current == null || BEST_FIRST.compare(candidate, current) < 0 ? candidate : current;
+    }
+
+    private static BookSuggestion[] append(BookSuggestion[] suggestions, BookSuggestion suggestion) {
+        if (suggestions == null) {
+            return new BookSuggestion[] {suggestion};
+        }
+        BookSuggestion[] grown = Arrays.copyOf(suggestions, suggestions.length + 1);
+        grown[suggestions.length] = suggestion;
+        return grown;
+    }
+
+    private static BookSuggestion[] without(BookSuggestion[] suggestions, String bookId, BookSuggestion.Type type) {
+        if (suggestions == null) {
+            return null;
+        }
+        BookSuggestion[] kept = Arrays.stream(suggestions)
+            .filter(suggestion -> suggestion.getType() != type || !suggestion.getBookId().equals(bookId))
+            .toArray(BookSuggestion[]::new);
+        return kept.length == 0 ? null : kept;
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private record Entry(String titleKey, String authorKey, long version) {}
+
+    private static final class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private BookSuggestion[] suggestions;
+        private BookSuggestion[] top = NO_SUGGESTIONS;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char first) {
+            int index = indexOf(first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        void addChild(Node child) {
+            int index = -(indexOf(child.label.charAt(0)) + 1);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, index);
+            grown[index] = child;
+            System.arraycopy(children, index, grown, index + 1, children.length - index);
+            children = grown;
+        }
+
+        void replaceChild(Node child) {
+            children[indexOf(child.label.charAt(0))] = child;
+        }
+
+        void removeChild(Node child) {
+            int index = indexOf(child.label.charAt(0));
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, index);
+            System.arraycopy(children, index + 1, shrunk, index, children.length - index - 1);
+            children = shrunk;
+        }
+
+        // Children are kept sorted by the first character of their label
+        private int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midFirst = children[mid].label.charAt(0);
+                if (midFirst < first) {
+                    low = mid + 1;
+                } else if (midFirst > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
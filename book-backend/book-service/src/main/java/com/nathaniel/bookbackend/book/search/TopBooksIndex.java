@@ -0,0 +1,348 @@
+package com.nathaniel.bookbackend.book.search;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded top-K lists per {@link TopRanking}, one set of lists for the whole catalog and one per
+ * genre and per language. Each list keeps K plus some slack entries, so a removal seldom leaves it
+ * short. A short list is refilled from the compact per-book scores held here, not from the database.
+ * The number of per-genre and per-language lists is capped by book.top.max-entries. Filters without
+ * a list of their own, and genre plus language together, walk the closest list or scan the scores
+ * with a heap of the requested size.
+ */
+@Component
+public class TopBooksIndex implements BookIndex {
+
+    private static final String ALL = "";
+    private static final String GENRE = "g:";
+    private static final String LANGUAGE = "l:";
+
+    @Value("${book.top.k:100}")
+    private int k;
+
+    @Value("${book.top.slack:50}")
+    private int slack;
+
+    @Value("${book.top.max-entries:1000000}")
+    private long maxEntries;
+
+    @Value("${book.top.min-ratings:5}")
+    private int minRatings;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final OrdinalMap ordinals = new OrdinalMap();
+    private final Map<String, String> interned = new HashMap<>();
+    private final Map<TopRanking, Comparator<Integer>> comparators = new EnumMap<>(TopRanking.class);
+    private final Map<String, Facet> facets = new HashMap<>();
+    private double[] averageRatings = new double[1024];
+    private int[] ratingsCounts = new int[1024];
+    private long[] createdAt = new long[1024];
+    private long[] versions = new long[1024];
+    private String[][] docGenres = new String[1024][];
+    private String[] languages = new String[1024];
+    private volatile boolean ready;
+
+    public TopBooksIndex() {
+        // Best first; the ordinal breaks ties so every book has a distinct position
+        comparators.put(TopRanking.BEST_RATED, (a, b) -> {
+            int order = Double.compare(averageRatings[b], averageRatings[a]);
+            order = order != 0 ? order : Integer.compare(ratingsCounts[b], ratingsCounts[a]);
+            return order != 0 ? order : Integer.compare(a, b);
+        });
+        comparators.put(TopRanking.MOST_RATED, (a, b) -> {
+            int order = Integer.compare(ratingsCounts[b], ratingsCounts[a]);
+            order = order != 0 ? order : Double.compare(averageRatings[b], averageRatings[a]);
+            return order != 0 ? order : Integer.compare(a, b);
+        });
+        comparators.put(TopRanking.RECENTLY_ADDED, (a, b) -> {
+            int order = Long.compare(createdAt[b], createdAt[a]);
+            return order != 0 ? order : Integer.compare(a, b);
+        });
+    }
+
+    @Override
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        long version = book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : 0L;
+
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.get(book.getId());
+            if (ordinal >= 0) {
+                if (versions[ordinal] > version) {
+                    return;
+                }
+                unrank(ordinal);
+            } else {
+                ordinal = ordinals.getOrAssign(book.getId());
+                ensureCapacity(ordinal + 1);
+            }
+
+            averageRatings[ordinal] = book.getAverageRating() != null ? book.getAverageRating() : -1;
+            ratingsCounts[ordinal] = book.getRatingsCount() != null ? book.getRatingsCount() : 0;
+            createdAt[ordinal] = book.getCreatedAt() != null ? book.getCreatedAt().toEpochMilli() : 0L;
+            versions[ordinal] = version;
+            docGenres[ordinal] = genres(book);
+            languages[ordinal] = book.getLanguage() != null && !book.getLanguage().isBlank()
+                ? intern(book.getLanguage()) : null;
+            rank(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.get(bookId);
+            if (ordinal >= 0) {
+                unrank(ordinal);
+                docGenres[ordinal] = null;
+                languages[ordinal] = null;
+                versions[ordinal] = 0L;
+                ordinals.release(bookId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Ids of up to {@code limit} (at most K) books in ranking order, optionally restricted to a
+     * genre and/or a language.
+     */
+    public List<String> top(TopRanking ranking, String genre, String language, int limit) {
+        int size = Math.min(limit, k);
+        if (size <= 0) {
+            return List.of();
+        }
+        String key = genre != null ? GENRE + genre : language != null ? LANGUAGE + language : ALL;
+
+        lock.readLock().lock();
+        try {
+            Facet facet = facets.get(key);
+            if (facet == null || !facet.isShort(ranking, size)) {
+                return collect(facet, ranking, genre, language, size);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            Facet facet = facets.get(key);
+            if (facet.isShort(ranking, size)) {
+                refill(facet, ranking);
+            }
+            return collect(facet, ranking, genre, language, size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<String> collect(Facet facet, TopRanking ranking, String genre, String language, int size) {
+        if (facet != null) {
+            List<String> ids = new ArrayList<>(size);
+            for (int ordinal : facet.top.get(ranking)) {
+                if (matches(ordinal, genre, language)) {
+                    ids.add(ordinals.idOf(ordinal));
+                    if (ids.size() == size) {
+                        return ids;
+                    }
+                }
+            }
+            // An untrimmed list holds every eligible member, so nothing further down was missed
+            if (!facet.trimmed.contains(ranking)) {
+                return ids;
+            }
+        }
+        return scan(ranking, genre, language, size);
+    }
+
+    private List<String> scan(TopRanking ranking, String genre, String language, int size) {
+        Comparator<Integer> order = comparators.get(ranking);
+        PriorityQueue<Integer> best = new PriorityQueue<>(size + 1, order.reversed());
+        for (int ordinal = 0; ordinal < ordinals.capacity(); ordinal++) {
+            if (ordinals.idOf(ordinal) != null && eligible(ranking, ordinal) && matches(ordinal, genre, language)) {
+                best.add(ordinal);
+                if (best.size() > size) {
+                    best.poll();
+                }
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(best);
+        ranked.sort(order);
+        return ranked.stream().map(ordinals::idOf).toList();
+    }
+
+    private void refill(Facet facet, TopRanking ranking) {
+        TreeSet<Integer> top = facet.top.get(ranking);
+        top.clear();
+        facet.trimmed.remove(ranking);
+        for (int ordinal = 0; ordinal < ordinals.capacity(); ordinal++) {
+            if (ordinals.idOf(ordinal) != null && eligible(ranking, ordinal) && facet.contains(ordinal)) {
+                offer(facet, ranking, ordinal);
+            }
+        }
+    }
+
+    private void rank(int ordinal) {
+        for (Facet facet : facetsOf(ordinal, true)) {
+            for (TopRanking ranking : TopRanking.values()) {
+                if (eligible(ranking, ordinal)) {
+                    offer(facet, ranking, ordinal);
+                }
+            }
+        }
+    }
+
+    // Must run before the book's scores change, while the lists are still ordered by the old ones
+    private void unrank(int ordinal) {
+        for (Facet facet : facetsOf(ordinal, false)) {
+            for (TreeSet<Integer> top : facet.top.values()) {
+                top.remove(ordinal);
+            }
+        }
+    }
+
+    private void offer(Facet facet, TopRanking ranking, int ordinal) {
+        TreeSet<Integer> top = facet.top.get(ranking);
+        top.add(ordinal);
+        if (top.size() > k + slack) {
+            top.pollLast();
+            facet.trimmed.add(ranking);
+        }
+    }
+
+    private List<Facet> facetsOf(int ordinal, boolean create) {
+        List<Facet> result = new ArrayList<>();
+        result.add(facet(ALL, null, null, true));
+        String[] genres = docGenres[ordinal];
+        if (genres != null) {
+            for (String genre : genres) {
+                Facet facet = facet(GENRE + genre, genre, null, create);
+                if (facet != null) {
+                    result.add(facet);
+                }
+            }
+        }
+        if (languages[ordinal] != null) {
+            Facet facet = facet(LANGUAGE + languages[ordinal], null, languages[ordinal], create);
+            if (facet != null) {
+                result.add(facet);
+            }
+        }
+        return result;
+    }
+
+    private Facet facet(String key, String genre, String language, boolean create) {
+        Facet facet = facets.get(key);
+        // Lists are created when their first book arrives, so a created list has seen all its members
+        if (facet == null && create && facets.size() < maxFacets()) {
+            facet = new Facet(genre, language);
+            facets.put(key, facet);
+        }
+        return facet;
+    }
+
+    private long maxFacets() {
+        return Math.max(1, maxEntries / ((long) (k + slack) * TopRanking.values().length));
+    }
+
+    private boolean eligible(TopRanking ranking, int ordinal) {
+        return switch (ranking) {
+            case BEST_RATED -> averageRatings[ordinal] >= 0 && ratingsCounts[ordinal] >= Math.max(1, minRatings);
+            case MOST_RATED -> ratingsCounts[ordinal] > 0;
+            case RECENTLY_ADDED -> true;
+        };
+    }
+
+    private boolean matches(int ordinal, String genre, String language) {
+        if (language != null && !language.equals(languages[ordinal])) {
+            return false;
+        }
+        return genre == null || (docGenres[ordinal] != null && Arrays.asList(docGenres[ordinal]).contains(genre));
+    }
+
+    private String[] genres(Book book) {
+        Set<String> genres = new LinkedHashSet<>();
+        if (book.getGenres() != null) {
+            for (String genre : book.getGenres()) {
+                if (genre != null && !genre.isBlank()) {
+                    genres.add(intern(genre));
+                }
+            }
+        }
+        return genres.toArray(new String[0]);
+    }
+
+    // Genre and language strings repeat across most books, so each distinct value is stored once
+    private String intern(String value) {
+        return interned.computeIfAbsent(value, key -> key);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > versions.length) {
+            int newLength = Math.max(capacity, versions.length * 2);
+            averageRatings = Arrays.copyOf(averageRatings, newLength);
+            ratingsCounts = Arrays.copyOf(ratingsCounts, newLength);
+            createdAt = Arrays.copyOf(createdAt, newLength);
+            versions = Arrays.copyOf(versions, newLength);
+            docGenres = Arrays.copyOf(docGenres, newLength);
+            languages = Arrays.copyOf(languages, newLength);
+        }
+    }
+
+    private final class Facet {
+        private final String genre;
+        private final String language;
+        private final Map<TopRanking, TreeSet<Integer>> top = new EnumMap<>(TopRanking.class);
+        // Rankings whose list has dropped entries past K + slack, so it may be missing members
+        private final Set<TopRanking> trimmed = EnumSet.noneOf(TopRanking.class);
+
+        Facet(String genre, String language) {
+            this.genre = genre;
+            this.language = language;
+            for (TopRanking ranking : TopRanking.values()) {
+                top.put(ranking, new TreeSet<>(comparators.get(ranking)));
+            }
+        }
+
+        boolean contains(int ordinal) {
+            return matches(ordinal, genre, language);
+        }
+
+        boolean isShort(TopRanking ranking, int size) {
+            return trimmed.contains(ranking) && top.get(ranking).size() < size;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.nathaniel.bookbackend.book.search;
+
+import java.util.Locale;
+
+public enum TopRanking {
+    BEST_RATED,
+    MOST_RATED,
+    RECENTLY_ADDED;
+
+    /**
+     * Accepts the enum name or its path form, e.g. {@code best-rated}.
+     */
+    public static TopRanking from(String value) {
+        return TopRanking.valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
@@ -1,49 +1,276 @@
 package com.nathaniel.bookbackend.book.service;
 
+import com.nathaniel.bookbackend.book.cache.BookCache;
+import com.nathaniel.bookbackend.book.cache.CachedBook;
+import com.nathaniel.bookbackend.book.cache.SearchResult;
+import com.nathaniel.bookbackend.book.cache.SearchResultCache;
+import com.nathaniel.bookbackend.book.dedup.DuplicateCandidate;
+import com.nathaniel.bookbackend.book.dedup.DuplicateCluster;
+import com.nathaniel.bookbackend.book.dedup.DuplicateIndex;
+import com.nathaniel.bookbackend.book.dedup.MinHasher;
+import com.nathaniel.bookbackend.book.isbn.IsbnIndex;
+import com.nathaniel.bookbackend.book.isbn.Isbns;
 import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.book.outbox.BookEventOutbox;
+import com.nathaniel.bookbackend.book.paging.BookCursor;
+import com.nathaniel.bookbackend.book.paging.CursorPage;
+import com.nathaniel.bookbackend.book.repository.BookCountEstimator;
 import com.nathaniel.bookbackend.book.repository.BookRepository;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import com.nathaniel.bookbackend.book.search.BookSearchIndex;
+import com.nathaniel.bookbackend.book.search.BookSuggestion;
+import com.nathaniel.bookbackend.book.search.FuzzyBookIndex;
+import com.nathaniel.bookbackend.book.search.GenreCount;
+import com.nathaniel.bookbackend.book.search.GenreFacetIndex;
+import com.nathaniel.bookbackend.book.search.GenreMatch;
+import com.nathaniel.bookbackend.book.search.SearchHits;
+import com.nathaniel.bookbackend.book.search.SearchMode;
+import com.nathaniel.bookbackend.book.search.SuggestionIndex;
+import com.nathaniel.bookbackend.book.search.TopBooksIndex;
+import com.nathaniel.bookbackend.book.search.TopRanking;
 import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class BookService {
+
+    private static final int STREAM_CHUNK_SIZE = 100;
     
     @Autowired
     private BookRepository bookRepository;
     
     @Autowired
-    private KafkaTemplate<String, BookUpdateEvent> kafkaTemplate;
+    private BookEventOutbox bookEventOutbox;
+
+    @Autowired
+    private BookCountEstimator bookCountEstimator;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private FuzzyBookIndex fuzzyBookIndex;
+
+    @Autowired
+    private SuggestionIndex suggestionIndex;
+
+    @Autowired
+    private GenreFacetIndex genreFacetIndex;
+
+    @Autowired
+    private TopBooksIndex topBooksIndex;
+
+    @Autowired
+    private IsbnIndex isbnIndex;
+
+    @Autowired
+    private DuplicateIndex duplicateIndex;
+
+    @Autowired
+    private BookSummaryLoader bookSummaryLoader;
+
+    @Value("${book.top.min-ratings:5}")
+    private int minRatingsForBestRated;
+
+    @Autowired
+    private List<BookIndex> bookIndexes;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Transactional(readOnly = true)
-    public Page<Book> searchBooks(String query, Pageable pageable) {
-        return bookRepository.findByTitleContainingIgnoreCaseOrAuthorContainingIgnoreCase(
-            query, query, pageable);
+    public Page<BookSummary> searchBooks(String query, Pageable pageable) {
+        return searchBooks(query, SearchMode.STANDARD, pageable);
     }
 
     @Transactional(readOnly = true)
-    public Optional<Book> getBookById(String id) {
-        return bookRepository.findById(id);
+    public Page<BookSummary> searchBooks(String query, SearchMode mode, Pageable pageable) {
+        if (pageable.isUnpaged() || query == null || query.isBlank()) {
+            return summarize(bookRepository.findByTitleContainingIgnoreCaseOrAuthorContainingIgnoreCase(
+                query, query, pageable));
+        }
+
+        String normalized = SearchResultCache.normalizeQuery(query);
+        boolean indexReady = mode == SearchMode.FUZZY ? fuzzyBookIndex.isReady() : bookSearchIndex.isReady();
+        // The indexes rank by relevance; explicit sorts still go to the database
+        boolean indexed = indexReady && !pageable.getSort().isSorted();
+        SearchResult result = searchResultCache.get(normalized, mode, indexed, pageable, () -> {
+            if (!indexed) {
+                Page<Book> page = bookRepository.findByTitleContainingIgnoreCaseOrAuthorContainingIgnoreCase(
+                    normalized, normalized, pageable);
+                return new SearchResult(page.map(Book::getId).getContent(), page.getTotalElements());
+            }
+            int offset = (int) pageable.getOffset();
+            SearchHits hits = mode == SearchMode.FUZZY
+                ? fuzzyBookIndex.search(normalized, offset, pageable.getPageSize())
+                : bookSearchIndex.search(normalized, offset, pageable.getPageSize());
+            return new SearchResult(hits.getBookIds(), hits.getTotalHits());
+        });
+        return new PageImpl<>(bookSummaryLoader.summarize(findAllInOrder(result.getBookIds())),
+            pageable, result.getTotal());
+    }
+
+    /**
+     * Keyset-paginated title/author search ordered by (title, id). Each page costs the same
+     * however deep it is, and no COUNT(*) runs unless an approximate total is asked for.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<BookSummary> searchBooksAfter(String query, String cursor, int size, boolean includeTotal) {
+        BookCursor after = BookCursor.decode(cursor);
+        String pattern = likePattern(query);
+        List<Book> rows = bookRepository.findByTitleOrAuthorLikeAfter(
+            pattern, after.getTitle(), after.getId(), PageRequest.of(0, size + 1));
+        return summarize(CursorPage.of(rows, size,
+            includeTotal ? bookCountEstimator.estimateTitleOrAuthorMatches(pattern) : null));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<BookSummary> getBooksByGenreAfter(String genre, String cursor, int size, boolean includeTotal) {
+        BookCursor after = BookCursor.decode(cursor);
+        List<Book> rows = bookRepository.findByGenreAfter(
+            genre, after.getTitle(), after.getId(), PageRequest.of(0, size + 1));
+        return summarize(CursorPage.of(rows, size,
+            includeTotal ? bookCountEstimator.estimateGenreMatches(genre) : null));
+    }
+
+    /**
+     * Walks every title/author match off a database cursor in id order, handing each book to
+     * {@code consumer} complete with its genres and tags. Rows are summarized a chunk at a time, with
+     * one query for the chunk's collections, and detached before they are handed on, so memory stays
+     * flat however many rows match. Stops early once the consumer returns false.
+     */
+    @Transactional(readOnly = true)
+    public void streamSearch(String query, Predicate<BookSummary> consumer) {
+        String term = query != null ? query.strip() : "";
+        try (Stream<Book> books = bookRepository
+                .streamByTitleContainingIgnoreCaseOrAuthorContainingIgnoreCaseOrderById(term, term)) {
+            Iterator<Book> iterator = books.iterator();
+            List<Book> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == STREAM_CHUNK_SIZE || !iterator.hasNext()) {
+                    List<BookSummary> summaries = bookSummaryLoader.summarize(chunk);
+                    chunk.forEach(entityManager::detach);
+                    chunk.clear();
+                    for (BookSummary summary : summaries) {
+                        if (!consumer.test(summary)) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
     }
 
     @Transactional(readOnly = true)
+    public long countSearchResults(String query) {
+        String term = query != null ? query.strip() : "";
+        return bookRepository.countByTitleContainingIgnoreCaseOrAuthorContainingIgnoreCase(term, term);
+    }
+
+    public List<BookSuggestion> suggestBooks(String prefix, int limit) {
+        return suggestionIndex.suggest(prefix, limit);
+    }
+
+    public Optional<Book> getBookById(String id) {
+        return Optional.ofNullable(bookCache.getById(id).getBook());
+    }
+
+    public CachedBook getCachedBook(String id) {
+        return bookCache.getById(id);
+    }
+
+    public Map<String, CachedBook> getCachedBooks(Collection<String> ids) {
+        return bookCache.getAllById(ids);
+    }
+
+    /**
+     * Accepts ISBN-10 or ISBN-13 in any common spelling. Once the ISBN index is built, ISBNs the
+     * catalog does not have are answered from memory without a query.
+     */
     public Optional<Book> getBookByIsbn(String isbn) {
-        return bookRepository.findByIsbn(isbn);
+        String isbn13 = Isbns.toIsbn13(isbn);
+        if (isbn13 == null) {
+            return Optional.empty();
+        }
+        if (!isbnIndex.isReady()) {
+            return Optional.ofNullable(bookCache.getByIsbn(isbn13).getBook());
+        }
+        String id = isbnIndex.findId(isbn13);
+        if (id == null) {
+            return Optional.empty();
+        }
+        return getBookById(id).filter(book -> isbn13.equals(Isbns.toIsbn13(book.getIsbn())));
     }
 
+    /**
+     * @throws IllegalArgumentException if the book has an ISBN that is not a valid ISBN-10 or ISBN-13
+     */
     @Transactional
     public Book createBook(Book book) {
+        if (book.getIsbn() != null && !book.getIsbn().isBlank()) {
+            String isbn13 = Isbns.toIsbn13(book.getIsbn());
+            if (isbn13 == null) {
+                throw new IllegalArgumentException("Invalid isbn: " + book.getIsbn());
+            }
+            book.setIsbn(isbn13);
+        } else {
+            book.setIsbn(null);
+        }
+        int[] signature = MinHasher.signature(book.getTitle(), book.getAuthor(), book.getDescription());
+        book.setMinhash(MinHasher.toBytes(signature));
+        // Flagged rather than rejected; the duplicates endpoint lists them for review
+        book.setDuplicateOf(null);
+        if (signature != null && duplicateIndex.isReady()) {
+            duplicateIndex.findSimilar(signature, null, 1)
+                .forEach(match -> book.setDuplicateOf(match.getBookId()));
+        }
         Book savedBook = bookRepository.save(book);
+        afterCommit(() -> {
+            bookCache.evict(savedBook.getId());
+            bookIndexes.forEach(bookIndex -> bookIndex.index(savedBook));
+        });
         
-        // Publish book creation event
-        kafkaTemplate.send("book-updates", new BookUpdateEvent(
+        // Published by the outbox relay once this transaction commits
+        bookEventOutbox.publish(new BookUpdateEvent(
             savedBook.getId(),
             "CREATED",
             null
@@ -67,11 +294,17 @@ public class BookService {
                 existingBook.setPublisher(bookDetails.getPublisher());
                 existingBook.setPageCount(bookDetails.getPageCount());
                 existingBook.setLanguage(bookDetails.getLanguage());
+                existingBook.setMinhash(MinHasher.toBytes(MinHasher.signature(
+                    existingBook.getTitle(), existingBook.getAuthor(), existingBook.getDescription())));
                 
                 Book updatedBook = bookRepository.save(existingBook);
+                afterCommit(() -> {
+                    bookCache.evict(updatedBook.getId());
+                    bookIndexes.forEach(bookIndex -> bookIndex.index(updatedBook));
+                });
                 
-                // Publish book update event
-                kafkaTemplate.send("book-updates", new BookUpdateEvent(
+                // Published by the outbox relay once this transaction commits
+                bookEventOutbox.publish(new BookUpdateEvent(
                     updatedBook.getId(),
                     "UPDATED",
                     null
@@ -84,9 +317,13 @@ public class BookService {
     @Transactional
     public void deleteBook(String id) {
         bookRepository.deleteById(id);
+        afterCommit(() -> {
+            bookCache.evict(id);
+            bookIndexes.forEach(bookIndex -> bookIndex.remove(id));
+        });
         
-        // Publish book deletion event
-        kafkaTemplate.send("book-updates", new BookUpdateEvent(
+        // Published by the outbox relay once this transaction commits
+        bookEventOutbox.publish(new BookUpdateEvent(
             id,
             "DELETED",
             null
@@ -94,12 +331,119 @@ public class BookService {
     }
 
     @Transactional(readOnly = true)
-    public Page<Book> getBooksByGenre(String genre, Pageable pageable) {
-        return bookRepository.findByGenre(genre, pageable);
+    public Page<BookSummary> getBooksByGenre(String genre, Pageable pageable) {
+        return getBooksByGenres(List.of(genre), GenreMatch.ALL, pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<BookSummary> getBooksByGenres(List<String> genres, GenreMatch match, Pageable pageable) {
+        // The facet index pages in its own order; explicit sorts still go to the database
+        if (!genreFacetIndex.isReady() || pageable.isUnpaged() || pageable.getSort().isSorted()) {
+            if (genres.size() == 1) {
+                return summarize(bookRepository.findByGenre(genres.get(0), pageable));
+            }
+            long minMatches = match == GenreMatch.ALL ? genres.size() : 1;
+            return summarize(bookRepository.findByGenresMatching(genres, minMatches, pageable));
+        }
+
+        SearchHits hits = genreFacetIndex.find(genres, match, (int) pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(bookSummaryLoader.summarize(findAllInOrder(hits.getBookIds())),
+            pageable, hits.getTotalHits());
+    }
+
+    @Transactional(readOnly = true)
+    public List<GenreCount> getAllGenres() {
+        if (genreFacetIndex.isReady()) {
+            return genreFacetIndex.genreCounts();
+        }
+        return bookRepository.countBooksByGenre().stream()
+            .map(row -> new GenreCount((String) row[0], (Long) row[1]))
+            .sorted(Comparator.comparingLong(GenreCount::getCount).reversed().thenComparing(GenreCount::getGenre))
+            .toList();
     }
 
+    /**
+     * Up to K books in ranking order, read from the in-memory top lists once they are built and
+     * from a LIMIT-ed query before that.
+     */
     @Transactional(readOnly = true)
-    public List<String> getAllGenres() {
-        return bookRepository.findAllGenres();
+    public List<BookSummary> getTopBooks(TopRanking ranking, String genre, String language, int limit) {
+        if (topBooksIndex.isReady()) {
+            return bookSummaryLoader.summarize(findAllInOrder(topBooksIndex.top(ranking, genre, language, limit)));
+        }
+
+        Sort sort = switch (ranking) {
+            case BEST_RATED -> Sort.by(
+                Sort.Order.desc("averageRating"), Sort.Order.desc("ratingsCount"), Sort.Order.asc("id"));
+            case MOST_RATED -> Sort.by(
+                Sort.Order.desc("ratingsCount"), Sort.Order.desc("averageRating").nullsLast(), Sort.Order.asc("id"));
+            case RECENTLY_ADDED -> Sort.by(
+                Sort.Order.desc("createdAt").nullsLast(), Sort.Order.asc("id"));
+        };
+        int minRatings = switch (ranking) {
+            case BEST_RATED -> Math.max(1, minRatingsForBestRated);
+            case MOST_RATED -> 1;
+            case RECENTLY_ADDED -> 0;
+        };
+        List<Book> books = bookRepository.findRanked(genre, language, minRatings, ranking == TopRanking.BEST_RATED,
+            PageRequest.of(0, Math.max(1, limit), sort));
+        return bookSummaryLoader.summarize(books);
+    }
+
+    /**
+     * Groups of near-duplicate books, largest first.
+     *
+     * @throws IllegalStateException if the duplicate index has not been built yet
+     */
+    public List<DuplicateCluster> getDuplicateClusters(int limit) {
+        if (!duplicateIndex.isReady()) {
+            throw new IllegalStateException("Duplicate index is still loading");
+        }
+        return duplicateIndex.clusters(limit);
+    }
+
+    /**
+     * @throws IllegalStateException if the duplicate index has not been built yet
+     */
+    public List<DuplicateCandidate> getDuplicatesOf(String id, int limit) {
+        if (!duplicateIndex.isReady()) {
+            throw new IllegalStateException("Duplicate index is still loading");
+        }
+        return duplicateIndex.findSimilar(id, limit);
+    }
+
+    private static String likePattern(String query) {
+        String term = query != null ? query.strip().toLowerCase(Locale.ROOT) : "";
+        return "%" + term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private Page<BookSummary> summarize(Page<Book> page) {
+        return new PageImpl<>(bookSummaryLoader.summarize(page.getContent()), page.getPageable(), page.getTotalElements());
+    }
+
+    private CursorPage<BookSummary> summarize(CursorPage<Book> page) {
+        return page.withContent(bookSummaryLoader.summarize(page.getContent()));
+    }
+
+    private List<Book> findAllInOrder(List<String> ids) {
+        Map<String, Book> booksById = bookRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return ids.stream()
+            .map(booksById::get)
+            .filter(Objects::nonNull)
+            .toList();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 }
@@ -0,0 +1,43 @@
+package com.nathaniel.bookbackend.book.service;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a page of books into {@link BookSummary} views with one query for all their genres and
+ * tags, instead of initializing two lazy collections per book.
+ */
+@Component
+public class BookSummaryLoader {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    public List<BookSummary> summarize(List<Book> books) {
+        if (books.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> ids = books.stream().map(Book::getId).toList();
+        Map<String, List<String>> genres = new HashMap<>();
+        Map<String, List<String>> tags = new HashMap<>();
+        for (Object[] row : bookRepository.findGenresAndTagsByBookIdIn(ids)) {
+            Map<String, List<String>> values = "genre".equals(row[1]) ? genres : tags;
+            values.computeIfAbsent((String) row[0], key -> new ArrayList<>()).add((String) row[2]);
+        }
+
+        return books.stream()
+            .map(book -> new BookSummary(book,
+                genres.getOrDefault(book.getId(), List.of()),
+                tags.getOrDefault(book.getId(), List.of())))
+            .toList();
+    }
+}
@@ -0,0 +1,134 @@
+package com.nathaniel.bookbackend.book.service;
+
+import com.nathaniel.bookbackend.book.cache.BookCache;
+import com.nathaniel.bookbackend.book.cache.SearchResultCache;
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import com.nathaniel.bookbackend.book.snapshot.BookUpdatePositions;
+import com.nathaniel.bookbackend.common.datasource.ReadYourWrites;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import com.nathaniel.bookbackend.events.KafkaTopics;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies book-updates events to this replica's book cache and in-memory indexes, so writes made on
+ * other nodes become visible here. Each replica consumes with its own group from the latest offset;
+ * caches start empty and the startup index load covers everything before. When the indexes came from
+ * a catalog snapshot the consumer is rewound to the snapshot's offsets instead.
+ */
+@Component
+public class BookUpdateListener implements ConsumerSeekAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookUpdateListener.class);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private List<BookIndex> bookIndexes;
+
+    @Autowired
+    private BookUpdatePositions bookUpdatePositions;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Value("${book.search.index-enabled:true}")
+    private boolean indexEnabled;
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        assignments.forEach((partition, position) -> {
+            Long replayFrom = bookUpdatePositions.takeReplayOffset(partition.partition());
+            if (replayFrom != null) {
+                callback.seek(partition.topic(), partition.partition(), replayFrom);
+                bookUpdatePositions.assigned(partition.partition(), replayFrom);
+            } else {
+                bookUpdatePositions.assigned(partition.partition(), position);
+            }
+        });
+    }
+
+    @KafkaListener(
+        topics = KafkaTopics.BOOK_UPDATES,
+        groupId = "${book.updates-group-id}",
+        properties = "auto.offset.reset=latest"
+    )
+    public void handleBookUpdate(
+            @Payload(required = false) BookUpdateEvent event,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+            @Header(KafkaHeaders.OFFSET) long offset) {
+        // The event goes out as soon as its write commits, before a replica may have replayed it
+        ReadYourWrites.onPrimary(() -> apply(event));
+        // Only applied events count, so a snapshot never claims one that failed
+        bookUpdatePositions.consumed(partition, offset);
+    }
+
+    private void apply(BookUpdateEvent event) {
+        if (event == null) {
+            return;
+        }
+        if (event.getBookIds() != null) {
+            handleBatch(event);
+            return;
+        }
+        if (event.getBookId() == null) {
+            return;
+        }
+        String bookId = event.getBookId();
+        bookCache.evict(bookId);
+        if (!indexEnabled) {
+            // Without the indexes there is no book to match cached searches against
+            searchResultCache.invalidateAll();
+            return;
+        }
+        if ("DELETED".equals(event.getUpdateType())) {
+            bookIndexes.forEach(bookIndex -> bookIndex.remove(bookId));
+            return;
+        }
+
+        // Events carry only the id, so index whatever the database holds now
+        List<Book> books = bookRepository.findAllWithCollectionsByIdIn(List.of(bookId));
+        if (books.isEmpty()) {
+            bookIndexes.forEach(bookIndex -> bookIndex.remove(bookId));
+        } else {
+            Book book = books.get(0);
+            bookIndexes.forEach(bookIndex -> bookIndex.index(book));
+        }
+        logger.debug("Applied {} for book {} to book cache and indexes", event.getUpdateType(), bookId);
+    }
+
+    // Bulk imports announce a whole chunk at once; reload it with a single query
+    private void handleBatch(BookUpdateEvent event) {
+        List<String> bookIds = event.getBookIds();
+        bookIds.forEach(bookCache::evict);
+        if (!indexEnabled) {
+            searchResultCache.invalidateAll();
+            return;
+        }
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        for (Book book : bookRepository.findAllWithCollectionsByIdIn(bookIds)) {
+            bookIndexes.forEach(bookIndex -> bookIndex.index(book));
+        }
+        logger.debug("Applied {} for {} books to book cache and indexes", event.getUpdateType(), bookIds.size());
+    }
+}
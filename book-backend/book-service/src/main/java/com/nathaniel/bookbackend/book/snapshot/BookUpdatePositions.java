@@ -0,0 +1,44 @@
+package com.nathaniel.bookbackend.book.snapshot;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Where this replica's book-updates consumer stands in each partition, and where it should resume
+ * from when the indexes were loaded from a snapshot instead of the database.
+ */
+@Component
+public class BookUpdatePositions {
+
+    private final Map<Integer, Long> positions = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> replayOffsets = new ConcurrentHashMap<>();
+
+    void replayFrom(Map<Integer, Long> offsets) {
+        replayOffsets.putAll(offsets);
+    }
+
+    /**
+     * The snapshot's offset for the partition, handed out once, or null to keep the consumer's own position.
+     */
+    public Long takeReplayOffset(int partition) {
+        return replayOffsets.remove(partition);
+    }
+
+    public void assigned(int partition, long position) {
+        positions.putIfAbsent(partition, position);
+    }
+
+    public void consumed(int partition, long offset) {
+        positions.merge(partition, offset + 1, Math::max);
+    }
+
+    /**
+     * The next offset to be consumed in each assigned partition.
+     */
+    public Map<Integer, Long> current() {
+        return new TreeMap<>(positions);
+    }
+}
@@ -0,0 +1,227 @@
+package com.nathaniel.bookbackend.book.snapshot;
+
+import com.nathaniel.bookbackend.book.model.Book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a catalog snapshot through read-only memory mappings, so records are decoded straight out
+ * of the page cache with no read calls or intermediate buffers. One mapping cannot pass
+ * {@link Integer#MAX_VALUE} bytes, so the file is mapped a segment at a time and a record that
+ * straddles two segments is read across the remap.
+ * <pre>
+ * header  magic:long version:int createdAt:long partitions:int (partition:int offset:long)*
+ * record  1:byte id title author isbn description coverUrl publishedYear publisher language duplicateOf
+ *         genres tags averageRating ratingsSum ratingsCount pageCount minhash createdAt:long updatedAt:long
+ * end     0:byte crc32:long
+ * </pre>
+ * Strings and byte arrays are an int length (-1 for null) and their bytes, UTF-8 for strings; lists
+ * are an int count and their strings; nullable numbers are a presence byte and the value. The file is
+ * checked against its CRC32 before any record is handed out.
+ */
+public class CatalogSnapshotReader implements Closeable {
+
+    // Well under the 2 GB a single mapping allows, and a whole number of pages
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int segmentBytes;
+    // The mapped segment and where in the file it starts
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+    private final Instant createdAt;
+    private final Map<Integer, Long> offsets;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * @throws IOException if the file is unreadable, from another format version, or corrupt
+     */
+    public CatalogSnapshotReader(Path file) throws IOException {
+        this(file, SEGMENT_BYTES);
+    }
+
+    CatalogSnapshotReader(Path file, int segmentBytes) throws IOException {
+        this.segmentBytes = segmentBytes;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            if (size < Long.BYTES * 3) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+
+            CRC32 crc = new CRC32();
+            long checked = size - Long.BYTES;
+            for (long start = 0; start < checked; start += segmentBytes) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentBytes, checked - start)));
+            }
+            if (crc.getValue() != channel.map(FileChannel.MapMode.READ_ONLY, checked, Long.BYTES).getLong()) {
+                throw new IOException("Snapshot " + file + " failed its checksum");
+            }
+            map(0);
+            if (readLong() != CatalogSnapshotWriter.MAGIC) {
+                throw new IOException(file + " is not a catalog snapshot");
+            }
+            int version = readPlainInt();
+            if (version != CatalogSnapshotWriter.FORMAT_VERSION) {
+                throw new IOException("Snapshot " + file + " has format version " + version
+                    + ", expected " + CatalogSnapshotWriter.FORMAT_VERSION);
+            }
+            createdAt = Instant.ofEpochMilli(readLong());
+            int partitions = readPlainInt();
+            Map<Integer, Long> readOffsets = new LinkedHashMap<>();
+            for (int i = 0; i < partitions; i++) {
+                readOffsets.put(readPlainInt(), readLong());
+            }
+            offsets = Collections.unmodifiableMap(readOffsets);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * The next book-updates offset per partition that the snapshot does not reflect yet.
+     */
+    public Map<Integer, Long> getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return the next book, or null after the last one
+     */
+    public Book next() throws IOException {
+        available(1);
+        if (buffer.get() != CatalogSnapshotWriter.RECORD) {
+            buffer.position(buffer.position() - 1);
+            return null;
+        }
+        Book book = new Book();
+        book.setId(readString());
+        book.setTitle(readString());
+        book.setAuthor(readString());
+        book.setIsbn(readString());
+        book.setDescription(readString());
+        book.setCoverUrl(readString());
+        book.setPublishedYear(readString());
+        book.setPublisher(readString());
+        book.setLanguage(readString());
+        book.setDuplicateOf(readString());
+        book.setGenres(readStrings());
+        book.setTags(readStrings());
+        book.setAverageRating(readDouble());
+        book.setRatingsSum(readDouble());
+        book.setRatingsCount(readInt());
+        book.setPageCount(readInt());
+        book.setMinhash(readBytes());
+        book.setCreatedAt(readTime());
+        book.setUpdatedAt(readTime());
+        return book;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String readString() throws IOException {
+        int length = readPlainInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        readFully(scratch, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private Set<String> readStrings() throws IOException {
+        int count = readPlainInt();
+        Set<String> values = new HashSet<>(Math.max(4, count * 2));
+        for (int i = 0; i < count; i++) {
+            values.add(readString());
+        }
+        return values;
+    }
+
+    private byte[] readBytes() throws IOException {
+        int length = readPlainInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        readFully(value, length);
+        return value;
+    }
+
+    private Double readDouble() throws IOException {
+        return readPresent() ? Double.longBitsToDouble(readLong()) : null;
+    }
+
+    private Integer readInt() throws IOException {
+        return readPresent() ? readPlainInt() : null;
+    }
+
+    private Instant readTime() throws IOException {
+        long millis = readLong();
+        return millis != CatalogSnapshotWriter.NULL_TIME ? Instant.ofEpochMilli(millis) : null;
+    }
+
+    private boolean readPresent() throws IOException {
+        available(1);
+        return buffer.get() != 0;
+    }
+
+    private int readPlainInt() throws IOException {
+        available(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    private long readLong() throws IOException {
+        available(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    private void readFully(byte[] into, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            available(1);
+            int chunk = Math.min(length - read, buffer.remaining());
+            buffer.get(into, read, chunk);
+            read += chunk;
+        }
+    }
+
+    // Remaps from the current position when fewer than the wanted bytes are left in the segment
+    private void available(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            map(bufferStart + buffer.position());
+            if (buffer.remaining() < bytes) {
+                throw new IOException("Snapshot ends in the middle of a record");
+            }
+        }
+    }
+
+    private void map(long start) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentBytes, size - start));
+        bufferStart = start;
+    }
+}
@@ -0,0 +1,260 @@
+package com.nathaniel.bookbackend.book.snapshot;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import com.nathaniel.bookbackend.common.datasource.ReadYourWrites;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a catalog snapshot on local disk so a restarting replica can build its indexes without
+ * reading the whole catalog from Postgres. A snapshot is written every book.snapshot.interval while
+ * book-updates has moved on since the last one. On startup a snapshot younger than
+ * book.snapshot.max-age is fed to the indexes and the book-updates consumer is rewound to the
+ * offsets stored with it, so only the books changed since then are reloaded from the database.
+ * The max age must stay well inside the topic's retention, or the rewind would land past the log start.
+ * <p>
+ * Fed like a {@link BookIndex} once the indexes are ready, it keeps the books changed since the last
+ * snapshot and writes the next one by copying the previous file with those books replaced, so only
+ * a replica with no snapshot to start from reads the catalog from the database, and only once.
+ * When book.snapshot.max-pending-books have changed a snapshot is written early to bound the heap.
+ */
+@Component
+public class CatalogSnapshotService implements BookIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotService.class);
+    private static final String FILE_NAME = "catalog.snapshot";
+    // Marks a removed book among the pending changes
+    private static final Book REMOVED = new Book();
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookUpdatePositions bookUpdatePositions;
+
+    @Value("${book.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${book.snapshot.directory:./snapshots}")
+    private Path directory;
+
+    @Value("${book.snapshot.interval:15m}")
+    private Duration interval;
+
+    @Value("${book.snapshot.max-age:24h}")
+    private Duration maxAge;
+
+    @Value("${book.snapshot.max-pending-books:50000}")
+    private int maxPendingBooks;
+
+    @Value("${book.search.load-batch-size:500}")
+    private int batchSize;
+
+    private ScheduledExecutorService writer;
+    // Offsets of the snapshot on disk that this replica loaded or wrote; null until there is one
+    private volatile Map<Integer, Long> lastWrittenOffsets;
+    // Guarded by this; the latest version of every book changed since the pending changes were last taken
+    private Map<String, Book> pending = new HashMap<>();
+    private boolean recording;
+    private boolean earlyWriteQueued;
+
+    /**
+     * Feeds every book in the snapshot to the indexes and arranges for book-updates to replay from
+     * the snapshot's offsets. Must run before the Kafka listeners start.
+     *
+     * @return true if the indexes were loaded, false if there was no usable snapshot
+     */
+    public boolean loadInto(List<BookIndex> bookIndexes) {
+        if (!enabled) {
+            return false;
+        }
+        Path file = directory.resolve(FILE_NAME);
+        long started = System.currentTimeMillis();
+        try (CatalogSnapshotReader reader = new CatalogSnapshotReader(file)) {
+            Duration age = Duration.between(reader.getCreatedAt(), Instant.now());
+            if (age.compareTo(maxAge) > 0) {
+                logger.info("Catalog snapshot is {} old, past book.snapshot.max-age; loading from the database", age);
+                return false;
+            }
+            long loaded = 0;
+            Book book;
+            while ((book = reader.next()) != null) {
+                Book current = book;
+                bookIndexes.forEach(bookIndex -> bookIndex.index(current));
+                loaded++;
+            }
+            bookUpdatePositions.replayFrom(reader.getOffsets());
+            lastWrittenOffsets = reader.getOffsets();
+            logger.info("Indexed {} books from the {} old catalog snapshot in {} ms, replaying book-updates from {}",
+                loaded, age, System.currentTimeMillis() - started, reader.getOffsets());
+            return true;
+        } catch (NoSuchFileException e) {
+            logger.info("No catalog snapshot at {}; loading from the database", file);
+            return false;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable catalog snapshot {}; loading from the database", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Starts writing snapshots in the background; called once the indexes are current.
+     */
+    public synchronized void startWriting() {
+        if (!enabled || writer != null) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long initialDelay = lastWrittenOffsets == null ? 0 : interval.toMillis();
+        writer.scheduleWithFixedDelay(this::writeIfChanged, initialDelay, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void index(Book book) {
+        changed(book.getId(), book);
+    }
+
+    @Override
+    public void remove(String bookId) {
+        changed(bookId, REMOVED);
+    }
+
+    // The books fed before this are the ones the snapshot or database load already holds
+    @Override
+    public synchronized void markReady() {
+        recording = enabled;
+    }
+
+    private synchronized void changed(String bookId, Book book) {
+        if (!recording) {
+            return;
+        }
+        pending.put(bookId, book);
+        if (pending.size() >= maxPendingBooks && writer != null && !writer.isShutdown() && !earlyWriteQueued) {
+            earlyWriteQueued = true;
+            writer.execute(this::writeIfChanged);
+        }
+    }
+
+    private synchronized Map<String, Book> takePending() {
+        Map<String, Book> taken = pending;
+        pending = new HashMap<>();
+        earlyWriteQueued = false;
+        return taken;
+    }
+
+    // Puts back changes a failed write took, under any that arrived since
+    private synchronized void restorePending(Map<String, Book> taken) {
+        taken.forEach(pending::putIfAbsent);
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        if (writer != null) {
+            writer.shutdownNow();
+        }
+    }
+
+    void writeIfChanged() {
+        // Taken before the pending changes, so every event these offsets cover is among them or already written
+        Map<Integer, Long> offsets = bookUpdatePositions.current();
+        if (offsets.isEmpty() || offsets.equals(lastWrittenOffsets)) {
+            return;
+        }
+        Map<String, Book> changes = takePending();
+        boolean full = lastWrittenOffsets == null;
+        long started = System.currentTimeMillis();
+        try {
+            Files.createDirectories(directory);
+            long written;
+            try (CatalogSnapshotWriter snapshot = new CatalogSnapshotWriter(
+                    directory.resolve(FILE_NAME), Instant.now(), offsets)) {
+                if (full) {
+                    // A lagging replica could miss updates the stored offsets claim, and a restart would never replay them
+                    ReadYourWrites.onPrimary(() -> writeCatalog(snapshot));
+                } else {
+                    writeMerged(snapshot, changes);
+                }
+                written = snapshot.commit();
+            }
+            lastWrittenOffsets = offsets;
+            logger.info("Wrote catalog snapshot of {} books ({}) at book-updates offsets {} in {} ms",
+                written, full ? "read from the database" : changes.size() + " changed", offsets,
+                System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            logger.warn("Failed to write catalog snapshot to {}", directory, e);
+            restorePending(changes);
+            if (e instanceof IOException && !full) {
+                // The previous snapshot may be what failed; start over from the database next time
+                lastWrittenOffsets = null;
+            }
+        }
+    }
+
+    private void writeMerged(CatalogSnapshotWriter snapshot, Map<String, Book> changes) throws IOException {
+        Map<String, Book> unwritten = new HashMap<>(changes);
+        try (CatalogSnapshotReader previous = new CatalogSnapshotReader(directory.resolve(FILE_NAME))) {
+            if (!previous.getOffsets().equals(lastWrittenOffsets)) {
+                throw new IOException("Catalog snapshot was replaced by another writer");
+            }
+            Book book;
+            while ((book = previous.next()) != null) {
+                Book changed = unwritten.remove(book.getId());
+                if (changed == null) {
+                    snapshot.write(book);
+                } else if (changed != REMOVED) {
+                    snapshot.write(changed);
+                }
+            }
+        }
+        // Books created since the previous snapshot; records need not be in id order
+        for (Book book : unwritten.values()) {
+            if (book != REMOVED) {
+                snapshot.write(book);
+            }
+        }
+    }
+
+    private void writeCatalog(CatalogSnapshotWriter snapshot) {
+        try {
+            String lastId = "";
+            while (true) {
+                List<String> ids = bookRepository.findIdsAfter(lastId, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                for (Book book : bookRepository.findAllWithCollectionsByIdIn(ids)) {
+                    snapshot.write(book);
+                }
+                lastId = ids.get(ids.size() - 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.nathaniel.bookbackend.book.snapshot;
+
+import com.nathaniel.bookbackend.book.model.Book;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes a catalog snapshot: a header with the format version, creation time and the book-updates
+ * offsets it is current up to, one record per book, and a CRC32 of everything before it. The file is
+ * written beside the target and moved into place on {@link #commit()}, so readers never see half a
+ * snapshot. See {@link CatalogSnapshotReader} for the layout.
+ */
+public class CatalogSnapshotWriter implements Closeable {
+
+    static final long MAGIC = 0x424f4f4b534e4150L;
+    static final int FORMAT_VERSION = 1;
+    static final byte RECORD = 1;
+    static final byte END = 0;
+    static final long NULL_TIME = Long.MIN_VALUE;
+
+    private final Path target;
+    private final Path temp;
+    private final CRC32 crc = new CRC32();
+    private final OutputStream file;
+    private final DataOutputStream out;
+    private long books;
+    private boolean committed;
+
+    public CatalogSnapshotWriter(Path target, Instant createdAt, Map<Integer, Long> offsets) throws IOException {
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.file = Files.newOutputStream(temp);
+        this.out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file, 256 * 1024), crc));
+        out.writeLong(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(createdAt.toEpochMilli());
+        out.writeInt(offsets.size());
+        for (Map.Entry<Integer, Long> offset : offsets.entrySet()) {
+            out.writeInt(offset.getKey());
+            out.writeLong(offset.getValue());
+        }
+    }
+
+    public void write(Book book) throws IOException {
+        out.writeByte(RECORD);
+        writeString(book.getId());
+        writeString(book.getTitle());
+        writeString(book.getAuthor());
+        writeString(book.getIsbn());
+        writeString(book.getDescription());
+        writeString(book.getCoverUrl());
+        writeString(book.getPublishedYear());
+        writeString(book.getPublisher());
+        writeString(book.getLanguage());
+        writeString(book.getDuplicateOf());
+        writeStrings(book.getGenres());
+        writeStrings(book.getTags());
+        writeDouble(book.getAverageRating());
+        writeDouble(book.getRatingsSum());
+        writeInt(book.getRatingsCount());
+        writeInt(book.getPageCount());
+        writeBytes(book.getMinhash());
+        out.writeLong(book.getCreatedAt() != null ? book.getCreatedAt().toEpochMilli() : NULL_TIME);
+        out.writeLong(book.getUpdatedAt() != null ? book.getUpdatedAt().toEpochMilli() : NULL_TIME);
+        books++;
+    }
+
+    /**
+     * Finishes the file and replaces any previous snapshot with it.
+     *
+     * @return the number of books written
+     */
+    public long commit() throws IOException {
+        out.writeByte(END);
+        out.flush();
+        // The checksum covers everything before it, so it is written past the checked stream
+        DataOutputStream trailer = new DataOutputStream(file);
+        trailer.writeLong(crc.getValue());
+        trailer.flush();
+        out.close();
+        committed = true;
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return books;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            out.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        writeBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private void writeStrings(Collection<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(value);
+        }
+    }
+
+    private void writeBytes(byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private void writeDouble(Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private void writeInt(Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+}
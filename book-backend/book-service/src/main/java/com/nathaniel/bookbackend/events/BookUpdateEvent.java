@@ -1,9 +1,12 @@
 package com.nathaniel.bookbackend.events;
 
 import java.time.Instant;
+import java.util.List;
 
 public class BookUpdateEvent {
     private String bookId;
+    // Set instead of bookId when one event covers a whole chunk of books
+    private List<String> bookIds;
     private String updateType;
     private String userId;
     private Instant timestamp;
@@ -18,6 +21,12 @@ public class BookUpdateEvent {
         this.timestamp = Instant.now();
     }
 
+    public static BookUpdateEvent batch(List<String> bookIds, String updateType) {
+        BookUpdateEvent event = new BookUpdateEvent(null, updateType, null);
+        event.setBookIds(bookIds);
+        return event;
+    }
+
     // Getters and Setters
     public String getBookId() {
         return bookId;
@@ -27,6 +36,14 @@ public class BookUpdateEvent {
         this.bookId = bookId;
     }
 
+    public List<String> getBookIds() {
+        return bookIds;
+    }
+
+    public void setBookIds(List<String> bookIds) {
+        this.bookIds = bookIds;
+    }
+
     public String getUpdateType() {
         return updateType;
     }
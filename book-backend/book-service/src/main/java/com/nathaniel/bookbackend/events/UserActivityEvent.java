@@ -1,11 +1,17 @@
 package com.nathaniel.bookbackend.events;
 
 import java.time.Instant;
+import java.util.List;
 
 public class UserActivityEvent {
     private String userId;
     private String activityType;
     private String bookId;
+    // Set on rating changes: the user's rating after and before, null when there is none
+    private Double rating;
+    private Double previousRating;
+    // Set instead of bookId when one event carries every activity of a bulk library request
+    private List<UserActivityEvent> activities;
     private Instant timestamp;
 
     // Constructors
@@ -43,6 +49,30 @@ public class UserActivityEvent {
         this.bookId = bookId;
     }
 
+    public Double getRating() {
+        return rating;
+    }
+
+    public void setRating(Double rating) {
+        this.rating = rating;
+    }
+
+    public Double getPreviousRating() {
+        return previousRating;
+    }
+
+    public void setPreviousRating(Double previousRating) {
+        this.previousRating = previousRating;
+    }
+
+    public List<UserActivityEvent> getActivities() {
+        return activities;
+    }
+
+    public void setActivities(List<UserActivityEvent> activities) {
+        this.activities = activities;
+    }
+
     public Instant getTimestamp() {
         return timestamp;
     }
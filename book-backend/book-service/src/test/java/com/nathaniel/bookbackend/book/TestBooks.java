@@ -0,0 +1,80 @@
+package com.nathaniel.bookbackend.book;
+
+import com.nathaniel.bookbackend.book.model.Book;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Builds the detached books the index and cache tests feed in. Only the id is required;
+ * the title defaults to "Book &lt;id&gt;" and everything else is left unset.
+ */
+public final class TestBooks {
+
+    private TestBooks() {
+    }
+
+    public static Builder book(String id) {
+        return new Builder(id);
+    }
+
+    public static final class Builder {
+        private final Book book = new Book();
+
+        private Builder(String id) {
+            book.setId(id);
+            book.setTitle("Book " + id);
+        }
+
+        public Builder title(String title) {
+            book.setTitle(title);
+            return this;
+        }
+
+        public Builder author(String author) {
+            book.setAuthor(author);
+            return this;
+        }
+
+        public Builder description(String description) {
+            book.setDescription(description);
+            return this;
+        }
+
+        public Builder isbn(String isbn) {
+            book.setIsbn(isbn);
+            return this;
+        }
+
+        public Builder genres(String... genres) {
+            book.setGenres(Set.of(genres));
+            return this;
+        }
+
+        public Builder language(String language) {
+            book.setLanguage(language);
+            return this;
+        }
+
+        public Builder rating(double averageRating, int ratingsCount) {
+            book.setAverageRating(averageRating);
+            book.setRatingsCount(ratingsCount);
+            return this;
+        }
+
+        // A new book is last updated when it was created
+        public Builder createdAt(long epochMilli) {
+            book.setCreatedAt(Instant.ofEpochMilli(epochMilli));
+            return updatedAt(epochMilli);
+        }
+
+        public Builder updatedAt(long epochMilli) {
+            book.setUpdatedAt(Instant.ofEpochMilli(epochMilli));
+            return this;
+        }
+
+        public Book build() {
+            return book;
+        }
+    }
+}
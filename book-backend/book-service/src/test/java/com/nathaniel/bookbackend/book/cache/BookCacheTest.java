@@ -0,0 +1,187 @@
+package com.nathaniel.bookbackend.book.cache;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.nathaniel.bookbackend.book.datasource.PrimaryReads;
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookCacheTest {
+
+    private BookCache cache;
+    private BookRepository bookRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private PrimaryReads primaryReads;
+    private AtomicLong nanos;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        nanos = new AtomicLong();
+        primaryReads = mock(PrimaryReads.class);
+        when(primaryReads.staleness()).thenReturn(Duration.ofSeconds(7));
+        when(primaryReads.read(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        cache = new BookCache();
+        ReflectionTestUtils.setField(cache, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "primaryReads", primaryReads);
+        ReflectionTestUtils.setField(cache, "maxWeightBytes", 1_000_000L);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(cache, "negativeTtl", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(cache, "maxIsbnEntries", 100L);
+        ReflectionTestUtils.setField(cache, "ticker", (Ticker) nanos::get);
+        cache.init();
+    }
+
+    @Test
+    void shouldLoadABookOnceUntilItsTtlRunsOut() {
+        // Given
+        Book book = book("1").isbn("9780000000001").build();
+        when(bookRepository.findWithCollectionsById("1")).thenReturn(Optional.of(book));
+
+        // When
+        cache.getById("1");
+        advance(Duration.ofMinutes(9));
+        CachedBook cached = cache.getById("1");
+
+        // Then
+        assertThat(cached.getBook()).isSameAs(book);
+        verify(bookRepository, times(1)).findWithCollectionsById("1");
+        advance(Duration.ofMinutes(2));
+        cache.getById("1");
+        verify(bookRepository, times(2)).findWithCollectionsById("1");
+    }
+
+    @Test
+    void shouldRememberAMissingIdForTheShorterTtl() {
+        // Given
+        when(bookRepository.findWithCollectionsById("1")).thenReturn(Optional.empty());
+
+        // When
+        cache.getById("1");
+        advance(Duration.ofSeconds(20));
+        CachedBook cached = cache.getById("1");
+
+        // Then
+        assertThat(cached.isPresent()).isFalse();
+        verify(bookRepository, times(1)).findWithCollectionsById("1");
+        advance(Duration.ofSeconds(20));
+        cache.getById("1");
+        verify(bookRepository, times(2)).findWithCollectionsById("1");
+    }
+
+    @Test
+    void shouldLoadAllMissesInOneQuery() {
+        // Given
+        Book book = book("1").isbn("9780000000001").build();
+        when(bookRepository.findAllWithCollectionsByIdIn(anyCollection())).thenReturn(List.of(book));
+
+        // When
+        Map<String, CachedBook> cached = cache.getAllById(List.of("1", "2"));
+
+        // Then
+        assertThat(cached.get("1").getBook()).isSameAs(book);
+        assertThat(cached.get("2").isPresent()).isFalse();
+        assertThat(cache.getById("2").isPresent()).isFalse();
+        verify(bookRepository, times(1)).findAllWithCollectionsByIdIn(anyCollection());
+        verify(primaryReads, never()).read(any());
+    }
+
+    @Test
+    void shouldReloadABookChangedWithinTheReplicaLagFromThePrimary() {
+        // Given
+        when(bookRepository.findWithCollectionsById("1")).thenReturn(Optional.of(book("1").build()));
+        when(bookRepository.findAllWithCollectionsByIdIn(anyCollection())).thenReturn(List.of());
+        cache.evict("1");
+
+        // When
+        cache.getById("1");
+        cache.evict("1");
+        cache.getAllById(List.of("1", "2"));
+
+        // Then
+        verify(primaryReads, times(2)).read(any());
+        verify(bookRepository).findAllWithCollectionsByIdIn(List.of("2"));
+        verify(bookRepository).findAllWithCollectionsByIdIn(List.of("1"));
+        cache.evict("1");
+        advance(Duration.ofSeconds(8));
+        cache.getById("1");
+        verify(primaryReads, times(2)).read(any());
+        verify(bookRepository, times(2)).findWithCollectionsById("1");
+    }
+
+    @Test
+    void shouldReloadABookEvictedBecauseItChanged() {
+        // Given
+        Book before = book("1").isbn("9780000000001").build();
+        Book after = book("1").isbn("9780000000001").build();
+        when(bookRepository.findWithCollectionsById("1")).thenReturn(Optional.of(before), Optional.of(after));
+        cache.getById("1");
+
+        // When
+        cache.evict("1");
+
+        // Then
+        assertThat(cache.getById("1").getBook()).isSameAs(after);
+        assertThat(meterRegistry.get("book.cache.invalidations").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldFindABookCreatedAfterItsIsbnWasLookedUp() {
+        // Given
+        Book created = book("1").isbn("9780000000001").build();
+        when(bookRepository.findWithCollectionsByIsbn("9780000000001"))
+            .thenReturn(Optional.empty(), Optional.of(created));
+        assertThat(cache.getByIsbn("9780000000001").isPresent()).isFalse();
+
+        // When
+        CachedBook cached = cache.getByIsbn("9780000000001");
+
+        // Then
+        assertThat(cached.getBook()).isSameAs(created);
+    }
+
+    @Test
+    void shouldServeAnIsbnFromTheIdCacheUntilTheBookIsGivenAnother() {
+        // Given
+        Book book = book("1").isbn("9780000000001").build();
+        Book renumbered = book("1").isbn("9780000000002").build();
+        when(bookRepository.findWithCollectionsByIsbn("9780000000001")).thenReturn(Optional.of(book), Optional.empty());
+        when(bookRepository.findWithCollectionsById("1")).thenReturn(Optional.of(renumbered));
+        cache.getByIsbn("9780000000001");
+        cache.getByIsbn("9780000000001");
+        verify(bookRepository, times(1)).findWithCollectionsByIsbn("9780000000001");
+
+        // When
+        cache.evict("1");
+
+        // Then
+        assertThat(cache.getByIsbn("9780000000001").isPresent()).isFalse();
+        verify(bookRepository, times(2)).findWithCollectionsByIsbn("9780000000001");
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,246 @@
+package com.nathaniel.bookbackend.book.cache;
+
+import com.nathaniel.bookbackend.book.datasource.PrimaryReads;
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.search.BookSearchIndex;
+import com.nathaniel.bookbackend.book.search.SearchMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchResultCacheTest {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 20);
+
+    private SearchResultCache cache;
+    private BookSearchIndex bookSearchIndex;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger searches;
+
+    @BeforeEach
+    void setUp() {
+        setUp(Duration.ZERO);
+    }
+
+    private void setUp(Duration replicaStaleness) {
+        meterRegistry = new SimpleMeterRegistry();
+        PrimaryReads primaryReads = mock(PrimaryReads.class);
+        when(primaryReads.staleness()).thenReturn(replicaStaleness);
+        bookSearchIndex = new BookSearchIndex();
+        cache = new SearchResultCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "primaryReads", primaryReads);
+        ReflectionTestUtils.setField(cache, "bookSearchIndex", bookSearchIndex);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100L);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(10));
+        cache.init();
+        searches = new AtomicInteger();
+    }
+
+    @Test
+    void shouldServeRepeatedQueriesFromTheCache() {
+        // When
+        search("harry potter", "1", "2");
+        SearchResult result = search(SearchResultCache.normalizeQuery("  Harry   POTTER "), "1", "2");
+
+        // Then
+        assertThat(result.getBookIds()).containsExactly("1", "2");
+        assertThat(searches).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "books.search").tag("result", "hit")
+            .functionCounter().count()).isEqualTo(1.0);
+        assertThat(cache.get("harry potter", SearchMode.STANDARD, true, PageRequest.of(1, 20), this::fresh))
+            .isNotNull();
+        assertThat(searches).hasValue(2);
+    }
+
+    @Test
+    void shouldEvictPagesContainingAChangedOrDeletedBook() {
+        // Given
+        search("harry potter", "1", "2");
+        search("dune", "3");
+
+        // When
+        cache.remove("2");
+
+        // Then
+        search("harry potter", "1");
+        search("dune", "3");
+        assertThat(searches).hasValue(3);
+    }
+
+    @Test
+    void shouldEvictPagesANewBookMayJoin() {
+        // Given
+        search("harry potter", "1");
+        search("dune", "3");
+
+        // When
+        index(book("4").title("Harry Potter and the Cursed Child").build());
+        index(book("5").title("The Left Hand of Darkness").build());
+
+        // Then
+        search("harry potter", "1", "4");
+        search("dune", "3");
+        assertThat(searches).hasValue(3);
+    }
+
+    @Test
+    void shouldNotCacheAResultComputedWhileABookChanged() {
+        // When
+        cache.get("dune", SearchMode.STANDARD, true, FIRST_PAGE, () -> {
+            index(book("3").title("Dune").build());
+            return fresh();
+        });
+        search("dune", "3");
+
+        // Then
+        assertThat(searches).hasValue(2);
+    }
+
+    @Test
+    void shouldKeepPagesNearABookWhoseTextDidNotChange() {
+        // Given
+        Book dune = book("3").title("Dune").build();
+        index(dune);
+        search("dune", "3");
+        search("dunes of arrakis", "7");
+
+        // When
+        dune.setAverageRating(4.5);
+        index(dune);
+
+        // Then
+        search("dune", "3");
+        search("dunes of arrakis", "7");
+        assertThat(searches).hasValue(2);
+    }
+
+    @Test
+    void shouldEvictSortedPagesNearABookWhoseTextDidNotChange() {
+        // Given
+        Book dune = book("3").title("Dune").build();
+        index(dune);
+        Pageable byRating = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "averageRating"));
+        cache.get("dunes", SearchMode.STANDARD, false, byRating, this::fresh);
+
+        // When
+        dune.setAverageRating(4.5);
+        index(dune);
+
+        // Then
+        cache.get("dunes", SearchMode.STANDARD, false, byRating, this::fresh);
+        assertThat(searches).hasValue(2);
+    }
+
+    @Test
+    void shouldCacheAResultComputedWhileAnUnrelatedBookChanged() {
+        // When
+        cache.get("dune", SearchMode.STANDARD, true, FIRST_PAGE, () -> {
+            index(book("5").title("The Left Hand of Darkness").build());
+            cache.remove("6");
+            return fresh();
+        });
+        search("dune", "3");
+
+        // Then
+        assertThat(searches).hasValue(1);
+    }
+
+    @Test
+    void shouldNotCacheAResultContainingABookRemovedWhileItRan() {
+        // When
+        cache.get("dune", SearchMode.STANDARD, true, FIRST_PAGE, () -> {
+            cache.remove("3");
+            searches.incrementAndGet();
+            return new SearchResult(List.of("3"), 1);
+        });
+        search("dune");
+
+        // Then
+        assertThat(searches).hasValue(2);
+    }
+
+    @Test
+    void shouldForgetTheBooksOfAReplacedPage() {
+        // Given: two searches for the same page, the later one to finish no longer holding book 7
+        cache.get("dune", SearchMode.STANDARD, true, FIRST_PAGE, () -> {
+            search("dune", "3", "7");
+            searches.incrementAndGet();
+            return new SearchResult(List.of("3"), 1);
+        });
+
+        // When
+        cache.remove("7");
+
+        // Then
+        search("dune", "3");
+        assertThat(searches).hasValue(2);
+        assertThat(meterRegistry.get("book.search.cache.invalidations").counter().count()).isZero();
+    }
+
+    @Test
+    void shouldNotCacheADatabaseSearchRightAfterAChangeNearIt() {
+        // Given: replicas that may be a minute behind, and a new book no page held yet
+        setUp(Duration.ofMinutes(1));
+        index(book("3").title("Dune").build());
+
+        // When
+        databaseSearch("dune");
+        databaseSearch("dune");
+        databaseSearch("emma");
+        databaseSearch("emma");
+
+        // Then: the replica may have missed the book for "dune", while "emma" is unaffected
+        assertThat(searches).hasValue(3);
+    }
+
+    @Test
+    void shouldNotCacheADatabaseSearchRightAfterEverythingWasInvalidated() {
+        // Given
+        setUp(Duration.ofMinutes(1));
+        cache.invalidateAll();
+
+        // When
+        databaseSearch("emma");
+        search("emma");
+        search("emma");
+
+        // Then: only the index search is cached
+        assertThat(searches).hasValue(2);
+    }
+
+    // Fed ahead of the indexes, as the application orders it
+    private void index(Book book) {
+        cache.index(book);
+        bookSearchIndex.index(book);
+    }
+
+    private void databaseSearch(String query) {
+        cache.get(query, SearchMode.STANDARD, false, FIRST_PAGE, this::fresh);
+    }
+
+    private SearchResult search(String query, String... ids) {
+        return cache.get(query, SearchMode.STANDARD, true, FIRST_PAGE, () -> {
+            searches.incrementAndGet();
+            return new SearchResult(List.of(ids), ids.length);
+        });
+    }
+
+    private SearchResult fresh() {
+        searches.incrementAndGet();
+        return new SearchResult(List.of(), 0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.nathaniel.bookbackend.book.dedup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicateIndexTest {
+
+    private static final String HOBBIT = "Bilbo Baggins is a hobbit who enjoys a comfortable, unambitious life, "
+        + "rarely travelling further than the pantry of his hobbit-hole in Bag End. But his contentment is "
+        + "disturbed when the wizard Gandalf and a company of thirteen dwarves arrive on his doorstep one day "
+        + "to whisk him away on an unexpected journey there and back again.";
+
+    private DuplicateIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DuplicateIndex();
+        ReflectionTestUtils.setField(index, "bands", 16);
+        ReflectionTestUtils.setField(index, "similarityThreshold", 0.6);
+        ReflectionTestUtils.setField(index, "maxBucketCandidates", 100);
+        index.init();
+        index.index(book("1").createdAt(1).title("The Hobbit").author("J.R.R. Tolkien")
+            .description(HOBBIT).build());
+        index.index(book("2").createdAt(2).title("The Hobbit").author("Tolkien, J.R.R.")
+            .description(HOBBIT + " Now with a new foreword.").build());
+        index.index(book("3").createdAt(3).title("The Hobbit: Or There and Back Again").author("J. R. R. Tolkien")
+            .description(HOBBIT.replace("thirteen", "13")).build());
+        index.index(book("4").createdAt(4).title("The Silmarillion").author("J.R.R. Tolkien")
+            .description("The story of the creation of the world and of the First Age, when the elves fought Morgoth.")
+            .build());
+        index.markReady();
+    }
+
+    @Test
+    void shouldEstimateSimilarityFromSignatures() {
+        // Given
+        int[] original = MinHasher.signature("The Hobbit", "J.R.R. Tolkien", HOBBIT);
+        int[] edition = MinHasher.signature("The Hobbit", "Tolkien, J.R.R.", HOBBIT + " Now with a new foreword.");
+        int[] other = MinHasher.signature("Dune", "Frank Herbert", "A desert planet and its spice.");
+
+        // Then
+        assertThat(MinHasher.similarity(original, original)).isEqualTo(1.0);
+        assertThat(MinHasher.similarity(original, edition)).isGreaterThan(0.7);
+        assertThat(MinHasher.similarity(original, other)).isLessThan(0.1);
+        assertThat(MinHasher.fromBytes(MinHasher.toBytes(edition))).isEqualTo(edition);
+        assertThat(MinHasher.signature(" ", null, "--")).isNull();
+    }
+
+    @Test
+    void shouldFindNearDuplicatesOfABook() {
+        // When
+        List<DuplicateCandidate> candidates = index.findSimilar("1", 10);
+
+        // Then
+        assertThat(candidates).extracting(DuplicateCandidate::getBookId).containsExactlyInAnyOrder("2", "3");
+        assertThat(candidates).isSortedAccordingTo(
+            (a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
+        assertThat(index.findSimilar("4", 10)).isEmpty();
+        assertThat(index.findSimilar("unknown", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldClusterDuplicatesOldestFirst() {
+        // When
+        List<DuplicateCluster> clusters = index.clusters(10);
+
+        // Then
+        assertThat(clusters).hasSize(1);
+        assertThat(clusters.get(0).getBookIds()).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    void shouldDropRemovedAndRewrittenBooks() {
+        // When
+        index.remove("2");
+        index.index(book("3").createdAt(5).title("The Hobbit").author("J.R.R. Tolkien")
+            .description("A rewritten blurb about nothing in particular.").build());
+
+        // Then
+        assertThat(index.findSimilar("1", 10)).isEmpty();
+        assertThat(index.clusters(10)).isEmpty();
+    }
+}
@@ -0,0 +1,145 @@
+package com.nathaniel.bookbackend.book.grpc;
+
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.book.service.BookService;
+import com.nathaniel.bookbackend.grpc.BookResult;
+import com.nathaniel.bookbackend.grpc.BooksRequest;
+import com.nathaniel.bookbackend.grpc.SearchRequest;
+import com.nathaniel.bookbackend.grpc.SearchStreamResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookGrpcServiceTest {
+
+    private BookGrpcService service;
+    private BookService bookService;
+
+    @BeforeEach
+    void setUp() {
+        bookService = mock(BookService.class);
+        BookResponseCache bookResponseCache = new BookResponseCache();
+        ReflectionTestUtils.setField(bookResponseCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(bookResponseCache, "maxEntries", 100L);
+        bookResponseCache.init();
+        service = new BookGrpcService();
+        ReflectionTestUtils.setField(service, "bookService", bookService);
+        ReflectionTestUtils.setField(service, "bookResponseCache", bookResponseCache);
+        ReflectionTestUtils.setField(service, "streamSearchWorkers", 2);
+        ReflectionTestUtils.setField(service, "streamReadyTimeout", Duration.ofMillis(100));
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void shouldFailASearchStreamWhoseClientStopsReading() {
+        // Given: a client that takes one message and then nothing
+        @SuppressWarnings("unchecked")
+        ServerCallStreamObserver<SearchStreamResponse> call = mock(ServerCallStreamObserver.class);
+        when(call.isReady()).thenReturn(true, false);
+        AtomicBoolean stoppedReading = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Predicate<BookSummary> consumer = invocation.getArgument(1);
+            BookSummary dune = new BookSummary(book("1").title("Dune").build(), List.of(), List.of());
+            while (consumer.test(dune)) {
+                // Keeps producing until the stream gives up
+            }
+            stoppedReading.set(true);
+            return null;
+        }).when(bookService).streamSearch(eq("dune"), any());
+
+        // When
+        service.streamSearch(SearchRequest.newBuilder().setQuery("dune").build(), call);
+
+        // Then
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(call, timeout(5_000)).onError(error.capture());
+        assertThat(Status.fromThrowable(error.getValue()).getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+        assertThat(error.getValue()).isInstanceOf(StatusRuntimeException.class);
+        assertThat(stoppedReading).isTrue();
+        verify(call, times(1)).onNext(any());
+        verify(call, never()).onCompleted();
+    }
+
+    @Test
+    void shouldStreamBooksAsTheClientTakesThem() {
+        // Given
+        @SuppressWarnings("unchecked")
+        ServerCallStreamObserver<BookResult> call = mock(ServerCallStreamObserver.class);
+        when(call.isReady()).thenReturn(true);
+        when(bookService.getCachedBooks(any())).thenReturn(Map.of());
+        List<String> ids = IntStream.range(0, 250).mapToObj(String::valueOf).toList();
+
+        // When
+        service.streamBooks(BooksRequest.newBuilder().addAllBookIds(ids).build(), call);
+
+        // Then
+        verify(call, timeout(5_000)).onCompleted();
+        verify(call, times(250)).onNext(any());
+        verify(bookService, times(3)).getCachedBooks(any());
+    }
+
+    @Test
+    void shouldFailABookStreamWhoseClientStopsReading() {
+        // Given
+        @SuppressWarnings("unchecked")
+        ServerCallStreamObserver<BookResult> call = mock(ServerCallStreamObserver.class);
+        when(call.isReady()).thenReturn(false);
+        when(bookService.getCachedBooks(any())).thenReturn(Map.of());
+
+        // When
+        service.streamBooks(BooksRequest.newBuilder().addBookIds("1").build(), call);
+
+        // Then
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(call, timeout(5_000)).onError(error.capture());
+        assertThat(Status.fromThrowable(error.getValue()).getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+        verify(call, never()).onNext(any());
+    }
+
+    @Test
+    void shouldRejectABookStreamOfTooManyIds() {
+        // Given
+        @SuppressWarnings("unchecked")
+        ServerCallStreamObserver<BookResult> call = mock(ServerCallStreamObserver.class);
+        List<String> ids = IntStream.range(0, 10_001).mapToObj(String::valueOf).toList();
+
+        // When
+        service.streamBooks(BooksRequest.newBuilder().addAllBookIds(ids).build(), call);
+
+        // Then
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(call).onError(error.capture());
+        assertThat(Status.fromThrowable(error.getValue()).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+        verify(bookService, never()).getCachedBooks(any());
+    }
+}
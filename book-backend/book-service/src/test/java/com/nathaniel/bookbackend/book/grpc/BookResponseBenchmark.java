@@ -0,0 +1,98 @@
+package com.nathaniel.bookbackend.book.grpc;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.grpc.SearchResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a 20-book search page into serialized SearchResponse bytes, building each
+ * BookResponse per call versus taking it from {@link BookResponseCache}. Compare gc.alloc.rate.norm,
+ * the bytes allocated per page. {@link #main} runs both with the GC profiler, from an IDE or, in
+ * book-backend, with:
+ * <pre>
+ * mvn -pl book-service -am test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp book-service/target/test-classes:book-service/target/classes:$(cat book-service/target/cp.txt) \
+ *     com.nathaniel.bookbackend.book.grpc.BookResponseBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookResponseBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(BookResponseBenchmark.class.getName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+
+    private List<BookSummary> page;
+    private BookResponseCache cache;
+
+    @Setup
+    public void setUp() {
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Book book = new Book();
+            book.setId("6f1c2a9e-0b4d-4c7e-9a51-" + String.format("%012d", i));
+            book.setTitle("The Left Hand of Darkness, volume " + i);
+            book.setAuthor("Ursula K. Le Guin");
+            book.setIsbn("978044100731" + (i % 10));
+            book.setDescription("A lone human ambassador is sent to Winter, an alien world whose inhabitants can "
+                + "choose and change their gender. ".repeat(4));
+            book.setCoverUrl("https://covers.example.org/b/isbn/978044100731" + (i % 10) + "-L.jpg");
+            book.setUpdatedAt(Instant.ofEpochMilli(i));
+            page.add(new BookSummary(book, List.of("Science Fiction", "Classics"), List.of("hugo", "nebula")));
+        }
+
+        cache = new BookResponseCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxEntries", 1000L);
+        cache.init();
+    }
+
+    @Benchmark
+    public byte[] buildEveryCall() {
+        SearchResponse.Builder response = SearchResponse.newBuilder().setTotalElements(PAGE_SIZE);
+        for (BookSummary book : page) {
+            response.addBooks(BookResponseCache.toBookResponse(book));
+        }
+        return response.build().toByteArray();
+    }
+
+    @Benchmark
+    public byte[] fromCache() {
+        SearchResponse.Builder response = SearchResponse.newBuilder().setTotalElements(PAGE_SIZE);
+        for (BookSummary book : page) {
+            response.addBooks(cache.get(book));
+        }
+        return response.build().toByteArray();
+    }
+}
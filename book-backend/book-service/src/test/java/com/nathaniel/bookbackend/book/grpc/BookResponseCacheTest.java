@@ -0,0 +1,98 @@
+package com.nathaniel.bookbackend.book.grpc;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.grpc.BookResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookResponseCacheTest {
+
+    private BookResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new BookResponseCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxEntries", 100L);
+        cache.init();
+    }
+
+    @Test
+    void shouldReuseTheResponseWhileTheVersionIsUnchanged() {
+        // Given
+        Book dune = book("1").title("Dune").genres("Science Fiction").updatedAt(1).build();
+        BookResponse first = cache.get(summary(dune));
+
+        // When
+        BookResponse second = cache.get(summary(dune));
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(second.getTitle()).isEqualTo("Dune");
+        assertThat(second.getGenresList()).containsExactly("Science Fiction");
+        assertThat(second.getAuthor()).isEmpty();
+    }
+
+    @Test
+    void shouldRebuildTheResponseForANewVersion() {
+        // Given
+        BookResponse old = cache.get(summary(book("1").title("Dune").updatedAt(1).build()));
+
+        // When
+        Book renamed = book("1").title("Dune Messiah").updatedAt(2).build();
+        BookResponse updated = cache.get(summary(renamed));
+
+        // Then
+        assertThat(updated).isNotSameAs(old);
+        assertThat(updated.getTitle()).isEqualTo("Dune Messiah");
+        assertThat(cache.get(summary(renamed))).isSameAs(updated);
+    }
+
+    @Test
+    void shouldShareTheResponseBetweenLookupsAndSearchResults() {
+        // Given
+        Book dune = book("1").title("Dune").genres("Science Fiction").updatedAt(1).build();
+        BookResponse fromLookup = cache.get(dune);
+
+        // When
+        BookResponse fromSearch = cache.get(summary(dune));
+
+        // Then
+        assertThat(fromSearch).isSameAs(fromLookup);
+        assertThat(cache.get(book("1").title("Dune Messiah").updatedAt(2).build()).getTitle())
+            .isEqualTo("Dune Messiah");
+    }
+
+    @Test
+    void shouldDropResponsesOfChangedAndDeletedBooks() {
+        // Given
+        Book dune = book("1").title("Dune").updatedAt(1).build();
+        Book emma = book("2").title("Emma").updatedAt(1).build();
+        Book ulysses = book("3").title("Ulysses").updatedAt(1).build();
+        BookResponse unchanged = cache.get(summary(dune));
+        BookResponse changed = cache.get(summary(emma));
+        BookResponse deleted = cache.get(summary(ulysses));
+
+        // When
+        cache.index(dune);
+        cache.index(book("2").title("Emma").updatedAt(2).build());
+        cache.remove("3");
+
+        // Then
+        assertThat(cache.get(summary(dune))).isSameAs(unchanged);
+        assertThat(cache.get(summary(emma))).isNotSameAs(changed);
+        assertThat(cache.get(summary(ulysses))).isNotSameAs(deleted);
+    }
+
+    private static BookSummary summary(Book book) {
+        return new BookSummary(book, List.copyOf(book.getGenres()), List.of());
+    }
+}
@@ -0,0 +1,86 @@
+package com.nathaniel.bookbackend.book.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogReaderTest {
+
+    @Test
+    void shouldReadJsonLines() throws IOException {
+        // Given
+        String dump = """
+            {"isbn": "978-0-261-10221-7", "title": "The Hobbit", "author": "J.R.R. Tolkien", "genres": ["Fantasy", "Classics"], "page_count": 310}
+
+            {"isbn": "0261102214", "title": "The Two Towers", "ratingsCount": "12"}
+            """;
+
+        // When
+        List<CatalogRow> rows = readAll(dump, CatalogFormat.JSONL);
+
+        // Then
+        assertThat(rows).allMatch(CatalogRow::isValid);
+        assertThat(rows.get(0).getBook().getIsbn()).isEqualTo("9780261102217");
+        assertThat(rows.get(0).getBook().getGenres()).containsExactly("Fantasy", "Classics");
+        assertThat(rows.get(0).getBook().getPageCount()).isEqualTo(310);
+        assertThat(rows.get(1).getLine()).isEqualTo(3);
+        assertThat(rows.get(1).getBook().getIsbn()).isEqualTo("9780261102217");
+        assertThat(rows.get(1).getBook().getRatingsCount()).isEqualTo(12);
+    }
+
+    @Test
+    void shouldReadQuotedCsvFields() throws IOException {
+        // Given
+        String dump = "isbn,title,author,description,genres\r\n"
+            + "9780261102217,The Hobbit,J.R.R. Tolkien,\"There and back, \"\"again\"\"\nA classic.\",Fantasy|Classics\r\n"
+            + "9780261102224,\"The Two Towers\",,,\n";
+
+        // When
+        List<CatalogRow> rows = readAll(dump, CatalogFormat.CSV);
+
+        // Then
+        assertThat(rows).hasSize(2).allMatch(CatalogRow::isValid);
+        assertThat(rows.get(0).getBook().getDescription()).isEqualTo("There and back, \"again\"\nA classic.");
+        assertThat(rows.get(0).getBook().getGenres()).containsExactly("Fantasy", "Classics");
+        assertThat(rows.get(1).getLine()).isEqualTo(4);
+        assertThat(rows.get(1).getBook().getAuthor()).isNull();
+    }
+
+    @Test
+    void shouldRejectInvalidRowsWithTheirLineNumbers() throws IOException {
+        // Given
+        String dump = """
+            {"isbn": "123", "title": "Short ISBN"}
+            {"isbn": "9780261102217"}
+            not json
+            {"isbn": "9780261102217", "title": "Hobbit", "pageCount": "many"}
+            """;
+
+        // When
+        List<CatalogRow> rows = readAll(dump, CatalogFormat.JSONL);
+
+        // Then
+        assertThat(rows).noneMatch(CatalogRow::isValid);
+        assertThat(rows).extracting(CatalogRow::getLine).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(rows.get(1).getError()).isEqualTo("title is required");
+    }
+
+    private static List<CatalogRow> readAll(String dump, CatalogFormat format) throws IOException {
+        List<CatalogRow> rows = new ArrayList<>();
+        try (CatalogReader reader = CatalogReader.open(
+                new ByteArrayInputStream(dump.getBytes(StandardCharsets.UTF_8)), format, new ObjectMapper())) {
+            CatalogRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
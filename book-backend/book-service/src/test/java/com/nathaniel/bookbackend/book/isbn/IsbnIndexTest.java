@@ -0,0 +1,87 @@
+package com.nathaniel.bookbackend.book.isbn;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsbnIndexTest {
+
+    private IsbnIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new IsbnIndex();
+        ReflectionTestUtils.setField(index, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(index, "minExpectedBooks", 16L);
+        index.index(book("1").isbn("978-0-261-10221-7").updatedAt(1).build());
+        index.index(book("2").isbn("0-8044-2957-X").updatedAt(1).build());
+        index.index(book("3").isbn("not an isbn").updatedAt(1).build());
+        index.markReady();
+    }
+
+    @Test
+    void shouldFindBooksByCanonicalIsbn() {
+        // Then
+        assertThat(index.findId("9780261102217")).isEqualTo("1");
+        assertThat(index.findId("9780804429573")).isEqualTo("2");
+        assertThat(index.findId("9780261102224")).isNull();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldReportWhichIsbnsAlreadyExist() {
+        // When
+        var existing = index.findExisting(List.of("9780261102217", "9780261102224", "9780804429573"));
+
+        // Then
+        assertThat(existing).containsExactlyInAnyOrder("9780261102217", "9780804429573");
+    }
+
+    @Test
+    void shouldForgetRemovedBooksAndIgnoreStaleUpdates() {
+        // When
+        index.remove("1");
+        index.index(book("2").isbn("9780804429573").updatedAt(0).build());
+
+        // Then
+        assertThat(index.findId("9780261102217")).isNull();
+        assertThat(index.findId("9780804429573")).isEqualTo("2");
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepFindingBooksAsTheTableAndFilterGrow() {
+        // When
+        for (int i = 0; i < 5000; i++) {
+            index.index(book("n" + i).isbn(isbn13(100000 + i)).updatedAt(1).build());
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            index.remove("n" + i);
+        }
+
+        // Then
+        assertThat(index.size()).isEqualTo(2502);
+        for (int i = 0; i < 5000; i++) {
+            assertThat(index.findId(isbn13(100000 + i))).isEqualTo(i % 2 == 0 ? null : "n" + i);
+        }
+        assertThat(index.findId("9780261102217")).isEqualTo("1");
+    }
+
+    private static String isbn13(int serial) {
+        String body = String.format("978000%06d", serial);
+        return body + checkDigit(body);
+    }
+
+    private static int checkDigit(String twelveDigits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (twelveDigits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,30 @@
+package com.nathaniel.bookbackend.book.isbn;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsbnsTest {
+
+    @Test
+    void shouldCanonicalizeIsbn13Spellings() {
+        assertThat(Isbns.toIsbn13("9780261102217")).isEqualTo("9780261102217");
+        assertThat(Isbns.toIsbn13("978-0-261-10221-7")).isEqualTo("9780261102217");
+        assertThat(Isbns.toIsbn13(" ISBN-13: 978 0 261 10221 7 ")).isEqualTo("9780261102217");
+    }
+
+    @Test
+    void shouldConvertIsbn10() {
+        assertThat(Isbns.toIsbn13("0-261-10221-4")).isEqualTo("9780261102217");
+        assertThat(Isbns.toIsbn13("isbn 080442957x")).isEqualTo("9780804429573");
+    }
+
+    @Test
+    void shouldRejectMalformedIsbns() {
+        assertThat(Isbns.toIsbn13(null)).isNull();
+        assertThat(Isbns.toIsbn13("123")).isNull();
+        assertThat(Isbns.toIsbn13("9780261102218")).isNull();
+        assertThat(Isbns.toIsbn13("0261102215")).isNull();
+        assertThat(Isbns.toIsbn13("1234567890123")).isNull();
+    }
+}
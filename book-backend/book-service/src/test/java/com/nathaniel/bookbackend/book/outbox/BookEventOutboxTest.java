@@ -0,0 +1,121 @@
+package com.nathaniel.bookbackend.book.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import com.nathaniel.bookbackend.events.KafkaTopics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+// Each test commits or rolls back on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookEventOutboxTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:14-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    // The application class scans everything, so load only the JPA slice and the outbox
+    @Configuration
+    @EntityScan(basePackageClasses = OutboxEvent.class)
+    @EnableJpaRepositories(basePackageClasses = OutboxEventRepository.class)
+    @Import(BookEventOutbox.class)
+    static class Slice {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper().findAndRegisterModules();
+        }
+    }
+
+    @Autowired
+    private BookEventOutbox bookEventOutbox;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private OutboxRelay outboxRelay;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository.deleteAll();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void shouldRecordTheEventAndWakeTheRelayWhenTheChangeCommits() {
+        // When
+        transactionTemplate.executeWithoutResult(status ->
+            bookEventOutbox.publish(new BookUpdateEvent("book-1", "UPDATED", "user-1")));
+
+        // Then
+        assertThat(outboxEventRepository.findAll()).singleElement().satisfies(event -> {
+            assertThat(event.getTopic()).isEqualTo(KafkaTopics.BOOK_UPDATES);
+            assertThat(event.getEventKey()).isEqualTo("book-1");
+            assertThat(event.getPayload()).contains("\"updateType\":\"UPDATED\"");
+            assertThat(event.getClaimedUntil()).isNull();
+        });
+        verify(outboxRelay).wakeUp();
+    }
+
+    @Test
+    void shouldLeaveNoEventWhenTheChangeRollsBack() {
+        // When
+        transactionTemplate.executeWithoutResult(status -> {
+            bookEventOutbox.publish(new BookUpdateEvent("book-1", "UPDATED", "user-1"));
+            status.setRollbackOnly();
+        });
+
+        // Then
+        assertThat(outboxEventRepository.count()).isZero();
+        verify(outboxRelay, never()).wakeUp();
+    }
+
+    @Test
+    void shouldRefuseToPublishOutsideATransaction() {
+        assertThatThrownBy(() -> bookEventOutbox.publish(new BookUpdateEvent("book-1", "UPDATED", "user-1")))
+            .isInstanceOf(IllegalTransactionStateException.class);
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+}
@@ -0,0 +1,167 @@
+package com.nathaniel.bookbackend.book.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import com.nathaniel.bookbackend.events.KafkaTopics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+// The relay runs its own transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:14-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    // The application class scans everything, so load only the JPA slice
+    @Configuration
+    @EntityScan(basePackageClasses = OutboxEvent.class)
+    @EnableJpaRepositories(basePackageClasses = OutboxEventRepository.class)
+    static class Slice {
+    }
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private KafkaTemplate<String, BookUpdateEvent> kafkaTemplate;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        outboxEventRepository.deleteAll();
+        kafkaTemplate = mock(KafkaTemplate.class);
+
+        // Wired by hand, without the background thread start() would launch
+        relay = new OutboxRelay();
+        ReflectionTestUtils.setField(relay, "outboxEventRepository", outboxEventRepository);
+        ReflectionTestUtils.setField(relay, "kafkaTemplate", kafkaTemplate);
+        ReflectionTestUtils.setField(relay, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(relay, "batchSize", 10);
+        ReflectionTestUtils.setField(relay, "sendTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(relay, "claimTimeout", Duration.ofMinutes(2));
+        ReflectionTestUtils.setField(relay, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(relay, "inFlight", new Semaphore(10));
+    }
+
+    @Test
+    void shouldRetryFromTheFirstFailedSendInTheNextRound() throws Exception {
+        // Given
+        save("book-1");
+        save("book-2");
+        save("book-3");
+        when(kafkaTemplate.send(eq(KafkaTopics.BOOK_UPDATES), anyString(), any()))
+            .thenReturn(acked(), failed(), acked())
+            .thenReturn(acked());
+
+        // When
+        int firstRound = relay.relayBatch();
+
+        // Then: only the acknowledged prefix is gone, and the rest is free for the next round
+        assertThat(firstRound).isEqualTo(1);
+        assertThat(outboxEventRepository.findAll()).extracting(OutboxEvent::getEventKey, OutboxEvent::getClaimedUntil)
+            .containsExactlyInAnyOrder(
+                tuple("book-2", null),
+                tuple("book-3", null));
+
+        // When
+        int secondRound = relay.relayBatch();
+
+        // Then
+        assertThat(secondRound).isEqualTo(2);
+        assertThat(outboxEventRepository.count()).isZero();
+        InOrder order = inOrder(kafkaTemplate);
+        order.verify(kafkaTemplate).send(eq(KafkaTopics.BOOK_UPDATES), eq("book-1"), any());
+        order.verify(kafkaTemplate).send(eq(KafkaTopics.BOOK_UPDATES), eq("book-2"), any());
+        order.verify(kafkaTemplate).send(eq(KafkaTopics.BOOK_UPDATES), eq("book-3"), any());
+        order.verify(kafkaTemplate).send(eq(KafkaTopics.BOOK_UPDATES), eq("book-2"), any());
+        order.verify(kafkaTemplate).send(eq(KafkaTopics.BOOK_UPDATES), eq("book-3"), any());
+    }
+
+    @Test
+    void shouldSkipRowsAnotherRelayHoldsUntilItsClaimRunsOut() throws Exception {
+        // Given
+        OutboxEvent held = save("book-1");
+        OutboxEvent abandoned = save("book-2");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            outboxEventRepository.claim(List.of(held.getId()), Instant.now().plusSeconds(60));
+            outboxEventRepository.claim(List.of(abandoned.getId()), Instant.now().minusSeconds(1));
+        });
+        when(kafkaTemplate.send(eq(KafkaTopics.BOOK_UPDATES), anyString(), any())).thenReturn(acked());
+
+        // When
+        int relayed = relay.relayBatch();
+
+        // Then
+        assertThat(relayed).isEqualTo(1);
+        verify(kafkaTemplate, never()).send(eq(KafkaTopics.BOOK_UPDATES), eq("book-1"), any());
+        assertThat(outboxEventRepository.findAll()).extracting(OutboxEvent::getEventKey).containsExactly("book-1");
+    }
+
+    private OutboxEvent save(String bookId) throws Exception {
+        String payload = objectMapper.writeValueAsString(new BookUpdateEvent(bookId, "UPDATED", null));
+        return outboxEventRepository.save(new OutboxEvent(KafkaTopics.BOOK_UPDATES, bookId, payload));
+    }
+
+    private static CompletableFuture<SendResult<String, BookUpdateEvent>> acked() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletableFuture<SendResult<String, BookUpdateEvent>> failed() {
+        return CompletableFuture.failedFuture(new KafkaException("Broker unavailable"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.nathaniel.bookbackend.book.rating;
+
+import com.nathaniel.bookbackend.events.UserActivityEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RatingAggregatorTest {
+
+    @Test
+    void shouldCoalesceNewRatingsAndReRates() {
+        // When
+        Map<String, RatingDelta> deltas = deltas(Map.of(),
+            rated("user-1", "book-1", null, 4.0),
+            rated("user-2", "book-1", null, 5.0),
+            rated("user-1", "book-1", 4.0, 2.0),
+            rated("user-1", "book-2", null, 3.0));
+
+        // Then
+        assertThat(deltas).containsEntry("book-1", new RatingDelta(7.0, 2))
+            .containsEntry("book-2", new RatingDelta(3.0, 1));
+    }
+
+    @Test
+    void shouldTakeRemovedRatingsBackOut() {
+        // When
+        Map<String, RatingDelta> deltas = deltas(Map.of(),
+            removed("user-1", "book-1", 4.0),
+            rated("user-1", "book-2", null, 3.0),
+            rated("user-1", "book-2", 3.0, null));
+
+        // Then
+        assertThat(deltas).containsOnlyKeys("book-1").containsEntry("book-1", new RatingDelta(-4.0, -1));
+    }
+
+    @Test
+    void shouldIgnoreActivityWithoutRatingChanges() {
+        // When
+        Map<RatingChange.Key, RatingChange> changes = RatingAggregator.coalesce(List.of(
+            new UserActivityEvent("user-1", "BOOK_ADDED", "book-1"),
+            new UserActivityEvent("user-1", "STATUS_UPDATED", "book-1"),
+            removed("user-1", "book-2", null),
+            rated("user-1", null, null, 5.0)));
+
+        // Then
+        assertThat(changes).isEmpty();
+        assertThat(RatingAggregator.deltas(List.of(new RatingChange("book-1", "user-1", 4.0, 4.0)), Map.of()))
+            .isEmpty();
+    }
+
+    @Test
+    void shouldUnpackBatchedActivity() {
+        // Given
+        UserActivityEvent batch = new UserActivityEvent("user-1", "BATCH", null);
+        batch.setActivities(List.of(
+            new UserActivityEvent("user-1", "BOOK_ADDED", "book-1"),
+            removed("user-1", "book-2", 4.0)));
+
+        // When
+        Map<String, RatingDelta> deltas = deltas(Map.of(), batch, rated("user-2", "book-2", null, 5.0));
+
+        // Then
+        assertThat(deltas).containsOnlyKeys("book-2").containsEntry("book-2", new RatingDelta(1.0, 0));
+    }
+
+    @Test
+    void shouldNotCountARedeliveredRatingTwice() {
+        // Given
+        UserActivityEvent rating = rated("user-1", "book-1", null, 4.0);
+        Map<RatingChange.Key, Double> stored = Map.of(new RatingChange.Key("book-1", "user-1"), 4.0);
+
+        // When
+        Map<String, RatingDelta> deltas = deltas(stored, rating);
+
+        // Then
+        assertThat(deltas).isEmpty();
+    }
+
+    @Test
+    void shouldNotTakeARedeliveredRemovalOutTwice() {
+        // Given
+        Map<RatingChange.Key, Double> stored = new HashMap<>();
+        stored.put(new RatingChange.Key("book-1", "user-1"), null);
+
+        // When
+        Map<String, RatingDelta> deltas = deltas(stored, removed("user-1", "book-1", 4.0));
+
+        // Then
+        assertThat(deltas).isEmpty();
+    }
+
+    @Test
+    void shouldMoveTotalsFromTheStoredRating() {
+        // Given
+        Map<RatingChange.Key, Double> stored = Map.of(new RatingChange.Key("book-1", "user-1"), 3.0);
+
+        // When
+        Map<String, RatingDelta> deltas = deltas(stored, rated("user-1", "book-1", 2.0, 5.0));
+
+        // Then
+        assertThat(deltas).containsEntry("book-1", new RatingDelta(2.0, 0));
+    }
+
+    private static Map<String, RatingDelta> deltas(Map<RatingChange.Key, Double> stored, UserActivityEvent... events) {
+        return RatingAggregator.deltas(RatingAggregator.coalesce(List.of(events)).values(), stored);
+    }
+
+    private static UserActivityEvent rated(String userId, String bookId, Double previousRating, Double rating) {
+        UserActivityEvent event = new UserActivityEvent(userId, "REVIEW_ADDED", bookId);
+        event.setPreviousRating(previousRating);
+        event.setRating(rating);
+        return event;
+    }
+
+    private static UserActivityEvent removed(String userId, String bookId, Double previousRating) {
+        UserActivityEvent event = new UserActivityEvent(userId, "BOOK_REMOVED", bookId);
+        event.setPreviousRating(previousRating);
+        return event;
+    }
+}
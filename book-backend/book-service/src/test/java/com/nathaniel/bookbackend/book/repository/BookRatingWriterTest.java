@@ -0,0 +1,114 @@
+package com.nathaniel.bookbackend.book.repository;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.rating.BookUserRating;
+import com.nathaniel.bookbackend.book.rating.RatingChange;
+import com.nathaniel.bookbackend.book.rating.RatingDelta;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+class BookRatingWriterTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:14-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    // The application class scans everything, so load only the JPA slice and the writer
+    @Configuration
+    @EntityScan(basePackageClasses = {Book.class, BookUserRating.class})
+    @Import(BookRatingWriter.class)
+    static class Slice {
+    }
+
+    @Autowired
+    private BookRatingWriter bookRatingWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void shouldRebuildTheUsersShareAndKeepTheImportedOne() {
+        // Given: ten imported ratings averaging 4, two user ratings, and a delta no stored rating backs
+        String bookId = importedBook(4.0, 10);
+        bookRatingWriter.saveUserRatings(List.of(
+            new RatingChange(bookId, "user-1", null, 5.0),
+            new RatingChange(bookId, "user-2", null, 3.0)));
+        bookRatingWriter.applyAll(Map.of(bookId, new RatingDelta(8.0, 2)));
+        bookRatingWriter.applyAll(Map.of(bookId, new RatingDelta(5.0, 1)));
+
+        // When
+        List<String> corrected = bookRatingWriter.reconcile();
+
+        // Then
+        assertThat(corrected).containsExactly(bookId);
+        Map<String, Object> totals = jdbcTemplate.queryForMap("SELECT ratings_sum, ratings_count, average_rating, "
+            + "user_ratings_sum, user_ratings_count FROM books WHERE id = ?", bookId);
+        assertThat(totals).containsEntry("ratings_sum", 48.0)
+            .containsEntry("ratings_count", 12)
+            .containsEntry("average_rating", 4.0)
+            .containsEntry("user_ratings_sum", 8.0)
+            .containsEntry("user_ratings_count", 2);
+        assertThat(bookRatingWriter.reconcile()).isEmpty();
+    }
+
+    @Test
+    void shouldReturnStoredRatingsIncludingTakenBackOnes() {
+        // Given
+        String bookId = importedBook(null, null);
+        bookRatingWriter.saveUserRatings(List.of(
+            new RatingChange(bookId, "user-1", null, 4.0),
+            new RatingChange(bookId, "user-2", 3.0, null)));
+
+        // When
+        Map<RatingChange.Key, Double> stored = bookRatingWriter.lockUserRatings(List.of(
+            new RatingChange.Key(bookId, "user-1"),
+            new RatingChange.Key(bookId, "user-2"),
+            new RatingChange.Key(bookId, "user-3")));
+
+        // Then
+        assertThat(stored).containsEntry(new RatingChange.Key(bookId, "user-1"), 4.0)
+            .containsEntry(new RatingChange.Key(bookId, "user-2"), null)
+            .doesNotContainKey(new RatingChange.Key(bookId, "user-3"));
+    }
+
+    private String importedBook(Double averageRating, Integer ratingsCount) {
+        Book book = new Book();
+        book.setTitle("Imported");
+        book.setAverageRating(averageRating);
+        book.setRatingsCount(ratingsCount);
+        entityManager.persistAndFlush(book);
+        return book.getId();
+    }
+}
@@ -0,0 +1,147 @@
+package com.nathaniel.bookbackend.book.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex();
+        ReflectionTestUtils.setField(index, "maxPrefixExpansions", 64);
+
+        index.index(book("1").title("The Hobbit").author("J.R.R. Tolkien")
+            .description("A hobbit leaves the Shire").genres("fantasy").build());
+        index.index(book("2").title("Harry Potter and the Philosopher's Stone").author("J.K. Rowling")
+            .description("A boy wizard").genres("fantasy").build());
+        index.index(book("3").title("Harry Potter and the Chamber of Secrets").author("J.K. Rowling")
+            .description("The boy wizard returns").genres("fantasy").build());
+        index.index(book("4").title("Dune").author("Frank Herbert")
+            .description("Spice and sandworms on Arrakis").genres("science fiction").build());
+    }
+
+    @Test
+    void shouldRequireAllTermsToMatch() {
+        // When
+        SearchHits hits = index.search("harry secrets", 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("3");
+        assertThat(hits.getTotalHits()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldTreatLastTermAsPrefix() {
+        // When
+        SearchHits hits = index.search("Harry Pot", 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactlyInAnyOrder("2", "3");
+    }
+
+    @Test
+    void shouldFoldCaseAndAccents() {
+        // When
+        SearchHits hits = index.search("TÓLKIEN ", 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("1");
+    }
+
+    @Test
+    void shouldRankTitleMatchesAboveDescriptionMatches() {
+        // Given
+        index.index(book("5").title("Arrakis Awakens").author("Someone Else")
+            .description("Not about spice").genres("science fiction").build());
+
+        // When
+        SearchHits hits = index.search("arrakis ", 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("5", "4");
+    }
+
+    @Test
+    void shouldPageAndCountTotalHits() {
+        // When
+        SearchHits firstPage = index.search("fantasy ", 0, 2);
+        SearchHits secondPage = index.search("fantasy ", 2, 2);
+
+        // Then
+        assertThat(firstPage.getBookIds()).hasSize(2);
+        assertThat(secondPage.getBookIds()).hasSize(1);
+        assertThat(firstPage.getTotalHits()).isEqualTo(3);
+        assertThat(firstPage.getBookIds()).doesNotContainAnyElementsOf(secondPage.getBookIds());
+    }
+
+    @Test
+    void shouldForgetRemovedAndReplacedBooks() {
+        // When
+        index.remove("2");
+        index.index(book("3").title("Chamber of Secrets").author("J.K. Rowling")
+            .description("").genres("fantasy").build());
+
+        // Then
+        assertThat(index.search("harry ", 0, 10).getBookIds()).isEmpty();
+        assertThat(index.search("chamber ", 0, 10).getBookIds()).containsExactly("3");
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldKeepBooksSharingTermsWithRemovedOnes() {
+        // Given
+        for (int i = 10; i < 20; i++) {
+            index.index(book(String.valueOf(i)).title("Saga volume " + i).build());
+        }
+
+        // When
+        index.remove("10");
+        index.remove("15");
+        index.remove("19");
+        index.index(book("12").title("Saga volume twelve").build());
+        index.index(book("20").title("Saga volume 20").build());
+
+        // Then
+        assertThat(index.search("saga ", 0, 20).getBookIds())
+            .containsExactlyInAnyOrder("11", "12", "13", "14", "16", "17", "18", "20");
+        assertThat(index.search("volume 12", 0, 10).getBookIds()).isEmpty();
+        assertThat(index.search("volume twelve", 0, 10).getBookIds()).containsExactly("12");
+        assertThat(index.search("volume 19", 0, 10).getBookIds()).isEmpty();
+    }
+
+    @Test
+    void shouldTakeTheVersionOfACopyWithUnchangedText() {
+        // Given
+        index.index(book("5").title("Solaris").author("Stanislaw Lem").updatedAt(2000).build());
+        index.index(book("5").title("Solaris").author("Stanislaw Lem").updatedAt(3000).build());
+
+        // When
+        index.index(book("5").title("Fiasco").author("Stanislaw Lem").updatedAt(2500).build());
+
+        // Then
+        assertThat(index.search("solaris ", 0, 10).getBookIds()).containsExactly("5");
+        assertThat(index.search("fiasco ", 0, 10).getBookIds()).isEmpty();
+        index.index(book("5").title("Fiasco").author("Stanislaw Lem").updatedAt(4000).build());
+        assertThat(index.search("solaris ", 0, 10).getBookIds()).isEmpty();
+        assertThat(index.search("fiasco ", 0, 10).getBookIds()).containsExactly("5");
+    }
+
+    @Test
+    void shouldTellWhetherABooksTextIsIndexed() {
+        // Given
+        index.index(book("5").title("Solaris").author("Stanislaw Lem").genres("Science Fiction").build());
+
+        // Then
+        assertThat(index.hasText(book("5").title("Solaris").author("Stanislaw Lem").genres("Science Fiction")
+            .updatedAt(3000).build())).isTrue();
+        assertThat(index.hasText(book("5").title("Solaris").author("Stanislaw Lem").build())).isFalse();
+        assertThat(index.hasText(book("6").title("Solaris").author("Stanislaw Lem").genres("Science Fiction")
+            .build())).isFalse();
+    }
+}
@@ -0,0 +1,91 @@
+package com.nathaniel.bookbackend.book.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FuzzyBookIndexTest {
+
+    private FuzzyBookIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FuzzyBookIndex();
+        index.index(book("1").title("The Hobbit").author("J.R.R. Tolkien").build());
+        index.index(book("2").title("Crime and Punishment").author("Fyodor Dostoyevsky").build());
+        index.index(book("3").title("The Brothers Karamazov").author("Fyodor Dostoevsky").build());
+        index.index(book("4").title("Dune").author("Frank Herbert").build());
+    }
+
+    @Test
+    void shouldMatchMisspelledWords() {
+        // When
+        SearchHits hits = index.search("hobit tolkein", 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("1");
+    }
+
+    @Test
+    void shouldRankExactSpellingFirst() {
+        // When
+        SearchHits hits = index.search("dostoevsky", 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("3", "2");
+    }
+
+    @Test
+    void shouldTolerateTranspositions() {
+        // When
+        SearchHits hits = index.search("dnue", 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("4");
+    }
+
+    @Test
+    void shouldNotMatchUnrelatedWordsOrRemovedBooks() {
+        // When
+        index.remove("4");
+
+        // Then
+        assertThat(index.search("herbret", 0, 10).getBookIds()).isEmpty();
+        assertThat(index.search("xyz", 0, 10).getBookIds()).isEmpty();
+    }
+
+    @Test
+    void shouldKeepBooksAndWordsSharingPostingsWithRemovedOnes() {
+        // Given
+        index.index(book("5").title("Dune Messiah").author("Frank Herbert").build());
+        index.index(book("6").title("Children of Dune").author("Frank Herbert").build());
+        index.index(book("7").title("Dunes").author("Brian Herbert").build());
+
+        // When
+        index.remove("4");
+        index.remove("7");
+        index.index(book("6").title("Chapterhouse").author("Frank Herbert").build());
+
+        // Then
+        assertThat(index.search("dnue", 0, 10).getBookIds()).containsExactly("5");
+        assertThat(index.search("herbret", 0, 10).getBookIds()).containsExactlyInAnyOrder("5", "6");
+        assertThat(index.search("brian", 0, 10).getBookIds()).isEmpty();
+        assertThat(index.search("chapterhuose", 0, 10).getBookIds()).containsExactly("6");
+    }
+
+    @Test
+    void shouldTakeTheVersionOfACopyWithUnchangedWords() {
+        // Given
+        index.index(book("5").title("Solaris").author("Stanislaw Lem").updatedAt(3000).build());
+
+        // When
+        index.index(book("5").title("Solaris").author("Stanislaw Lem").updatedAt(4000).build());
+        index.index(book("5").title("Fiasco").author("Stanislaw Lem").updatedAt(3500).build());
+
+        // Then
+        assertThat(index.search("solris", 0, 10).getBookIds()).containsExactly("5");
+        assertThat(index.search("fiasco", 0, 10).getBookIds()).isEmpty();
+    }
+}
@@ -0,0 +1,82 @@
+package com.nathaniel.bookbackend.book.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class GenreFacetIndexTest {
+
+    private GenreFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new GenreFacetIndex();
+        index.index(book("1").updatedAt(1).genres("Fantasy", "Adventure").build());
+        index.index(book("2").updatedAt(1).genres("Fantasy").build());
+        index.index(book("3").updatedAt(1).genres("Science Fiction", "Adventure").build());
+        index.index(book("4").updatedAt(1).genres("Fantasy", "Adventure", "Classics").build());
+    }
+
+    @Test
+    void shouldCountBooksPerGenre() {
+        // When
+        List<GenreCount> counts = index.genreCounts();
+
+        // Then
+        assertThat(counts).extracting(GenreCount::getGenre)
+            .containsExactly("Adventure", "Fantasy", "Classics", "Science Fiction");
+        assertThat(counts).extracting(GenreCount::getCount).containsExactly(3L, 3L, 1L, 1L);
+    }
+
+    @Test
+    void shouldIntersectGenresForAllMatch() {
+        // When
+        SearchHits hits = index.find(List.of("Fantasy", "Adventure"), GenreMatch.ALL, 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("1", "4");
+        assertThat(hits.getTotalHits()).isEqualTo(2);
+        assertThat(index.find(List.of("Fantasy", "Horror"), GenreMatch.ALL, 0, 10).getTotalHits()).isZero();
+    }
+
+    @Test
+    void shouldUnionGenresForAnyMatch() {
+        // When
+        SearchHits hits = index.find(List.of("Classics", "Science Fiction", "Horror"), GenreMatch.ANY, 0, 10);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("3", "4");
+    }
+
+    @Test
+    void shouldPageThroughMatches() {
+        // When
+        SearchHits hits = index.find(List.of("Adventure"), GenreMatch.ALL, 1, 1);
+
+        // Then
+        assertThat(hits.getBookIds()).containsExactly("3");
+        assertThat(hits.getTotalHits()).isEqualTo(3);
+        assertThat(index.find(List.of("Adventure"), GenreMatch.ALL, 5, 1).getBookIds()).isEmpty();
+    }
+
+    @Test
+    void shouldReflectRemovedAndUpdatedBooks() {
+        // When
+        index.remove("3");
+        index.index(book("4").updatedAt(2).genres("Classics").build());
+        index.index(book("1").updatedAt(0).genres("Horror").build());
+
+        // Then
+        assertThat(index.genreCounts()).extracting(GenreCount::getGenre, GenreCount::getCount)
+            .containsExactly(
+                tuple("Fantasy", 2L),
+                tuple("Adventure", 1L),
+                tuple("Classics", 1L));
+        assertThat(index.find(List.of("Classics"), GenreMatch.ALL, 0, 10).getBookIds()).containsExactly("4");
+    }
+}
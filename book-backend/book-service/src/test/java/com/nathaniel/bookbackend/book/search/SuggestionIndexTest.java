@@ -0,0 +1,67 @@
+package com.nathaniel.bookbackend.book.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionIndexTest {
+
+    private SuggestionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SuggestionIndex();
+        ReflectionTestUtils.setField(index, "topK", 3);
+
+        index.index(book("1").title("The Hobbit").author("J.R.R. Tolkien").rating(4.0, 500).build());
+        index.index(book("2").title("The Two Towers").author("J.R.R. Tolkien").rating(4.0, 300).build());
+        index.index(book("3").title("Harry Potter and the Philosopher's Stone").author("J.K. Rowling").rating(4.0, 900).build());
+        index.index(book("4").title("Harry Potter and the Chamber of Secrets").author("J.K. Rowling").rating(4.0, 700).build());
+        index.index(book("5").title("Theory of Everything").author("Stephen Hawking").rating(4.0, 50).build());
+    }
+
+    @Test
+    void shouldRankSuggestionsByRatingsCount() {
+        // When
+        List<BookSuggestion> suggestions = index.suggest("harry p", 10);
+
+        // Then
+        assertThat(suggestions).extracting(BookSuggestion::getBookId).containsExactly("3", "4");
+    }
+
+    @Test
+    void shouldCollapseBooksByTheSameAuthor() {
+        // When
+        List<BookSuggestion> suggestions = index.suggest("J.", 10);
+
+        // Then
+        assertThat(suggestions).extracting(BookSuggestion::getText).containsExactly("J.K. Rowling", "J.R.R. Tolkien");
+    }
+
+    @Test
+    void shouldKeepOnlyTopKPerPrefix() {
+        // When
+        List<BookSuggestion> suggestions = index.suggest("the", 10);
+
+        // Then
+        assertThat(suggestions).extracting(BookSuggestion::getText)
+            .containsExactly("The Hobbit", "The Two Towers", "Theory of Everything");
+    }
+
+    @Test
+    void shouldReflectRemovedAndUpdatedBooks() {
+        // When
+        index.remove("1");
+        index.index(book("4").title("Chamber of Secrets").author("J.K. Rowling").rating(4.0, 700).build());
+
+        // Then
+        assertThat(index.suggest("the h", 10)).isEmpty();
+        assertThat(index.suggest("harry", 10)).extracting(BookSuggestion::getBookId).containsExactly("3");
+        assertThat(index.suggest("cham", 10)).extracting(BookSuggestion::getBookId).containsExactly("4");
+    }
+}
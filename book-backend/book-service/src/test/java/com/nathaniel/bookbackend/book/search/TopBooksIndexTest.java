@@ -0,0 +1,78 @@
+package com.nathaniel.bookbackend.book.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopBooksIndexTest {
+
+    private TopBooksIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TopBooksIndex();
+        ReflectionTestUtils.setField(index, "k", 3);
+        ReflectionTestUtils.setField(index, "slack", 1);
+        ReflectionTestUtils.setField(index, "maxEntries", 1000L);
+        ReflectionTestUtils.setField(index, "minRatings", 2);
+
+        index.index(book("1").rating(4.5, 100).createdAt(1).language("en").genres("Fantasy").build());
+        index.index(book("2").rating(4.8, 10).createdAt(2).language("en").genres("Fantasy", "Classics").build());
+        index.index(book("3").rating(3.9, 500).createdAt(3).language("fr").genres("Science Fiction").build());
+        index.index(book("4").rating(5.0, 1).createdAt(4).language("en").genres("Fantasy").build());
+        index.index(book("5").rating(4.1, 40).createdAt(5).language("fr").genres("Fantasy").build());
+    }
+
+    @Test
+    void shouldRankTheWholeCatalog() {
+        // Then
+        assertThat(index.top(TopRanking.BEST_RATED, null, null, 10)).containsExactly("2", "1", "5");
+        assertThat(index.top(TopRanking.MOST_RATED, null, null, 2)).containsExactly("3", "1");
+        assertThat(index.top(TopRanking.RECENTLY_ADDED, null, null, 10)).containsExactly("5", "4", "3");
+    }
+
+    @Test
+    void shouldFilterByGenreAndLanguage() {
+        // Then
+        assertThat(index.top(TopRanking.MOST_RATED, "Fantasy", null, 10)).containsExactly("1", "5", "2");
+        assertThat(index.top(TopRanking.MOST_RATED, null, "fr", 10)).containsExactly("3", "5");
+        assertThat(index.top(TopRanking.BEST_RATED, "Fantasy", "en", 10)).containsExactly("2", "1");
+        assertThat(index.top(TopRanking.BEST_RATED, "Horror", null, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldRefillListsThatRemovalsLeftShort() {
+        // When
+        index.remove("5");
+        index.remove("4");
+        index.index(book("3").rating(3.9, 600).createdAt(3).language("fr").genres("Science Fiction").build());
+
+        // Then
+        assertThat(index.top(TopRanking.RECENTLY_ADDED, null, null, 10)).containsExactly("3", "2", "1");
+        assertThat(index.top(TopRanking.MOST_RATED, null, null, 10)).containsExactly("3", "1", "2");
+    }
+
+    @Test
+    void shouldScanWhenFacetListsAreOverTheMemoryCeiling() {
+        // Given: room for the catalog-wide lists only
+        index = new TopBooksIndex();
+        ReflectionTestUtils.setField(index, "k", 3);
+        ReflectionTestUtils.setField(index, "slack", 1);
+        ReflectionTestUtils.setField(index, "maxEntries", 12L);
+        ReflectionTestUtils.setField(index, "minRatings", 2);
+        index.index(book("1").rating(4.5, 100).createdAt(1).language("en").genres("Fantasy").build());
+        index.index(book("2").rating(4.8, 10).createdAt(2).language("en").genres("Classics").build());
+        index.index(book("3").rating(3.9, 500).createdAt(3).language("fr").genres("Fantasy").build());
+
+        // When
+        List<String> top = index.top(TopRanking.MOST_RATED, "Fantasy", null, 10);
+
+        // Then
+        assertThat(top).containsExactly("3", "1");
+    }
+}
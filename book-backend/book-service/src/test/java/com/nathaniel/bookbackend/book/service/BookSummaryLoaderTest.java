@@ -0,0 +1,123 @@
+package com.nathaniel.bookbackend.book.service;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.model.BookSummary;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+class BookSummaryLoaderTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:14-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    // The application class scans everything, so load only the JPA slice and the loader
+    @Configuration
+    @EntityScan(basePackageClasses = Book.class)
+    @EnableJpaRepositories(basePackageClasses = BookRepository.class)
+    @Import(BookSummaryLoader.class)
+    static class Slice {
+    }
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookSummaryLoader bookSummaryLoader;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 30; i++) {
+            Book book = new Book();
+            book.setTitle("Book " + i);
+            book.setGenres(Set.of("Fantasy", "Genre " + (i % 3)));
+            book.setTags(Set.of("tag-" + i, "shared"));
+            entityManager.persist(book);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void shouldLoadAPageWithAConstantNumberOfQueries() {
+        // When
+        long smallPage = statementsToSummarize(PageRequest.of(0, 5));
+        long largePage = statementsToSummarize(PageRequest.of(0, 25));
+
+        // Then: page query, count query and one query for all genres and tags
+        assertThat(smallPage).isEqualTo(3);
+        assertThat(largePage).isEqualTo(smallPage);
+    }
+
+    @Test
+    void shouldAttachGenresAndTagsToTheirBooks() {
+        // Given
+        entityManager.clear();
+        List<Book> books = bookRepository.findByGenre("Genre 1", PageRequest.of(0, 50)).getContent();
+
+        // When
+        List<BookSummary> summaries = bookSummaryLoader.summarize(books);
+
+        // Then
+        assertThat(summaries).hasSize(10).allSatisfy(summary -> {
+            assertThat(summary.getGenres()).containsExactlyInAnyOrder("Fantasy", "Genre 1");
+            assertThat(summary.getTags()).containsExactlyInAnyOrder("shared", "tag-" + summary.getTitle().substring(5));
+        });
+        assertThat(summaries).extracting(BookSummary::getId).containsExactlyElementsOf(
+            books.stream().map(Book::getId).toList());
+    }
+
+    private long statementsToSummarize(PageRequest pageable) {
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Page<Book> page = bookRepository.findByGenre("Fantasy", pageable);
+        List<BookSummary> summaries = bookSummaryLoader.summarize(page.getContent());
+
+        assertThat(summaries).hasSize(pageable.getPageSize())
+            .allSatisfy(summary -> assertThat(summary.getGenres()).contains("Fantasy"));
+        return statistics.getPrepareStatementCount();
+    }
+}
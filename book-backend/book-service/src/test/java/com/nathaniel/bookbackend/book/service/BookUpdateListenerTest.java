@@ -0,0 +1,60 @@
+package com.nathaniel.bookbackend.book.service;
+
+import com.nathaniel.bookbackend.book.cache.BookCache;
+import com.nathaniel.bookbackend.book.cache.SearchResultCache;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import com.nathaniel.bookbackend.book.snapshot.BookUpdatePositions;
+import com.nathaniel.bookbackend.common.datasource.ReadYourWrites;
+import com.nathaniel.bookbackend.events.BookUpdateEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookUpdateListenerTest {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final BookIndex bookIndex = mock(BookIndex.class);
+    private final List<Boolean> reloadsOnPrimary = new ArrayList<>();
+
+    private BookUpdateListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new BookUpdateListener();
+        ReflectionTestUtils.setField(listener, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(listener, "bookCache", mock(BookCache.class));
+        ReflectionTestUtils.setField(listener, "bookIndexes", List.of(bookIndex));
+        ReflectionTestUtils.setField(listener, "bookUpdatePositions", mock(BookUpdatePositions.class));
+        ReflectionTestUtils.setField(listener, "searchResultCache", mock(SearchResultCache.class));
+        ReflectionTestUtils.setField(listener, "indexEnabled", true);
+        when(bookRepository.findAllWithCollectionsByIdIn(anyList())).thenAnswer(invocation -> {
+            reloadsOnPrimary.add(ReadYourWrites.readsFromPrimary());
+            List<String> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> book(id).build()).toList();
+        });
+    }
+
+    @Test
+    void shouldReloadUpdatedBooksFromThePrimary() {
+        // When
+        listener.handleBookUpdate(new BookUpdateEvent("book-1", "UPDATED", "user-1"), 0, 10L);
+        listener.handleBookUpdate(BookUpdateEvent.batch(List.of("book-2", "book-3"), "RATING_UPDATED"), 0, 11L);
+
+        // Then
+        assertThat(reloadsOnPrimary).containsExactly(true, true);
+        assertThat(ReadYourWrites.readsFromPrimary()).isFalse();
+        verify(bookIndex).index(argThat(book -> "book-3".equals(book.getId())));
+    }
+}
@@ -0,0 +1,130 @@
+package com.nathaniel.bookbackend.book.snapshot;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import com.nathaniel.bookbackend.book.repository.BookRepository;
+import com.nathaniel.bookbackend.book.search.BookIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.nathaniel.bookbackend.book.TestBooks.book;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CatalogSnapshotServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private CatalogSnapshotService service;
+    private BookRepository bookRepository;
+    private BookUpdatePositions positions;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        positions = new BookUpdatePositions();
+        service = new CatalogSnapshotService();
+        ReflectionTestUtils.setField(service, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(service, "bookUpdatePositions", positions);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "directory", directory);
+        ReflectionTestUtils.setField(service, "interval", Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(service, "maxAge", Duration.ofHours(24));
+        ReflectionTestUtils.setField(service, "maxPendingBooks", 1000);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+    }
+
+    @Test
+    void shouldReadTheCatalogOnlyForTheFirstSnapshot() throws IOException {
+        // Given
+        when(bookRepository.findIdsAfter(eq(""), any())).thenReturn(List.of("1", "2"));
+        when(bookRepository.findIdsAfter(eq("2"), any())).thenReturn(List.of());
+        when(bookRepository.findAllWithCollectionsByIdIn(anyCollection()))
+            .thenReturn(List.of(book("1").title("Dune").build(), book("2").title("Emma").build()));
+        service.markReady();
+        positions.assigned(0, 10);
+        service.writeIfChanged();
+
+        // When
+        service.index(book("1").title("Dune Messiah").build());
+        service.remove("2");
+        service.index(book("3").title("Persuasion").build());
+        positions.consumed(0, 12);
+        service.writeIfChanged();
+
+        // Then
+        verify(bookRepository, times(1)).findAllWithCollectionsByIdIn(anyCollection());
+        assertThat(readSnapshot()).containsExactlyInAnyOrder("1:Dune Messiah", "3:Persuasion");
+        try (CatalogSnapshotReader reader = new CatalogSnapshotReader(directory.resolve("catalog.snapshot"))) {
+            assertThat(reader.getOffsets()).isEqualTo(Map.of(0, 13L));
+        }
+    }
+
+    @Test
+    void shouldMergeChangesIntoALoadedSnapshot() throws IOException {
+        // Given
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(
+                directory.resolve("catalog.snapshot"), Instant.now(), Map.of(0, 5L))) {
+            writer.write(book("1").title("Dune").build());
+            writer.write(book("2").title("Emma").build());
+            writer.commit();
+        }
+        List<Book> loaded = new ArrayList<>();
+        service.loadInto(List.of(new CollectingIndex(loaded), service));
+        service.markReady();
+        positions.assigned(0, positions.takeReplayOffset(0));
+
+        // When
+        service.index(book("2").title("Emma (annotated)").build());
+        positions.consumed(0, 5);
+        service.writeIfChanged();
+
+        // Then
+        assertThat(loaded).hasSize(2);
+        assertThat(readSnapshot()).containsExactlyInAnyOrder("1:Dune", "2:Emma (annotated)");
+        verify(bookRepository, times(0)).findIdsAfter(any(), any());
+    }
+
+    private List<String> readSnapshot() throws IOException {
+        List<String> books = new ArrayList<>();
+        try (CatalogSnapshotReader reader = new CatalogSnapshotReader(directory.resolve("catalog.snapshot"))) {
+            Book book;
+            while ((book = reader.next()) != null) {
+                books.add(book.getId() + ":" + book.getTitle());
+            }
+        }
+        return books;
+    }
+
+    private record CollectingIndex(List<Book> books) implements BookIndex {
+
+        @Override
+        public void index(Book book) {
+            books.add(book);
+        }
+
+        @Override
+        public void remove(String bookId) {
+        }
+
+        @Override
+        public void markReady() {
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.nathaniel.bookbackend.book.snapshot;
+
+import com.nathaniel.bookbackend.book.model.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReadBackWhatWasWritten() throws IOException {
+        // Given
+        Path file = directory.resolve("catalog.snapshot");
+        Instant createdAt = Instant.ofEpochMilli(1_700_000_000_000L);
+        Book hobbit = new Book();
+        hobbit.setId("1");
+        hobbit.setTitle("The Hobbit");
+        hobbit.setAuthor("J.R.R. Tolkien");
+        hobbit.setIsbn("9780261102217");
+        hobbit.setDescription("There and back again — a hobbit's holiday.");
+        hobbit.setGenres(Set.of("Fantasy", "Classics"));
+        hobbit.setAverageRating(4.5);
+        hobbit.setRatingsSum(9.0);
+        hobbit.setRatingsCount(2);
+        hobbit.setMinhash(new byte[] {1, 2, 3});
+        hobbit.setCreatedAt(createdAt);
+        hobbit.setUpdatedAt(createdAt.plusSeconds(60));
+        Book untitled = new Book();
+        untitled.setId("2");
+        untitled.setTitle("Untitled");
+
+        // When
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(file, createdAt, Map.of(0, 42L, 1, 7L))) {
+            writer.write(hobbit);
+            writer.write(untitled);
+            assertThat(writer.commit()).isEqualTo(2);
+        }
+
+        // Then
+        try (CatalogSnapshotReader reader = new CatalogSnapshotReader(file)) {
+            assertThat(reader.getCreatedAt()).isEqualTo(createdAt);
+            assertThat(reader.getOffsets()).containsExactlyInAnyOrderEntriesOf(Map.of(0, 42L, 1, 7L));
+
+            Book first = reader.next();
+            assertThat(first).usingRecursiveComparison().isEqualTo(hobbit);
+            Book second = reader.next();
+            assertThat(second.getTitle()).isEqualTo("Untitled");
+            assertThat(second.getAuthor()).isNull();
+            assertThat(second.getAverageRating()).isNull();
+            assertThat(second.getCreatedAt()).isNull();
+            assertThat(second.getGenres()).isEmpty();
+            assertThat(reader.next()).isNull();
+        }
+        assertThat(directory.resolve("catalog.snapshot.tmp")).doesNotExist();
+    }
+
+    @Test
+    void shouldReadRecordsThatStraddleMappedSegments() throws IOException {
+        // Given
+        Path file = directory.resolve("catalog.snapshot");
+        Book book = new Book();
+        book.setId("1");
+        book.setTitle("The Hobbit");
+        book.setDescription("There and back again — a hobbit's holiday.");
+        book.setAverageRating(4.5);
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(file, Instant.now(), Map.of(0, 42L))) {
+            writer.write(book);
+            writer.write(book);
+            writer.commit();
+        }
+
+        // When: segments far smaller than a record
+        try (CatalogSnapshotReader reader = new CatalogSnapshotReader(file, 16)) {
+
+            // Then
+            assertThat(reader.getOffsets()).containsEntry(0, 42L);
+            assertThat(reader.next()).usingRecursiveComparison().isEqualTo(book);
+            assertThat(reader.next()).usingRecursiveComparison().isEqualTo(book);
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @Test
+    void shouldRejectCorruptSnapshots() throws IOException {
+        // Given
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(file, Instant.now(), Map.of(0, 1L))) {
+            Book book = new Book();
+            book.setId("1");
+            book.setTitle("The Hobbit");
+            writer.write(book);
+            writer.commit();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(file, bytes);
+
+        // Then
+        assertThatThrownBy(() -> new CatalogSnapshotReader(file))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("checksum");
+    }
+
+    @Test
+    void shouldLeaveThePreviousSnapshotWhenAWriteIsAbandoned() throws IOException {
+        // Given
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(file, Instant.now(), Map.of(0, 1L))) {
+            writer.commit();
+        }
+
+        // When
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(file, Instant.now(), Map.of(0, 2L))) {
+            Book book = new Book();
+            book.setId("1");
+            writer.write(book);
+        }
+
+        // Then
+        try (CatalogSnapshotReader reader = new CatalogSnapshotReader(file)) {
+            assertThat(reader.getOffsets()).containsEntry(0, 1L);
+            assertThat(reader.next()).isNull();
+        }
+        assertThat(directory.resolve("catalog.snapshot.tmp")).doesNotExist();
+    }
+}
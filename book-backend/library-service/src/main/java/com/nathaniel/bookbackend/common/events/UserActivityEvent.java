@@ -1,11 +1,20 @@
 package com.nathaniel.bookbackend.common.events;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 
 public class UserActivityEvent {
     private String userId;
     private String activityType;
     private String bookId;
+    // Set on rating changes: the user's rating after and before, null when there is none
+    private Double rating;
+    private Double previousRating;
+    // Extra details by activity type, e.g. pagesRead on PROGRESS_UPDATED
+    private Map<String, String> metadata;
+    // Set instead of bookId when one event carries every activity of a bulk library request
+    private List<UserActivityEvent> activities;
     private Instant timestamp;
 
     // Constructors
@@ -18,6 +27,19 @@ public class UserActivityEvent {
         this.timestamp = Instant.now();
     }
 
+    public static UserActivityEvent batch(String userId, List<UserActivityEvent> activities) {
+        UserActivityEvent event = new UserActivityEvent(userId, "BATCH", null);
+        event.setActivities(activities);
+        return event;
+    }
+
+    public static UserActivityEvent progressUpdated(String userId, String bookId, int pagesRead) {
+        UserActivityEvent event = new UserActivityEvent(userId, "PROGRESS_UPDATED", bookId);
+        // Paging back counts as no reading rather than negative reading
+        event.setMetadata(Map.of("pagesRead", String.valueOf(Math.max(0, pagesRead))));
+        return event;
+    }
+
     // Getters and Setters
     public String getUserId() {
         return userId;
@@ -43,6 +65,38 @@ public class UserActivityEvent {
         this.bookId = bookId;
     }
 
+    public Double getRating() {
+        return rating;
+    }
+
+    public void setRating(Double rating) {
+        this.rating = rating;
+    }
+
+    public Double getPreviousRating() {
+        return previousRating;
+    }
+
+    public void setPreviousRating(Double previousRating) {
+        this.previousRating = previousRating;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(Map<String, String> metadata) {
+        this.metadata = metadata;
+    }
+
+    public List<UserActivityEvent> getActivities() {
+        return activities;
+    }
+
+    public void setActivities(List<UserActivityEvent> activities) {
+        this.activities = activities;
+    }
+
     public Instant getTimestamp() {
         return timestamp;
     }
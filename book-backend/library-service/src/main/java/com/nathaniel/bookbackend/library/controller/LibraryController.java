@@ -1,7 +1,11 @@
 package com.nathaniel.bookbackend.library.controller;
 
+import com.nathaniel.bookbackend.library.model.LibraryOperation;
+import com.nathaniel.bookbackend.library.model.LibraryOperationResult;
 import com.nathaniel.bookbackend.library.model.UserBook;
+import com.nathaniel.bookbackend.library.model.UserShelfSummary;
 import com.nathaniel.bookbackend.library.model.ReadingStatus;
+import com.nathaniel.bookbackend.library.security.UserPrincipal;
 import com.nathaniel.bookbackend.library.service.LibraryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -11,6 +15,8 @@ import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/library")
 public class LibraryController {
@@ -25,12 +31,9 @@ public class LibraryController {
             @PathVariable String userId,
             @RequestParam(required = false) ReadingStatus status,
             Pageable pageable,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
-        String tokenUserId = extractUserIdFromToken(authHeader);
-        logger.info("[getUserBooks] Path userId: {} | Token userId: {} | Status: {}", userId, tokenUserId, status);
-        if (tokenUserId == null) {
-            logger.warn("[getUserBooks] No userId extracted from token. authHeader: {}", authHeader);
-        }
+            UserPrincipal principal) {
+        logger.debug("[getUserBooks] Path userId: {} | Token userId: {} | Status: {}",
+            userId, principal != null ? principal.userId() : null, status);
         if (status != null) {
             return ResponseEntity.ok(libraryService.getUserBooksByStatus(userId, status, pageable));
         }
@@ -42,11 +45,10 @@ public class LibraryController {
             @PathVariable String userId,
             @PathVariable String bookId,
             @RequestParam ReadingStatus status,
-            @RequestHeader("Authorization") String authHeader) {
+            UserPrincipal principal) {
         
         // Validate that the user can only access their own library
-        String tokenUserId = extractUserIdFromToken(authHeader);
-        if (tokenUserId == null || !tokenUserId.equals(userId)) {
+        if (principal == null || !principal.owns(userId)) {
             return ResponseEntity.status(403).build();
         }
         
@@ -58,11 +60,10 @@ public class LibraryController {
             @PathVariable String userId,
             @PathVariable String bookId,
             @RequestParam ReadingStatus status,
-            @RequestHeader("Authorization") String authHeader) {
+            UserPrincipal principal) {
         
         // Validate that the user can only access their own library
-        String tokenUserId = extractUserIdFromToken(authHeader);
-        if (tokenUserId == null || !tokenUserId.equals(userId)) {
+        if (principal == null || !principal.owns(userId)) {
             return ResponseEntity.status(403).build();
         }
         
@@ -77,11 +78,10 @@ public class LibraryController {
             @PathVariable String bookId,
             @RequestParam Integer currentPage,
             @RequestParam Integer totalPages,
-            @RequestHeader("Authorization") String authHeader) {
+            UserPrincipal principal) {
         
         // Validate that the user can only access their own library
-        String tokenUserId = extractUserIdFromToken(authHeader);
-        if (tokenUserId == null || !tokenUserId.equals(userId)) {
+        if (principal == null || !principal.owns(userId)) {
             return ResponseEntity.status(403).build();
         }
         
@@ -96,11 +96,10 @@ public class LibraryController {
             @PathVariable String bookId,
             @RequestParam(required = false) String review,
             @RequestParam(required = false) Double rating,
-            @RequestHeader("Authorization") String authHeader) {
+            UserPrincipal principal) {
         
         // Validate that the user can only access their own library
-        String tokenUserId = extractUserIdFromToken(authHeader);
-        if (tokenUserId == null || !tokenUserId.equals(userId)) {
+        if (principal == null || !principal.owns(userId)) {
             return ResponseEntity.status(403).build();
         }
         
@@ -113,11 +112,10 @@ public class LibraryController {
     public ResponseEntity<Void> removeBookFromLibrary(
             @PathVariable String userId,
             @PathVariable String bookId,
-            @RequestHeader("Authorization") String authHeader) {
+            UserPrincipal principal) {
         
         // Validate that the user can only access their own library
-        String tokenUserId = extractUserIdFromToken(authHeader);
-        if (tokenUserId == null || !tokenUserId.equals(userId)) {
+        if (principal == null || !principal.owns(userId)) {
             return ResponseEntity.status(403).build();
         }
         
@@ -125,17 +123,50 @@ public class LibraryController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Applies up to {@link LibraryService#MAX_BULK_OPERATIONS} add/status/progress/remove operations
+     * in one transaction and reports the outcome of each, in request order.
+     */
+    @PostMapping("/users/{userId}/books/bulk")
+    public ResponseEntity<List<LibraryOperationResult>> applyBulk(
+            @PathVariable String userId,
+            @RequestBody List<LibraryOperation> operations,
+            UserPrincipal principal) {
+
+        // Validate that the user can only access their own library
+        if (principal == null || !principal.owns(userId)) {
+            return ResponseEntity.status(403).build();
+        }
+        if (operations.size() > LibraryService.MAX_BULK_OPERATIONS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(libraryService.applyBulk(userId, operations));
+    }
+
+    @GetMapping("/users/{userId}/summary")
+    public ResponseEntity<UserShelfSummary> getShelfSummary(
+            @PathVariable String userId,
+            UserPrincipal principal) {
+
+        // Validate that the user can only access their own library
+        if (principal == null || !principal.owns(userId)) {
+            return ResponseEntity.status(403).build();
+        }
+
+        return ResponseEntity.ok(libraryService.getShelfSummary(userId));
+    }
+
     // Endpoint for frontend compatibility - shelf-based access
     @GetMapping("/{shelf}")
     public ResponseEntity<Page<UserBook>> getBooksByShelf(
             @PathVariable String shelf,
-            @RequestHeader("Authorization") String authHeader,
+            UserPrincipal principal,
             Pageable pageable) {
-        // Extract user ID from token
-        String userId = extractUserIdFromToken(authHeader);
-        if (userId == null) {
+        if (principal == null) {
             return ResponseEntity.status(401).build();
         }
+        String userId = principal.userId();
 
         try {
             ReadingStatus status = ReadingStatus.valueOf(shelf.toUpperCase());
@@ -144,44 +175,4 @@ public class LibraryController {
             return ResponseEntity.badRequest().build();
         }
     }
-
-    private String extractUserIdFromToken(String authHeader) {
-        // Extract token from Authorization header
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            logger.warn("[extractUserIdFromToken] Invalid or missing Authorization header: {}", authHeader);
-            return null;
-        }
-        
-        String token = authHeader.substring(7);
-        
-        try {
-            String[] parts = token.split("\\.");
-            if (parts.length == 3) {
-                String payload = parts[1];
-                // Add padding if needed
-                int padding = payload.length() % 4;
-                if (padding > 0) {
-                    payload += "====".substring(padding);
-                }
-                
-                byte[] decoded = java.util.Base64.getDecoder().decode(payload);
-                String json = new String(decoded, java.nio.charset.StandardCharsets.UTF_8);
-                logger.info("[extractUserIdFromToken] JWT payload: {}", json);
-                
-                // Extract subject from JSON (simple approach)
-                if (json.contains("\"sub\":")) {
-                    int start = json.indexOf("\"sub\":\"") + 7;
-                    int end = json.indexOf("\"", start);
-                    if (start > 6 && end > start) {
-                        String sub = json.substring(start, end);
-                        logger.info("[extractUserIdFromToken] Extracted sub: {}", sub);
-                        return sub;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            logger.error("[extractUserIdFromToken] Exception decoding token", e);
-        }
-        return null;
-    }
 }
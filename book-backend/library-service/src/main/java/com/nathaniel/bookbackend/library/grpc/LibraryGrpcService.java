@@ -1,27 +1,76 @@
 package com.nathaniel.bookbackend.library.grpc;
 
 import com.nathaniel.bookbackend.grpc.*;
+import com.nathaniel.bookbackend.library.model.LibraryOperation;
+import com.nathaniel.bookbackend.library.model.LibraryOperationResult;
+import com.nathaniel.bookbackend.library.model.LibraryOperationType;
 import com.nathaniel.bookbackend.library.model.ReadingStatus;
 import com.nathaniel.bookbackend.library.model.UserBook;
+import com.nathaniel.bookbackend.library.model.UserShelfSummary;
+import com.nathaniel.bookbackend.library.paging.UserBookCursor;
 import com.nathaniel.bookbackend.library.service.LibraryService;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 @GrpcService
 public class LibraryGrpcService extends LibraryServiceGrpc.LibraryServiceImplBase {
 
+    private static final Logger logger = LoggerFactory.getLogger(LibraryGrpcService.class);
+
     @Autowired
     private LibraryService libraryService;
 
+    @Value("${library.grpc.stream-workers:8}")
+    private int streamWorkers;
+
+    @Value("${library.grpc.stream-ready-timeout:30s}")
+    private Duration streamReadyTimeout;
+
     private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_INSTANT;
 
+    private ExecutorService streamExecutor;
+
+    @PostConstruct
+    void init() {
+        // Each library stream holds a database cursor, so their number is capped rather than queued
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            streamWorkers, streamWorkers, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> new Thread(runnable, "stream-user-books-" + threadCount.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        streamExecutor = executor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streamExecutor.shutdownNow();
+    }
+
     @Override
     public void getUserBooks(UserBooksRequest request, StreamObserver<UserBooksResponse> responseObserver) {
         try {
@@ -140,6 +189,149 @@ public class LibraryGrpcService extends LibraryServiceGrpc.LibraryServiceImplBas
         }
     }
 
+    @Override
+    public void bulkUpdateLibrary(BulkLibraryRequest request, StreamObserver<BulkLibraryResponse> responseObserver) {
+        if (request.getOperationsCount() > LibraryService.MAX_BULK_OPERATIONS) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("At most " + LibraryService.MAX_BULK_OPERATIONS + " operations per request")
+                .asRuntimeException());
+            return;
+        }
+        try {
+            List<LibraryOperationResult> results = libraryService.applyBulk(
+                request.getUserId(),
+                request.getOperationsList().stream().map(this::mapFromGrpcOperation).toList()
+            );
+
+            BulkLibraryResponse.Builder response = BulkLibraryResponse.newBuilder();
+            for (LibraryOperationResult result : results) {
+                response.addResults(mapToGrpcResult(result));
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void streamUserBooks(StreamUserBooksRequest request, StreamObserver<UserBookStreamResponse> responseObserver) {
+        ReadingStatus status = parseEnum(ReadingStatus.class, request.getStatus());
+        UserBookCursor after;
+        try {
+            after = UserBookCursor.decode(request.getResumeToken());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("Invalid resume token")
+                .asRuntimeException());
+            return;
+        }
+        if (status == null && !request.getStatus().isEmpty()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("Unknown status " + request.getStatus())
+                .asRuntimeException());
+            return;
+        }
+
+        ServerCallStreamObserver<UserBookStreamResponse> call =
+            (ServerCallStreamObserver<UserBookStreamResponse>) responseObserver;
+        FlowControl flowControl = new FlowControl(call, streamReadyTimeout);
+        call.setOnReadyHandler(flowControl::onReady);
+        call.setOnCancelHandler(flowControl::onCancel);
+
+        // The cursor is read on a worker so this call thread returns and onReady callbacks can run
+        try {
+            streamExecutor.execute(() -> runStreamUserBooks(request.getUserId(), status, after, call, flowControl));
+        } catch (RejectedExecutionException e) {
+            call.onError(Status.RESOURCE_EXHAUSTED
+                .withDescription("Too many concurrent library streams")
+                .asRuntimeException());
+        }
+    }
+
+    @Override
+    public void getShelfSummary(ShelfSummaryRequest request, StreamObserver<ShelfSummaryResponse> responseObserver) {
+        try {
+            UserShelfSummary summary = libraryService.getShelfSummary(request.getUserId());
+            ShelfSummaryResponse.Builder response = ShelfSummaryResponse.newBuilder()
+                .setUserId(summary.getUserId())
+                .setTotalBooks(summary.getTotalBooks())
+                .setPagesRead(summary.getPagesRead())
+                .setRatingsCount(summary.getRatingsCount());
+            summary.getShelves().forEach((status, count) -> response.putShelves(status.name(), count));
+            if (summary.getAverageRating() != null) {
+                response.setAverageRating(summary.getAverageRating());
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    private void runStreamUserBooks(String userId, ReadingStatus status, UserBookCursor after,
+                                    ServerCallStreamObserver<UserBookStreamResponse> call, FlowControl flowControl) {
+        try {
+            libraryService.streamUserBooks(userId, status, after.getId(), userBook -> {
+                if (!flowControl.awaitReady()) {
+                    return false;
+                }
+                call.onNext(UserBookStreamResponse.newBuilder()
+                    .setBook(mapToGrpcUserBook(userBook))
+                    .setResumeToken(new UserBookCursor(userBook.getId()).encode())
+                    .build());
+                return true;
+            });
+            flowControl.complete();
+        } catch (Exception e) {
+            logger.error("Library stream for user {} failed", userId, e);
+            if (!call.isCancelled()) {
+                call.onError(Status.INTERNAL.withDescription("Library stream failed").asRuntimeException());
+            }
+        }
+    }
+
+    // Unknown types and statuses are left unset so the service reports the operation as invalid
+    private LibraryOperation mapFromGrpcOperation(BulkOperation operation) {
+        LibraryOperation mapped = new LibraryOperation(
+            parseEnum(LibraryOperationType.class, operation.getType()),
+            operation.getBookId().isEmpty() ? null : operation.getBookId()
+        );
+        mapped.setStatus(parseEnum(ReadingStatus.class, operation.getStatus()));
+        // Proto3 cannot tell an unset page count from zero, and a book has at least one page
+        if (operation.getTotalPages() > 0) {
+            mapped.setCurrentPage(operation.getCurrentPage());
+            mapped.setTotalPages(operation.getTotalPages());
+        }
+        return mapped;
+    }
+
+    private BulkOperationResult mapToGrpcResult(LibraryOperationResult result) {
+        BulkOperationResult.Builder builder = BulkOperationResult.newBuilder()
+            .setOutcome(result.getOutcome().name());
+        if (result.getType() != null) {
+            builder.setType(result.getType().name());
+        }
+        if (result.getBookId() != null) {
+            builder.setBookId(result.getBookId());
+        }
+        if (result.getMessage() != null) {
+            builder.setMessage(result.getMessage());
+        }
+        if (result.getBook() != null) {
+            builder.setBook(mapToGrpcUserBook(result.getBook()));
+        }
+        return builder.build();
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        try {
+            return value.isEmpty() ? null : Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     private com.nathaniel.bookbackend.grpc.UserBook mapToGrpcUserBook(UserBook userBook) {
         com.nathaniel.bookbackend.grpc.UserBook.Builder builder = com.nathaniel.bookbackend.grpc.UserBook.newBuilder()
             .setUserId(userBook.getUserId())
@@ -167,4 +359,79 @@ public class LibraryGrpcService extends LibraryServiceGrpc.LibraryServiceImplBas
 
         return builder.build();
     }
+
+    /**
+     * Parks the streaming worker until the transport can take more messages, so a slow client
+     * holds back the database cursor instead of having responses pile up in memory. gRPC runs the
+     * onReady handler after any isReady() that returned false, so the worker sleeps until woken.
+     * A client that takes nothing for the ready timeout is failed with DEADLINE_EXCEEDED, so a stalled
+     * reader cannot hold a worker and its cursor forever.
+     */
+    private static final class FlowControl {
+        private final ServerCallStreamObserver<?> call;
+        private final Duration readyTimeout;
+        private final Lock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private boolean cancelled;
+        private boolean stalled;
+
+        FlowControl(ServerCallStreamObserver<?> call, Duration readyTimeout) {
+            this.call = call;
+            this.readyTimeout = readyTimeout;
+        }
+
+        void onReady() {
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onCancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return false once the call is cancelled or the client stalled; the caller stops and closes its cursor
+         */
+        boolean awaitReady() {
+            lock.lock();
+            try {
+                long remaining = readyTimeout.toNanos();
+                // Either handler takes the lock to signal, so neither can slip in between the check and await
+                while (!cancelled && !call.isReady()) {
+                    if (remaining <= 0) {
+                        stalled = true;
+                        return false;
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+                return !cancelled;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Ends the call once the worker is done with it, unless the client already went away. */
+        void complete() {
+            if (stalled) {
+                call.onError(Status.DEADLINE_EXCEEDED
+                    .withDescription("Client read nothing for " + readyTimeout)
+                    .asRuntimeException());
+            } else if (!call.isCancelled()) {
+                call.onCompleted();
+            }
+        }
+    }
 }
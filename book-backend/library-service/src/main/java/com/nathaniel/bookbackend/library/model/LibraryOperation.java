@@ -0,0 +1,60 @@
+package com.nathaniel.bookbackend.library.model;
+
+/**
+ * One change in a bulk library request. ADD and STATUS read the status, PROGRESS reads the pages,
+ * REMOVE only needs the book id.
+ */
+public class LibraryOperation {
+    private LibraryOperationType type;
+    private String bookId;
+    private ReadingStatus status;
+    private Integer currentPage;
+    private Integer totalPages;
+
+    // Constructors
+    public LibraryOperation() {}
+
+    public LibraryOperation(LibraryOperationType type, String bookId) {
+        this.type = type;
+        this.bookId = bookId;
+    }
+
+    public static LibraryOperation add(String bookId, ReadingStatus status) {
+        LibraryOperation operation = new LibraryOperation(LibraryOperationType.ADD, bookId);
+        operation.setStatus(status);
+        return operation;
+    }
+
+    public static LibraryOperation status(String bookId, ReadingStatus status) {
+        LibraryOperation operation = new LibraryOperation(LibraryOperationType.STATUS, bookId);
+        operation.setStatus(status);
+        return operation;
+    }
+
+    public static LibraryOperation progress(String bookId, Integer currentPage, Integer totalPages) {
+        LibraryOperation operation = new LibraryOperation(LibraryOperationType.PROGRESS, bookId);
+        operation.setCurrentPage(currentPage);
+        operation.setTotalPages(totalPages);
+        return operation;
+    }
+
+    public static LibraryOperation remove(String bookId) {
+        return new LibraryOperation(LibraryOperationType.REMOVE, bookId);
+    }
+
+    // Getters and Setters
+    public LibraryOperationType getType() { return type; }
+    public void setType(LibraryOperationType type) { this.type = type; }
+
+    public String getBookId() { return bookId; }
+    public void setBookId(String bookId) { this.bookId = bookId; }
+
+    public ReadingStatus getStatus() { return status; }
+    public void setStatus(ReadingStatus status) { this.status = status; }
+
+    public Integer getCurrentPage() { return currentPage; }
+    public void setCurrentPage(Integer currentPage) { this.currentPage = currentPage; }
+
+    public Integer getTotalPages() { return totalPages; }
+    public void setTotalPages(Integer totalPages) { this.totalPages = totalPages; }
+}
@@ -0,0 +1,56 @@
+package com.nathaniel.bookbackend.library.model;
+
+/**
+ * What became of one operation of a bulk library request. The book is as it stands once the whole
+ * request has applied, and null for removals and operations that were not applied.
+ */
+public class LibraryOperationResult {
+
+    public enum Outcome {
+        APPLIED,
+        NOT_FOUND,
+        ALREADY_IN_LIBRARY,
+        INVALID
+    }
+
+    private LibraryOperationType type;
+    private String bookId;
+    private Outcome outcome;
+    private String message;
+    private UserBook book;
+
+    // Constructors
+    public LibraryOperationResult() {}
+
+    public LibraryOperationResult(LibraryOperation operation, Outcome outcome, String message, UserBook book) {
+        this.type = operation.getType();
+        this.bookId = operation.getBookId();
+        this.outcome = outcome;
+        this.message = message;
+        this.book = book;
+    }
+
+    public static LibraryOperationResult applied(LibraryOperation operation, UserBook book) {
+        return new LibraryOperationResult(operation, Outcome.APPLIED, null, book);
+    }
+
+    public static LibraryOperationResult rejected(LibraryOperation operation, Outcome outcome, String message) {
+        return new LibraryOperationResult(operation, outcome, message, null);
+    }
+
+    // Getters and Setters
+    public LibraryOperationType getType() { return type; }
+    public void setType(LibraryOperationType type) { this.type = type; }
+
+    public String getBookId() { return bookId; }
+    public void setBookId(String bookId) { this.bookId = bookId; }
+
+    public Outcome getOutcome() { return outcome; }
+    public void setOutcome(Outcome outcome) { this.outcome = outcome; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public UserBook getBook() { return book; }
+    public void setBook(UserBook book) { this.book = book; }
+}
@@ -0,0 +1,8 @@
+package com.nathaniel.bookbackend.library.model;
+
+public enum LibraryOperationType {
+    ADD,
+    STATUS,
+    PROGRESS,
+    REMOVE
+}
@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "user_books")
+@Table(name = "user_books", indexes = {
+    // Serves a user's library in id order for streaming and resuming
+    @Index(name = "idx_user_books_user_id_id", columnList = "userId, id")
+})
 public class UserBook {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -0,0 +1,82 @@
+package com.nathaniel.bookbackend.library.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-user counts behind the shelf tabs, kept current by every library change rather than counted on read.
+ * Written only through {@link com.nathaniel.bookbackend.library.repository.UserShelfSummaryWriter}.
+ */
+@Entity
+@Table(name = "user_shelf_summaries")
+public class UserShelfSummary {
+    @Id
+    private String userId;
+
+    private long wantToReadCount;
+    private long currentlyReadingCount;
+    private long readCount;
+    private long dnfCount;
+
+    // Sum of the current page of every book in the library
+    private long pagesRead;
+
+    private double ratingsSum;
+    private long ratingsCount;
+
+    private Instant updatedAt;
+
+    public UserShelfSummary() {}
+
+    // The summary of a user with no books yet
+    public UserShelfSummary(String userId) {
+        this.userId = userId;
+    }
+
+    public Map<ReadingStatus, Long> getShelves() {
+        Map<ReadingStatus, Long> shelves = new EnumMap<>(ReadingStatus.class);
+        shelves.put(ReadingStatus.WANT_TO_READ, wantToReadCount);
+        shelves.put(ReadingStatus.CURRENTLY_READING, currentlyReadingCount);
+        shelves.put(ReadingStatus.READ, readCount);
+        shelves.put(ReadingStatus.DNF, dnfCount);
+        return shelves;
+    }
+
+    public long getTotalBooks() {
+        return wantToReadCount + currentlyReadingCount + readCount + dnfCount;
+    }
+
+    public Double getAverageRating() {
+        return ratingsCount > 0 ? ratingsSum / ratingsCount : null;
+    }
+
+    // Getters and Setters
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public long getWantToReadCount() { return wantToReadCount; }
+    public void setWantToReadCount(long wantToReadCount) { this.wantToReadCount = wantToReadCount; }
+
+    public long getCurrentlyReadingCount() { return currentlyReadingCount; }
+    public void setCurrentlyReadingCount(long currentlyReadingCount) { this.currentlyReadingCount = currentlyReadingCount; }
+
+    public long getReadCount() { return readCount; }
+    public void setReadCount(long readCount) { this.readCount = readCount; }
+
+    public long getDnfCount() { return dnfCount; }
+    public void setDnfCount(long dnfCount) { this.dnfCount = dnfCount; }
+
+    public long getPagesRead() { return pagesRead; }
+    public void setPagesRead(long pagesRead) { this.pagesRead = pagesRead; }
+
+    public double getRatingsSum() { return ratingsSum; }
+    public void setRatingsSum(double ratingsSum) { this.ratingsSum = ratingsSum; }
+
+    public long getRatingsCount() { return ratingsCount; }
+    public void setRatingsCount(long ratingsCount) { this.ratingsCount = ratingsCount; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
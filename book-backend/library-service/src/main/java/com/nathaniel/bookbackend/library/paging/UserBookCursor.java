@@ -0,0 +1,46 @@
+package com.nathaniel.bookbackend.library.paging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a user's library listed in id order. Clients only ever see it as an opaque token,
+ * which leaves room to change the key without breaking them.
+ */
+public final class UserBookCursor {
+
+    public static final UserBookCursor START = new UserBookCursor("");
+
+    private static final String VERSION = "u1";
+    private static final char SEPARATOR = '\u0000';
+
+    private final String id;
+
+    public UserBookCursor(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static UserBookCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = decoded.split(String.valueOf(SEPARATOR), -1);
+        if (parts.length != 2 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid resume token");
+        }
+        return new UserBookCursor(parts[1]);
+    }
+
+    public String encode() {
+        String raw = VERSION + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getId() {
+        return id;
+    }
+}
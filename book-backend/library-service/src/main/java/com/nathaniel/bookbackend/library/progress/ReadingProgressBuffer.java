@@ -0,0 +1,389 @@
+package com.nathaniel.bookbackend.library.progress;
+
+import com.nathaniel.bookbackend.common.events.KafkaTopics;
+import com.nathaniel.bookbackend.common.events.UserActivityEvent;
+import com.nathaniel.bookbackend.library.model.UserBook;
+import com.nathaniel.bookbackend.library.repository.UserBookProgressWriter;
+import com.nathaniel.bookbackend.library.repository.UserShelfSummaryWriter;
+import com.nathaniel.bookbackend.library.summary.ShelfDelta;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for reading progress. E-reader clients report every page turn; the buffer keeps
+ * only the latest page per user and book, and a background thread writes everything pending with one
+ * batched UPDATE every library.progress.flush-interval, or sooner once library.progress.max-pending
+ * books are waiting. Each book written produces one PROGRESS_UPDATED activity carrying the pages read
+ * since its last write, rather than one event per page turn.
+ * <p>
+ * Reads are overlaid with pending progress, so a user sees their latest page before it is written.
+ * Anything else that writes a book's row first takes its pending progress with
+ * {@link #flush(String, Collection)} or {@link #take(String, String)}, before touching the row, so the
+ * background write never lands on top of a newer one. Progress written or taken inside a caller's
+ * transaction only leaves the buffer once that transaction commits, and its events go out then; a
+ * rollback leaves it pending as before. Pending progress is per instance and is written on shutdown.
+ * <p>
+ * Another instance may hold progress for the same book, so the buffer only ever moves a row forward and
+ * the pages read in its events and the shelf summary come from the page the row held, which
+ * {@link UserBookProgressWriter} returns. Moving back to an earlier page is left to the caller to write
+ * through.
+ */
+@Component
+public class ReadingProgressBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadingProgressBuffer.class);
+
+    @Autowired
+    private UserBookProgressWriter progressWriter;
+
+    @Autowired
+    private UserShelfSummaryWriter shelfSummaryWriter;
+
+    @Autowired
+    private KafkaTemplate<String, UserActivityEvent> kafkaTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${library.progress.write-behind:true}")
+    private boolean enabled;
+
+    @Value("${library.progress.flush-interval:5s}")
+    private Duration flushInterval;
+
+    @Value("${library.progress.max-pending:5000}")
+    private int maxPending;
+
+    private record Key(String userId, String bookId) {
+    }
+
+    /**
+     * The book as last read, with the latest reported pages.
+     * The book is a detached copy and never changed once pending.
+     */
+    private record Pending(UserBook book) {
+
+        Pending advancedTo(int currentPage, int totalPages) {
+            return new Pending(copyOf(book, currentPage, totalPages));
+        }
+    }
+
+    /**
+     * Progress written in a caller's transaction that has not completed. It stays pending until then, but
+     * neither the background flush nor another caller writes or takes it meanwhile.
+     */
+    private record InFlight(Thread owner) {
+    }
+
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+    // Held while a batch is written, so taking a book's progress waits for a write of it in progress
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition inFlightDone = flushLock.newCondition();
+    // Guarded by flushLock
+    private final Map<Key, InFlight> inFlight = new HashMap<>();
+    private final Object monitor = new Object();
+    private boolean signalled;
+    private volatile boolean running;
+    private Thread flushThread;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("library.progress.pending", pending, Map::size)
+            .description("Books with reading progress not yet written")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flushThread = new Thread(this::flushLoop, "progress-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        if (flushThread != null) {
+            flushThread.interrupt();
+            flushThread.join(flushInterval.toMillis());
+        }
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records new pages for a book that already has progress pending, without touching the database.
+     *
+     * @return the book with the new pages, or empty if nothing is pending for it or the pages go back
+     *     from what is pending, and the row has to be read
+     */
+    public Optional<UserBook> update(String userId, String bookId, int currentPage, int totalPages) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Pending updated = pending.computeIfPresent(new Key(userId, bookId),
+            (key, current) -> currentPage >= current.book().getCurrentPage()
+                ? current.advancedTo(currentPage, totalPages)
+                : current);
+        return updated != null && updated.book().getCurrentPage() == currentPage
+            ? Optional.of(updated.book())
+            : Optional.empty();
+    }
+
+    /**
+     * Starts buffering progress for a row just read from the database.
+     *
+     * @return a detached copy of the row with the new pages
+     */
+    public UserBook start(UserBook row, int currentPage, int totalPages) {
+        Pending started = new Pending(copyOf(row, currentPage, totalPages));
+        // A concurrent first update may have got here first
+        Pending merged = pending.merge(new Key(row.getUserId(), row.getBookId()), started,
+            (current, ignored) -> current.advancedTo(currentPage, totalPages));
+        if (pending.size() >= maxPending) {
+            wakeUp();
+        }
+        return merged.book();
+    }
+
+    /** Applies pending progress to books read from the database. Only for read-only transactions. */
+    public void overlay(Iterable<UserBook> books) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (UserBook book : books) {
+            overlay(book);
+        }
+    }
+
+    public void overlay(UserBook book) {
+        Pending current = pending.get(new Key(book.getUserId(), book.getBookId()));
+        if (current != null) {
+            book.setCurrentPage(current.book().getCurrentPage());
+            book.setTotalPages(current.book().getTotalPages());
+        }
+    }
+
+    /**
+     * Stops buffering a book whose progress the caller is about to write itself.
+     */
+    public void take(String userId, String bookId) {
+        Key key = new Key(userId, bookId);
+        flushLock.lock();
+        try {
+            awaitInFlight(List.of(key));
+            Pending taken = pending.remove(key);
+            if (taken == null) {
+                return;
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                // The caller's write may still roll back; the progress is then pending again
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status != STATUS_COMMITTED) {
+                            pending.putIfAbsent(key, taken);
+                        }
+                    }
+                });
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the pending progress of one user's books now, in the caller's transaction if there is one.
+     * It stays pending until that transaction commits.
+     */
+    public void flush(String userId, Collection<String> bookIds) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<Key> keys = bookIds.stream().map(bookId -> new Key(userId, bookId)).toList();
+            awaitInFlight(keys);
+            Map<Key, Pending> batch = new HashMap<>();
+            for (Key key : keys) {
+                Pending current = pending.get(key);
+                // Books already written earlier in this transaction are left alone
+                if (current != null && !inFlight.containsKey(key)) {
+                    batch.put(key, current);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<Key, Integer> pagesRead = write(batch);
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                // Written in a transaction of its own, which has committed
+                settle(batch);
+                publish(pagesRead);
+                return;
+            }
+            batch.keySet().forEach(key -> inFlight.put(key, new InFlight(Thread.currentThread())));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    flushLock.lock();
+                    try {
+                        batch.keySet().forEach(inFlight::remove);
+                        if (status == STATUS_COMMITTED) {
+                            settle(batch);
+                        }
+                        inFlightDone.signalAll();
+                    } finally {
+                        flushLock.unlock();
+                    }
+                    if (status == STATUS_COMMITTED) {
+                        publish(pagesRead);
+                    }
+                }
+            });
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** Writes all pending progress now. */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Key, Pending> batch = new HashMap<>(pending);
+            batch.keySet().removeAll(inFlight.keySet());
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<Key, Integer> pagesRead = write(batch);
+            settle(batch);
+            publish(pagesRead);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Waits, with the lock released, for other callers' transactions that wrote any of these books
+    private void awaitInFlight(Collection<Key> keys) {
+        Thread current = Thread.currentThread();
+        while (keys.stream().map(inFlight::get).anyMatch(other -> other != null && other.owner() != current)) {
+            inFlightDone.awaitUninterruptibly();
+        }
+    }
+
+    // Books updated while the batch was written stay pending
+    private void settle(Map<Key, Pending> batch) {
+        batch.forEach(pending::remove);
+    }
+
+    /**
+     * @return the pages read per book the write moved forward; books another write got ahead of are left out
+     */
+    private Map<Key, Integer> write(Map<Key, Pending> batch) {
+        return transactionTemplate.execute(status -> {
+            Map<Key, Integer> pagesRead = new LinkedHashMap<>();
+            for (UserBookProgressWriter.Written written
+                    : progressWriter.writeAll(batch.values().stream().map(Pending::book).toList())) {
+                pagesRead.merge(new Key(written.userId(), written.bookId()), written.pagesRead(), Integer::sum);
+            }
+            // Summaries in user order, so concurrent writers take their locks in the same order
+            Map<String, ShelfDelta> summaries = new TreeMap<>();
+            pagesRead.forEach((key, pages) -> summaries.computeIfAbsent(key.userId(), userId -> new ShelfDelta())
+                .plusPages(pages));
+            shelfSummaryWriter.applyAll(summaries);
+            return pagesRead;
+        });
+    }
+
+    private void publish(Map<Key, Integer> pagesRead) {
+        // One event per user: the activity itself, or a batch of them when several books moved
+        Map<String, List<UserActivityEvent>> activities = new LinkedHashMap<>();
+        pagesRead.forEach((key, pages) -> activities.computeIfAbsent(key.userId(), userId -> new ArrayList<>())
+            .add(UserActivityEvent.progressUpdated(key.userId(), key.bookId(), pages)));
+        activities.forEach((userId, events) -> kafkaTemplate.send(KafkaTopics.USER_ACTIVITY, userId,
+            events.size() == 1 ? events.get(0) : UserActivityEvent.batch(userId, events)));
+        logger.debug("Wrote reading progress for {} books", pagesRead.size());
+    }
+
+    private void wakeUp() {
+        synchronized (monitor) {
+            signalled = true;
+            monitor.notifyAll();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (monitor) {
+                try {
+                    if (!signalled) {
+                        monitor.wait(flushInterval.toMillis());
+                    }
+                    signalled = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            try {
+                flush();
+            } catch (Exception e) {
+                // Nothing is dropped from the buffer until its write commits, so the next round retries
+                logger.warn("Reading progress flush failed, retrying in {}", flushInterval, e);
+            }
+        }
+    }
+
+    private static UserBook copyOf(UserBook row, int currentPage, int totalPages) {
+        UserBook copy = new UserBook();
+        copy.setId(row.getId());
+        copy.setUserId(row.getUserId());
+        copy.setBookId(row.getBookId());
+        copy.setStatus(row.getStatus());
+        copy.setCurrentPage(currentPage);
+        copy.setTotalPages(totalPages);
+        copy.setRating(row.getRating());
+        copy.setReview(row.getReview());
+        copy.setStartedAt(row.getStartedAt());
+        copy.setFinishedAt(row.getFinishedAt());
+        copy.setCreatedAt(row.getCreatedAt());
+        copy.setUpdatedAt(row.getUpdatedAt());
+        return copy;
+    }
+}
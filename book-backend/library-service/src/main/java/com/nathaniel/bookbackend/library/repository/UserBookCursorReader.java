@@ -0,0 +1,94 @@
+package com.nathaniel.bookbackend.library.repository;
+
+import com.nathaniel.bookbackend.library.model.ReadingStatus;
+import com.nathaniel.bookbackend.library.model.UserBook;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Reads one user's books in id order off a forward-only cursor, library.grpc.stream-fetch-size rows per
+ * round trip, mapping each row straight to a detached {@link UserBook} with no persistence context and
+ * no count query. Postgres only honors the fetch size inside a transaction, so callers must be in one.
+ */
+@Repository
+public class UserBookCursorReader {
+
+    private static final String SELECT = "SELECT id, user_id, book_id, status, current_page, total_pages, rating, "
+        + "review, started_at, finished_at, created_at, updated_at FROM user_books WHERE user_id = ?";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${library.grpc.stream-fetch-size:500}")
+    private int fetchSize;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void init() {
+        // A template of its own, so the fetch size applies to these reads only
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Hands {@code consumer} each of the user's books with an id after {@code afterId} ("" for all), optionally
+     * only those with {@code status}, stopping early once it returns false.
+     */
+    public void forEach(String userId, ReadingStatus status, String afterId, Predicate<UserBook> consumer) {
+        StringBuilder sql = new StringBuilder(SELECT);
+        List<Object> args = new ArrayList<>(3);
+        args.add(userId);
+        if (status != null) {
+            sql.append(" AND status = ?");
+            args.add(status.name());
+        }
+        if (!afterId.isEmpty()) {
+            sql.append(" AND id > ?");
+            args.add(afterId);
+        }
+        sql.append(" ORDER BY id");
+
+        jdbcTemplate.query(sql.toString(), (ResultSet rs) -> {
+            while (rs.next()) {
+                if (!consumer.test(mapRow(rs))) {
+                    break;
+                }
+            }
+            return null;
+        }, args.toArray());
+    }
+
+    private static UserBook mapRow(ResultSet rs) throws SQLException {
+        UserBook book = new UserBook();
+        book.setId(rs.getString("id"));
+        book.setUserId(rs.getString("user_id"));
+        book.setBookId(rs.getString("book_id"));
+        book.setStatus(ReadingStatus.valueOf(rs.getString("status")));
+        book.setCurrentPage(rs.getObject("current_page", Integer.class));
+        book.setTotalPages(rs.getObject("total_pages", Integer.class));
+        book.setRating(rs.getObject("rating", Double.class));
+        book.setReview(rs.getString("review"));
+        book.setStartedAt(toInstant(rs.getTimestamp("started_at")));
+        book.setFinishedAt(toInstant(rs.getTimestamp("finished_at")));
+        book.setCreatedAt(toInstant(rs.getTimestamp("created_at")));
+        book.setUpdatedAt(toInstant(rs.getTimestamp("updated_at")));
+        return book;
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.nathaniel.bookbackend.library.repository;
+
+import com.nathaniel.bookbackend.library.model.UserBook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes buffered reading progress in place with one UPDATE, without reading the rows first.
+ * <p>
+ * Progress may be buffered for the same book on more than one instance, so a page is only written over
+ * a lower one and never takes a row back to older progress. The pages read are counted from the page
+ * each row held when it was locked, not from what the caller last wrote.
+ */
+@Repository
+public class UserBookProgressWriter {
+
+    private static final String WRITE_PROGRESS = "UPDATE user_books u SET "
+        + "current_page = p.current_page, total_pages = p.total_pages, updated_at = ? "
+        + "FROM (SELECT b.id, COALESCE(b.current_page, 0) AS previous_page, p.current_page, p.total_pages "
+        + "FROM unnest(?::text[], ?::text[], ?::int[], ?::int[]) AS p(user_id, book_id, current_page, total_pages) "
+        + "JOIN user_books b ON b.user_id = p.user_id AND b.book_id = p.book_id "
+        + "WHERE COALESCE(b.current_page, 0) < p.current_page "
+        // Rows are locked in id order, so two instances writing the same books cannot deadlock
+        + "ORDER BY b.id FOR UPDATE OF b) p "
+        + "WHERE u.id = p.id "
+        + "RETURNING u.user_id, u.book_id, p.current_page - p.previous_page";
+
+    /** A row the write moved forward, and by how many pages. */
+    public record Written(String userId, String bookId, int pagesRead) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return the rows written; books whose rows already had the page or a later one are left out
+     */
+    public List<Written> writeAll(Collection<UserBook> books) {
+        Timestamp now = Timestamp.from(Instant.now());
+        return jdbcTemplate.query(WRITE_PROGRESS, statement -> {
+            Connection connection = statement.getConnection();
+            statement.setTimestamp(1, now);
+            statement.setArray(2, connection.createArrayOf("text",
+                books.stream().map(UserBook::getUserId).toArray()));
+            statement.setArray(3, connection.createArrayOf("text",
+                books.stream().map(UserBook::getBookId).toArray()));
+            statement.setArray(4, connection.createArrayOf("int4",
+                books.stream().map(UserBook::getCurrentPage).toArray()));
+            statement.setArray(5, connection.createArrayOf("int4",
+                books.stream().map(UserBook::getTotalPages).toArray()));
+        }, (row, rowNum) -> new Written(row.getString(1), row.getString(2), row.getInt(3)));
+    }
+}
@@ -2,11 +2,14 @@ package com.nathaniel.bookbackend.library.repository;
 
 import com.nathaniel.bookbackend.library.model.UserBook;
 import com.nathaniel.bookbackend.library.model.ReadingStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +20,14 @@ public interface UserBookRepository extends JpaRepository<UserBook, String> {
     Page<UserBook> findByUserIdAndStatus(String userId, ReadingStatus status, Pageable pageable);
     
     Optional<UserBook> findByUserIdAndBookId(String userId, String bookId);
+
+    // For read-modify-write, so a progress write from another instance cannot land in between
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<UserBook> findLockedByUserIdAndBookId(String userId, String bookId);
+
+    List<UserBook> findAllByUserIdAndBookId(String userId, String bookId);
+
+    List<UserBook> findByUserIdAndBookIdIn(String userId, Collection<String> bookIds);
     
     List<UserBook> findByUserIdAndStatusOrderByStartedAtDesc(String userId, ReadingStatus status);
     
@@ -0,0 +1,9 @@
+package com.nathaniel.bookbackend.library.repository;
+
+import com.nathaniel.bookbackend.library.model.UserShelfSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserShelfSummaryRepository extends JpaRepository<UserShelfSummary, String> {
+}
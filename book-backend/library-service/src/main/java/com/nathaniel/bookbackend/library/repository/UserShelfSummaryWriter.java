@@ -0,0 +1,168 @@
+package com.nathaniel.bookbackend.library.repository;
+
+import com.nathaniel.bookbackend.library.model.ReadingStatus;
+import com.nathaniel.bookbackend.library.summary.ShelfDelta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds shelf deltas to the users' summaries in place with one batched upsert, without reading them first,
+ * and rebuilds summaries from user_books when they need repair. Deltas are meant to run in the transaction
+ * of the change they describe.
+ * <p>
+ * Both take a transaction-scoped advisory lock per user, so a rebuild never counts a user's books while
+ * a change to them is uncommitted and then has its delta added on top. Other users' writes go on.
+ */
+@Repository
+public class UserShelfSummaryWriter {
+
+    private static final String COLUMNS = "user_id, want_to_read_count, currently_reading_count, read_count, "
+        + "dnf_count, pages_read, ratings_sum, ratings_count, updated_at";
+
+    private static final String APPLY_DELTA = "INSERT INTO user_shelf_summaries (" + COLUMNS + ") "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
+        + "ON CONFLICT (user_id) DO UPDATE SET "
+        + "want_to_read_count = user_shelf_summaries.want_to_read_count + EXCLUDED.want_to_read_count, "
+        + "currently_reading_count = user_shelf_summaries.currently_reading_count + EXCLUDED.currently_reading_count, "
+        + "read_count = user_shelf_summaries.read_count + EXCLUDED.read_count, "
+        + "dnf_count = user_shelf_summaries.dnf_count + EXCLUDED.dnf_count, "
+        + "pages_read = user_shelf_summaries.pages_read + EXCLUDED.pages_read, "
+        + "ratings_sum = user_shelf_summaries.ratings_sum + EXCLUDED.ratings_sum, "
+        + "ratings_count = user_shelf_summaries.ratings_count + EXCLUDED.ratings_count, "
+        + "updated_at = EXCLUDED.updated_at";
+
+    private static final String RECOMPUTE = "INSERT INTO user_shelf_summaries (" + COLUMNS + ") "
+        + "SELECT user_id, "
+        + "COUNT(*) FILTER (WHERE status = 'WANT_TO_READ'), "
+        + "COUNT(*) FILTER (WHERE status = 'CURRENTLY_READING'), "
+        + "COUNT(*) FILTER (WHERE status = 'READ'), "
+        + "COUNT(*) FILTER (WHERE status = 'DNF'), "
+        + "COALESCE(SUM(current_page), 0), COALESCE(SUM(rating), 0), COUNT(rating), CURRENT_TIMESTAMP "
+        + "FROM user_books WHERE user_id = ANY(?::text[]) GROUP BY user_id "
+        + "ON CONFLICT (user_id) DO UPDATE SET "
+        + "want_to_read_count = EXCLUDED.want_to_read_count, "
+        + "currently_reading_count = EXCLUDED.currently_reading_count, "
+        + "read_count = EXCLUDED.read_count, "
+        + "dnf_count = EXCLUDED.dnf_count, "
+        + "pages_read = EXCLUDED.pages_read, "
+        + "ratings_sum = EXCLUDED.ratings_sum, "
+        + "ratings_count = EXCLUDED.ratings_count, "
+        + "updated_at = EXCLUDED.updated_at";
+
+    private static final String DELETE_EMPTY = "DELETE FROM user_shelf_summaries s "
+        + "WHERE s.user_id = ANY(?::text[]) "
+        + "AND NOT EXISTS (SELECT 1 FROM user_books b WHERE b.user_id = s.user_id)";
+
+    private static final String USERS_WITH_BOOKS_AFTER = "SELECT DISTINCT user_id FROM user_books "
+        + "WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
+    private static final String USERS_WITHOUT_BOOKS_AFTER = "SELECT user_id FROM user_shelf_summaries s "
+        + "WHERE user_id > ? AND NOT EXISTS (SELECT 1 FROM user_books b WHERE b.user_id = s.user_id) "
+        + "ORDER BY user_id LIMIT ?";
+
+    private static final String BACKFILL = "INSERT INTO user_shelf_summaries (" + COLUMNS + ") "
+        + "SELECT user_id, "
+        + "COUNT(*) FILTER (WHERE status = 'WANT_TO_READ'), "
+        + "COUNT(*) FILTER (WHERE status = 'CURRENTLY_READING'), "
+        + "COUNT(*) FILTER (WHERE status = 'READ'), "
+        + "COUNT(*) FILTER (WHERE status = 'DNF'), "
+        + "COALESCE(SUM(current_page), 0), COALESCE(SUM(rating), 0), COUNT(rating), CURRENT_TIMESTAMP "
+        + "FROM user_books b "
+        + "WHERE NOT EXISTS (SELECT 1 FROM user_shelf_summaries s WHERE s.user_id = b.user_id) "
+        + "GROUP BY user_id "
+        + "ON CONFLICT (user_id) DO NOTHING";
+
+    // Two-int keys never collide with the single-key backfill lock. Taken in key order, so two
+    // transactions locking overlapping users cannot deadlock; users sharing a hash share a lock
+    private static final int USER_LOCK_CLASS = 0x73756d;
+    private static final String LOCK_USERS = "SELECT pg_advisory_xact_lock(" + USER_LOCK_CLASS + ", key) "
+        + "FROM (SELECT DISTINCT hashtext(user_id) AS key FROM unnest(?::text[]) AS users(user_id) ORDER BY key) keys";
+
+    // Held for the transaction; instances starting at the same time skip the backfill rather than repeat it
+    private static final String TRY_LOCK_BACKFILL = "SELECT pg_try_advisory_xact_lock(?)";
+    private static final long BACKFILL_LOCK_KEY = 0x7368656c66L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void apply(String userId, ShelfDelta delta) {
+        applyAll(Map.of(userId, delta));
+    }
+
+    public void applyAll(Map<String, ShelfDelta> deltas) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((userId, delta) -> {
+            if (!delta.isEmpty()) {
+                rows.add(new Object[] {
+                    userId,
+                    delta.count(ReadingStatus.WANT_TO_READ),
+                    delta.count(ReadingStatus.CURRENTLY_READING),
+                    delta.count(ReadingStatus.READ),
+                    delta.count(ReadingStatus.DNF),
+                    delta.pagesRead(),
+                    delta.ratingsSum(),
+                    delta.ratingsCount(),
+                    now
+                });
+            }
+        });
+        if (!rows.isEmpty()) {
+            lockUsers(rows.stream().map(row -> (String) row[0]).toList());
+            jdbcTemplate.batchUpdate(APPLY_DELTA, rows);
+        }
+    }
+
+    /**
+     * Rebuilds the users' summaries from their books, and drops those of users left with none.
+     * Must run in a transaction, which holds the users' locks until it ends.
+     */
+    public void recompute(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        lockUsers(userIds);
+        jdbcTemplate.update(RECOMPUTE, textArray(userIds));
+        jdbcTemplate.update(DELETE_EMPTY, textArray(userIds));
+    }
+
+    /** The next users in id order after the given one who have books, for walking every summary in batches. */
+    public List<String> findUsersWithBooksAfter(String userId, int limit) {
+        return jdbcTemplate.queryForList(USERS_WITH_BOOKS_AFTER, String.class, userId, limit);
+    }
+
+    /** The next users in id order after the given one whose summary outlived their books. */
+    public List<String> findUsersWithoutBooksAfter(String userId, int limit) {
+        return jdbcTemplate.queryForList(USERS_WITHOUT_BOOKS_AFTER, String.class, userId, limit);
+    }
+
+    /**
+     * Builds the summaries of users who have books but no summary yet, without blocking writers; only one
+     * instance runs it at a time and the others build nothing. Must run in a transaction. A user's first
+     * change committing while it runs keeps that user's summary at the change's delta until a repair.
+     */
+    public int backfill() {
+        Boolean locked = jdbcTemplate.queryForObject(TRY_LOCK_BACKFILL, Boolean.class, BACKFILL_LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+        return jdbcTemplate.update(BACKFILL);
+    }
+
+    private void lockUsers(Collection<String> userIds) {
+        jdbcTemplate.query(LOCK_USERS, resultSet -> { }, textArray(userIds));
+    }
+
+    private static PreparedStatementSetter textArray(Collection<String> values) {
+        return statement -> statement.setArray(1, statement.getConnection().createArrayOf("text", values.toArray()));
+    }
+}
@@ -0,0 +1,138 @@
+package com.nathaniel.bookbackend.library.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Turns the Authorization header into a {@link UserPrincipal}. A token's signature is checked with the
+ * secret auth-service signs with, once; the principal is then cached under the token's SHA-256 until the
+ * token expires, so later requests with it cost a hash and a lookup. Tokens are never logged.
+ */
+@Component
+public class RequestIdentity {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestIdentity.class);
+
+    private static final String BEARER = "Bearer ";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${library.identity.cache-size:100000}")
+    private long cacheSize;
+
+    // Also the limit for tokens without an expiry
+    @Value("${library.identity.max-cache-time:1h}")
+    private Duration maxCacheTime;
+
+    private JwtParser parser;
+    private Cache<String, UserPrincipal> principals;
+
+    @PostConstruct
+    void init() {
+        parser = Jwts.parser()
+            .verifyWith(Keys.hmacShaKeyFor(jwtSecret.getBytes()))
+            .build();
+        principals = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfter(new Expiry<String, UserPrincipal>() {
+                @Override
+                public long expireAfterCreate(String key, UserPrincipal principal, long currentTime) {
+                    return timeToLive(principal).toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, UserPrincipal principal, long currentTime,
+                                              long currentDuration) {
+                    return timeToLive(principal).toNanos();
+                }
+
+                @Override
+                public long expireAfterRead(String key, UserPrincipal principal, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "library.principals");
+    }
+
+    /**
+     * @return the caller, or null when the header is missing or holds a malformed, forged or expired token
+     */
+    public UserPrincipal resolve(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith(BEARER)) {
+            return null;
+        }
+        String token = authHeader.substring(BEARER.length());
+        String key = sha256(token);
+        UserPrincipal cached = principals.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        UserPrincipal verified = verify(token);
+        if (verified != null) {
+            principals.put(key, verified);
+        }
+        return verified;
+    }
+
+    private UserPrincipal verify(String token) {
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            if (claims.getSubject() == null) {
+                return null;
+            }
+            Instant expiresAt = claims.getExpiration() != null ? claims.getExpiration().toInstant() : null;
+            return new UserPrincipal(claims.getSubject(), claims.get("username", String.class), expiresAt);
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.debug("Rejected bearer token: {}", e.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    private Duration timeToLive(UserPrincipal principal) {
+        if (principal.expiresAt() == null) {
+            return maxCacheTime;
+        }
+        Duration remaining = Duration.between(Instant.now(), principal.expiresAt());
+        if (remaining.isNegative()) {
+            return Duration.ZERO;
+        }
+        return remaining.compareTo(maxCacheTime) < 0 ? remaining : maxCacheTime;
+    }
+
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
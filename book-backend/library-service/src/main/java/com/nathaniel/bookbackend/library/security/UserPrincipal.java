@@ -0,0 +1,14 @@
+package com.nathaniel.bookbackend.library.security;
+
+import java.time.Instant;
+
+/**
+ * The verified caller of a request, from a bearer token whose signature and expiry have been checked.
+ * Controller methods declare a parameter of this type to receive it, or null when there is no valid token.
+ */
+public record UserPrincipal(String userId, String username, Instant expiresAt) {
+
+    public boolean owns(String libraryUserId) {
+        return userId.equals(libraryUserId);
+    }
+}
@@ -0,0 +1,31 @@
+package com.nathaniel.bookbackend.library.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Supplies {@link UserPrincipal} controller parameters from the request's Authorization header.
+ */
+@Component
+public class UserPrincipalArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Autowired
+    private RequestIdentity requestIdentity;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == UserPrincipal.class;
+    }
+
+    @Override
+    public UserPrincipal resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                         NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        return requestIdentity.resolve(webRequest.getHeader(HttpHeaders.AUTHORIZATION));
+    }
+}
@@ -1,8 +1,17 @@
 package com.nathaniel.bookbackend.library.service;
 
+import com.nathaniel.bookbackend.library.model.LibraryOperation;
+import com.nathaniel.bookbackend.library.model.LibraryOperationResult;
+import com.nathaniel.bookbackend.library.model.LibraryOperationResult.Outcome;
 import com.nathaniel.bookbackend.library.model.UserBook;
+import com.nathaniel.bookbackend.library.model.UserShelfSummary;
 import com.nathaniel.bookbackend.library.model.ReadingStatus;
+import com.nathaniel.bookbackend.library.progress.ReadingProgressBuffer;
+import com.nathaniel.bookbackend.library.repository.UserBookCursorReader;
 import com.nathaniel.bookbackend.library.repository.UserBookRepository;
+import com.nathaniel.bookbackend.library.repository.UserShelfSummaryRepository;
+import com.nathaniel.bookbackend.library.repository.UserShelfSummaryWriter;
+import com.nathaniel.bookbackend.library.summary.ShelfDelta;
 import com.nathaniel.bookbackend.common.events.UserActivityEvent;
 import com.nathaniel.bookbackend.common.events.KafkaTopics;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,18 +20,26 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
 @Service
 public class LibraryService {
+
+    public static final int MAX_BULK_OPERATIONS = 1000;
     
     @Autowired
     private UserBookRepository userBookRepository;
@@ -30,31 +47,62 @@ public class LibraryService {
     @Autowired
     private KafkaTemplate<String, UserActivityEvent> kafkaTemplate;
 
+    @Autowired
+    private UserBookCursorReader userBookCursorReader;
+
+    @Autowired
+    private UserShelfSummaryRepository shelfSummaryRepository;
+
+    @Autowired
+    private UserShelfSummaryWriter shelfSummaryWriter;
+
+    @Autowired
+    private ReadingProgressBuffer progressBuffer;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Transactional(readOnly = true)
     public Page<UserBook> getUserBooks(String userId, Pageable pageable) {
-        return userBookRepository.findByUserId(userId, pageable);
+        Page<UserBook> books = userBookRepository.findByUserId(userId, pageable);
+        progressBuffer.overlay(books);
+        return books;
     }
 
     @Transactional(readOnly = true)
     public Page<UserBook> getUserBooksByStatus(String userId, ReadingStatus status, Pageable pageable) {
-        return userBookRepository.findByUserIdAndStatus(userId, status, pageable);
+        Page<UserBook> books = userBookRepository.findByUserIdAndStatus(userId, status, pageable);
+        progressBuffer.overlay(books);
+        return books;
+    }
+
+    /**
+     * Walks the user's books in id order off a database cursor, optionally only one shelf and only books
+     * after {@code afterId}, handing each to {@code consumer} with any buffered progress applied. Memory
+     * stays flat however large the library is. Stops early once the consumer returns false.
+     */
+    @Transactional(readOnly = true)
+    public void streamUserBooks(String userId, ReadingStatus status, String afterId, Predicate<UserBook> consumer) {
+        userBookCursorReader.forEach(userId, status, afterId, userBook -> {
+            progressBuffer.overlay(userBook);
+            return consumer.test(userBook);
+        });
+    }
+
+    /** Counts per shelf and reading totals; page turns still buffered are counted once written. */
+    @Transactional(readOnly = true)
+    public UserShelfSummary getShelfSummary(String userId) {
+        return shelfSummaryRepository.findById(userId)
+            .orElseGet(() -> new UserShelfSummary(userId));
     }
 
     @Transactional
     public UserBook addBookToLibrary(String userId, String bookId, ReadingStatus status) {
-        UserBook userBook = new UserBook();
-        userBook.setUserId(userId);
-        userBook.setBookId(bookId);
-        userBook.setStatus(status);
-        
-        if (status == ReadingStatus.CURRENTLY_READING) {
-            userBook.setStartedAt(Instant.now());
-        }
-        
-        UserBook savedBook = userBookRepository.save(userBook);
+        UserBook savedBook = userBookRepository.save(newUserBook(userId, bookId, status));
+        shelfSummaryWriter.apply(userId, new ShelfDelta().plus(savedBook));
         
         // Publish event
-        kafkaTemplate.send(KafkaTopics.USER_ACTIVITY, new UserActivityEvent(
+        publishAfterCommit(null, new UserActivityEvent(
             userId,
             "BOOK_ADDED",
             bookId
@@ -65,21 +113,17 @@ public class LibraryService {
 
     @Transactional
     public Optional<UserBook> updateReadingStatus(String userId, String bookId, ReadingStatus newStatus) {
-        return userBookRepository.findByUserIdAndBookId(userId, bookId)
+        progressBuffer.flush(userId, List.of(bookId));
+        return userBookRepository.findLockedByUserIdAndBookId(userId, bookId)
             .map(userBook -> {
-                ReadingStatus oldStatus = userBook.getStatus();
-                userBook.setStatus(newStatus);
-                
-                if (newStatus == ReadingStatus.CURRENTLY_READING && oldStatus != ReadingStatus.CURRENTLY_READING) {
-                    userBook.setStartedAt(Instant.now());
-                } else if (newStatus == ReadingStatus.READ) {
-                    userBook.setFinishedAt(Instant.now());
-                }
+                ShelfDelta delta = new ShelfDelta().minus(userBook);
+                applyStatus(userBook, newStatus);
                 
                 UserBook updatedBook = userBookRepository.save(userBook);
+                shelfSummaryWriter.apply(userId, delta.plus(updatedBook));
                 
                 // Publish event
-                kafkaTemplate.send(KafkaTopics.USER_ACTIVITY, new UserActivityEvent(
+                publishAfterCommit(null, new UserActivityEvent(
                     userId,
                     "STATUS_UPDATED",
                     bookId
@@ -89,46 +133,64 @@ public class LibraryService {
             });
     }
 
-    @Transactional
+    /**
+     * Page turns are buffered and written behind by {@link ReadingProgressBuffer}; only the first one for a
+     * book reads its row, and none opens a transaction. Finishing the book, or going back to an earlier
+     * page, is written through at once.
+     */
     public Optional<UserBook> updateReadingProgress(String userId, String bookId, Integer currentPage, Integer totalPages) {
-        return userBookRepository.findByUserIdAndBookId(userId, bookId)
-            .map(userBook -> {
-                userBook.setCurrentPage(currentPage);
-                userBook.setTotalPages(totalPages);
-                
-                if (currentPage.equals(totalPages)) {
-                    userBook.setStatus(ReadingStatus.READ);
-                    userBook.setFinishedAt(Instant.now());
-                }
-                
-                UserBook updatedBook = userBookRepository.save(userBook);
-                
-                // Publish event
-                kafkaTemplate.send(KafkaTopics.USER_ACTIVITY, new UserActivityEvent(
-                    userId,
-                    "PROGRESS_UPDATED",
-                    bookId
-                ));
-                
-                return updatedBook;
-            });
+        boolean finished = currentPage.equals(totalPages);
+        if (!finished && progressBuffer.isEnabled()) {
+            Optional<UserBook> buffered = progressBuffer.update(userId, bookId, currentPage, totalPages);
+            if (buffered.isPresent()) {
+                return buffered;
+            }
+            Optional<UserBook> row = userBookRepository.findByUserIdAndBookId(userId, bookId);
+            // Buffered writes only move a book forward; going back is written through below
+            if (row.isEmpty() || currentPage >= Objects.requireNonNullElse(row.get().getCurrentPage(), 0)) {
+                return row.map(userBook -> progressBuffer.start(userBook, currentPage, totalPages));
+            }
+        }
+
+        return transactionTemplate.execute(status -> {
+            progressBuffer.take(userId, bookId);
+            return userBookRepository.findLockedByUserIdAndBookId(userId, bookId)
+                .map(userBook -> {
+                    // What the row holds, since another instance may have written progress this one never saw
+                    int previousPage = Objects.requireNonNullElse(userBook.getCurrentPage(), 0);
+                    ShelfDelta delta = new ShelfDelta().minus(userBook);
+                    applyProgress(userBook, currentPage, totalPages);
+
+                    UserBook updatedBook = userBookRepository.save(userBook);
+                    shelfSummaryWriter.apply(userId, delta.plus(updatedBook));
+
+                    // Publish event
+                    publishAfterCommit(null,
+                        UserActivityEvent.progressUpdated(userId, bookId, currentPage - previousPage));
+
+                    return updatedBook;
+                });
+        });
     }
 
     @Transactional
     public Optional<UserBook> addReviewAndRating(String userId, String bookId, String review, Double rating) {
-        return userBookRepository.findByUserIdAndBookId(userId, bookId)
+        progressBuffer.flush(userId, List.of(bookId));
+        return userBookRepository.findLockedByUserIdAndBookId(userId, bookId)
             .map(userBook -> {
+                Double previousRating = userBook.getRating();
+                ShelfDelta delta = new ShelfDelta().minus(userBook);
                 userBook.setReview(review);
                 userBook.setRating(rating);
                 
                 UserBook updatedBook = userBookRepository.save(userBook);
+                shelfSummaryWriter.apply(userId, delta.plus(updatedBook));
                 
-                // Publish event
-                kafkaTemplate.send(KafkaTopics.USER_ACTIVITY, new UserActivityEvent(
-                    userId,
-                    "REVIEW_ADDED",
-                    bookId
-                ));
+                // Publish event; book-service folds the rating change into the book's aggregate
+                UserActivityEvent event = new UserActivityEvent(userId, "REVIEW_ADDED", bookId);
+                event.setRating(rating);
+                event.setPreviousRating(previousRating);
+                publishAfterCommit(bookId, event);
                 
                 return updatedBook;
             });
@@ -136,13 +198,208 @@ public class LibraryService {
 
     @Transactional
     public void removeBookFromLibrary(String userId, String bookId) {
-        userBookRepository.deleteByUserIdAndBookId(userId, bookId);
+        progressBuffer.flush(userId, List.of(bookId));
+        // A book added twice through addBookToLibrary has more than one row; all of them go
+        List<UserBook> removed = userBookRepository.findAllByUserIdAndBookId(userId, bookId);
+        ShelfDelta delta = new ShelfDelta();
+        removed.forEach(delta::minus);
+        shelfSummaryWriter.apply(userId, delta);
+        userBookRepository.deleteAll(removed);
         
-        // Publish event
-        kafkaTemplate.send(KafkaTopics.USER_ACTIVITY, new UserActivityEvent(
-            userId,
-            "BOOK_REMOVED",
-            bookId
-        ));
+        // Publish event; the user's rating is taken back out of the book's aggregate
+        UserActivityEvent event = new UserActivityEvent(userId, "BOOK_REMOVED", bookId);
+        event.setPreviousRating(removed.stream().map(UserBook::getRating).filter(Objects::nonNull)
+            .findFirst().orElse(null));
+        publishAfterCommit(bookId, event);
+    }
+
+    /**
+     * Applies add, status, progress and remove operations to one user's library in a single transaction,
+     * in order, so later operations see the effect of earlier ones. Rows are loaded with one query and
+     * written as JDBC batches, and the resulting activity goes out as one batched event, except removals, which
+     * move book ratings and go out keyed by book like the single-book ones so they keep their order. Operations that
+     * cannot apply are reported in their result and skipped; the others still commit.
+     *
+     * @throws IllegalArgumentException if there are more than {@link #MAX_BULK_OPERATIONS} operations
+     */
+    @Transactional
+    public List<LibraryOperationResult> applyBulk(String userId, List<LibraryOperation> operations) {
+        if (operations.size() > MAX_BULK_OPERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_BULK_OPERATIONS + " operations per request");
+        }
+
+        Set<String> bookIds = new HashSet<>();
+        for (LibraryOperation operation : operations) {
+            if (operation != null && operation.getBookId() != null) {
+                bookIds.add(operation.getBookId());
+            }
+        }
+        // Pending page turns are written first, so the rows below include them
+        progressBuffer.flush(userId, bookIds);
+        // Rows per book; a book added twice through the single-book endpoint has more than one
+        Map<String, List<UserBook>> library = new LinkedHashMap<>();
+        if (!bookIds.isEmpty()) {
+            for (UserBook userBook : userBookRepository.findByUserIdAndBookIdIn(userId, bookIds)) {
+                library.computeIfAbsent(userBook.getBookId(), key -> new ArrayList<>()).add(userBook);
+            }
+        }
+
+        BulkChanges changes = new BulkChanges();
+        List<LibraryOperationResult> results = new ArrayList<>(operations.size());
+        for (LibraryOperation operation : operations) {
+            results.add(apply(userId, operation, library, changes));
+        }
+
+        // Rows changed in place are flushed, batched, at commit
+        userBookRepository.saveAll(changes.inserted);
+        userBookRepository.deleteAll(changes.deleted);
+        shelfSummaryWriter.apply(userId, changes.summary);
+        List<UserActivityEvent> batched = new ArrayList<>(changes.activities.size());
+        for (UserActivityEvent activity : changes.activities) {
+            if ("BOOK_REMOVED".equals(activity.getActivityType())) {
+                publishAfterCommit(activity.getBookId(), activity);
+            } else {
+                batched.add(activity);
+            }
+        }
+        if (!batched.isEmpty()) {
+            publishAfterCommit(userId, UserActivityEvent.batch(userId, batched));
+        }
+        return results;
+    }
+
+    private LibraryOperationResult apply(String userId, LibraryOperation operation,
+                                         Map<String, List<UserBook>> library, BulkChanges changes) {
+        if (operation == null || operation.getType() == null || operation.getBookId() == null) {
+            LibraryOperation invalid = operation != null ? operation : new LibraryOperation();
+            return LibraryOperationResult.rejected(invalid, Outcome.INVALID, "type and bookId are required");
+        }
+        String bookId = operation.getBookId();
+        List<UserBook> rows = library.getOrDefault(bookId, Collections.emptyList());
+
+        switch (operation.getType()) {
+            case ADD -> {
+                if (operation.getStatus() == null) {
+                    return LibraryOperationResult.rejected(operation, Outcome.INVALID, "status is required");
+                }
+                if (!rows.isEmpty()) {
+                    return LibraryOperationResult.rejected(operation, Outcome.ALREADY_IN_LIBRARY, null);
+                }
+                UserBook userBook = newUserBook(userId, bookId, operation.getStatus());
+                library.put(bookId, new ArrayList<>(List.of(userBook)));
+                changes.inserted.add(userBook);
+                changes.summary.plus(userBook);
+                changes.activities.add(new UserActivityEvent(userId, "BOOK_ADDED", bookId));
+                return LibraryOperationResult.applied(operation, userBook);
+            }
+            case STATUS -> {
+                if (operation.getStatus() == null) {
+                    return LibraryOperationResult.rejected(operation, Outcome.INVALID, "status is required");
+                }
+                if (rows.isEmpty()) {
+                    return LibraryOperationResult.rejected(operation, Outcome.NOT_FOUND, null);
+                }
+                rows.forEach(userBook -> {
+                    changes.summary.minus(userBook);
+                    applyStatus(userBook, operation.getStatus());
+                    changes.summary.plus(userBook);
+                });
+                changes.activities.add(new UserActivityEvent(userId, "STATUS_UPDATED", bookId));
+                return LibraryOperationResult.applied(operation, rows.get(0));
+            }
+            case PROGRESS -> {
+                if (operation.getCurrentPage() == null || operation.getTotalPages() == null) {
+                    return LibraryOperationResult.rejected(operation, Outcome.INVALID,
+                        "currentPage and totalPages are required");
+                }
+                if (rows.isEmpty()) {
+                    return LibraryOperationResult.rejected(operation, Outcome.NOT_FOUND, null);
+                }
+                Integer previousPage = rows.get(0).getCurrentPage();
+                rows.forEach(userBook -> {
+                    changes.summary.minus(userBook);
+                    applyProgress(userBook, operation.getCurrentPage(), operation.getTotalPages());
+                    changes.summary.plus(userBook);
+                });
+                changes.activities.add(UserActivityEvent.progressUpdated(userId, bookId,
+                    operation.getCurrentPage() - (previousPage != null ? previousPage : 0)));
+                return LibraryOperationResult.applied(operation, rows.get(0));
+            }
+            case REMOVE -> {
+                if (rows.isEmpty()) {
+                    return LibraryOperationResult.rejected(operation, Outcome.NOT_FOUND, null);
+                }
+                UserActivityEvent event = new UserActivityEvent(userId, "BOOK_REMOVED", bookId);
+                event.setPreviousRating(rows.get(0).getRating());
+                changes.activities.add(event);
+                for (UserBook userBook : rows) {
+                    changes.summary.minus(userBook);
+                    // A book added earlier in the same request was never written
+                    if (!changes.inserted.remove(userBook)) {
+                        changes.deleted.add(userBook);
+                    }
+                }
+                library.remove(bookId);
+                return LibraryOperationResult.applied(operation, null);
+            }
+            default -> throw new IllegalStateException("Unhandled operation " + operation.getType());
+        }
+    }
+
+    /**
+     * Sends the event once the current transaction commits, so a rollback never reaches book-service or
+     * analytics as a change that did not happen; sends at once outside a transaction.
+     */
+    private void publishAfterCommit(String key, UserActivityEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            kafkaTemplate.send(KafkaTopics.USER_ACTIVITY, key, event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                kafkaTemplate.send(KafkaTopics.USER_ACTIVITY, key, event);
+            }
+        });
+    }
+
+    private static UserBook newUserBook(String userId, String bookId, ReadingStatus status) {
+        UserBook userBook = new UserBook();
+        userBook.setUserId(userId);
+        userBook.setBookId(bookId);
+        userBook.setStatus(status);
+
+        if (status == ReadingStatus.CURRENTLY_READING) {
+            userBook.setStartedAt(Instant.now());
+        }
+        return userBook;
+    }
+
+    private static void applyStatus(UserBook userBook, ReadingStatus newStatus) {
+        ReadingStatus oldStatus = userBook.getStatus();
+        userBook.setStatus(newStatus);
+
+        if (newStatus == ReadingStatus.CURRENTLY_READING && oldStatus != ReadingStatus.CURRENTLY_READING) {
+            userBook.setStartedAt(Instant.now());
+        } else if (newStatus == ReadingStatus.READ) {
+            userBook.setFinishedAt(Instant.now());
+        }
+    }
+
+    private static void applyProgress(UserBook userBook, Integer currentPage, Integer totalPages) {
+        userBook.setCurrentPage(currentPage);
+        userBook.setTotalPages(totalPages);
+
+        if (currentPage.equals(totalPages)) {
+            userBook.setStatus(ReadingStatus.READ);
+            userBook.setFinishedAt(Instant.now());
+        }
+    }
+
+    private static final class BulkChanges {
+        private final List<UserBook> inserted = new ArrayList<>();
+        private final List<UserBook> deleted = new ArrayList<>();
+        private final List<UserActivityEvent> activities = new ArrayList<>();
+        private final ShelfDelta summary = new ShelfDelta();
     }
 }
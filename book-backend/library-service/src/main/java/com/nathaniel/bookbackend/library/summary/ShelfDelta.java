@@ -0,0 +1,67 @@
+package com.nathaniel.bookbackend.library.summary;
+
+import com.nathaniel.bookbackend.library.model.ReadingStatus;
+import com.nathaniel.bookbackend.library.model.UserBook;
+
+/**
+ * A change to one user's shelf summary. A mutation takes each row it touches out with
+ * {@link #minus(UserBook)} before changing it and puts it back with {@link #plus(UserBook)} after,
+ * so the delta is whatever the change did to the counts, whichever fields it touched.
+ */
+public final class ShelfDelta {
+
+    private final long[] counts = new long[ReadingStatus.values().length];
+    private long pagesRead;
+    private double ratingsSum;
+    private long ratingsCount;
+
+    public ShelfDelta plus(UserBook book) {
+        return add(book, 1);
+    }
+
+    public ShelfDelta minus(UserBook book) {
+        return add(book, -1);
+    }
+
+    public ShelfDelta plusPages(long pages) {
+        pagesRead += pages;
+        return this;
+    }
+
+    private ShelfDelta add(UserBook book, int sign) {
+        counts[book.getStatus().ordinal()] += sign;
+        if (book.getCurrentPage() != null) {
+            pagesRead += sign * (long) book.getCurrentPage();
+        }
+        if (book.getRating() != null) {
+            ratingsSum += sign * book.getRating();
+            ratingsCount += sign;
+        }
+        return this;
+    }
+
+    public long count(ReadingStatus status) {
+        return counts[status.ordinal()];
+    }
+
+    public long pagesRead() {
+        return pagesRead;
+    }
+
+    public double ratingsSum() {
+        return ratingsSum;
+    }
+
+    public long ratingsCount() {
+        return ratingsCount;
+    }
+
+    public boolean isEmpty() {
+        for (long count : counts) {
+            if (count != 0) {
+                return false;
+            }
+        }
+        return pagesRead == 0 && ratingsSum == 0 && ratingsCount == 0;
+    }
+}
@@ -0,0 +1,105 @@
+package com.nathaniel.bookbackend.library.summary;
+
+import com.nathaniel.bookbackend.library.repository.UserShelfSummaryWriter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * The only place shelf summaries are counted from user_books. On startup it builds the summaries of users
+ * who have none yet, such as everyone when the table is new, without locking the table and on one instance
+ * at a time; with library.summary.repair-interval set it also rebuilds every summary that often to undo
+ * any drift, walking the users library.summary.repair-batch-size at a time with one short transaction
+ * per batch that holds only those users' locks. Everything else only adds deltas.
+ */
+@Component
+public class ShelfSummaryRepairJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShelfSummaryRepairJob.class);
+
+    @Autowired
+    private UserShelfSummaryWriter summaryWriter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${library.summary.repair-interval:0s}")
+    private Duration repairInterval;
+
+    @Value("${library.summary.repair-batch-size:500}")
+    private int repairBatchSize;
+
+    private Thread repairThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        repairThread = new Thread(this::run, "shelf-summary-repair");
+        repairThread.setDaemon(true);
+        repairThread.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (repairThread != null) {
+            repairThread.interrupt();
+        }
+    }
+
+    public void repair(String userId) {
+        transactionTemplate.executeWithoutResult(status -> summaryWriter.recompute(List.of(userId)));
+    }
+
+    public void repairAll() {
+        int rebuilt = repairEach(summaryWriter::findUsersWithBooksAfter);
+        int dropped = repairEach(summaryWriter::findUsersWithoutBooksAfter);
+        logger.info("Rebuilt {} shelf summaries and dropped {} of users without books", rebuilt, dropped);
+    }
+
+    private int repairEach(BiFunction<String, Integer, List<String>> usersAfter) {
+        int repaired = 0;
+        String lastUserId = "";
+        while (true) {
+            List<String> userIds = usersAfter.apply(lastUserId, repairBatchSize);
+            if (userIds.isEmpty()) {
+                return repaired;
+            }
+            transactionTemplate.executeWithoutResult(status -> summaryWriter.recompute(userIds));
+            repaired += userIds.size();
+            lastUserId = userIds.get(userIds.size() - 1);
+        }
+    }
+
+    private void run() {
+        try {
+            Integer built = transactionTemplate.execute(status -> summaryWriter.backfill());
+            if (built != null && built > 0) {
+                logger.info("Built {} missing shelf summaries", built);
+            }
+        } catch (Exception e) {
+            logger.warn("Building missing shelf summaries failed", e);
+        }
+        if (repairInterval.isZero() || repairInterval.isNegative()) {
+            return;
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(repairInterval.toMillis());
+                repairAll();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.warn("Shelf summary repair failed, retrying in {}", repairInterval, e);
+            }
+        }
+    }
+}
@@ -1,22 +1,47 @@
 package com.nathaniel.bookbackend.library;
 
+import com.nathaniel.bookbackend.library.model.LibraryOperation;
+import com.nathaniel.bookbackend.library.model.LibraryOperationResult;
+import com.nathaniel.bookbackend.library.model.LibraryOperationResult.Outcome;
 import com.nathaniel.bookbackend.library.model.UserBook;
+import com.nathaniel.bookbackend.library.model.UserShelfSummary;
 import com.nathaniel.bookbackend.library.model.ReadingStatus;
+import com.nathaniel.bookbackend.library.progress.ReadingProgressBuffer;
 import com.nathaniel.bookbackend.library.service.LibraryService;
 import com.nathaniel.bookbackend.library.repository.UserBookRepository;
+import com.nathaniel.bookbackend.library.repository.UserShelfSummaryRepository;
+import com.nathaniel.bookbackend.library.repository.UserShelfSummaryWriter;
+import com.nathaniel.bookbackend.library.summary.ShelfDelta;
+import com.nathaniel.bookbackend.library.summary.ShelfSummaryRepairJob;
+import com.nathaniel.bookbackend.common.events.KafkaTopics;
+import com.nathaniel.bookbackend.common.events.UserActivityEvent;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
-@SpringBootTest
+// Progress is only written behind when a test flushes it
+@SpringBootTest(properties = "library.progress.flush-interval=1h")
 @Testcontainers
 class LibraryServiceIntegrationTest {
 
@@ -26,6 +51,24 @@ class LibraryServiceIntegrationTest {
     @Autowired
     private UserBookRepository userBookRepository;
 
+    @Autowired
+    private ReadingProgressBuffer progressBuffer;
+
+    @Autowired
+    private UserShelfSummaryRepository shelfSummaryRepository;
+
+    @Autowired
+    private ShelfSummaryRepairJob shelfSummaryRepairJob;
+
+    @Autowired
+    private UserShelfSummaryWriter shelfSummaryWriter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @SpyBean
+    private KafkaTemplate<String, UserActivityEvent> kafkaTemplate;
+
     @Container
     static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:14-alpine")
             .withDatabaseName("testdb")
@@ -34,7 +77,9 @@ class LibraryServiceIntegrationTest {
 
     @BeforeEach
     void setUp() {
+        progressBuffer.flush();
         userBookRepository.deleteAll();
+        shelfSummaryRepository.deleteAll();
     }
 
     @DynamicPropertySource
@@ -110,4 +155,433 @@ class LibraryServiceIntegrationTest {
         assertThat(result.get().getRating()).isEqualTo(4.5);
         assertThat(result.get().getReview()).isEqualTo("Great book!");
     }
+
+    @Test
+    void shouldSendActivityOnlyOnceItCommits() {
+        // Given
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.READ);
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> {
+            libraryService.addReviewAndRating(userId, bookId, "Rolled back", 1.0);
+            libraryService.removeBookFromLibrary(userId, bookId);
+            status.setRollbackOnly();
+        });
+        libraryService.addReviewAndRating(userId, bookId, "Great book!", 4.5);
+
+        // Then
+        verify(kafkaTemplate, never()).send(eq(KafkaTopics.USER_ACTIVITY), any(),
+            argThat(event -> "BOOK_REMOVED".equals(event.getActivityType())));
+        verify(kafkaTemplate, never()).send(eq(KafkaTopics.USER_ACTIVITY), any(),
+            argThat(event -> event.getRating() != null && event.getRating() == 1.0));
+        verify(kafkaTemplate).send(eq(KafkaTopics.USER_ACTIVITY), eq(bookId),
+            argThat(event -> event.getRating() != null && event.getRating() == 4.5));
+    }
+
+    @Test
+    void shouldRemoveEveryRowOfABookAddedTwice() {
+        // Given
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.WANT_TO_READ);
+        UserBook rated = libraryService.addBookToLibrary(userId, bookId, ReadingStatus.READ);
+        rated.setRating(4.0);
+        userBookRepository.save(rated);
+        shelfSummaryRepairJob.repair(userId);
+
+        // When
+        libraryService.removeBookFromLibrary(userId, bookId);
+
+        // Then
+        assertThat(userBookRepository.findAllByUserIdAndBookId(userId, bookId)).isEmpty();
+        UserShelfSummary summary = libraryService.getShelfSummary(userId);
+        assertThat(summary.getTotalBooks()).isZero();
+        assertThat(summary.getRatingsCount()).isZero();
+        verify(kafkaTemplate).send(eq(KafkaTopics.USER_ACTIVITY), eq(bookId),
+            argThat(event -> "BOOK_REMOVED".equals(event.getActivityType()) && Double.valueOf(4.0).equals(event.getPreviousRating())));
+    }
+
+    @Test
+    void shouldApplyBulkOperationsInOrder() {
+        // Given
+        String userId = "test-user";
+        libraryService.addBookToLibrary(userId, "book-1", ReadingStatus.WANT_TO_READ);
+        libraryService.addBookToLibrary(userId, "book-2", ReadingStatus.CURRENTLY_READING);
+
+        // When
+        List<LibraryOperationResult> results = libraryService.applyBulk(userId, List.of(
+            LibraryOperation.add("book-3", ReadingStatus.WANT_TO_READ),
+            LibraryOperation.status("book-1", ReadingStatus.CURRENTLY_READING),
+            LibraryOperation.progress("book-1", 120, 300),
+            LibraryOperation.remove("book-2")));
+
+        // Then
+        assertThat(results).extracting(LibraryOperationResult::getOutcome).containsOnly(Outcome.APPLIED);
+        UserBook updated = userBookRepository.findByUserIdAndBookId(userId, "book-1").orElseThrow();
+        assertThat(updated.getStatus()).isEqualTo(ReadingStatus.CURRENTLY_READING);
+        assertThat(updated.getCurrentPage()).isEqualTo(120);
+        assertThat(updated.getStartedAt()).isNotNull();
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, "book-2")).isEmpty();
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, "book-3")).isPresent();
+        // The removal shares the book's partition with its rating changes, the rest goes out as one batch
+        verify(kafkaTemplate).send(eq(KafkaTopics.USER_ACTIVITY), eq("book-2"),
+            argThat(event -> "BOOK_REMOVED".equals(event.getActivityType())));
+        verify(kafkaTemplate).send(eq(KafkaTopics.USER_ACTIVITY), eq(userId),
+            argThat(event -> "BATCH".equals(event.getActivityType()) && event.getActivities().size() == 3));
+    }
+
+    @Test
+    void shouldReportRejectedBulkOperationsWithoutFailingTheRest() {
+        // Given
+        String userId = "test-user";
+        libraryService.addBookToLibrary(userId, "book-1", ReadingStatus.WANT_TO_READ);
+
+        // When
+        List<LibraryOperationResult> results = libraryService.applyBulk(userId, List.of(
+            LibraryOperation.add("book-1", ReadingStatus.READ),
+            LibraryOperation.status("missing", ReadingStatus.READ),
+            LibraryOperation.progress("book-1", 10, null),
+            LibraryOperation.status("book-1", ReadingStatus.READ)));
+
+        // Then
+        assertThat(results).extracting(LibraryOperationResult::getOutcome).containsExactly(
+            Outcome.ALREADY_IN_LIBRARY, Outcome.NOT_FOUND, Outcome.INVALID, Outcome.APPLIED);
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, "book-1").orElseThrow().getStatus())
+            .isEqualTo(ReadingStatus.READ);
+    }
+
+    @Test
+    void shouldNotWriteABookAddedAndRemovedInTheSameBulkRequest() {
+        // Given
+        String userId = "test-user";
+
+        // When
+        List<LibraryOperationResult> results = libraryService.applyBulk(userId, List.of(
+            LibraryOperation.add("book-1", ReadingStatus.WANT_TO_READ),
+            LibraryOperation.progress("book-1", 5, 200),
+            LibraryOperation.remove("book-1")));
+
+        // Then
+        assertThat(results).extracting(LibraryOperationResult::getOutcome).containsOnly(Outcome.APPLIED);
+        assertThat(userBookRepository.count()).isZero();
+    }
+
+    @Test
+    void shouldBufferProgressUntilFlushed() {
+        // Given
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.CURRENTLY_READING);
+
+        // When
+        libraryService.updateReadingProgress(userId, bookId, 10, 300);
+        var result = libraryService.updateReadingProgress(userId, bookId, 12, 300);
+
+        // Then
+        assertThat(result).isPresent();
+        assertThat(result.get().getCurrentPage()).isEqualTo(12);
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow().getCurrentPage()).isNull();
+        assertThat(libraryService.getUserBooks(userId, PageRequest.of(0, 10)).getContent())
+            .extracting(UserBook::getCurrentPage).containsExactly(12);
+
+        progressBuffer.flush();
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow().getCurrentPage()).isEqualTo(12);
+    }
+
+    @Test
+    void shouldWriteFinishedBookThrough() {
+        // Given
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, bookId, 290, 300);
+
+        // When
+        libraryService.updateReadingProgress(userId, bookId, 300, 300);
+        progressBuffer.flush();
+
+        // Then
+        UserBook stored = userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow();
+        assertThat(stored.getCurrentPage()).isEqualTo(300);
+        assertThat(stored.getStatus()).isEqualTo(ReadingStatus.READ);
+        assertThat(stored.getFinishedAt()).isNotNull();
+    }
+
+    @Test
+    void shouldWritePendingProgressBeforeOtherChanges() {
+        // Given
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, bookId, 42, 300);
+
+        // When
+        libraryService.addReviewAndRating(userId, bookId, "Slow start", 3.0);
+
+        // Then
+        UserBook stored = userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow();
+        assertThat(stored.getCurrentPage()).isEqualTo(42);
+        assertThat(stored.getRating()).isEqualTo(3.0);
+    }
+
+    @Test
+    void shouldKeepBufferedProgressWhenTheCallerRollsBack() {
+        // Given
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, bookId, 42, 300);
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> {
+            progressBuffer.flush(userId, List.of(bookId));
+            status.setRollbackOnly();
+        });
+
+        // Then
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow().getCurrentPage()).isNull();
+        assertThat(libraryService.getUserBooks(userId, PageRequest.of(0, 10)).getContent())
+            .extracting(UserBook::getCurrentPage).containsExactly(42);
+
+        progressBuffer.flush();
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow().getCurrentPage()).isEqualTo(42);
+        assertThat(libraryService.getShelfSummary(userId).getPagesRead()).isEqualTo(42);
+    }
+
+    @Test
+    void shouldCountPagesTurnedWhileTheCallerWritesOnce() {
+        // Given
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, bookId, 10, 300);
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> {
+            progressBuffer.flush(userId, List.of(bookId));
+            libraryService.updateReadingProgress(userId, bookId, 25, 300);
+        });
+        progressBuffer.flush();
+
+        // Then
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow().getCurrentPage()).isEqualTo(25);
+        assertThat(libraryService.getShelfSummary(userId).getPagesRead()).isEqualTo(25);
+    }
+
+    @Test
+    void shouldNotWriteBufferedProgressOverLaterProgressFromAnotherInstance() {
+        // Given: page 50 buffered here, then page 80 written by another instance
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, bookId, 50, 300);
+        transactionTemplate.executeWithoutResult(status -> {
+            UserBook row = userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow();
+            row.setCurrentPage(80);
+            userBookRepository.save(row);
+            shelfSummaryWriter.apply(userId, new ShelfDelta().plusPages(80));
+        });
+
+        // When
+        progressBuffer.flush();
+
+        // Then
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow().getCurrentPage()).isEqualTo(80);
+        assertThat(libraryService.getShelfSummary(userId).getPagesRead()).isEqualTo(80);
+    }
+
+    @Test
+    void shouldWriteThroughProgressThatGoesBack() {
+        // Given
+        String userId = "test-user";
+        String bookId = "test-book";
+        libraryService.addBookToLibrary(userId, bookId, ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, bookId, 120, 300);
+        progressBuffer.flush();
+
+        // When
+        libraryService.updateReadingProgress(userId, bookId, 90, 300);
+
+        // Then
+        assertThat(userBookRepository.findByUserIdAndBookId(userId, bookId).orElseThrow().getCurrentPage()).isEqualTo(90);
+        assertThat(libraryService.getShelfSummary(userId).getPagesRead()).isEqualTo(90);
+    }
+
+    @Test
+    void shouldReportNotFoundProgressForBooksOutsideTheLibrary() {
+        // When
+        var result = libraryService.updateReadingProgress("test-user", "missing", 10, 300);
+
+        // Then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void shouldKeepShelfSummaryCurrentWithoutRecounting() {
+        // Given
+        String userId = "test-user";
+        libraryService.addBookToLibrary(userId, "book-1", ReadingStatus.WANT_TO_READ);
+        libraryService.addBookToLibrary(userId, "book-2", ReadingStatus.CURRENTLY_READING);
+        libraryService.addBookToLibrary(userId, "book-3", ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, "book-2", 40, 300);
+        libraryService.updateReadingProgress(userId, "book-3", 200, 200);
+        libraryService.addReviewAndRating(userId, "book-3", "Loved it", 5.0);
+        libraryService.applyBulk(userId, List.of(
+            LibraryOperation.status("book-1", ReadingStatus.DNF),
+            LibraryOperation.add("book-4", ReadingStatus.READ)));
+        libraryService.addReviewAndRating(userId, "book-4", "Fine", 3.0);
+        libraryService.removeBookFromLibrary(userId, "book-1");
+        progressBuffer.flush();
+
+        // When
+        UserShelfSummary summary = libraryService.getShelfSummary(userId);
+
+        // Then
+        assertThat(summary.getShelves()).containsEntry(ReadingStatus.WANT_TO_READ, 0L)
+            .containsEntry(ReadingStatus.CURRENTLY_READING, 1L)
+            .containsEntry(ReadingStatus.READ, 2L)
+            .containsEntry(ReadingStatus.DNF, 0L);
+        assertThat(summary.getTotalBooks()).isEqualTo(3);
+        assertThat(summary.getPagesRead()).isEqualTo(240);
+        assertThat(summary.getAverageRating()).isEqualTo(4.0);
+    }
+
+    @Test
+    void shouldMatchARepairedShelfSummary() {
+        // Given
+        String userId = "test-user";
+        libraryService.addBookToLibrary(userId, "book-1", ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, "book-1", 25, 100);
+        libraryService.updateReadingStatus(userId, "book-1", ReadingStatus.READ);
+        libraryService.applyBulk(userId, List.of(
+            LibraryOperation.add("book-2", ReadingStatus.WANT_TO_READ),
+            LibraryOperation.progress("book-2", 10, 100),
+            LibraryOperation.add("book-3", ReadingStatus.WANT_TO_READ),
+            LibraryOperation.remove("book-3")));
+        UserShelfSummary maintained = libraryService.getShelfSummary(userId);
+
+        // When
+        shelfSummaryRepairJob.repair(userId);
+        UserShelfSummary repaired = libraryService.getShelfSummary(userId);
+
+        // Then
+        assertThat(maintained).usingRecursiveComparison().ignoringFields("updatedAt").isEqualTo(repaired);
+        assertThat(repaired.getTotalBooks()).isEqualTo(2);
+        assertThat(repaired.getPagesRead()).isEqualTo(35);
+    }
+
+    @Test
+    void shouldRepairEveryShelfSummaryInBatches() {
+        // Given: drifted summaries for three users, and one for a user whose books are gone
+        ReflectionTestUtils.setField(shelfSummaryRepairJob, "repairBatchSize", 2);
+        for (String userId : List.of("user-1", "user-2", "user-3")) {
+            libraryService.addBookToLibrary(userId, "book-1", ReadingStatus.READ);
+            transactionTemplate.executeWithoutResult(status ->
+                shelfSummaryWriter.apply(userId, new ShelfDelta().plusPages(99)));
+        }
+        transactionTemplate.executeWithoutResult(status ->
+            shelfSummaryWriter.apply("user-4", new ShelfDelta().plusPages(5)));
+
+        // When
+        shelfSummaryRepairJob.repairAll();
+
+        // Then
+        for (String userId : List.of("user-1", "user-2", "user-3")) {
+            UserShelfSummary summary = libraryService.getShelfSummary(userId);
+            assertThat(summary.getTotalBooks()).isEqualTo(1);
+            assertThat(summary.getPagesRead()).isZero();
+        }
+        assertThat(shelfSummaryRepository.findById("user-4")).isEmpty();
+    }
+
+    @Test
+    void shouldBackfillOnlyMissingShelfSummaries() {
+        // Given
+        libraryService.addBookToLibrary("user-1", "book-1", ReadingStatus.READ);
+        libraryService.addBookToLibrary("user-2", "book-1", ReadingStatus.WANT_TO_READ);
+        libraryService.addBookToLibrary("user-2", "book-2", ReadingStatus.WANT_TO_READ);
+        shelfSummaryRepository.deleteById("user-2");
+        UserShelfSummary kept = libraryService.getShelfSummary("user-1");
+
+        // When
+        Integer built = transactionTemplate.execute(status -> shelfSummaryWriter.backfill());
+
+        // Then
+        assertThat(built).isEqualTo(1);
+        assertThat(libraryService.getShelfSummary("user-2").getWantToReadCount()).isEqualTo(2);
+        assertThat(libraryService.getShelfSummary("user-1").getUpdatedAt()).isEqualTo(kept.getUpdatedAt());
+    }
+
+    @Test
+    void shouldReportAnEmptyShelfSummaryForNewUsers() {
+        // When
+        UserShelfSummary summary = libraryService.getShelfSummary("new-user");
+
+        // Then
+        assertThat(summary.getTotalBooks()).isZero();
+        assertThat(summary.getAverageRating()).isNull();
+    }
+
+    @Test
+    void shouldStreamWholeLibraryInIdOrder() {
+        // Given
+        String userId = "test-user";
+        libraryService.addBookToLibrary(userId, "book-1", ReadingStatus.WANT_TO_READ);
+        libraryService.addBookToLibrary(userId, "book-2", ReadingStatus.CURRENTLY_READING);
+        libraryService.addBookToLibrary(userId, "book-3", ReadingStatus.READ);
+        libraryService.addBookToLibrary("other-user", "book-1", ReadingStatus.READ);
+        List<String> expected = userBookRepository.findByUserId(userId, PageRequest.of(0, 10)).getContent().stream()
+            .map(UserBook::getId).sorted().toList();
+
+        // When
+        List<UserBook> streamed = new ArrayList<>();
+        libraryService.streamUserBooks(userId, null, "", streamed::add);
+
+        // Then
+        assertThat(streamed).extracting(UserBook::getId).containsExactlyElementsOf(expected);
+        assertThat(streamed).extracting(UserBook::getUserId).containsOnly(userId);
+    }
+
+    @Test
+    void shouldResumeStreamAfterLastBookReceived() {
+        // Given
+        String userId = "test-user";
+        for (int i = 1; i <= 5; i++) {
+            libraryService.addBookToLibrary(userId, "book-" + i, ReadingStatus.WANT_TO_READ);
+        }
+        List<UserBook> firstPart = new ArrayList<>();
+        libraryService.streamUserBooks(userId, null, "", userBook -> {
+            firstPart.add(userBook);
+            return firstPart.size() < 2;
+        });
+
+        // When
+        List<UserBook> rest = new ArrayList<>();
+        libraryService.streamUserBooks(userId, null, firstPart.get(1).getId(), rest::add);
+
+        // Then
+        assertThat(firstPart).hasSize(2);
+        assertThat(rest).hasSize(3);
+        assertThat(rest).extracting(UserBook::getId).isSorted()
+            .allMatch(id -> id.compareTo(firstPart.get(1).getId()) > 0);
+    }
+
+    @Test
+    void shouldStreamOnlyRequestedShelfWithBufferedProgress() {
+        // Given
+        String userId = "test-user";
+        libraryService.addBookToLibrary(userId, "book-1", ReadingStatus.WANT_TO_READ);
+        libraryService.addBookToLibrary(userId, "book-2", ReadingStatus.CURRENTLY_READING);
+        libraryService.updateReadingProgress(userId, "book-2", 57, 300);
+
+        // When
+        List<UserBook> streamed = new ArrayList<>();
+        libraryService.streamUserBooks(userId, ReadingStatus.CURRENTLY_READING, "", streamed::add);
+
+        // Then
+        assertThat(streamed).extracting(UserBook::getBookId).containsExactly("book-2");
+        assertThat(streamed.get(0).getCurrentPage()).isEqualTo(57);
+    }
 }
@@ -0,0 +1,92 @@
+package com.nathaniel.bookbackend.library.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestIdentityTest {
+
+    private static final String SECRET = "test-secret-that-is-long-enough-for-hs512-signatures-to-be-accepted-by-jjwt";
+
+    private RequestIdentity requestIdentity;
+
+    @BeforeEach
+    void setUp() {
+        requestIdentity = new RequestIdentity();
+        ReflectionTestUtils.setField(requestIdentity, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(requestIdentity, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(requestIdentity, "cacheSize", 100L);
+        ReflectionTestUtils.setField(requestIdentity, "maxCacheTime", Duration.ofHours(1));
+        requestIdentity.init();
+    }
+
+    @Test
+    void shouldResolveAValidTokenOnceAndReuseThePrincipal() {
+        // Given
+        String header = "Bearer " + token(SECRET, "user-1", Instant.now().plusSeconds(600));
+
+        // When
+        UserPrincipal first = requestIdentity.resolve(header);
+        UserPrincipal second = requestIdentity.resolve(header);
+
+        // Then
+        assertThat(first).isNotNull();
+        assertThat(first.userId()).isEqualTo("user-1");
+        assertThat(first.username()).isEqualTo("reader");
+        assertThat(first.owns("user-1")).isTrue();
+        assertThat(first.owns("user-2")).isFalse();
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void shouldRejectTokensSignedWithAnotherKey() {
+        // Given
+        String forged = token("another-secret-that-is-also-long-enough-for-hs512-signatures-to-be-accepted",
+            "user-1", Instant.now().plusSeconds(600));
+
+        // When
+        UserPrincipal principal = requestIdentity.resolve("Bearer " + forged);
+
+        // Then
+        assertThat(principal).isNull();
+    }
+
+    @Test
+    void shouldRejectExpiredTokens() {
+        // Given
+        String expired = token(SECRET, "user-1", Instant.now().minusSeconds(60));
+
+        // When
+        UserPrincipal principal = requestIdentity.resolve("Bearer " + expired);
+
+        // Then
+        assertThat(principal).isNull();
+    }
+
+    @Test
+    void shouldRejectMissingAndMalformedHeaders() {
+        // When / Then
+        assertThat(requestIdentity.resolve(null)).isNull();
+        assertThat(requestIdentity.resolve("Basic dXNlcjpwYXNz")).isNull();
+        assertThat(requestIdentity.resolve("Bearer not-a-token")).isNull();
+    }
+
+    private static String token(String secret, String userId, Instant expiresAt) {
+        return Jwts.builder()
+            .subject(userId)
+            .claim("username", "reader")
+            .issuedAt(new Date())
+            .expiration(Date.from(expiresAt))
+            .signWith(Keys.hmacShaKeyFor(secret.getBytes()), Jwts.SIG.HS512)
+            .compact();
+    }
+}
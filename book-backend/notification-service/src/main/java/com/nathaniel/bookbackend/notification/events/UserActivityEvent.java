@@ -1,11 +1,14 @@
 package com.nathaniel.bookbackend.notification.events;
 
 import java.time.Instant;
+import java.util.List;
 
 public class UserActivityEvent {
     private String userId;
     private String activityType;
     private String bookId;
+    // Set instead of bookId when one event carries every activity of a bulk library request
+    private List<UserActivityEvent> activities;
     private Instant timestamp;
 
     // Constructors
@@ -28,6 +31,9 @@ public class UserActivityEvent {
     public String getBookId() { return bookId; }
     public void setBookId(String bookId) { this.bookId = bookId; }
 
+    public List<UserActivityEvent> getActivities() { return activities; }
+    public void setActivities(List<UserActivityEvent> activities) { this.activities = activities; }
+
     public Instant getTimestamp() { return timestamp; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
 }
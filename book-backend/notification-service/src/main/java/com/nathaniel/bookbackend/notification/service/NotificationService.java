@@ -55,6 +55,13 @@ public class NotificationService {
         notification.setResourceId(event.getBookId());
 
         switch (event.getActivityType()) {
+            case "BATCH":
+                // One notification for a whole bulk library request rather than one per book
+                int count = event.getActivities() != null ? event.getActivities().size() : 0;
+                notification.setType(NotificationType.SYSTEM_NOTIFICATION);
+                notification.setTitle("Library Updated");
+                notification.setMessage(count + (count == 1 ? " book" : " books") + " in your library were updated");
+                break;
             case "BOOK_ADDED":
                 notification.setType(NotificationType.BOOK_ADDED);
                 notification.setTitle("New Book Added");
@@ -0,0 +1,92 @@
+package com.nathaniel.bookbackend.common.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Decides, for the work running on this thread, whether read-only transactions may go to a replica.
+ * Inside a scope opened by {@link ReadYourWritesFilter} they stop doing so once the request has written,
+ * or from the start when the caller wrote recently enough that replicas may not have it yet.
+ * {@link #onPrimary} pins work that must see everything already committed, such as consumers of
+ * events published on commit. Outside any scope (gRPC calls, schedulers) reads use replicas.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static void begin() {
+        begin(false, null);
+    }
+
+    /**
+     * @param primary      whether reads go to the primary from the start
+     * @param onFirstWrite called when the scope first writes, or null
+     */
+    public static void begin(boolean primary, Runnable onFirstWrite) {
+        SCOPE.set(new Scope(primary, onFirstWrite));
+    }
+
+    public static void end() {
+        SCOPE.remove();
+    }
+
+    /**
+     * Runs {@code work} with every transaction on the primary, then restores the enclosing scope.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        Scope enclosing = SCOPE.get();
+        Scope scope = new Scope(true, null);
+        SCOPE.set(scope);
+        try {
+            return work.get();
+        } finally {
+            if (enclosing == null) {
+                SCOPE.remove();
+            } else {
+                SCOPE.set(enclosing);
+                if (scope.written) {
+                    recordWrite();
+                }
+            }
+        }
+    }
+
+    public static void onPrimary(Runnable work) {
+        onPrimary(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    static void recordWrite() {
+        Scope scope = SCOPE.get();
+        if (scope != null && !scope.written) {
+            scope.written = true;
+            if (scope.onFirstWrite != null) {
+                scope.onFirstWrite.run();
+            }
+        }
+    }
+
+    /**
+     * Whether read-only transactions on this thread must go to the primary.
+     */
+    public static boolean readsFromPrimary() {
+        Scope scope = SCOPE.get();
+        return scope != null && (scope.primary || scope.written);
+    }
+
+    private static final class Scope {
+
+        private final boolean primary;
+        private final Runnable onFirstWrite;
+        private boolean written;
+
+        Scope(boolean primary, Runnable onFirstWrite) {
+            this.primary = primary;
+            this.onFirstWrite = onFirstWrite;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.nathaniel.bookbackend.common.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single connection pool with a primary pool plus one pool per read replica when
+ * common.datasource.replica-urls is set. Replica pools take their settings from spring.datasource.
+ * Runs ahead of Boot's DataSourceAutoConfiguration, which backs off once a DataSource exists.
+ */
+@AutoConfiguration(before = DataSourceAutoConfiguration.class)
+@ConditionalOnExpression("!'${common.datasource.replica-urls:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+    // Zero when the server is not a standby or has replayed everything it received
+    static final String POSTGRES_LAG_QUERY = "SELECT CASE"
+        + " WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+        + " ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS bigint) END";
+
+    @Value("${common.datasource.replica-urls}")
+    private List<String> replicaUrls;
+
+    @Value("${common.datasource.replica-username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${common.datasource.replica-password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${common.datasource.replica-max-lag:5s}")
+    private Duration maxLag;
+
+    @Value("${common.datasource.replica-check-interval:2s}")
+    private Duration checkInterval;
+
+    @Value("${common.datasource.replica-connection-timeout:2s}")
+    private Duration replicaConnectionTimeout;
+
+    @Value("${common.datasource.replica-lag-query:" + POSTGRES_LAG_QUERY + "}")
+    private String lagQuery;
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            String name = "replica-" + (replicas.size() + 1);
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .url(url.trim())
+                .username(replicaUsername)
+                .password(replicaPassword)
+                .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName(name);
+            replica.setReadOnly(true);
+            // A replica that is down must not hold up reads for the primary's full connection timeout
+            replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(new ReplicaRoutingDataSource.Replica(name, replica));
+        }
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, maxLag, lagQuery);
+        meterRegistry.ifAvailable(registry -> replicas.forEach(replica ->
+            Gauge.builder("datasource.replica.lag", replica, ReplicaRoutingDataSource.Replica::getLagMillis)
+                .description("Replication lag at the last health check, -1 if unknown")
+                .baseUnit("milliseconds")
+                .tag("replica", replica.getName())
+                .register(registry)));
+        routing.startHealthChecks(checkInterval);
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter(maxLag);
+    }
+
+    // Hibernate otherwise keeps a session's first connection until the session closes, which with
+    // open-in-view is the end of the request: a write after a read-only transaction would land on the replica
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionsAfterTransaction() {
+        return properties -> properties.put("hibernate.connection.handling_mode",
+            "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+}
@@ -0,0 +1,194 @@
+package com.nathaniel.bookbackend.common.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a replica, round robin among those that answer and are no further behind
+ * the primary than the allowed lag, and everything else to the primary. Read-only transactions fall back to
+ * the primary when no replica qualifies, when a replica refuses a connection, and when {@link ReadYourWrites}
+ * says the work on this thread must see the latest writes.
+ *
+ * <p>The decision is made when a connection is fetched, so this must sit behind a
+ * LazyConnectionDataSourceProxy: transaction managers fetch their connection before the transaction is
+ * marked read-only, and the proxy defers that until the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final String lagQuery;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private ScheduledExecutorService healthChecks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, Duration maxLag, String lagQuery) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagQuery = lagQuery;
+    }
+
+    /**
+     * Checks the replicas once, so reads can use them straight away, then again every interval.
+     */
+    public void startHealthChecks(Duration interval) {
+        checkReplicas();
+        healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecks.scheduleWithFixedDelay(this::checkReplicas,
+            interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = chooseReplica();
+        if (replica != null) {
+            try {
+                return replica.getDataSource().getConnection();
+            } catch (SQLException e) {
+                markUnavailable(replica, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (healthChecks != null) {
+            healthChecks.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            close(replica.getDataSource());
+        }
+        close(primary);
+    }
+
+    private Replica chooseReplica() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                ReadYourWrites.recordWrite();
+            }
+            return null;
+        }
+        if (replicas.isEmpty() || ReadYourWrites.readsFromPrimary()) {
+            return null;
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.isAvailable()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try {
+                Long lag = measureLag(replica);
+                replica.lagMillis = lag != null ? lag : -1;
+                if (lag == null) {
+                    markUnavailable(replica, "replication lag unknown");
+                } else if (lag > maxLagMillis) {
+                    markUnavailable(replica, "replication lag " + lag + " ms");
+                } else if (!replica.available) {
+                    replica.available = true;
+                    logger.info("Replica {} is serving reads, {} ms behind", replica.getName(), lag);
+                }
+            } catch (SQLException e) {
+                replica.lagMillis = -1;
+                markUnavailable(replica, e.getMessage());
+            } catch (RuntimeException e) {
+                // Keeps the scheduled check alive
+                logger.error("Health check of replica {} failed", replica.getName(), e);
+            }
+        }
+    }
+
+    private Long measureLag(Replica replica) throws SQLException {
+        try (Connection connection = replica.getDataSource().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            long lag = resultSet.getLong(1);
+            return resultSet.wasNull() ? null : lag;
+        }
+    }
+
+    private void markUnavailable(Replica replica, String reason) {
+        if (replica.available) {
+            replica.available = false;
+            logger.warn("Replica {} stopped serving reads: {}", replica.getName(), reason);
+        }
+    }
+
+    private static void close(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    public static class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available;
+        private volatile long lagMillis = -1;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /**
+         * Replication lag at the last health check, or -1 if it could not be measured.
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.nathaniel.bookbackend.common.threads;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The gRPC counterpart of {@link ConcurrencyLimitFilter}: a call holds a permit until it completes or is
+ * cancelled, and calls that cannot get one in time fail with RESOURCE_EXHAUSTED.
+ */
+public class GrpcConcurrencyLimitInterceptor implements ServerInterceptor {
+
+    private final Semaphore permits;
+    private final long admissionTimeoutMillis;
+
+    public GrpcConcurrencyLimitInterceptor(int maxConcurrentCalls, Duration admissionTimeout) {
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.admissionTimeoutMillis = admissionTimeout.toMillis();
+    }
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                       ServerCallHandler<Q, R> next) {
+        boolean admitted;
+        try {
+            admitted = permits.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Too many concurrent calls"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+        ServerCall.Listener<Q> listener;
+        try {
+            listener = next.startCall(call, headers);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+
+            @Override
+            public void onComplete() {
+                try {
+                    super.onComplete();
+                } finally {
+                    release.run();
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                try {
+                    super.onCancel();
+                } finally {
+                    release.run();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.nathaniel.bookbackend.common.threads;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier, typically inside a synchronized block or
+ * a native frame such as a JDBC driver's socket read. Each blocking site is logged with its stack once and
+ * counted afterwards, so a hot site does not flood the log.
+ */
+public class PinnedThreadMonitor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int REPORTED_FRAMES = 12;
+
+    private final RecordingStream stream;
+    private final Map<String, AtomicLong> pinsBySite = new ConcurrentHashMap<>();
+
+    public PinnedThreadMonitor(Duration threshold) {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+        stream.startAsync();
+    }
+
+    /**
+     * Pins seen so far per blocking site, keyed by its stack.
+     */
+    public Map<String, Long> getPinsBySite() {
+        return pinsBySite.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().get()));
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    private void report(RecordedEvent event) {
+        String site = describe(event.getStackTrace());
+        long pins = pinsBySite.computeIfAbsent(site, key -> new AtomicLong()).incrementAndGet();
+        if (pins == 1) {
+            logger.warn("Virtual thread pinned its carrier for {} ms at:{}", event.getDuration().toMillis(), site);
+        } else {
+            logger.debug("Virtual thread pinned its carrier for {} ms ({} times so far) at:{}",
+                event.getDuration().toMillis(), pins, site);
+        }
+    }
+
+    private static String describe(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return " unknown";
+        }
+        return stackTrace.getFrames().stream()
+            .limit(REPORTED_FRAMES)
+            .map(PinnedThreadMonitor::describe)
+            .collect(Collectors.joining());
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return "\n\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+            + "(line " + frame.getLineNumber() + ")";
+    }
+}
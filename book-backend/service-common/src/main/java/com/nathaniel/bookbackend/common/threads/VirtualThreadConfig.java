@@ -0,0 +1,116 @@
+package com.nathaniel.bookbackend.common.threads;
+
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.kafka.config.ContainerCustomizer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+import java.time.Duration;
+
+/**
+ * Runs HTTP requests, gRPC calls, Kafka listeners and @Async tasks on virtual threads when
+ * common.threads.virtual is set, so a request waiting on JDBC or a Kafka ack no longer holds a platform thread.
+ * Thread pools stop bounding concurrency in this mode, so requests and calls pass a semaphore sized for what
+ * the connection pool can serve. The gRPC and Kafka parts apply to the services that have them on the classpath.
+ */
+@AutoConfiguration(before = TaskExecutionAutoConfiguration.class)
+@ConditionalOnProperty(name = "common.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Value("${common.threads.max-concurrent-requests:200}")
+    private int maxConcurrentRequests;
+
+    @Value("${common.threads.max-concurrent-tasks:50}")
+    private int maxConcurrentTasks;
+
+    @Value("${common.threads.admission-timeout:1s}")
+    private Duration admissionTimeout;
+
+    @Value("${common.threads.pinned-threshold:20ms}")
+    private Duration pinnedThreshold;
+
+    public VirtualThreadConfig() {
+        // Fail on startup naming the setting, rather than in whichever bean first asks for a virtual thread
+        if (!VirtualThreads.isSupported()) {
+            throw new IllegalStateException("common.threads.virtual is set, but virtual threads need Java 21 or later; "
+                + "running on " + Runtime.version());
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadRequestHandlers() {
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-"));
+    }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter() {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+            new FilterRegistrationBean<>(new ConcurrencyLimitFilter(maxConcurrentRequests, admissionTimeout));
+        // Ahead of security and everything else, so turning a request away costs next to nothing
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    // Replaces Boot's pooled executor for @Async and async MVC; the limit makes submitters wait
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+        AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public SimpleAsyncTaskExecutor applicationTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+        executor.setThreadFactory(VirtualThreads.factory("task-"));
+        executor.setConcurrencyLimit(maxConcurrentTasks);
+        return executor;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "common.threads.trace-pinned", havingValue = "true", matchIfMissing = true)
+    public PinnedThreadMonitor pinnedThreadMonitor() {
+        return new PinnedThreadMonitor(pinnedThreshold);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(GrpcServerConfigurer.class)
+    static class GrpcCalls {
+
+        @Value("${common.threads.max-concurrent-calls:200}")
+        private int maxConcurrentCalls;
+
+        @Value("${common.threads.admission-timeout:1s}")
+        private Duration admissionTimeout;
+
+        @Bean
+        public GrpcServerConfigurer virtualThreadGrpcCalls() {
+            return serverBuilder -> serverBuilder.executor(VirtualThreads.newThreadPerTaskExecutor("grpc-"));
+        }
+
+        @Bean
+        @GrpcGlobalServerInterceptor
+        public GrpcConcurrencyLimitInterceptor grpcConcurrencyLimitInterceptor() {
+            return new GrpcConcurrencyLimitInterceptor(maxConcurrentCalls, admissionTimeout);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(ContainerCustomizer.class)
+    static class KafkaListeners {
+
+        @Bean
+        public ContainerCustomizer<Object, Object, ConcurrentMessageListenerContainer<Object, Object>>
+                virtualThreadKafkaListeners() {
+            SimpleAsyncTaskExecutor listenerExecutor = new SimpleAsyncTaskExecutor();
+            listenerExecutor.setThreadFactory(VirtualThreads.factory("kafka-listener-"));
+            return container -> container.getContainerProperties().setListenerTaskExecutor(listenerExecutor);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.nathaniel.bookbackend.common.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaDataSourceConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withInitializer(context -> context.getBeanFactory()
+            .setConversionService(ApplicationConversionService.getSharedInstance()))
+        .withConfiguration(AutoConfigurations.of(ReplicaDataSourceConfig.class, DataSourceAutoConfiguration.class))
+        .withPropertyValues("spring.datasource.url=jdbc:postgresql://localhost:1/none");
+
+    @Test
+    void shouldRouteTheServicesDataSourceWhenReplicasAreSet() {
+        contextRunner
+            .withPropertyValues(
+                "common.datasource.replica-urls=jdbc:postgresql://localhost:1/replica",
+                "common.datasource.replica-connection-timeout=250ms")
+            .run(context -> {
+                assertThat(context).hasNotFailed().hasSingleBean(ReadYourWritesFilter.class);
+                assertThat(context.getBean(DataSource.class)).isInstanceOf(LazyConnectionDataSourceProxy.class);
+                assertThat(context.getBean(ReplicaRoutingDataSource.class).getReplicas())
+                    .extracting(ReplicaRoutingDataSource.Replica::getName)
+                    .containsExactly("replica-1");
+            });
+    }
+
+    @Test
+    void shouldLeaveBootsDataSourceWithoutReplicas() {
+        contextRunner.run(context -> {
+            assertThat(context).hasNotFailed().doesNotHaveBean(ReplicaRoutingDataSource.class);
+            assertThat(context.getBean(DataSource.class)).isInstanceOf(HikariDataSource.class);
+        });
+    }
+}
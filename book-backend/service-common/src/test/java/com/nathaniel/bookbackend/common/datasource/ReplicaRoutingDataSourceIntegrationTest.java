@@ -0,0 +1,191 @@
+package com.nathaniel.bookbackend.common.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import jakarta.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two independent servers stand in for a primary and its replica; each knows which one it is
+@Testcontainers
+class ReplicaRoutingDataSourceIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> primaryContainer = new PostgreSQLContainer<>("postgres:14-alpine");
+
+    @Container
+    static PostgreSQLContainer<?> replicaContainer = new PostgreSQLContainer<>("postgres:14-alpine");
+
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeAll
+    static void nameServers() {
+        new JdbcTemplate(dataSource(primaryContainer)).execute("CREATE TABLE node AS SELECT 'primary' AS name");
+        new JdbcTemplate(dataSource(replicaContainer)).execute("CREATE TABLE node AS SELECT 'replica' AS name");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ReadYourWrites.end();
+        routing.close();
+    }
+
+    @Test
+    void shouldSendReadOnlyTransactionsToTheReplica() {
+        // Given
+        TransactionTemplate transactions = route(dataSource(replicaContainer), "SELECT 0");
+
+        // When
+        String reads = node(transactions, true);
+        String writes = node(transactions, false);
+
+        // Then
+        assertThat(reads).isEqualTo("replica");
+        assertThat(writes).isEqualTo("primary");
+    }
+
+    @Test
+    void shouldReadFromThePrimaryOnceTheRequestHasWritten() {
+        // Given
+        TransactionTemplate transactions = route(dataSource(replicaContainer), "SELECT 0");
+        ReadYourWrites.begin();
+        String beforeWrite = node(transactions, true);
+
+        // When
+        node(transactions, false);
+
+        // Then
+        assertThat(beforeWrite).isEqualTo("replica");
+        assertThat(node(transactions, true)).isEqualTo("primary");
+    }
+
+    @Test
+    void shouldReadFromThePrimaryInsideAPrimaryScope() {
+        // Given
+        TransactionTemplate transactions = route(dataSource(replicaContainer), "SELECT 0");
+
+        // When
+        String pinned = ReadYourWrites.onPrimary(() -> node(transactions, true));
+
+        // Then
+        assertThat(pinned).isEqualTo("primary");
+        assertThat(node(transactions, true)).isEqualTo("replica");
+    }
+
+    @Test
+    void shouldKeepTheCallerOnThePrimaryForItsNextRequests() throws Exception {
+        // Given
+        TransactionTemplate transactions = route(dataSource(replicaContainer), "SELECT 0");
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), writeResponse, (request, response) -> node(transactions, false));
+        Cookie sticky = writeResponse.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        // When
+        AtomicReference<String> withCookie = new AtomicReference<>();
+        MockHttpServletRequest nextRequest = new MockHttpServletRequest();
+        nextRequest.setCookies(sticky);
+        filter.doFilter(nextRequest, new MockHttpServletResponse(),
+            (request, response) -> withCookie.set(node(transactions, true)));
+        AtomicReference<String> withoutCookie = new AtomicReference<>();
+        filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+            (request, response) -> withoutCookie.set(node(transactions, true)));
+
+        // Then
+        assertThat(sticky).isNotNull();
+        assertThat(sticky.getMaxAge()).isEqualTo(5);
+        assertThat(withCookie.get()).isEqualTo("primary");
+        assertThat(withoutCookie.get()).isEqualTo("replica");
+    }
+
+    @Test
+    void shouldIgnoreExpiredAndForgedStickyCookies() throws Exception {
+        // Given
+        TransactionTemplate transactions = route(dataSource(replicaContainer), "SELECT 0");
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+        long now = System.currentTimeMillis();
+
+        // When
+        AtomicReference<String> expired = new AtomicReference<>();
+        MockHttpServletRequest expiredRequest = new MockHttpServletRequest();
+        expiredRequest.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(now - 1000)));
+        filter.doFilter(expiredRequest, new MockHttpServletResponse(),
+            (request, response) -> expired.set(node(transactions, true)));
+        AtomicReference<String> forged = new AtomicReference<>();
+        MockHttpServletRequest forgedRequest = new MockHttpServletRequest();
+        forgedRequest.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(now + 3_600_000)));
+        filter.doFilter(forgedRequest, new MockHttpServletResponse(),
+            (request, response) -> forged.set(node(transactions, true)));
+
+        // Then
+        assertThat(expired.get()).isEqualTo("replica");
+        assertThat(forged.get()).isEqualTo("replica");
+    }
+
+    @Test
+    void shouldFallBackToThePrimaryWhenTheReplicaLags() {
+        // Given
+        TransactionTemplate transactions = route(dataSource(replicaContainer), "SELECT 60000");
+
+        // When
+        String reads = node(transactions, true);
+
+        // Then
+        assertThat(reads).isEqualTo("primary");
+        assertThat(routing.getReplicas().get(0).getLagMillis()).isEqualTo(60000);
+    }
+
+    @Test
+    void shouldFallBackToThePrimaryWhenTheReplicaIsDown() {
+        // Given
+        PGSimpleDataSource unreachable = new PGSimpleDataSource();
+        unreachable.setUrl("jdbc:postgresql://localhost:1/none");
+        unreachable.setConnectTimeout(1);
+        TransactionTemplate transactions = route(unreachable, "SELECT 0");
+
+        // When
+        String reads = node(transactions, true);
+
+        // Then
+        assertThat(reads).isEqualTo("primary");
+        assertThat(routing.getReplicas().get(0).isAvailable()).isFalse();
+    }
+
+    private TransactionTemplate route(DataSource replica, String lagQuery) {
+        routing = new ReplicaRoutingDataSource(dataSource(primaryContainer),
+            List.of(new ReplicaRoutingDataSource.Replica("replica-1", replica)), Duration.ofSeconds(5), lagQuery);
+        routing.startHealthChecks(Duration.ofMinutes(1));
+        return new TransactionTemplate(new DataSourceTransactionManager(new LazyConnectionDataSourceProxy(routing)));
+    }
+
+    private static String node(TransactionTemplate transactions, boolean readOnly) {
+        transactions.setReadOnly(readOnly);
+        return transactions.execute(status -> new JdbcTemplate(
+            ((DataSourceTransactionManager) transactions.getTransactionManager()).getDataSource())
+            .queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private static DataSource dataSource(PostgreSQLContainer<?> container) {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(container.getJdbcUrl());
+        dataSource.setUser(container.getUsername());
+        dataSource.setPassword(container.getPassword());
+        return dataSource;
+    }
+}
@@ -0,0 +1,154 @@
+package com.nathaniel.bookbackend.common.datasource;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Stub pools tell the primary and the replica apart by the connection they hand out
+class ReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+
+    private ReplicaRoutingDataSource routing;
+    private LazyConnectionDataSourceProxy dataSource;
+    private TransactionTemplate transactions;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DataSource primary = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        // The replica reports no lag
+        Statement statement = mock(Statement.class);
+        ResultSet lag = mock(ResultSet.class);
+        when(replicaConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(lag);
+        when(lag.next()).thenReturn(true);
+
+        routing = new ReplicaRoutingDataSource(primary,
+            List.of(new ReplicaRoutingDataSource.Replica("replica-1", replica)), Duration.ofSeconds(5), "SELECT 0");
+        routing.startHealthChecks(Duration.ofMinutes(1));
+        dataSource = new LazyConnectionDataSourceProxy(routing);
+        transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ReadYourWrites.end();
+        routing.close();
+    }
+
+    @Test
+    void shouldSendReadOnlyTransactionsToTheReplica() {
+        // When
+        Connection reads = connection(true);
+        Connection writes = connection(false);
+
+        // Then
+        assertThat(reads).isSameAs(replicaConnection);
+        assertThat(writes).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void shouldReadFromThePrimaryOnceTheRequestHasWritten() {
+        // Given
+        ReadYourWrites.begin();
+        Connection beforeWrite = connection(true);
+
+        // When
+        connection(false);
+
+        // Then
+        assertThat(beforeWrite).isSameAs(replicaConnection);
+        assertThat(connection(true)).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void shouldReadFromThePrimaryInsideAPrimaryScope() {
+        // When
+        Connection pinned = ReadYourWrites.onPrimary(() -> connection(true));
+
+        // Then
+        assertThat(pinned).isSameAs(primaryConnection);
+        assertThat(connection(true)).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void shouldKeepTheCallerOnThePrimaryForItsNextRequests() throws Exception {
+        // Given
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), writeResponse, (request, response) -> connection(false));
+        Cookie sticky = writeResponse.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        // When
+        AtomicReference<Connection> withCookie = new AtomicReference<>();
+        MockHttpServletRequest nextRequest = new MockHttpServletRequest();
+        nextRequest.setCookies(sticky);
+        filter.doFilter(nextRequest, new MockHttpServletResponse(),
+            (request, response) -> withCookie.set(connection(true)));
+        AtomicReference<Connection> withoutCookie = new AtomicReference<>();
+        filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+            (request, response) -> withoutCookie.set(connection(true)));
+
+        // Then
+        assertThat(sticky).isNotNull();
+        assertThat(sticky.getMaxAge()).isEqualTo(5);
+        assertThat(withCookie.get()).isSameAs(primaryConnection);
+        assertThat(withoutCookie.get()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void shouldIgnoreExpiredAndForgedStickyCookies() throws Exception {
+        // Given
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+        long now = System.currentTimeMillis();
+
+        // When
+        AtomicReference<Connection> expired = new AtomicReference<>();
+        MockHttpServletRequest expiredRequest = new MockHttpServletRequest();
+        expiredRequest.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(now - 1000)));
+        filter.doFilter(expiredRequest, new MockHttpServletResponse(),
+            (request, response) -> expired.set(connection(true)));
+        AtomicReference<Connection> forged = new AtomicReference<>();
+        MockHttpServletRequest forgedRequest = new MockHttpServletRequest();
+        forgedRequest.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(now + 3_600_000)));
+        filter.doFilter(forgedRequest, new MockHttpServletResponse(),
+            (request, response) -> forged.set(connection(true)));
+
+        // Then
+        assertThat(expired.get()).isSameAs(replicaConnection);
+        assertThat(forged.get()).isSameAs(replicaConnection);
+    }
+
+    // The physical connection the transaction ended up on
+    private Connection connection(boolean readOnly) {
+        transactions.setReadOnly(readOnly);
+        return transactions.execute(status ->
+            ((ConnectionProxy) DataSourceUtils.getConnection(dataSource)).getTargetConnection());
+    }
+}
@@ -0,0 +1,47 @@
+package com.nathaniel.bookbackend.common.threads;
+
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitFilterTest {
+
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, Duration.ofMillis(10));
+
+    @Test
+    void shouldTurnRequestsAwayWithRetryAfterWhilePermitsAreExhausted() throws Exception {
+        // Given
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+
+        // When: a second request arrives while the first holds the only permit
+        filter.doFilter(new MockHttpServletRequest(), admitted,
+            (request, response) -> filter.doFilter(new MockHttpServletRequest(), rejected, (inner, ignored) -> {
+                throw new AssertionError("Admitted without a permit");
+            }));
+
+        // Then
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(admitted.getStatus()).isEqualTo(200);
+        assertThat(filter.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReleaseThePermitWhenTheRequestFails() {
+        // When
+        assertThatThrownBy(() -> filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+            (request, response) -> {
+                throw new ServletException("Handler failed");
+            })).isInstanceOf(ServletException.class);
+
+        // Then
+        assertThat(filter.getAvailablePermits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.nathaniel.bookbackend.common.threads;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GrpcConcurrencyLimitInterceptorTest {
+
+    private final GrpcConcurrencyLimitInterceptor interceptor =
+        new GrpcConcurrencyLimitInterceptor(1, Duration.ofMillis(10));
+
+    private ServerCallHandler<String, String> next;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        next = mock(ServerCallHandler.class);
+        when(next.startCall(any(), any())).thenReturn(mock(ServerCall.Listener.class));
+    }
+
+    @Test
+    void shouldFailCallsWithResourceExhaustedWhilePermitsAreExhausted() {
+        // Given
+        interceptor.interceptCall(call(), new Metadata(), next);
+        ServerCall<String, String> rejected = call();
+
+        // When
+        interceptor.interceptCall(rejected, new Metadata(), next);
+
+        // Then
+        verify(rejected).close(argThat(status -> status.getCode() == Status.Code.RESOURCE_EXHAUSTED), any());
+        verify(next, times(1)).startCall(any(), any());
+    }
+
+    @Test
+    void shouldReleaseThePermitOnceWhenACallEnds() {
+        // Given
+        ServerCall.Listener<String> listener = interceptor.interceptCall(call(), new Metadata(), next);
+
+        // When
+        listener.onCancel();
+        listener.onComplete();
+
+        // Then: the permit came back once, so exactly one more call fits
+        ServerCall<String, String> admitted = call();
+        ServerCall<String, String> rejected = call();
+        interceptor.interceptCall(admitted, new Metadata(), next);
+        interceptor.interceptCall(rejected, new Metadata(), next);
+        verify(admitted, never()).close(any(), any());
+        verify(rejected).close(argThat(status -> status.getCode() == Status.Code.RESOURCE_EXHAUSTED), any());
+    }
+
+    @Test
+    void shouldReleaseThePermitWhenStartingTheCallFails() {
+        // Given
+        when(next.startCall(any(), any())).thenThrow(new IllegalStateException("Handler failed"));
+
+        // When
+        assertThatThrownBy(() -> interceptor.interceptCall(call(), new Metadata(), next))
+            .isInstanceOf(IllegalStateException.class);
+
+        // Then
+        ServerCall<String, String> admitted = call();
+        assertThatThrownBy(() -> interceptor.interceptCall(admitted, new Metadata(), next))
+            .isInstanceOf(IllegalStateException.class);
+        verify(admitted, never()).close(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCall<String, String> call() {
+        return mock(ServerCall.class);
+    }
+}
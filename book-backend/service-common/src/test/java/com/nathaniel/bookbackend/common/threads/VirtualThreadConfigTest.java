@@ -0,0 +1,70 @@
+package com.nathaniel.bookbackend.common.threads;
+
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.kafka.config.ContainerCustomizer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withInitializer(context -> context.getBeanFactory()
+            .setConversionService(ApplicationConversionService.getSharedInstance()))
+        .withConfiguration(AutoConfigurations.of(VirtualThreadConfig.class))
+        .withPropertyValues("common.threads.trace-pinned=false");
+
+    @Test
+    void shouldFailStartupNamingTheSettingWithoutVirtualThreads() {
+        assumeFalse(VirtualThreads.isSupported(), "Needs a runtime before Java 21");
+
+        contextRunner.withPropertyValues("common.threads.virtual=true").run(context -> assertThat(context)
+            .hasFailed()
+            .getFailure()
+            .rootCause()
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("common.threads.virtual")
+            .hasMessageContaining("Java 21"));
+        assertThatThrownBy(() -> VirtualThreads.factory("test-"))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Java 21");
+    }
+
+    @Test
+    void shouldLimitConcurrencyOnVirtualThreads() {
+        assumeTrue(VirtualThreads.isSupported(), "Needs Java 21 or later");
+
+        contextRunner.withPropertyValues("common.threads.virtual=true").run(context -> assertThat(context)
+            .hasNotFailed()
+            .hasBean("concurrencyLimitFilter")
+            .hasSingleBean(GrpcConcurrencyLimitInterceptor.class)
+            .hasSingleBean(ContainerCustomizer.class));
+        assertThat(VirtualThreads.factory("test-").newThread(() -> { }).getName()).isEqualTo("test-0");
+    }
+
+    @Test
+    void shouldLeaveOutGrpcAndKafkaInServicesWithoutThem() {
+        assumeTrue(VirtualThreads.isSupported(), "Needs Java 21 or later");
+
+        contextRunner.withClassLoader(new FilteredClassLoader(GrpcServerConfigurer.class, ContainerCustomizer.class))
+            .withPropertyValues("common.threads.virtual=true").run(context -> assertThat(context)
+                .hasNotFailed()
+                .hasBean("concurrencyLimitFilter")
+                .doesNotHaveBean(GrpcConcurrencyLimitInterceptor.class)
+                .doesNotHaveBean("virtualThreadKafkaListeners"));
+    }
+
+    @Test
+    void shouldStayOnPlatformThreadsByDefault() {
+        contextRunner.run(context -> assertThat(context)
+            .hasNotFailed()
+            .doesNotHaveBean(VirtualThreadConfig.class));
+    }
+}